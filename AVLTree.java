@@ -88,6 +88,8 @@ public class AVLTree<T>
 
     /**
      * Adds the specified item to this tree if it is not already present.
+     * The insertion is non-recursive; it descends from the root and then
+     * rebalances on the path back up using the parent references.
      *
      * @param item element to be added to this tree.
      * @return <tt>true</tt> if the tree did not already contain the specified
@@ -95,13 +97,44 @@ public class AVLTree<T>
      */
 	public boolean add(T item)
 	{
-		try
+		// t is current node in traversal, parent the previous node
+		AVLNode<T> t = root, parent = null, newNode;
+		int orderValue = 0;
+
+		// terminate on on empty subtree
+		while (t != null)
 		{
-			root = addNode(root, item);
+			// update the parent reference.
+			parent = t;
+
+			// compare item and the current node value
+			orderValue = ((Comparable<T>)item).compareTo(t.nodeValue);
+
+			// if a match occurs, item is a duplicate; otherwise, go
+			// left or go right following search tree order
+			if (orderValue == 0)
+				return false;
+			else if (orderValue < 0)
+				t = t.left;
+			else
+				t = t.right;
 		}
 
-		catch (IllegalStateException ise)
-		{ return false; }
+		// create the new node
+		newNode = new AVLNode<T>(item, parent);
+
+		if (parent == null)
+			// this is the first node added. make it root
+			root = newNode;
+		else if (orderValue < 0)
+			// attach newNode as the left child of parent
+			parent.left = newNode;
+		else
+			// attach newNode as the right child of parent
+			parent.right = newNode;
+
+		// restore the AVL property on the path to the root
+		rebalancePath(parent);
 
 		// increment the tree size and modCount
 		treeSize++;
@@ -111,39 +144,98 @@ public class AVLTree<T>
 		return true;
 	}
 
-	private AVLNode<T> addNode(AVLNode<T> t, T item)
+	// private method used by remove() and the iterator
+	// remove() to delete a node
+	private void removeNode(AVLNode<T> dNode)
 	{
-		if( t == null )
-			t = new AVLNode<T>(item);
-		else if (((Comparable<T>)item).compareTo(t.nodeValue) < 0)
+		// dNode = reference to node D that is deleted
+		// pNode = reference to parent P of node D
+		// rNode = reference to node R that replaces D
+		AVLNode<T> pNode, rNode;
+
+		// if D has two children, copy the value of its inorder
+		// successor into D and delete the successor instead. the
+		// successor has no left child
+		if (dNode.left != null && dNode.right != null)
 		{
-			t.left = addNode( t.left, item);
-
-			if (height(t.left) - height(t.right) == 2 )
-				if (((Comparable<T>)item).compareTo
-							(t.left.nodeValue) < 0)
-					t = singleRotateRight(t);
-				else
-					t = doubleRotateRight(t);
+			rNode = dNode.right;
+			while (rNode.left != null)
+				rNode = rNode.left;
+
+			dNode.nodeValue = rNode.nodeValue;
+			dNode = rNode;
 		}
-		else if (((Comparable<T>)item).compareTo
-							(t.nodeValue) > 0 )
+
+		// D has at most one child. the replacement node is that
+		// child, or null
+		pNode = dNode.parent;
+		if (dNode.left != null)
+			rNode = dNode.left;
+		else
+			rNode = dNode.right;
+
+		// the parent of R is now the parent of D
+		if (rNode != null)
+			rNode.parent = pNode;
+
+		// deleting the root node. assign new root
+		if (pNode == null)
+			root = rNode;
+		// attach R to the correct branch of P
+		else if (dNode == pNode.left)
+			pNode.left = rNode;
+		else
+			pNode.right = rNode;
+
+		// restore the AVL property on the path to the root
+		rebalancePath(pNode);
+	}
+
+	// walk from t to the root, updating heights and performing a
+	// rotation at each node whose balance factor is +2 or -2. the
+	// walk stops as soon as a subtree keeps its previous height,
+	// since no ancestor is then affected
+	private void rebalancePath(AVLNode<T> t)
+	{
+		int oldHeight;
+
+		while (t != null)
 		{
-			t.right = addNode(t.right, item );
-
-			if (height(t.left) - height(t.right) == -2)
-				if (((Comparable<T>)item).compareTo
-							(t.right.nodeValue) > 0)
-					t = singleRotateLeft(t);
-				else
-					t = doubleRotateLeft(t);
+			oldHeight = t.height;
+			t = rebalance(t);
+
+			if (t.height == oldHeight)
+				break;
+
+			t = t.parent;
 		}
-		else
-			// duplicate; throw IllegalStateException
-			throw new IllegalStateException();
+	}
 
-		t.height = max( height(t.left), height(t.right) ) + 1;
+	// update the height of t and rotate if t is out of balance.
+	// return the root of the subtree that replaces t
+	private AVLNode<T> rebalance(AVLNode<T> t)
+	{
+		int balance = height(t.left) - height(t.right);
+
+		if (balance == 2)
+		{
+			// left subtree too tall. a single rotation fixes an
+			// outside (left-left) grandchild, a double rotation an
+			// inside one
+			if (height(t.left.left) >= height(t.left.right))
+				return singleRotateRight(t);
+			else
+				return doubleRotateRight(t);
+		}
+		else if (balance == -2)
+		{
+			if (height(t.right.right) >= height(t.right.left))
+				return singleRotateLeft(t);
+			else
+				return doubleRotateLeft(t);
+		}
 
+		t.height = max(height(t.left), height(t.right)) + 1;
 		return t;
 	}
 
@@ -163,44 +255,66 @@ public class AVLTree<T>
             return b;
     }
 
+	// replace p by its child c in the link from the parent of p
+	private void replaceChild(AVLNode<T> p, AVLNode<T> c)
+	{
+		AVLNode<T> g = p.parent;
+
+		c.parent = g;
+		if (g == null)
+			root = c;
+		else if (p == g.left)
+			g.left = c;
+		else
+			g.right = c;
+		p.parent = c;
+	}
 
 	// perform a single right rotation for parent p
-	private static <T> AVLNode<T> singleRotateRight(AVLNode<T> p)
+	private AVLNode<T> singleRotateRight(AVLNode<T> p)
 	{
 		AVLNode<T> lc = p.left;
 
 		p.left = lc.right;
+		if (lc.right != null)
+			lc.right.parent = p;
 		lc.right = p;
+		replaceChild(p, lc);
+
 		p.height = max( height( p.left ), height( p.right ) ) + 1;
-		lc.height = max( height( lc.left ), lc.height ) + 1;
+		lc.height = max( height( lc.left ), p.height ) + 1;
 
 		return lc;
 	}
 
 	// perform a single left rotation for parent p
-	private static <T> AVLNode<T> singleRotateLeft(AVLNode<T> p)
+	private AVLNode<T> singleRotateLeft(AVLNode<T> p)
 	{
 		AVLNode<T> rc = p.right;
 
 		p.right = rc.left;
+		if (rc.left != null)
+			rc.left.parent = p;
 		rc.left = p;
+		replaceChild(p, rc);
+
 		p.height = max(height(p.left), height(p.right)) + 1;
-		rc.height = max(height(rc.right), rc.height) + 1;
+		rc.height = max(height(rc.right), p.height) + 1;
 
 		return rc;
 	}
 
 	// perform a double right rotation for parent p
-	private static <T> AVLNode<T> doubleRotateRight(AVLNode<T> p)
+	private AVLNode<T> doubleRotateRight(AVLNode<T> p)
 	{
-		p.left = singleRotateLeft(p.left);
+		singleRotateLeft(p.left);
 		return singleRotateRight(p);
 	}
 
-	// perform a single left rotation for parent p
-	private static <T> AVLNode<T> doubleRotateLeft(AVLNode<T> p)
+	// perform a double left rotation for parent p
+	private AVLNode<T> doubleRotateLeft(AVLNode<T> p)
 	{
-		p.right = singleRotateRight(p.right);
+		singleRotateRight(p.right);
 		return singleRotateLeft(p);
 	}
 
@@ -213,6 +327,7 @@ public class AVLTree<T>
 		deleteTree(root);
 		root = null;
 		treeSize = 0;
+		modCount++;
 	}
 
    /**
@@ -262,12 +377,27 @@ public class AVLTree<T>
 
     /**
      * Removes the specified item from this tree if it is present.
+     * The tree is rebalanced on the path from the deleted node to the root,
+     * so the operation runs in O(log n) time.
      *
      * @param item object to be removed from this tree, if present.
      * @return <tt>true</tt> if the tree contained the specified element.
      */
 		public boolean remove (Object item)
-		{ return true; }
+		{
+			// search tree for item
+			AVLNode<T> dNode = findNode(item);
+
+			if (dNode == null)
+				return false;
+
+			removeNode(dNode);
+
+			treeSize--;
+			modCount++;
+
+			return true;
+		}
 
      /**
      * Returns the number of elements in this tree.
@@ -328,36 +458,29 @@ public class AVLTree<T>
 
     private class IteratorImpl implements Iterator<T>
     {
-        private ALStack<AVLNode<T>> stack = null;
-        private AVLNode<T> curr = null;
-
         // set expectedModCount to the number of list changes
         // at the time of iterator creation
         private int expectedModCount = modCount;
-
-        // go far left from t, pushing all the nodes with left
-        // children on stack
-        private AVLNode<T> goFarLeft(AVLNode<T> t)
-        {
-            if (t == null)
-                 return null;
-            while (t.left != null)
-            {
-                 stack.push(t);
-                 t = t.left;
-            }
-            return t;
-        }
+        // node of the last value returned by next() or null if that
+        // value was deleted by the iterator method remove()
+        private AVLNode<T> lastReturned = null;
+        // node whose value is returned a subsequent call to next()
+        private AVLNode<T> nextNode = null;
 
         public IteratorImpl(AVLNode<T> root)
         {
-            stack = new ALStack<AVLNode<T>>();
-            curr = goFarLeft(root);
+            nextNode = root;
+
+            // if the tree is not empty, the first node
+            // inorder is the farthest node left from root
+            if (nextNode != null)
+                while (nextNode.left != null)
+                    nextNode = nextNode.left;
         }
 
         public boolean hasNext()
         {
-            return curr != null;
+            return nextNode != null;
         }
 
         public T next()
@@ -366,29 +489,66 @@ public class AVLTree<T>
             // throws ConcurrentModificationException if not
             checkIteratorState();
 
-            if (curr == null)
+            if (nextNode == null)
                  throw new NoSuchElementException(
                  		"No elements remaining");
 
-            // capture the value in the node
-            T returnValue = (T)curr.nodeValue;
+            // save current value of next in lastReturned.
+            lastReturned = nextNode;
 
-            if (curr.right != null)	// have a right subtree
-                 // stack nodes on left subtree
-                 curr = goFarLeft(curr.right);
-            else if (!stack.isEmpty())
-                 // no right subtree there are other nodes
-                 // to visit. pop the stack
-                 curr = (AVLNode<T>)stack.pop();
+            if (nextNode.right != null)
+            {
+                // successor is the furthest left node of
+                // right subtree
+                nextNode = nextNode.right;
+
+                while (nextNode.left != null)
+                    nextNode = nextNode.left;
+            }
             else
-                 curr = null;	// end of tree; set curr to null
+            {
+                // move up the tree until nextNode is a left child.
+                // its parent is the successor. if the parent becomes
+                // null, lastReturned was the last node inorder
+                AVLNode<T> p = nextNode.parent;
+
+                while (p != null && nextNode == p.right)
+                {
+                    nextNode = p;
+                    p = p.parent;
+                }
+
+                nextNode = p;
+            }
 
-            return returnValue;
+            return lastReturned.nodeValue;
         }
 
         public void remove()
         {
-            // no implementation
+            // check for a missing call to next()
+            if (lastReturned == null)
+                throw new IllegalStateException(
+                    "Iterator call to next() " +
+                    "required before calling remove()");
+
+            // make sure our state is good
+            checkIteratorState();
+
+            // if lastReturned has two children, the value in its
+            // successor nextNode is copied into lastReturned and the
+            // successor node is deleted. rotations move nodes but not
+            // their values, so lastReturned is the next node
+            if (lastReturned.left != null && lastReturned.right != null)
+                nextNode = lastReturned;
+            removeNode(lastReturned);
+
+            // tree has been modified
+            modCount++;
+            expectedModCount = modCount;
+
+            lastReturned = null;
+            treeSize--;
         }
 
       // protected so MiniListIteratorImpl class can use it also
@@ -407,19 +567,20 @@ public class AVLTree<T>
 		public T nodeValue;
 
 		// child links and link to the node's parent
-		public AVLNode<T> left, right;
+		public AVLNode<T> left, right, parent;
 
 		// public int height;
 		public int height;
 
-		// constructor that initializes the value, balance factor
+		// constructor that initializes the value, height
 		// and parent fields and sets the link fields left and
 		// right to null
-		public AVLNode(T item)
+		public AVLNode(T item, AVLNode<T> parentNode)
 		{
 			nodeValue = item;
 			left = null;
 			right = null;
+			parent = parentNode;
 			height = 0;
 		}
 	}
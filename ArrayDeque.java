@@ -0,0 +1,576 @@
+/*
+ * @(#)ArrayDeque.java
+ */
+
+package ds.util;
+
+import java.util.NoSuchElementException;
+import java.util.EmptyStackException;
+import java.util.ConcurrentModificationException;
+import java.lang.IllegalStateException;
+
+/**
+ * A double-ended queue stored in a circular array.  Elements can be added
+ * and removed at both ends in amortized constant time, and the array
+ * doubles when it fills, so the deque has no fixed capacity.  The
+ * capacity is a power of 2 and an index wraps around the end of the array
+ * with a mask rather than a division.  Unlike <tt>LinkedQueue</tt>, the
+ * deque allocates nothing when elements are added unless it grows.<p>
+ *
+ * The class implements the <tt>Queue</tt> interface: <tt>push</tt> adds
+ * at the back and <tt>pop</tt> removes from the front.  The
+ * <tt>Stack</tt> interface uses the same method names for last-in,
+ * first-out order, so a stack is obtained as the view
+ * <tt>asStack()</tt>.<p>
+ *
+ * The deque does not hold <tt>null</tt> elements.<p>
+ */
+
+public class ArrayDeque<T> implements Queue<T>, Iterable<T>
+{
+	// capacity of a deque created by the default constructor
+	private static final int DEFAULT_CAPACITY = 16;
+
+	// largest power of 2 that is a valid array length
+	private static final int MAX_CAPACITY = 1 << 30;
+
+	// the elements are elements[head] through elements[(tail-1) & mask]
+	// in order; the other slots are null. head == tail when the deque
+	// is empty, and the array grows as soon as it fills
+	private Object[] elements;
+	private int head;
+	private int tail;
+
+	// increases whenever the deque changes. the iterator records the
+	// value when it is created and checks it on each operation
+	private int modCount = 0;
+
+	/**
+	 * Creates an empty deque with an initial capacity of 16 elements.
+	 */
+	public ArrayDeque()
+	{
+		elements = new Object[DEFAULT_CAPACITY];
+	}
+
+	/**
+	 * Creates an empty deque that can hold <tt>capacity</tt> elements
+	 * before it grows.
+	 *
+	 * @param capacity  the initial capacity.
+	 * @throws IllegalArgumentException if <tt>capacity</tt> is negative.
+	 */
+	public ArrayDeque(int capacity)
+	{
+		if (capacity < 0)
+			throw new IllegalArgumentException(
+				"ArrayDeque(): negative capacity");
+
+		elements = new Object[tableSizeFor(capacity + 1)];
+	}
+
+	// smallest power of 2 that is at least n and at least 8
+	private static int tableSizeFor(int n)
+	{
+		if (n > MAX_CAPACITY || n < 0)
+			return MAX_CAPACITY;
+
+		return Math.max(8, Integer.highestOneBit(Math.max(n - 1, 1)) << 1);
+	}
+
+	// called before an element is added. the array grows as soon as it
+	// fills, so if one more element would fill an array that cannot
+	// double, fail before any field changes
+	private void checkRoom()
+	{
+		if (elements.length == MAX_CAPACITY &&
+			 ((tail + 1) & (MAX_CAPACITY - 1)) == head)
+			throw new OutOfMemoryError("ArrayDeque: deque too large");
+	}
+
+	// double the array, called when it is full. the elements from head
+	// to the end of the array and those wrapped around to the start are
+	// copied so that head is 0. checkRoom() has ensured that the array
+	// is smaller than MAX_CAPACITY
+	private void doubleCapacity()
+	{
+		int n = elements.length;
+		Object[] a = new Object[n << 1];
+		int r = n - head;
+
+		System.arraycopy(elements, head, a, 0, r);
+		System.arraycopy(elements, 0, a, r, head);
+		elements = a;
+		head = 0;
+		tail = n;
+	}
+
+	/**
+	 * Inserts the item at the front of this deque.
+	 *
+	 * @param item  the element to add.
+	 * @throws NullPointerException if <tt>item</tt> is <tt>null</tt>.
+	 */
+	public void addFirst(T item)
+	{
+		if (item == null)
+			throw new NullPointerException("ArrayDeque addFirst(): null element");
+
+		checkRoom();
+		head = (head - 1) & (elements.length - 1);
+		elements[head] = item;
+		if (head == tail)
+			doubleCapacity();
+		modCount++;
+	}
+
+	/**
+	 * Inserts the item at the back of this deque.
+	 *
+	 * @param item  the element to add.
+	 * @throws NullPointerException if <tt>item</tt> is <tt>null</tt>.
+	 */
+	public void addLast(T item)
+	{
+		if (item == null)
+			throw new NullPointerException("ArrayDeque addLast(): null element");
+
+		checkRoom();
+		elements[tail] = item;
+		tail = (tail + 1) & (elements.length - 1);
+		if (tail == head)
+			doubleCapacity();
+		modCount++;
+	}
+
+	/**
+	 * Inserts all of the elements of <tt>c</tt> at the back of this
+	 * deque, in the order of the collection's <tt>toArray</tt>.  The
+	 * deque grows at most once.
+	 *
+	 * @param c  the collection whose elements are added.
+	 * @throws NullPointerException if <tt>c</tt> holds a <tt>null</tt>
+	 *         element.
+	 */
+	public void addAll(Collection<? extends T> c)
+	{
+		Object[] arr = c.toArray();
+		int needed = size() + arr.length;
+
+		if (needed < 0)
+			throw new OutOfMemoryError("ArrayDeque: deque too large");
+		if (needed >= elements.length)
+			ensureCapacity(needed);
+
+		for (int i = 0; i < arr.length; i++)
+			addLast((T)arr[i]);
+	}
+
+	// grow the array so that it holds at least minCapacity elements
+	// with a slot to spare
+	private void ensureCapacity(int minCapacity)
+	{
+		int newLength = tableSizeFor(minCapacity + 1);
+
+		if (newLength <= minCapacity)
+			throw new OutOfMemoryError("ArrayDeque: deque too large");
+
+		Object[] a = toArray();
+
+		elements = new Object[newLength];
+		System.arraycopy(a, 0, elements, 0, a.length);
+		head = 0;
+		tail = a.length;
+	}
+
+	/**
+	 * Removes and returns the element at the front of this deque.
+	 *
+	 * @return the first element.
+	 * @throws NoSuchElementException if the deque is empty.
+	 */
+	public T removeFirst()
+	{
+		T item = (T)elements[head];
+
+		if (item == null)
+			throw new NoSuchElementException("ArrayDeque removeFirst(): deque empty");
+
+		elements[head] = null;
+		head = (head + 1) & (elements.length - 1);
+		modCount++;
+
+		return item;
+	}
+
+	/**
+	 * Removes and returns the element at the back of this deque.
+	 *
+	 * @return the last element.
+	 * @throws NoSuchElementException if the deque is empty.
+	 */
+	public T removeLast()
+	{
+		int t = (tail - 1) & (elements.length - 1);
+		T item = (T)elements[t];
+
+		if (item == null)
+			throw new NoSuchElementException("ArrayDeque removeLast(): deque empty");
+
+		elements[t] = null;
+		tail = t;
+		modCount++;
+
+		return item;
+	}
+
+	/**
+	 * Returns the element at the front of this deque.
+	 *
+	 * @return the first element.
+	 * @throws NoSuchElementException if the deque is empty.
+	 */
+	public T getFirst()
+	{
+		T item = (T)elements[head];
+
+		if (item == null)
+			throw new NoSuchElementException("ArrayDeque getFirst(): deque empty");
+
+		return item;
+	}
+
+	/**
+	 * Returns the element at the back of this deque.
+	 *
+	 * @return the last element.
+	 * @throws NoSuchElementException if the deque is empty.
+	 */
+	public T getLast()
+	{
+		T item = (T)elements[(tail - 1) & (elements.length - 1)];
+
+		if (item == null)
+			throw new NoSuchElementException("ArrayDeque getLast(): deque empty");
+
+		return item;
+	}
+
+	/**
+	 * Returns the element at position <tt>index</tt>, counting from 0 at
+	 * the front of the deque.
+	 *
+	 * @param index  the position of the element.
+	 * @return the element at the position.
+	 * @throws IndexOutOfBoundsException if <tt>index &lt; 0</tt> or
+	 *         <tt>index &gt;= size()</tt>.
+	 */
+	public T get(int index)
+	{
+		if (index < 0 || index >= size())
+			throw new IndexOutOfBoundsException("ArrayDeque get(): index " +
+				index + " out of bounds. Should be in the range 0 to " +
+				(size()-1));
+
+		return (T)elements[(head + index) & (elements.length - 1)];
+	}
+
+	/**
+	 * Insert item at the back of the queue.  Equivalent to
+	 * <tt>addLast</tt>.
+	 *
+	 * @param item  insert item at the back of the queue
+	 * @throws NullPointerException if <tt>item</tt> is <tt>null</tt>.
+	 */
+	public void push(T item)
+	{
+		addLast(item);
+	}
+
+	/**
+	 * Remove the element at the front of the queue and return its value.
+	 * Equivalent to <tt>removeFirst</tt>.
+	 *
+	 * @return value of the element removed from the front of the queue.
+	 * @throws <tt>NoSuchElementException</tt> if the queue is empty.
+	 */
+	public T pop()
+	{
+		return removeFirst();
+	}
+
+	/**
+	 * Return the value of the element at the front of the queue.
+	 * Equivalent to <tt>getFirst</tt>.
+	 *
+	 * @return value of element at the front of the queue.
+	 * @throws <tt>NoSuchElementException</tt> if the queue is empty.
+	 */
+	public T peek()
+	{
+		return getFirst();
+	}
+
+	/**
+	 * Return a boolean value that indicates whether the deque is empty.
+	 *
+	 * @return true if the deque is empty and false otherwise.
+	 */
+	public boolean isEmpty()
+	{
+		return head == tail;
+	}
+
+	/**
+	 * Return the number of elements currently in the deque.
+	 *
+	 * @return number of elements in the deque.
+	 */
+	public int size()
+	{
+		return (tail - head) & (elements.length - 1);
+	}
+
+	/**
+	 * Removes all of the elements from this deque.  The capacity is
+	 * unchanged.
+	 */
+	public void clear()
+	{
+		// null the occupied slots, which may wrap around the end
+		if (head <= tail)
+			java.util.Arrays.fill(elements, head, tail, null);
+		else
+		{
+			java.util.Arrays.fill(elements, head, elements.length, null);
+			java.util.Arrays.fill(elements, 0, tail, null);
+		}
+
+		head = tail = 0;
+		modCount++;
+	}
+
+	/**
+	 * Removes up to <tt>maxElements</tt> elements from the front of this
+	 * deque and adds them to <tt>c</tt> in order.
+	 *
+	 * @param c  the collection that receives the elements.
+	 * @param maxElements  the largest number of elements to move.
+	 * @return the number of elements moved.
+	 */
+	public int drainTo(Collection<? super T> c, int maxElements)
+	{
+		int n = Math.min(Math.max(maxElements, 0), size()), mask = elements.length - 1;
+
+		for (int i = 0; i < n; i++)
+		{
+			c.add((T)elements[head]);
+			elements[head] = null;
+			head = (head + 1) & mask;
+		}
+
+		if (n > 0)
+			modCount++;
+
+		return n;
+	}
+
+	/**
+	 * Removes all of the elements of this deque and adds them to
+	 * <tt>c</tt> in order from front to back.
+	 *
+	 * @param c  the collection that receives the elements.
+	 * @return the number of elements moved.
+	 */
+	public int drainTo(Collection<? super T> c)
+	{
+		return drainTo(c, size());
+	}
+
+	/**
+	 * Removes all of the elements of this deque and returns them in an
+	 * array in order from front to back.  The array is filled with at
+	 * most two calls to <tt>System.arraycopy</tt>.
+	 *
+	 * @return the elements that were in the deque.
+	 */
+	public Object[] drain()
+	{
+		Object[] arr = toArray();
+
+		clear();
+		return arr;
+	}
+
+	/**
+	 * Returns an array holding the elements of this deque in order from
+	 * front to back.
+	 *
+	 * @return an array of the elements.
+	 */
+	public Object[] toArray()
+	{
+		Object[] arr = new Object[size()];
+
+		if (head <= tail)
+			System.arraycopy(elements, head, arr, 0, arr.length);
+		else
+		{
+			int r = elements.length - head;
+
+			System.arraycopy(elements, head, arr, 0, r);
+			System.arraycopy(elements, 0, arr, r, tail);
+		}
+
+		return arr;
+	}
+
+	/**
+	 * Returns a string that displays the elements in the deque from
+	 * front to back. The description is a comma separated list of
+	 * elements enclosed in brackets.
+	 *
+	 * @return string that contains the list of elements in the deque.
+	 */
+	public String toString()
+	{
+		return Arrays.toString(toArray());
+	}
+
+	/**
+	 * Returns a <tt>Stack</tt> view of this deque whose top is the back of
+	 * the deque: <tt>push</tt> calls <tt>addLast</tt> and <tt>pop</tt>
+	 * calls <tt>removeLast</tt>.
+	 *
+	 * @return a last-in, first-out view of this deque.
+	 */
+	public Stack<T> asStack()
+	{
+		return new Stack<T>()
+		{
+			public void push(T item)
+			{
+				addLast(item);
+			}
+
+			public T pop()
+			{
+				if (isEmpty())
+					throw new EmptyStackException();
+				return removeLast();
+			}
+
+			public T peek()
+			{
+				if (isEmpty())
+					throw new EmptyStackException();
+				return getLast();
+			}
+
+			public boolean isEmpty()
+			{
+				return ArrayDeque.this.isEmpty();
+			}
+
+			public int size()
+			{
+				return ArrayDeque.this.size();
+			}
+
+			public String toString()
+			{
+				return ArrayDeque.this.toString();
+			}
+		};
+	}
+
+	/**
+	 * Returns an iterator over the elements of this deque from front to
+	 * back.
+	 *
+	 * @return an iterator over the deque.
+	 */
+	public Iterator<T> iterator()
+	{
+		return new IteratorImpl();
+	}
+
+	// remove the element at slot i. the elements on the shorter side of
+	// i move one slot toward it. returns true if the elements after i
+	// moved toward the front
+	private boolean delete(int i)
+	{
+		Object[] es = elements;
+		int mask = es.length - 1;
+		int front = (i - head) & mask, back = (tail - i) & mask;
+
+		modCount++;
+		if (front < back)
+		{
+			// shift head..i-1 one slot toward the back
+			for (int j = i; j != head; j = (j - 1) & mask)
+				es[j] = es[(j - 1) & mask];
+			es[head] = null;
+			head = (head + 1) & mask;
+			return false;
+		}
+		else
+		{
+			// shift i+1..tail-1 one slot toward the front
+			tail = (tail - 1) & mask;
+			for (int j = i; j != tail; j = (j + 1) & mask)
+				es[j] = es[(j + 1) & mask];
+			es[tail] = null;
+			return true;
+		}
+	}
+
+	private class IteratorImpl implements Iterator<T>
+	{
+		// slot of the element next() returns and of the last element
+		// returned, or -1 after remove()
+		private int cursor = head;
+		private int lastRet = -1;
+		private int expectedModCount = modCount;
+
+		public boolean hasNext()
+		{
+			return cursor != tail;
+		}
+
+		public T next()
+		{
+			checkIteratorState();
+			if (cursor == tail)
+				throw new NoSuchElementException("Iteration has no more elements");
+
+			T item = (T)elements[cursor];
+
+			lastRet = cursor;
+			cursor = (cursor + 1) & (elements.length - 1);
+			return item;
+		}
+
+		public void remove()
+		{
+			if (lastRet < 0)
+				throw new IllegalStateException(
+					"Iterator call to next() required before calling remove()");
+
+			checkIteratorState();
+
+			// if the elements after lastRet moved forward, the next
+			// element is now in slot lastRet
+			if (delete(lastRet))
+				cursor = lastRet;
+			lastRet = -1;
+			expectedModCount = modCount;
+		}
+
+		private void checkIteratorState()
+		{
+			if (expectedModCount != modCount)
+				throw new ConcurrentModificationException("Inconsistent iterator");
+		}
+	}
+}
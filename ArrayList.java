@@ -8,6 +8,7 @@ import java.lang.IndexOutOfBoundsException;
 import java.util.NoSuchElementException;
 import java.lang.IllegalStateException;
 import java.util.ConcurrentModificationException;
+import java.util.function.Predicate;
 import java.io.*;
 
 /**
@@ -43,6 +44,11 @@ public class ArrayList<T>
    // modCount must equal expectedModCount
    private int modCount = 0;
 
+	// largest capacity requested when growing the array. some virtual
+	// machines reserve header words in an array, and a request for
+	// Integer.MAX_VALUE elements fails even when memory is available
+	private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
 	// verify that index is in the range 0 <= index <= upperBound. if
 	// not throw the IndexOutOfBoundsException exception
 	private void rangeCheck(int index, String msg, int upperBound)
@@ -53,6 +59,30 @@ public class ArrayList<T>
 				upperBound);
 	}
 
+	// make sure listArr can hold minCapacity elements. the capacity at
+	// least doubles, so n calls to add() copy O(n) elements in total.
+	// minCapacity < 0 means listSize + count overflowed int
+	private void grow(int minCapacity)
+	{
+		int oldCapacity = listArr.length;
+
+		if (minCapacity <= oldCapacity)
+			return;
+		if (minCapacity < 0)
+			throw new OutOfMemoryError("ArrayList: required capacity too large");
+
+		// compare as differences so the doubled capacity may overflow
+		int newCapacity = oldCapacity << 1;
+
+		if (newCapacity - minCapacity < 0)
+			newCapacity = Math.max(minCapacity, 10);
+		if (newCapacity - MAX_ARRAY_SIZE > 0)
+			newCapacity = (minCapacity > MAX_ARRAY_SIZE) ?
+				Integer.MAX_VALUE : MAX_ARRAY_SIZE;
+
+		ensureCapacity(newCapacity);
+	}
+
 	/**
 	 * Creates an empty list with an initial capacity of ten.
 	 */
@@ -77,16 +107,13 @@ public class ArrayList<T>
 		rangeCheck(index, "ArrayList add()", listSize);
 
 		// see if we need to reallocate more memory
-		if (listSize == listArr.length)
-			ensureCapacity(2*listArr.length);
+		grow(listSize + 1);
 
 		// insert item at location index by shifting
-		// the elements at locations index+1 through
-		// listSize-1 to the right. note that if
-		// index == listSize the for loop does
-		// nothing. we append to the list
-		for (int j= listSize-1;j >= index;j--)
-			listArr[j+1] = listArr[j];
+		// the elements at locations index through
+		// listSize-1 one place to the right. note that if
+		// index == listSize nothing moves. we append to the list
+		System.arraycopy(listArr, index, listArr, index+1, listSize-index);
 
 		// insert item at location index and increment the
 		// list size and modCount
@@ -113,8 +140,7 @@ public class ArrayList<T>
 
 		// shift elements at indices index+1 to listSize-1
 		// left
-		for (int j=index;j < listSize-1;j++)
-			listArr[j] = listArr[j+1];
+		System.arraycopy(listArr, index+1, listArr, index, listSize-1-index);
 
 		// make former last entry a null reference, decrement
 		// list size and increment modCount
@@ -142,6 +168,126 @@ public class ArrayList<T>
 		return true;
 	}
 
+	/**
+	 * Appends all of the elements in the specified collection to the end
+	 * of this list, in the order of the collection's <tt>toArray</tt>.
+	 * The list grows at most once and the elements are copied in a single
+	 * block.
+	 *
+	 * @param c collection whose elements are appended to this list.
+	 * @return <tt>true</tt> if the list changed as a result of the call.
+	 */
+	public boolean addAll(Collection<? extends T> c)
+	{
+		return addAll(listSize, c);
+	}
+
+	/**
+	 * Inserts all of the elements in the specified collection into this
+	 * list, starting at the specified position.  The elements at
+	 * positions <tt>index</tt> through <tt>size()-1</tt> move right once,
+	 * by the number of elements inserted.
+	 *
+	 * @param index position at which to insert the first element of
+	 *        <tt>c</tt>.
+	 * @param c collection whose elements are inserted into this list.
+	 * @return <tt>true</tt> if the list changed as a result of the call.
+	 * @throws    IndexOutOfBoundsException if index is out of range
+	 *		  <tt>(index &lt; 0 || index &gt; size())</tt>.
+	 */
+	public boolean addAll(int index, Collection<? extends T> c)
+	{
+		rangeCheck(index, "ArrayList addAll()", listSize);
+
+		// toArray() gives a snapshot, so c may be this list
+		Object[] arr = c.toArray();
+		int count = arr.length;
+
+		if (count == 0)
+			return false;
+
+		grow(listSize + count);
+
+		// open a gap of count elements at index and fill it
+		System.arraycopy(listArr, index, listArr, index+count, listSize-index);
+		System.arraycopy(arr, 0, listArr, index, count);
+
+		listSize += count;
+		modCount++;
+
+		return true;
+	}
+
+	/**
+	 * Removes the elements at positions <tt>fromIndex</tt> through
+	 * <tt>toIndex-1</tt> and shifts the elements that follow them left
+	 * in a single block.
+	 *
+	 * @param fromIndex position of the first element removed.
+	 * @param toIndex position after the last element removed.
+	 * @throws    IndexOutOfBoundsException if <tt>fromIndex &lt; 0</tt>,
+	 *		  <tt>toIndex &gt; size()</tt> or <tt>fromIndex &gt; toIndex</tt>.
+	 */
+	public void removeRange(int fromIndex, int toIndex)
+	{
+		rangeCheck(toIndex, "ArrayList removeRange()", listSize);
+		rangeCheck(fromIndex, "ArrayList removeRange()", toIndex);
+
+		if (fromIndex == toIndex)
+			return;
+
+		System.arraycopy(listArr, toIndex, listArr, fromIndex, listSize-toIndex);
+
+		// null out the vacated positions at the end of the list
+		int newSize = listSize - (toIndex-fromIndex);
+
+		java.util.Arrays.fill(listArr, newSize, listSize, null);
+		listSize = newSize;
+		modCount++;
+	}
+
+	/**
+	 * Removes all of the elements of this list that satisfy the given
+	 * predicate.  The surviving elements are moved left in one pass, so
+	 * the method runs in O(n) time however many elements it removes.
+	 * If the predicate throws an exception, the elements not yet tested
+	 * remain in the list.
+	 *
+	 * @param filter predicate that returns <tt>true</tt> for the elements
+	 *        to remove.
+	 * @return <tt>true</tt> if any elements were removed.
+	 */
+	public boolean removeIf(Predicate<? super T> filter)
+	{
+		// i scans the list and j is where the next survivor goes
+		int i = 0, j = 0;
+
+		try
+		{
+			for (; i < listSize; i++)
+				if (!filter.test(listArr[i]))
+					listArr[j++] = listArr[i];
+		}
+		finally
+		{
+			// on an exception i < listSize. keep the untested tail
+			if (i < listSize)
+			{
+				System.arraycopy(listArr, i, listArr, j, listSize-i);
+				j += listSize-i;
+			}
+
+			if (j != listSize)
+			{
+				java.util.Arrays.fill(listArr, j, listSize, null);
+				listSize = j;
+				modCount++;
+			}
+		}
+
+		return i != j;
+	}
+
 	/**
 	 * Removes all of the elements from this list.  The list will
 	 * be empty after this call returns.
@@ -150,8 +296,7 @@ public class ArrayList<T>
    {
       // replace each element of listArr by null so garbage
       // collection will kick in
-      for (int i=0;i < listSize;i++)
-         listArr[i] = null;
+      java.util.Arrays.fill(listArr, 0, listSize, null);
 
       // change list size to 0
       listSize = 0;
@@ -194,8 +339,7 @@ public class ArrayList<T>
 			listArr = (T[]) new Object[minCapacity];
 
 			// copy the old data to the new array
-			for (int i=0; i < listSize; i++)
-				listArr[i] = oldListArr[i];
+			System.arraycopy(oldListArr, 0, listArr, 0, listSize);
 
 			// nullify reference to the old array. garbage
 			// collection will recover the space
@@ -287,6 +431,28 @@ public class ArrayList<T>
       return new ListIteratorImpl(index);
    }
 
+	/**
+	 * Returns a view of the portion of this list from <tt>fromIndex</tt>
+	 * through <tt>toIndex-1</tt>.  Changes to the view are made to this
+	 * list, so <tt>list.subList(from, to).clear()</tt> removes a range of
+	 * elements.  If this list is structurally modified other than through
+	 * the view, the view's operations throw
+	 * <tt>ConcurrentModificationException</tt>.
+	 *
+	 * @param fromIndex position of the first element of the view.
+	 * @param toIndex position after the last element of the view.
+	 * @return a list view of the specified range.
+	 * @throws    IndexOutOfBoundsException if <tt>fromIndex &lt; 0</tt>,
+	 *		  <tt>toIndex &gt; size()</tt> or <tt>fromIndex &gt; toIndex</tt>.
+	 */
+	public List<T> subList(int fromIndex, int toIndex)
+	{
+		rangeCheck(toIndex, "ArrayList subList()", listSize);
+		rangeCheck(fromIndex, "ArrayList subList()", toIndex);
+
+		return new SubList(fromIndex, toIndex);
+	}
+
 	/**
 	 * Removes the first occurrence of the specified element from this
 	 * list, if it is present. Returns <tt>true</tt> if the list is
@@ -372,8 +538,7 @@ public class ArrayList<T>
          listArr = (T[])new Object[listSize];
 
          // copy the old data to the new array
-         for (int i=0; i < listSize; i++)
-            listArr[i] = oldListArr[i];
+         System.arraycopy(oldListArr, 0, listArr, 0, listSize);
 
          // nullify reference to the old array. garbage
          // collection will recover the space
@@ -392,8 +557,7 @@ public class ArrayList<T>
    {
 		Object[] returnArray = new Object[listSize];
 
-		for (int i=0;i < listSize;i++)
-			returnArray[i] = listArr[i];
+		System.arraycopy(listArr, 0, returnArray, 0, listSize);
 
 		return returnArray;
 	}
@@ -454,8 +618,7 @@ public class ArrayList<T>
 		copy.listArr = (T[])new Object[listSize];
 
 		// copy the elements from listArr to copy.listArr
-		for (int i=0;i < listSize;i++)
-			copy.listArr[i] = listArr[i];
+		System.arraycopy(listArr, 0, copy.listArr, 0, listSize);
 
 		// return the cloned object
 		return copy;
@@ -694,4 +857,256 @@ public class ArrayList<T>
          ArrayList.this.set(prevIndex, item);
       }
    }
+
+   // view of positions offset through offset+size-1 of the list.
+   // operations through the view update size and expectedModCount;
+   // any other structural change to the list invalidates the view
+   private class SubList implements List<T>
+   {
+      private int offset;
+      private int size;
+      private int expectedModCount;
+
+      SubList(int fromIndex, int toIndex)
+      {
+         offset = fromIndex;
+         size = toIndex - fromIndex;
+         expectedModCount = modCount;
+      }
+
+      private void checkForComodification()
+      {
+         if (expectedModCount != modCount)
+            throw new ConcurrentModificationException("Inconsistent subList");
+      }
+
+      // record a change of delta elements made through this view
+      private void updateSize(int delta)
+      {
+         size += delta;
+         expectedModCount = modCount;
+      }
+
+      public int size()
+      {
+         checkForComodification();
+         return size;
+      }
+
+      public boolean isEmpty()
+      {
+         return size() == 0;
+      }
+
+      public T get(int index)
+      {
+         rangeCheck(index, "ArrayList subList get()", size-1);
+         checkForComodification();
+         return listArr[offset+index];
+      }
+
+      public T set(int index, T item)
+      {
+         rangeCheck(index, "ArrayList subList set()", size-1);
+         checkForComodification();
+
+         T previousValue = listArr[offset+index];
+
+         listArr[offset+index] = item;
+         return previousValue;
+      }
+
+      public boolean add(T item)
+      {
+         add(size, item);
+         return true;
+      }
+
+      public void add(int index, T item)
+      {
+         rangeCheck(index, "ArrayList subList add()", size);
+         checkForComodification();
+         ArrayList.this.add(offset+index, item);
+         updateSize(1);
+      }
+
+      public boolean addAll(Collection<? extends T> c)
+      {
+         return addAll(size, c);
+      }
+
+      public boolean addAll(int index, Collection<? extends T> c)
+      {
+         rangeCheck(index, "ArrayList subList addAll()", size);
+         checkForComodification();
+
+         int oldSize = listSize;
+
+         if (!ArrayList.this.addAll(offset+index, c))
+            return false;
+
+         updateSize(listSize - oldSize);
+         return true;
+      }
+
+      public T remove(int index)
+      {
+         rangeCheck(index, "ArrayList subList remove()", size-1);
+         checkForComodification();
+
+         T returnElement = ArrayList.this.remove(offset+index);
+
+         updateSize(-1);
+         return returnElement;
+      }
+
+      public boolean remove(Object item)
+      {
+         int i = indexOf(item);
+
+         if (i == -1)
+            return false;
+
+         remove(i);
+         return true;
+      }
+
+      public void removeRange(int fromIndex, int toIndex)
+      {
+         rangeCheck(toIndex, "ArrayList subList removeRange()", size);
+         rangeCheck(fromIndex, "ArrayList subList removeRange()", toIndex);
+         checkForComodification();
+
+         if (fromIndex == toIndex)
+            return;
+
+         ArrayList.this.removeRange(offset+fromIndex, offset+toIndex);
+         updateSize(fromIndex - toIndex);
+      }
+
+      public void clear()
+      {
+         removeRange(0, size);
+      }
+
+      public boolean contains(Object item)
+      {
+         return indexOf(item) >= 0;
+      }
+
+      public int indexOf(Object item)
+      {
+         checkForComodification();
+
+         for (int i = 0; i < size; i++)
+            if (item.equals(listArr[offset+i]))
+               return i;
+
+         return -1;
+      }
+
+      public Object[] toArray()
+      {
+         checkForComodification();
+
+         Object[] returnArray = new Object[size];
+
+         System.arraycopy(listArr, offset, returnArray, 0, size);
+         return returnArray;
+      }
+
+      public Iterator<T> iterator()
+      {
+         return new SubListIterator(0);
+      }
+
+      public ListIterator<T> listIterator()
+      {
+         return new SubListIterator(0);
+      }
+
+      public ListIterator<T> listIterator(int index)
+      {
+         rangeCheck(index, "ArrayList subList listIterator()", size);
+         return new SubListIterator(index);
+      }
+
+      public String toString()
+      {
+         return Arrays.toString(toArray());
+      }
+
+      // list iterator over the view. each operation goes through the
+      // view's methods, which check for concurrent modification
+      private class SubListIterator implements ListIterator<T>
+      {
+         // index in the view of the element next() returns and of the
+         // element last returned, or -1
+         private int nextIndex;
+         private int prevIndex = -1;
+
+         SubListIterator(int index)
+         {
+            nextIndex = index;
+         }
+
+         public boolean hasNext()
+         {
+            return nextIndex != size;
+         }
+
+         public T next()
+         {
+            checkForComodification();
+            if (nextIndex >= size)
+               throw new NoSuchElementException("Iteration has no more elements");
+
+            prevIndex = nextIndex++;
+            return listArr[offset+prevIndex];
+         }
+
+         public boolean hasPrevious()
+         {
+            return nextIndex > 0;
+         }
+
+         public T previous()
+         {
+            checkForComodification();
+            if (nextIndex <= 0)
+               throw new NoSuchElementException("Iteration has no more elements");
+
+            prevIndex = --nextIndex;
+            return listArr[offset+prevIndex];
+         }
+
+         public void remove()
+         {
+            if (prevIndex == -1)
+               throw new IllegalStateException(
+                  "Iterator call to next() or previous() " +
+                  "required before calling remove()");
+
+            SubList.this.remove(prevIndex);
+            nextIndex = prevIndex;
+            prevIndex = -1;
+         }
+
+         public void set(T item)
+         {
+            if (prevIndex == -1)
+               throw new IllegalStateException(
+                  "Iterator call to next() or previous() " +
+                  "required before calling set()");
+
+            SubList.this.set(prevIndex, item);
+         }
+
+         public void add(T item)
+         {
+            SubList.this.add(nextIndex++, item);
+            prevIndex = -1;
+         }
+      }
+   }
 }
@@ -24,6 +24,11 @@ public class Arrays
    private Arrays()
    {}
 
+	// sortedIntersection() gallops through the larger array when it is
+	// more than GALLOP_RATIO times the length of the smaller one.
+	// otherwise it merges the arrays
+	private static final int GALLOP_RATIO = 16;
+
 	/**
 	 * Sorts an array of integer values in ascending order using the selection
 	 * sort algorithm.<p>
@@ -297,55 +302,65 @@ public class Arrays
 			msort(arr, tempArr,first, midpt, comp);
 			msort(arr, tempArr, midpt, last, comp);
 
-			// the elements in the ranges [first,mid) and [mid,last) are
-			// ordered. merge the ordered sublists into
-			// an ordered sequence in the range [first,last) using
-			// the temporary array
-			int indexA, indexB, indexC;
-
-			// set indexA to scan sublist A (index range [first,mid)
-			// and indexB to scan sublist B (index range [mid, last)
-			indexA = first;
-			indexB = midpt;
-			indexC = first;
+			merge(arr, tempArr, first, midpt, last, comp);
+		}
+	}
 
-			// while both sublists are not exhausted, compare arr[indexA] and
-			// arr[indexB]; copy the smaller to tempArr
-			while (indexA < midpt && indexB < last)
+	// private method that merges the ordered sublists [first,midpt) and
+	// [midpt,last) into an ordered sequence in the range [first,last)
+	// using the temporary array. The Comparator provides the ordering
+	private static void
+	merge(Object[] arr, Object[] tempArr,
+			int first, int midpt, int last, Comparator comp)
+	{
+		// the elements in the ranges [first,mid) and [mid,last) are
+		// ordered. merge the ordered sublists into
+		// an ordered sequence in the range [first,last) using
+		// the temporary array
+		int indexA, indexB, indexC;
+
+		// set indexA to scan sublist A (index range [first,mid)
+		// and indexB to scan sublist B (index range [mid, last)
+		indexA = first;
+		indexB = midpt;
+		indexC = first;
+
+		// while both sublists are not exhausted, compare arr[indexA] and
+		// arr[indexB]; copy the smaller to tempArr
+		while (indexA < midpt && indexB < last)
+		{
+			if (comp.compare(arr[indexA], arr[indexB]) < 0)
 			{
-				if (comp.compare(arr[indexA], arr[indexB]) < 0)
-				{
-					tempArr[indexC] = arr[indexA];	// copy element to tempArr
-					indexA++;								// increment indexA
-				}
-				else
-				{
-					tempArr[indexC] = arr[indexB];	// copy element to tempArr
-					indexB++;								// increment indexB
-				}
-				// increment indexC
-				indexC++;
+				tempArr[indexC] = arr[indexA];	// copy element to tempArr
+				indexA++;								// increment indexA
 			}
-
-			// copy the tail of the sublist that is not exhausted
-			while (indexA < midpt)
+			else
 			{
-				tempArr[indexC] = arr[indexA];		// copy element to tempArr
-				indexA++;
-				indexC++;
+				tempArr[indexC] = arr[indexB];	// copy element to tempArr
+				indexB++;								// increment indexB
 			}
+			// increment indexC
+			indexC++;
+		}
 
-			while (indexB < last)
-			{
-				tempArr[indexC] = arr[indexB];		// copy element to tempArr
-				indexB++;
-				indexC++;
-			}
+		// copy the tail of the sublist that is not exhausted
+		while (indexA < midpt)
+		{
+			tempArr[indexC] = arr[indexA];		// copy element to tempArr
+			indexA++;
+			indexC++;
+		}
 
-			// copy elements from temporary array to original array
-			for (int i = first; i < last; i++)
-				arr[i] = tempArr[i];
+		while (indexB < last)
+		{
+			tempArr[indexC] = arr[indexB];		// copy element to tempArr
+			indexB++;
+			indexC++;
 		}
+
+		// copy elements from temporary array to original array
+		for (int i = first; i < last; i++)
+			arr[i] = tempArr[i];
 	}
 
    /**
@@ -412,6 +427,95 @@ public class Arrays
 		msort(arr, tempArr, 0, arr.length, comp);
 	}
 
+	// sublists with fewer elements are sorted by msort() in a single task
+	private static final int PARALLEL_SORT_THRESHOLD = 8192;
+
+	// sorts the sublist [first,last) as a task of a WorkStealingScheduler.
+	// the left half is forked for another worker to steal while this
+	// task sorts the right half, and the halves are merged after both
+	// are done
+	private static final class MergeSortTask
+		extends WorkStealingScheduler.Task<Void>
+	{
+		private final Object[] arr, tempArr;
+		private final int first, last;
+		private final Comparator comp;
+
+		MergeSortTask(Object[] arr, Object[] tempArr,
+				int first, int last, Comparator comp)
+		{
+			this.arr = arr;
+			this.tempArr = tempArr;
+			this.first = first;
+			this.last = last;
+			this.comp = comp;
+		}
+
+		protected Void compute()
+		{
+			if (last - first < PARALLEL_SORT_THRESHOLD)
+			{
+				msort(arr, tempArr, first, last, comp);
+				return null;
+			}
+
+			int midpt = (last + first) / 2;
+			MergeSortTask left =
+				new MergeSortTask(arr, tempArr, first, midpt, comp);
+
+			left.fork();
+			new MergeSortTask(arr, tempArr, midpt, last, comp).compute();
+			left.join();
+
+			// the halves are already in order when the largest element
+			// on the left is less than the smallest on the right. merge()
+			// puts the right element first when the two are equal
+			if (comp.compare(arr[midpt-1], arr[midpt]) >= 0)
+				merge(arr, tempArr, first, midpt, last, comp);
+
+			return null;
+		}
+	}
+
+   /**
+    * A generic sort that orders an array of elements of type <tt>T</tt> into
+    * ascending order using the <tt>Comparator</tt> comp, running the
+    * recursive calls of the mergesort as tasks of the scheduler
+    * <tt>sched</tt>.  The two halves of a sublist are sorted in parallel
+    * until the sublists are small enough to sort in one task.  The order of
+    * the result is the same as that of <tt>sort(arr, comp)</tt>.<p>
+    *
+    * @param arr the array to be sorted.
+    * @param comp a <tt>Comparator</tt> that provides the natural
+    *             ordering of elements.
+    * @param sched the scheduler that runs the sort.
+    */
+	public static <T>
+	void parallelSort(T[] arr, Comparator<? super T> comp,
+							WorkStealingScheduler sched)
+	{
+		// create a temporary array to store partitioned elements
+		T[] tempArr = (T[])arr.clone();
+
+		sched.invoke(new MergeSortTask(arr, tempArr, 0, arr.length, comp));
+	}
+
+   /**
+    * A generic sort that orders an array of elements of type <tt>T</tt> into
+    * ascending order using the <tt>Comparble</tt> method <tt>compareTo()</tt>,
+    * running the recursive calls of the mergesort as tasks of the scheduler
+    * <tt>sched</tt>.<p>
+    *
+    * @param arr the array to be sorted.
+    * @param sched the scheduler that runs the sort.
+    * @see #parallelSort(Object[], Comparator, WorkStealingScheduler)
+    */
+	public static <T extends Comparable<? super T>>
+	void parallelSort(T[] arr, WorkStealingScheduler sched)
+	{
+		parallelSort(arr, new Less<T>(), sched);
+	}
+
    /**
     * Partitions array elements in the range [first, last) about the pivot
     * and returns the index of the resulting pivot position. Elements in
@@ -722,6 +826,243 @@ public class Arrays
       return -1;              // target not found
    }
 
+	/**
+	* Searches the sublist [first, last) of an integer array sorted into
+	* ascending order for the first element that is greater than or equal
+	* to target using exponential (galloping) search.  The method probes
+	* the elements at distances 1, 2, 4, 8, ... from first until it passes
+	* target and then performs a binary search on the last interval, so
+	* it runs in O(log d) time, where d is the distance from first to the
+	* returned index.
+	*
+	* @param arr the integer array to be searched.
+	* @param first starting index for the sublist.
+	* @param last upper bound for the sublist.
+	* @param target the search key to locate in the sublist.
+	*
+	* @return index of the first element in the sublist that is greater than
+	*         or equal to the search key; <tt>last</tt> if there is none.
+	*/
+	public static int gallopSearch(int[] arr, int first, int last, int target)
+	{
+		// the answer is in [low, high]
+		int low = first, high, mid;
+		long bound = 1;
+
+		// double the probe distance while the probed element is too small
+		while (bound <= last - first && arr[first + (int)bound - 1] < target)
+		{
+			low = first + (int)bound;
+			bound *= 2;
+		}
+		high = (int)Math.min(first + bound - 1, last);
+
+		// binary search for the first element >= target in [low, high)
+		while (low < high)
+		{
+			mid = (low + high) >>> 1;
+
+			if (arr[mid] < target)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+
+		return low;
+	}
+
+	/**
+	* Searches the sublist [first, last) of an array sorted into ascending
+	* order for the first element that is greater than or equal to target
+	* using exponential (galloping) search.  The generic type <tt>T</tt> must
+	* implement the <tt>Comparable</tt> interface.  The method runs in
+	* O(log d) time, where d is the distance from first to the returned
+	* index.
+	*
+	* @param arr the array to be searched.
+	* @param first starting index for the sublist.
+	* @param last upper bound for the sublist.
+	* @param target the search key to locate in the sublist.
+	*
+	* @return index of the first element in the sublist that is greater than
+	*         or equal to the search key; <tt>last</tt> if there is none.
+	*/
+	public static <T extends Comparable<? super T>>
+	int gallopSearch(T[] arr, int first, int last, T target)
+	{
+		int low = first, high, mid;
+		long bound = 1;
+
+		while (bound <= last - first &&
+				 arr[first + (int)bound - 1].compareTo(target) < 0)
+		{
+			low = first + (int)bound;
+			bound *= 2;
+		}
+		high = (int)Math.min(first + bound - 1, last);
+
+		while (low < high)
+		{
+			mid = (low + high) >>> 1;
+
+			if (arr[mid].compareTo(target) < 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+
+		return low;
+	}
+
+	/**
+	* Returns the elements common to two integer arrays that are sorted into
+	* ascending order and have no duplicates.  When one array is more than
+	* 16 times longer than the other, the method takes each element of the
+	* shorter array and gallops through the longer one from the position of
+	* the previous search, which takes O(m log(n/m)) time.  Otherwise it
+	* merges the two arrays in O(n + m) time.
+	*
+	* @param a the first sorted array.
+	* @param b the second sorted array.
+	*
+	* @return a sorted array of the elements in both arrays.
+	*/
+	public static int[] sortedIntersection(int[] a, int[] b)
+	{
+		// a is the shorter array
+		if (a.length > b.length)
+		{
+			int[] tmp = a;
+			a = b;
+			b = tmp;
+		}
+
+		int[] result = new int[a.length];
+		int i = 0, j = 0, n = 0;
+
+		if ((long)a.length * GALLOP_RATIO < b.length)
+			for (i = 0; i < a.length && j < b.length; i++)
+			{
+				j = gallopSearch(b, j, b.length, a[i]);
+				if (j < b.length && b[j] == a[i])
+				{
+					result[n++] = a[i];
+					j++;
+				}
+			}
+		else
+			while (i < a.length && j < b.length)
+			{
+				if (a[i] < b[j])
+					i++;
+				else if (a[i] > b[j])
+					j++;
+				else
+				{
+					result[n++] = a[i];
+					i++;
+					j++;
+				}
+			}
+
+		return java.util.Arrays.copyOf(result, n);
+	}
+
+	/**
+	* Returns the elements common to two arrays that are sorted into ascending
+	* order and have no duplicates.  The generic type <tt>T</tt> must implement
+	* the <tt>Comparable</tt> interface.  The method chooses between galloping
+	* and merging like the integer version.
+	*
+	* @param a the first sorted array.
+	* @param b the second sorted array.
+	*
+	* @return a sorted array of the elements in both arrays whose runtime
+	*         type is that of the shorter array.
+	*/
+	public static <T extends Comparable<? super T>>
+	T[] sortedIntersection(T[] a, T[] b)
+	{
+		if (a.length > b.length)
+		{
+			T[] tmp = a;
+			a = b;
+			b = tmp;
+		}
+
+		// the common elements are copied to the front of result
+		T[] result = java.util.Arrays.copyOf(a, a.length);
+		int i = 0, j = 0, n = 0, orderValue;
+
+		if ((long)a.length * GALLOP_RATIO < b.length)
+			for (i = 0; i < a.length && j < b.length; i++)
+			{
+				j = gallopSearch(b, j, b.length, a[i]);
+				if (j < b.length && b[j].compareTo(a[i]) == 0)
+				{
+					result[n++] = a[i];
+					j++;
+				}
+			}
+		else
+			while (i < a.length && j < b.length)
+			{
+				orderValue = a[i].compareTo(b[j]);
+
+				if (orderValue < 0)
+					i++;
+				else if (orderValue > 0)
+					j++;
+				else
+				{
+					result[n++] = a[i];
+					i++;
+					j++;
+				}
+			}
+
+		return java.util.Arrays.copyOf(result, n);
+	}
+
+	/**
+	* Returns the elements common to any number of integer arrays that are
+	* sorted into ascending order and have no duplicates.  The arrays are
+	* intersected from shortest to longest, so the intermediate result
+	* never grows and the galloping strategy applies as soon as it is
+	* small relative to the next array.  The method stops early if the
+	* intermediate result becomes empty.
+	*
+	* @param arrs the sorted arrays.
+	*
+	* @return a sorted array of the elements in all of the arrays.
+	*/
+	public static int[] sortedIntersection(int[]... arrs)
+	{
+		if (arrs.length == 0)
+			return new int[0];
+
+		// order the arrays by length with an insertion sort
+		int[][] byLength = arrs.clone();
+		int i, j;
+
+		for (i = 1; i < byLength.length; i++)
+		{
+			int[] target = byLength[i];
+
+			for (j = i; j > 0 && byLength[j-1].length > target.length; j--)
+				byLength[j] = byLength[j-1];
+			byLength[j] = target;
+		}
+
+		int[] result = byLength[0];
+
+		for (i = 1; i < byLength.length && result.length > 0; i++)
+			result = sortedIntersection(result, byLength[i]);
+
+		// do not return one of the arguments
+		return (result == byLength[0]) ? result.clone() : result;
+	}
+
    /**
     * Returns a string that displays the elements in the array in sequential
     * order. The description is a comma separated list of
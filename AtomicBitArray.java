@@ -0,0 +1,464 @@
+/*
+ * @(#)AtomicBitArray.java
+ */
+
+package ds.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size bit array that many threads can update at once without
+ * locking.  Each bit operation is a single compare-and-set on the
+ * <tt>long</tt> word holding the bit, so <tt>testAndSet</tt> lets
+ * exactly one of several racing threads claim a bit; this is the visited
+ * set of a parallel graph search.  The bulk operations are atomic for
+ * each word but not for the array as a whole.
+ *
+ * @see BitArray
+ */
+
+public class AtomicBitArray
+{
+	// number of bits in the bit array
+	private final int numberOfBits;
+
+	// bit i is bit (i & 63) of words[i >>> 6]
+	private final AtomicLongArray words;
+
+	/**
+	 * Creates a bit array consisting of <tt>numBits</tt> bits each having
+	 * value 0.
+	 *
+	 * @param numBits  number of bits in the bit array.
+	 */
+	public AtomicBitArray(int numBits)
+	{
+		numberOfBits = numBits;
+		words = new AtomicLongArray((numBits + 63) >>> 6);
+	}
+
+	/**
+	 * Creates a bit array with the same bits as <tt>b</tt>.
+	 *
+	 * @param b  bit array whose bits are copied.
+	 */
+	public AtomicBitArray(BitArray b)
+	{
+		numberOfBits = b.size();
+		words = new AtomicLongArray(b.words());
+	}
+
+	/**
+	 * Returns the number of bits in this bit array.
+	 *
+	 * @return the number of bits in this bit array.
+	 */
+	public int size()
+	{
+		return numberOfBits;
+	}
+
+	/**
+	 * Returns the value of <tt>bit i</tt>.
+	 *
+	 * @param i  specified bit location in the bit array.
+	 * @return the value of <tt>bit i</tt>.
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 *         (i &lt; 0 || i &gt;= size()).
+	 */
+	public int bit(int i)
+	{
+		checkIndex(i, "bit");
+
+		if ((words.get(i >>> 6) & (1L << i)) != 0)
+			return 1;
+		else
+			return 0;
+	}
+
+	/**
+	 * Sets <tt>bit i</tt>.
+	 *
+	 * @param i  specified bit location in the bit array.
+	 * @throws IndexOutOfBoundsException if the index is out of range.
+	 */
+	public void set(int i)
+	{
+		testAndSet(i);
+	}
+
+	/**
+	 * Clears <tt>bit i</tt>.
+	 *
+	 * @param i  specified bit location in the bit array.
+	 * @throws IndexOutOfBoundsException if the index is out of range.
+	 */
+	public void clear(int i)
+	{
+		getAndClear(i);
+	}
+
+	/**
+	 * Sets <tt>bit i</tt> and returns its previous value.  Among threads
+	 * that call this method for the same clear bit, exactly one sees
+	 * <tt>false</tt>.
+	 *
+	 * @param i  specified bit location in the bit array.
+	 * @return <tt>true</tt> if the bit was already set.
+	 * @throws IndexOutOfBoundsException if the index is out of range.
+	 */
+	public boolean testAndSet(int i)
+	{
+		checkIndex(i, "testAndSet");
+
+		int k = i >>> 6;
+		long mask = 1L << i, w;
+
+		do
+		{
+			w = words.get(k);
+			// don't write a word that already has the bit
+			if ((w & mask) != 0)
+				return true;
+		} while (!words.compareAndSet(k, w, w | mask));
+
+		return false;
+	}
+
+	/**
+	 * Clears <tt>bit i</tt> and returns its previous value.  Among threads
+	 * that call this method for the same set bit, exactly one sees
+	 * <tt>true</tt>.
+	 *
+	 * @param i  specified bit location in the bit array.
+	 * @return <tt>true</tt> if the bit was set.
+	 * @throws IndexOutOfBoundsException if the index is out of range.
+	 */
+	public boolean getAndClear(int i)
+	{
+		checkIndex(i, "getAndClear");
+
+		int k = i >>> 6;
+		long mask = 1L << i, w;
+
+		do
+		{
+			w = words.get(k);
+			if ((w & mask) == 0)
+				return false;
+		} while (!words.compareAndSet(k, w, w & ~mask));
+
+		return true;
+	}
+
+	/**
+	 * Sets the bits at the given indexes.  Consecutive indexes in the same
+	 * word are set with one compare-and-set, so sorting the indexes
+	 * reduces contention.
+	 *
+	 * @param indexes  indexes of the bits to set.
+	 * @return the number of bits that were clear and are now set by this
+	 *         call.
+	 * @throws IndexOutOfBoundsException if an index is out of range.
+	 */
+	public int setAll(int[] indexes)
+	{
+		int count = 0, i = 0;
+
+		while (i < indexes.length)
+		{
+			// gather the bits of this run that fall in one word
+			int k = indexes[i] >>> 6;
+			long mask = 0;
+
+			while (i < indexes.length && (indexes[i] >>> 6) == k)
+			{
+				checkIndex(indexes[i], "setAll");
+				mask |= 1L << indexes[i++];
+			}
+
+			long w = orWord(k, mask);
+			count += Long.bitCount(mask & ~w);
+		}
+
+		return count;
+	}
+
+	/**
+	 * Sets the bits from <tt>fromIndex</tt> (inclusive) to
+	 * <tt>toIndex</tt> (exclusive).
+	 *
+	 * @param fromIndex  index of the first bit to set.
+	 * @param toIndex  index after the last bit to set.
+	 * @throws IndexOutOfBoundsException if the range is not valid.
+	 */
+	public void set(int fromIndex, int toIndex)
+	{
+		checkRange(fromIndex, toIndex, "set");
+
+		if (fromIndex == toIndex)
+			return;
+
+		int first = fromIndex >>> 6, last = (toIndex - 1) >>> 6;
+		long firstMask = -1L << fromIndex, lastMask = -1L >>> -toIndex;
+
+		if (first == last)
+			orWord(first, firstMask & lastMask);
+		else
+		{
+			orWord(first, firstMask);
+			for (int k = first + 1; k < last; k++)
+				words.set(k, -1L);
+			orWord(last, lastMask);
+		}
+	}
+
+	/**
+	 * Clears the bits from <tt>fromIndex</tt> (inclusive) to
+	 * <tt>toIndex</tt> (exclusive).
+	 *
+	 * @param fromIndex  index of the first bit to clear.
+	 * @param toIndex  index after the last bit to clear.
+	 * @throws IndexOutOfBoundsException if the range is not valid.
+	 */
+	public void clear(int fromIndex, int toIndex)
+	{
+		checkRange(fromIndex, toIndex, "clear");
+
+		if (fromIndex == toIndex)
+			return;
+
+		int first = fromIndex >>> 6, last = (toIndex - 1) >>> 6;
+		long firstMask = -1L << fromIndex, lastMask = -1L >>> -toIndex;
+
+		if (first == last)
+			andWord(first, ~(firstMask & lastMask));
+		else
+		{
+			andWord(first, ~firstMask);
+			for (int k = first + 1; k < last; k++)
+				words.set(k, 0L);
+			andWord(last, ~lastMask);
+		}
+	}
+
+	/**
+	 * Clears all of the bits.
+	 */
+	public void clear()
+	{
+		for (int k = 0; k < words.length(); k++)
+			words.set(k, 0L);
+	}
+
+	/**
+	 * Sets the bits of this bit array that are set in <tt>x</tt>.  Each
+	 * word is updated atomically.
+	 *
+	 * @param x  a <tt>BitArray</tt> that is an operand.
+	 * @throws IllegalArgumentException if the two bit arrays do not have
+	 *         the same size.
+	 */
+	public void orAssign(BitArray x)
+	{
+		checkSize(x, "|");
+
+		long[] w = x.words();
+
+		for (int k = 0; k < w.length; k++)
+			if (w[k] != 0)
+				orWord(k, w[k]);
+	}
+
+	/**
+	 * Clears the bits of this bit array that are not set in <tt>x</tt>.
+	 * Each word is updated atomically.
+	 *
+	 * @param x  a <tt>BitArray</tt> that is an operand.
+	 * @throws IllegalArgumentException if the two bit arrays do not have
+	 *         the same size.
+	 */
+	public void andAssign(BitArray x)
+	{
+		checkSize(x, "&");
+
+		long[] w = x.words();
+
+		for (int k = 0; k < w.length; k++)
+			if (w[k] != -1L)
+				andWord(k, w[k]);
+	}
+
+	/**
+	 * Clears the bits of this bit array that are set in <tt>x</tt>.  Each
+	 * word is updated atomically.
+	 *
+	 * @param x  a <tt>BitArray</tt> that is an operand.
+	 * @throws IllegalArgumentException if the two bit arrays do not have
+	 *         the same size.
+	 */
+	public void andNotAssign(BitArray x)
+	{
+		checkSize(x, "&~");
+
+		long[] w = x.words();
+
+		for (int k = 0; k < w.length; k++)
+			if (w[k] != 0)
+				andWord(k, ~w[k]);
+	}
+
+	/**
+	 * Returns the number of bits that have value 1.  Bits changed while
+	 * the count is taken may or may not be included.
+	 *
+	 * @return the number of bits that have value 1.
+	 */
+	public int cardinality()
+	{
+		int count = 0;
+
+		for (int k = 0; k < words.length(); k++)
+			count += Long.bitCount(words.get(k));
+
+		return count;
+	}
+
+	/**
+	 * Returns the index of the first set bit at or after
+	 * <tt>fromIndex</tt>.
+	 *
+	 * @param fromIndex  index at which to start the search.
+	 * @return the index of the next set bit, or -1 if there is none.
+	 * @throws IndexOutOfBoundsException if <tt>fromIndex</tt> is negative.
+	 */
+	public int nextSetBit(int fromIndex)
+	{
+		if (fromIndex < 0)
+			throw new IndexOutOfBoundsException(
+				"AtomicBitArray nextSetBit(): bit out of range");
+		if (fromIndex >= numberOfBits)
+			return -1;
+
+		int k = fromIndex >>> 6;
+		long word = words.get(k) & (-1L << fromIndex);
+
+		while (word == 0)
+		{
+			if (++k == words.length())
+				return -1;
+			word = words.get(k);
+		}
+
+		return (k << 6) + Long.numberOfTrailingZeros(word);
+	}
+
+	/**
+	 * Returns the index of the first clear bit at or after
+	 * <tt>fromIndex</tt>.
+	 *
+	 * @param fromIndex  index at which to start the search.
+	 * @return the index of the next clear bit, or -1 if there is none.
+	 * @throws IndexOutOfBoundsException if <tt>fromIndex</tt> is negative.
+	 */
+	public int nextClearBit(int fromIndex)
+	{
+		if (fromIndex < 0)
+			throw new IndexOutOfBoundsException(
+				"AtomicBitArray nextClearBit(): bit out of range");
+		if (fromIndex >= numberOfBits)
+			return -1;
+
+		int k = fromIndex >>> 6;
+		long word = ~words.get(k) & (-1L << fromIndex);
+
+		while (word == 0)
+		{
+			if (++k == words.length())
+				return -1;
+			word = ~words.get(k);
+		}
+
+		int i = (k << 6) + Long.numberOfTrailingZeros(word);
+
+		return (i < numberOfBits) ? i : -1;
+	}
+
+	/**
+	 * Returns a <tt>BitArray</tt> with the bits of this array.  Each word
+	 * is read atomically, but the copy is not a snapshot of the whole
+	 * array if other threads are updating it.
+	 *
+	 * @return a copy of the bits.
+	 */
+	public BitArray toBitArray()
+	{
+		long[] w = new long[words.length()];
+
+		for (int k = 0; k < w.length; k++)
+			w[k] = words.get(k);
+
+		return new BitArray(numberOfBits, w);
+	}
+
+	/**
+	 * Returns a string of 0's and 1's for the bits of the array.
+	 *
+	 * @return a string representation of the bit array.
+	 */
+	public String toString()
+	{
+		return toBitArray().toString();
+	}
+
+	// or mask into word k and return the word's previous value
+	private long orWord(int k, long mask)
+	{
+		long w;
+
+		do
+		{
+			w = words.get(k);
+			if ((w | mask) == w)
+				return w;
+		} while (!words.compareAndSet(k, w, w | mask));
+
+		return w;
+	}
+
+	// and mask into word k and return the word's previous value
+	private long andWord(int k, long mask)
+	{
+		long w;
+
+		do
+		{
+			w = words.get(k);
+			if ((w & mask) == w)
+				return w;
+		} while (!words.compareAndSet(k, w, w & mask));
+
+		return w;
+	}
+
+	private void checkIndex(int i, String method)
+	{
+		if (i < 0 || i >= numberOfBits)
+			throw new IndexOutOfBoundsException(
+				"AtomicBitArray " + method + "(): bit out of range");
+	}
+
+	private void checkRange(int fromIndex, int toIndex, String method)
+	{
+		if (fromIndex < 0 || toIndex > numberOfBits || fromIndex > toIndex)
+			throw new IndexOutOfBoundsException(
+				"AtomicBitArray " + method + "(): bit range out of range");
+	}
+
+	private void checkSize(BitArray x, String op)
+	{
+		if (numberOfBits != x.size())
+			throw new IllegalArgumentException(
+				"AtomicBitArray " + op + ": bit arrays are not the same size");
+	}
+}
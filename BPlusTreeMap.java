@@ -0,0 +1,1537 @@
+/*
+ * @(#)BPlusTreeMap.java
+ *
+ */
+
+package ds.util;
+
+import java.util.NoSuchElementException;
+import java.util.ConcurrentModificationException;
+
+/**
+ * A B+tree implementation of the <tt>OrderedMap</tt> interface.  Each node
+ * holds up to <tt>order</tt> keys in an array, so a search touches one
+ * node per level of a tree whose height is about log<sub>order</sub>(n),
+ * and the keys it compares within a node are contiguous in memory.  All
+ * key-value pairs are stored in the leaves, which are linked in ascending
+ * key order, so iteration and range views scan the leaves sequentially
+ * without returning to the interior of the tree.
+ * <p>
+ * <tt>put</tt>, <tt>get</tt> and <tt>remove</tt> run in O(log n) time.
+ * The static <tt>fromSorted</tt> methods build a tree from keys in
+ * ascending order in O(n) time by packing the leaves and building the
+ * index levels above them.
+ */
+
+public class BPlusTreeMap<K,V> implements OrderedMap<K,V>
+{
+	/**
+	 * The number of keys in a node when no order is given to the
+	 * constructor.
+	 */
+	public static final int DEFAULT_ORDER = 64;
+
+	// maximum and minimum number of keys in a node other than the root.
+	// the key and child arrays have one extra slot so a node can hold
+	// maxKeys+1 keys briefly before it splits
+	private final int maxKeys, minKeys;
+
+	// root of the tree; null when the map is empty. height is the
+	// number of index levels above the leaves
+	private Node root = null;
+	private int height = 0;
+
+	// size of the map and record of changes to the map for iterators
+	private int mapSize = 0, modCount = 0;
+
+	// path from the root to a leaf recorded by put() and remove(). the
+	// arrays are reused and grow with the height of the tree
+	private Internal[] path = new Internal[4];
+	private int[] pathIndex = new int[4];
+
+   /**
+    * Creates an empty map whose nodes hold up to <tt>DEFAULT_ORDER</tt>
+    * keys.
+    */
+	public BPlusTreeMap()
+	{
+		this(DEFAULT_ORDER);
+	}
+
+   /**
+    * Creates an empty map whose nodes hold up to <tt>order</tt> keys.
+    *
+    * @param order the maximum number of keys in a node.
+    * @throws IllegalArgumentException if <tt>order</tt> is less than 3.
+    */
+	public BPlusTreeMap(int order)
+	{
+		if (order < 3)
+			throw new IllegalArgumentException(
+				"BPlusTreeMap(): order must be at least 3");
+
+		maxKeys = order;
+		minKeys = order / 2;
+	}
+
+   /**
+    * Builds a map from entries whose keys are in strictly ascending order.
+    * The leaves are filled completely and linked as they are created, and
+    * then each index level is built from the level below it, so the method
+    * runs in O(n) time.
+    *
+    * @param iter iterator over the entries in ascending key order.
+    * @param order the maximum number of keys in a node.
+    * @return a map containing the entries.
+    * @throws IllegalArgumentException if the keys are not in strictly
+    *         ascending order or <tt>order</tt> is less than 3.
+    */
+	public static <K,V> BPlusTreeMap<K,V> fromSorted(
+		Iterator<? extends Map.Entry<K,V>> iter, int order)
+	{
+		BPlusTreeMap<K,V> map = new BPlusTreeMap<K,V>(order);
+		ArrayList<Node> leaves = new ArrayList<Node>();
+
+		while (iter.hasNext())
+		{
+			Map.Entry<K,V> entry = iter.next();
+			map.appendSorted(leaves, entry.getKey(), entry.getValue());
+		}
+
+		map.buildIndex(leaves);
+		return map;
+	}
+
+   /**
+    * Builds a map with nodes of <tt>DEFAULT_ORDER</tt> keys from entries
+    * whose keys are in strictly ascending order.
+    *
+    * @param iter iterator over the entries in ascending key order.
+    * @return a map containing the entries.
+    * @throws IllegalArgumentException if the keys are not in strictly
+    *         ascending order.
+    */
+	public static <K,V> BPlusTreeMap<K,V> fromSorted(
+		Iterator<? extends Map.Entry<K,V>> iter)
+	{
+		return fromSorted(iter, DEFAULT_ORDER);
+	}
+
+   /**
+    * Builds a map from parallel arrays of keys and values, with the keys
+    * in strictly ascending order.  The method runs in O(n) time.
+    *
+    * @param keys keys in strictly ascending order.
+    * @param values values, with <tt>values[i]</tt> associated with
+    *        <tt>keys[i]</tt>.
+    * @return a map containing the key-value pairs.
+    * @throws IllegalArgumentException if the arrays have different
+    *         lengths or the keys are not in strictly ascending order.
+    */
+	public static <K,V> BPlusTreeMap<K,V> fromSorted(K[] keys, V[] values)
+	{
+		if (keys.length != values.length)
+			throw new IllegalArgumentException(
+				"BPlusTreeMap fromSorted(): arrays have different lengths");
+
+		BPlusTreeMap<K,V> map = new BPlusTreeMap<K,V>();
+		ArrayList<Node> leaves = new ArrayList<Node>();
+
+		for (int i = 0; i < keys.length; i++)
+			map.appendSorted(leaves, keys[i], values[i]);
+
+		map.buildIndex(leaves);
+		return map;
+	}
+
+	// builds a map whose keys come from iter in ascending order, each
+	// mapped to value. BPlusTreeSet uses it to bulk load its map
+	static <K,V> BPlusTreeMap<K,V> fromSortedKeys(
+		java.util.Iterator<? extends K> iter, V value, int order)
+	{
+		BPlusTreeMap<K,V> map = new BPlusTreeMap<K,V>(order);
+		ArrayList<Node> leaves = new ArrayList<Node>();
+
+		while (iter.hasNext())
+			map.appendSorted(leaves, iter.next(), value);
+
+		map.buildIndex(leaves);
+		return map;
+	}
+
+	// add key and value after the last key in the list of leaves of a
+	// map being bulk loaded. leaves are filled completely and linked
+	// as they are created
+	private void appendSorted(ArrayList<Node> leaves, Object key, Object value)
+	{
+		Leaf leaf = (mapSize == 0) ? null : (Leaf)leaves.get(leaves.size()-1);
+
+		if (leaf != null && ((Comparable<K>)key).compareTo(
+				(K)leaf.keys[leaf.numKeys-1]) <= 0)
+			throw new IllegalArgumentException(
+				"BPlusTreeMap fromSorted(): keys are not in " +
+				"strictly ascending order");
+
+		if (leaf == null || leaf.numKeys == maxKeys)
+		{
+			Leaf newLeaf = new Leaf(maxKeys + 1);
+
+			if (leaf != null)
+				leaf.next = newLeaf;
+			leaf = newLeaf;
+			leaves.add(leaf);
+		}
+
+		leaf.keys[leaf.numKeys] = key;
+		leaf.values[leaf.numKeys] = value;
+		leaf.numKeys++;
+		mapSize++;
+	}
+
+	// make the nodes in level, which are linked leaves in key order,
+	// the bottom of the tree and build the index levels above them
+	private void buildIndex(ArrayList<Node> level)
+	{
+		if (level.size() == 0)
+		{
+			root = null;
+			height = 0;
+			return;
+		}
+
+		// only the last node can be short. even it out with its
+		// left neighbor
+		balanceLast(level);
+
+		height = 0;
+		while (level.size() > 1)
+		{
+			ArrayList<Node> parents = new ArrayList<Node>();
+			Internal parent = null;
+
+			for (int i = 0; i < level.size(); i++)
+			{
+				Node child = level.get(i);
+
+				if (parent == null || parent.numKeys == maxKeys)
+				{
+					parent = new Internal(maxKeys + 1);
+					parent.children[0] = child;
+					parents.add(parent);
+				}
+				else
+				{
+					// the separator is the least key in the child's subtree
+					parent.keys[parent.numKeys] = minKey(child);
+					parent.numKeys++;
+					parent.children[parent.numKeys] = child;
+				}
+			}
+
+			balanceLast(parents);
+			level = parents;
+			height++;
+		}
+
+		root = level.get(0);
+		modCount++;
+	}
+
+	// if the last node in level has fewer than minKeys keys, move keys
+	// from its left neighbor so both have at least minKeys
+	private void balanceLast(ArrayList<Node> level)
+	{
+		int n = level.size();
+
+		if (n < 2 || level.get(n-1).numKeys >= minKeys)
+			return;
+
+		Node left = level.get(n-2), right = level.get(n-1);
+
+		if (right instanceof Leaf)
+		{
+			Leaf l = (Leaf)left, r = (Leaf)right;
+			int total = l.numKeys + r.numKeys, move = total/2 - r.numKeys;
+
+			System.arraycopy(r.keys, 0, r.keys, move, r.numKeys);
+			System.arraycopy(r.values, 0, r.values, move, r.numKeys);
+			System.arraycopy(l.keys, l.numKeys - move, r.keys, 0, move);
+			System.arraycopy(l.values, l.numKeys - move, r.values, 0, move);
+			clearSlots(l.keys, l.numKeys - move, l.numKeys);
+			clearSlots(l.values, l.numKeys - move, l.numKeys);
+			l.numKeys -= move;
+			r.numKeys += move;
+		}
+		else
+		{
+			// rotate children one at a time through a separator,
+			// which is the least key of the moved child
+			Internal l = (Internal)left, r = (Internal)right;
+
+			while (r.numKeys < minKeys)
+			{
+				System.arraycopy(r.keys, 0, r.keys, 1, r.numKeys);
+				System.arraycopy(r.children, 0, r.children, 1, r.numKeys+1);
+				r.keys[0] = minKey(r.children[1]);
+				r.children[0] = l.children[l.numKeys];
+				r.numKeys++;
+				l.children[l.numKeys] = null;
+				l.keys[l.numKeys-1] = null;
+				l.numKeys--;
+			}
+		}
+	}
+
+	// least key in the subtree with root node
+	private static Object minKey(Node node)
+	{
+		while (node instanceof Internal)
+			node = ((Internal)node).children[0];
+
+		return node.keys[0];
+	}
+
+	// null the references in arr[from] to arr[to-1]
+	private static void clearSlots(Object[] arr, int from, int to)
+	{
+		for (int i = from; i < to; i++)
+			arr[i] = null;
+	}
+
+	// binary search for key among the keys of node. returns the index of
+	// key, or -(insertion point)-1 if key is not in the node
+	private int search(Node node, Object key)
+	{
+		Comparable<K> target = (Comparable<K>)key;
+		Object[] keys = node.keys;
+		int low = 0, high = node.numKeys - 1, mid, orderValue;
+
+		while (low <= high)
+		{
+			mid = (low + high) >>> 1;
+			orderValue = target.compareTo((K)keys[mid]);
+
+			if (orderValue < 0)
+				high = mid - 1;
+			else if (orderValue > 0)
+				low = mid + 1;
+			else
+				return mid;
+		}
+
+		return -(low + 1);
+	}
+
+	// index of the child of node whose subtree may contain key.
+	// keys[i] is a lower bound for the keys in children[i+1], so a key
+	// equal to a separator belongs to the right of it
+	private int childIndex(Internal node, Object key)
+	{
+		int i = search(node, key);
+
+		return (i >= 0) ? i + 1 : -(i + 1);
+	}
+
+	// return the leaf whose key range includes key. the tree is not empty
+	private Leaf findLeaf(Object key)
+	{
+		Node node = root;
+
+		for (int level = 0; level < height; level++)
+			node = ((Internal)node).children[childIndex((Internal)node, key)];
+
+		return (Leaf)node;
+	}
+
+	// descend from the root to the leaf for key, recording the index
+	// nodes and child positions in path and pathIndex
+	private Leaf findLeafPath(Object key)
+	{
+		if (path.length < height)
+		{
+			path = new Internal[2 * height];
+			pathIndex = new int[2 * height];
+		}
+
+		Node node = root;
+
+		for (int level = 0; level < height; level++)
+		{
+			Internal index = (Internal)node;
+			int i = childIndex(index, key);
+
+			path[level] = index;
+			pathIndex[level] = i;
+			node = index.children[i];
+		}
+
+		return (Leaf)node;
+	}
+
+	// return the first leaf position whose key is >= key (inclusive) or
+	// > key (!inclusive) as an iterator starting point
+	private Position ceilingPosition(Object key, boolean inclusive)
+	{
+		if (root == null)
+			return new Position(null, 0);
+
+		Leaf leaf = findLeaf(key);
+		int i = search(leaf, key);
+
+		if (i < 0)
+			i = -(i + 1);
+		else if (!inclusive)
+			i++;
+
+		// the key may be past the end of the leaf
+		if (i == leaf.numKeys)
+		{
+			leaf = leaf.next;
+			i = 0;
+		}
+
+		return new Position(leaf, i);
+	}
+
+	// return the greatest key <= key (inclusive) or < key (!inclusive),
+	// or null if there is no such key
+	private Object floorKey(Object key, boolean inclusive)
+	{
+		if (root == null)
+			return null;
+
+		// the subtree immediately to the left of the search path at
+		// the deepest level where there is one. its maximum key is the
+		// answer if the leaf has no key in range
+		Node leftTree = null, node = root;
+
+		for (int level = 0; level < height; level++)
+		{
+			Internal index = (Internal)node;
+			int i = childIndex(index, key);
+
+			if (i > 0)
+				leftTree = index.children[i-1];
+			node = index.children[i];
+		}
+
+		int i = search(node, key);
+
+		if (i < 0)
+			i = -(i + 1) - 1;
+		else if (!inclusive)
+			i--;
+
+		if (i >= 0)
+			return node.keys[i];
+		if (leftTree == null)
+			return null;
+
+		while (leftTree instanceof Internal)
+			leftTree = ((Internal)leftTree).children[leftTree.numKeys];
+
+		return leftTree.keys[leftTree.numKeys-1];
+	}
+
+   /**
+    * Removes all mappings from this map.
+    */
+	public void clear()
+	{
+		modCount++;
+		mapSize = 0;
+		root = null;
+		height = 0;
+	}
+
+   /**
+    * Returns <tt>true</tt> if this map contains a mapping for the specified
+    * key.
+    *
+    * @param key key whose presence in this map is to be tested.
+    * @return <tt>true</tt> if this map contains a mapping for the specified
+    *         key.
+    */
+	public boolean containsKey(Object key)
+	{
+		return root != null && search(findLeaf(key), key) >= 0;
+	}
+
+   /**
+    * Returns the value to which this map maps the specified key. Returns
+    * <tt>null</tt> if the map contains no mapping for this key.
+    *
+    * @param key key whose associated value is to be returned.
+    * @return the value to which this map maps the specified key, or
+    *         <tt>null</tt> if the map contains no mapping for this key.
+    */
+	public V get(Object key)
+	{
+		if (root == null)
+			return null;
+
+		Leaf leaf = findLeaf(key);
+		int i = search(leaf, key);
+
+		return (i >= 0) ? (V)leaf.values[i] : null;
+	}
+
+   /**
+    * Returns <tt>true</tt> if this map contains no key-value mappings.
+    *
+    * @return <tt>true</tt> if this map contains no key-value mappings.
+    */
+	public boolean isEmpty()
+	{
+		return mapSize == 0;
+	}
+
+   /**
+    * Associates the specified value with the specified key in this map.
+    * If the map previously contained a mapping for this key, the old
+    * value is replaced.  A leaf that overflows splits in two and passes
+    * a separator key to its parent, and splitting continues up the
+    * search path while index nodes overflow.
+    *
+    * @param key key with which the specified value is to be associated.
+    * @param value value to be associated with the specified key.
+    * @return previous value associated with specified key, or <tt>null</tt>
+    *         if there was no mapping for key.
+    */
+	public V put(K key, V value)
+	{
+		if (root == null)
+		{
+			Leaf leaf = new Leaf(maxKeys + 1);
+
+			leaf.keys[0] = key;
+			leaf.values[0] = value;
+			leaf.numKeys = 1;
+			root = leaf;
+			mapSize = 1;
+			modCount++;
+			return null;
+		}
+
+		Leaf leaf = findLeafPath(key);
+		int i = search(leaf, key);
+
+		// key is in the map. update its value
+		if (i >= 0)
+		{
+			V oldValue = (V)leaf.values[i];
+			leaf.values[i] = value;
+			return oldValue;
+		}
+
+		i = -(i + 1);
+		System.arraycopy(leaf.keys, i, leaf.keys, i+1, leaf.numKeys - i);
+		System.arraycopy(leaf.values, i, leaf.values, i+1, leaf.numKeys - i);
+		leaf.keys[i] = key;
+		leaf.values[i] = value;
+		leaf.numKeys++;
+		mapSize++;
+		modCount++;
+
+		if (leaf.numKeys <= maxKeys)
+			return null;
+
+		// split the leaf and insert the separator and new node into
+		// the parent, splitting index nodes as long as they overflow
+		Node right = splitLeaf(leaf);
+		Object separator = right.keys[0];
+
+		for (int level = height - 1; level >= 0; level--)
+		{
+			Internal parent = path[level];
+			int ci = pathIndex[level];
+
+			System.arraycopy(parent.keys, ci, parent.keys, ci+1,
+				parent.numKeys - ci);
+			System.arraycopy(parent.children, ci+1, parent.children, ci+2,
+				parent.numKeys - ci);
+			parent.keys[ci] = separator;
+			parent.children[ci+1] = right;
+			parent.numKeys++;
+
+			if (parent.numKeys <= maxKeys)
+				return null;
+
+			// the middle key moves up to the next level
+			int mid = parent.numKeys / 2;
+			separator = parent.keys[mid];
+			right = splitInternal(parent, mid);
+		}
+
+		// the root split. the tree grows by one level
+		Internal newRoot = new Internal(maxKeys + 1);
+
+		newRoot.keys[0] = separator;
+		newRoot.children[0] = root;
+		newRoot.children[1] = right;
+		newRoot.numKeys = 1;
+		root = newRoot;
+		height++;
+
+		return null;
+	}
+
+	// move the upper half of an overflowing leaf to a new leaf that
+	// follows it in the leaf list
+	private Leaf splitLeaf(Leaf leaf)
+	{
+		Leaf right = new Leaf(maxKeys + 1);
+		int half = leaf.numKeys / 2, move = leaf.numKeys - half;
+
+		System.arraycopy(leaf.keys, half, right.keys, 0, move);
+		System.arraycopy(leaf.values, half, right.values, 0, move);
+		clearSlots(leaf.keys, half, leaf.numKeys);
+		clearSlots(leaf.values, half, leaf.numKeys);
+		right.numKeys = move;
+		leaf.numKeys = half;
+
+		right.next = leaf.next;
+		leaf.next = right;
+
+		return right;
+	}
+
+	// move the keys after keys[mid] and the children after children[mid]
+	// to a new index node. keys[mid] is removed from node
+	private Internal splitInternal(Internal node, int mid)
+	{
+		Internal right = new Internal(maxKeys + 1);
+		int move = node.numKeys - mid - 1;
+
+		System.arraycopy(node.keys, mid+1, right.keys, 0, move);
+		System.arraycopy(node.children, mid+1, right.children, 0, move+1);
+		clearSlots(node.keys, mid, node.numKeys);
+		clearSlots(node.children, mid+1, node.numKeys+1);
+		right.numKeys = move;
+		node.numKeys = mid;
+
+		return right;
+	}
+
+   /**
+    * Removes the mapping for this key from this map if present.  A node
+    * left with fewer than <tt>order/2</tt> keys borrows a key from a
+    * sibling or merges with it, and the repair continues up the search
+    * path.
+    *
+    * @param key key whose mapping is to be removed from the map.
+    * @return previous value associated with specified key, or <tt>null</tt>
+    *         if there was no mapping for key.
+    */
+	public V remove(Object key)
+	{
+		if (root == null)
+			return null;
+
+		Leaf leaf = findLeafPath(key);
+		int i = search(leaf, key);
+
+		if (i < 0)
+			return null;
+
+		V oldValue = (V)leaf.values[i];
+
+		System.arraycopy(leaf.keys, i+1, leaf.keys, i, leaf.numKeys - i - 1);
+		System.arraycopy(leaf.values, i+1, leaf.values, i,
+			leaf.numKeys - i - 1);
+		leaf.numKeys--;
+		leaf.keys[leaf.numKeys] = null;
+		leaf.values[leaf.numKeys] = null;
+		mapSize--;
+		modCount++;
+
+		// separators need not be keys in the map, so one equal to
+		// the deleted key is left in place. repair underflow from the
+		// leaf up; the root may have fewer than minKeys keys
+		Node node = leaf;
+		for (int level = height - 1; level >= 0 && node.numKeys < minKeys;
+				level--)
+		{
+			fixUnderflow(path[level], pathIndex[level]);
+			node = path[level];
+		}
+
+		if (root.numKeys == 0)
+		{
+			if (root instanceof Internal)
+			{
+				// a merge emptied the root. its only child is the new root
+				root = ((Internal)root).children[0];
+				height--;
+			}
+			else
+				root = null;
+		}
+
+		return oldValue;
+	}
+
+	// the child at position ci of parent has minKeys-1 keys. borrow
+	// a key from a sibling that can spare one, or merge with a sibling
+	private void fixUnderflow(Internal parent, int ci)
+	{
+		if (ci > 0 && parent.children[ci-1].numKeys > minKeys)
+			borrowFromLeft(parent, ci);
+		else if (ci < parent.numKeys &&
+					parent.children[ci+1].numKeys > minKeys)
+			borrowFromRight(parent, ci);
+		else if (ci > 0)
+			merge(parent, ci-1);
+		else
+			merge(parent, ci);
+	}
+
+	// move the last key of the left sibling of parent.children[ci]
+	// into the child
+	private void borrowFromLeft(Internal parent, int ci)
+	{
+		Node left = parent.children[ci-1], child = parent.children[ci];
+
+		System.arraycopy(child.keys, 0, child.keys, 1, child.numKeys);
+
+		if (child instanceof Leaf)
+		{
+			Leaf l = (Leaf)left, c = (Leaf)child;
+
+			System.arraycopy(c.values, 0, c.values, 1, c.numKeys);
+			c.keys[0] = l.keys[l.numKeys-1];
+			c.values[0] = l.values[l.numKeys-1];
+			l.values[l.numKeys-1] = null;
+			parent.keys[ci-1] = c.keys[0];
+		}
+		else
+		{
+			// the separator comes down and the last key of the
+			// sibling goes up
+			Internal l = (Internal)left, c = (Internal)child;
+
+			System.arraycopy(c.children, 0, c.children, 1, c.numKeys+1);
+			c.keys[0] = parent.keys[ci-1];
+			c.children[0] = l.children[l.numKeys];
+			l.children[l.numKeys] = null;
+			parent.keys[ci-1] = l.keys[l.numKeys-1];
+		}
+
+		left.keys[left.numKeys-1] = null;
+		left.numKeys--;
+		child.numKeys++;
+	}
+
+	// move the first key of the right sibling of parent.children[ci]
+	// into the child
+	private void borrowFromRight(Internal parent, int ci)
+	{
+		Node child = parent.children[ci], right = parent.children[ci+1];
+
+		if (child instanceof Leaf)
+		{
+			Leaf c = (Leaf)child, r = (Leaf)right;
+
+			c.keys[c.numKeys] = r.keys[0];
+			c.values[c.numKeys] = r.values[0];
+			System.arraycopy(r.values, 1, r.values, 0, r.numKeys-1);
+			r.values[r.numKeys-1] = null;
+			System.arraycopy(r.keys, 1, r.keys, 0, r.numKeys-1);
+			parent.keys[ci] = r.keys[0];
+		}
+		else
+		{
+			Internal c = (Internal)child, r = (Internal)right;
+
+			c.keys[c.numKeys] = parent.keys[ci];
+			c.children[c.numKeys+1] = r.children[0];
+			parent.keys[ci] = r.keys[0];
+			System.arraycopy(r.keys, 1, r.keys, 0, r.numKeys-1);
+			System.arraycopy(r.children, 1, r.children, 0, r.numKeys);
+			r.children[r.numKeys] = null;
+		}
+
+		right.keys[right.numKeys-1] = null;
+		right.numKeys--;
+		child.numKeys++;
+	}
+
+	// append parent.children[s+1] to parent.children[s] and remove
+	// the separator between them from parent
+	private void merge(Internal parent, int s)
+	{
+		Node left = parent.children[s], right = parent.children[s+1];
+
+		if (left instanceof Leaf)
+		{
+			Leaf l = (Leaf)left, r = (Leaf)right;
+
+			System.arraycopy(r.keys, 0, l.keys, l.numKeys, r.numKeys);
+			System.arraycopy(r.values, 0, l.values, l.numKeys, r.numKeys);
+			l.numKeys += r.numKeys;
+			l.next = r.next;
+		}
+		else
+		{
+			// the separator comes down between the two sets of keys
+			Internal l = (Internal)left, r = (Internal)right;
+
+			l.keys[l.numKeys] = parent.keys[s];
+			System.arraycopy(r.keys, 0, l.keys, l.numKeys+1, r.numKeys);
+			System.arraycopy(r.children, 0, l.children, l.numKeys+1,
+				r.numKeys+1);
+			l.numKeys += r.numKeys + 1;
+		}
+
+		System.arraycopy(parent.keys, s+1, parent.keys, s,
+			parent.numKeys - s - 1);
+		System.arraycopy(parent.children, s+2, parent.children, s+1,
+			parent.numKeys - s - 1);
+		parent.numKeys--;
+		parent.keys[parent.numKeys] = null;
+		parent.children[parent.numKeys+1] = null;
+	}
+
+   /**
+    * Returns the number of key-value mappings in this map.
+    *
+    * @return the number of key-value mappings in this map.
+    */
+	public int size()
+	{
+		return mapSize;
+	}
+
+   /**
+    * Returns the height of the tree, which is the number of index levels
+    * above the leaves.  A map whose entries fit in one leaf has height 0.
+    *
+    * @return the height of the tree.
+    */
+	public int height()
+	{
+		return height;
+	}
+
+   /**
+    * Returns the first (lowest) key currently in this map.
+    *
+    * @return the first (lowest) key currently in this map or <tt>null</tt>
+    *         if the map is empty.
+    */
+	public K firstKey()
+	{
+		return (root == null) ? null : (K)minKey(root);
+	}
+
+   /**
+    * Returns the last (highest) key currently in this map.
+    *
+    * @return the last (highest) key currently in this map or <tt>null</tt>
+    *         if the map is empty.
+    */
+	public K lastKey()
+	{
+		if (root == null)
+			return null;
+
+		Node node = root;
+		while (node instanceof Internal)
+			node = ((Internal)node).children[node.numKeys];
+
+		return (K)node.keys[node.numKeys-1];
+	}
+
+    /**
+     * Returns the greatest key in this map less than or equal to
+     * <tt>key</tt>, or <tt>null</tt> if there is no such key.
+     *
+     * @param key the key to match.
+     * @return the greatest key less than or equal to <tt>key</tt>.
+     */
+	public K floorKey(K key)
+	{
+		return (K)floorKey(key, true);
+	}
+
+    /**
+     * Returns the least key in this map greater than or equal to
+     * <tt>key</tt>, or <tt>null</tt> if there is no such key.
+     *
+     * @param key the key to match.
+     * @return the least key greater than or equal to <tt>key</tt>.
+     */
+	public K ceilingKey(K key)
+	{
+		return ceilingPosition(key, true).key();
+	}
+
+    /**
+     * Returns the greatest key in this map strictly less than <tt>key</tt>,
+     * or <tt>null</tt> if there is no such key.
+     *
+     * @param key the key to match.
+     * @return the greatest key less than <tt>key</tt>.
+     */
+	public K lowerKey(K key)
+	{
+		return (K)floorKey(key, false);
+	}
+
+    /**
+     * Returns the least key in this map strictly greater than <tt>key</tt>,
+     * or <tt>null</tt> if there is no such key.
+     *
+     * @param key the key to match.
+     * @return the least key greater than <tt>key</tt>.
+     */
+	public K higherKey(K key)
+	{
+		return ceilingPosition(key, false).key();
+	}
+
+    /**
+     * Returns a view of the portion of this map whose keys are strictly less
+     * than <tt>toKey</tt>.  The view is backed by this map, so changes in one
+     * are reflected in the other.  Putting a key outside the range of the
+     * view throws <tt>IllegalArgumentException</tt>.
+     *
+     * @param toKey high endpoint (exclusive) of the keys in the view.
+     * @return a view of the entries whose keys are less than <tt>toKey</tt>.
+     */
+	public OrderedMap<K,V> headMap(K toKey)
+	{
+		return new SubMap(null, toKey);
+	}
+
+    /**
+     * Returns a view of the portion of this map whose keys are greater than
+     * or equal to <tt>fromKey</tt>.  The view is backed by this map.
+     *
+     * @param fromKey low endpoint (inclusive) of the keys in the view.
+     * @return a view of the entries whose keys are greater than or equal
+     *         to <tt>fromKey</tt>.
+     */
+	public OrderedMap<K,V> tailMap(K fromKey)
+	{
+		return new SubMap(fromKey, null);
+	}
+
+    /**
+     * Returns a view of the portion of this map whose keys range from
+     * <tt>fromKey</tt>, inclusive, to <tt>toKey</tt>, exclusive.  The view
+     * is backed by this map.  Iteration over the view descends the tree
+     * once to find <tt>fromKey</tt> and then follows the leaf links.  The
+     * size of a view is found by counting keys a leaf at a time, so it
+     * runs in time proportional to the number of leaves in the range.
+     *
+     * @param fromKey low endpoint (inclusive) of the keys in the view.
+     * @param toKey high endpoint (exclusive) of the keys in the view.
+     * @return a view of the entries whose keys are in the range.
+     * @throws IllegalArgumentException if <tt>fromKey</tt> is greater
+     *         than <tt>toKey</tt>.
+     */
+	public OrderedMap<K,V> subMap(K fromKey, K toKey)
+	{
+		if (((Comparable<K>)fromKey).compareTo(toKey) > 0)
+			throw new IllegalArgumentException(
+				"BPlusTreeMap subMap(): fromKey > toKey");
+
+		return new SubMap(fromKey, toKey);
+	}
+
+   /**
+    * Returns a string representation of this map. The representation is a
+    * comma separated list of key=value pairs in ascending order of their
+    * keys enclosed in curly braces.
+    */
+	public String toString()
+	{
+		StringBuffer buf = new StringBuffer();
+		Iterator<Map.Entry<K,V>> iter = entrySet().iterator();
+
+		buf.append("{");
+		while (iter.hasNext())
+		{
+			Map.Entry<K,V> e = iter.next();
+			buf.append(e.getKey() + "=" + e.getValue());
+			if (iter.hasNext())
+				buf.append(", ");
+		}
+		buf.append("}");
+
+		return buf.toString();
+	}
+
+	// views
+
+	private Set<K> keySet = null;
+	private Set<Map.Entry<K,V>> entrySet = null;
+
+    /**
+     * Returns a set view of the keys contained in this map.  The set is
+     * backed by the map, so changes to the map are reflected in the set, and
+     * vice-versa.  If the map is modified while an iteration over the set is
+     * in progress (except through the iterator's own <tt>remove</tt>
+     * operation), the iterator throws a
+     * <tt>ConcurrentModificationException</tt>.  The set supports element
+     * removal, but it does not support the <tt>add</tt> operation.
+     *
+     * @return a set view of the keys contained in this map.
+     */
+	public Set<K> keySet()
+	{
+		if (keySet == null)
+			keySet = new SubMap(null, null).keySet();
+
+		return keySet;
+	}
+
+    /**
+     * Returns a set view of the mappings contained in this map.  Each
+     * element in the returned set is a <tt>Map.Entry</tt> whose
+     * <tt>setValue</tt> method updates the map.  The set supports element
+     * removal, but it does not support the <tt>add</tt> operation.
+     *
+     * @return a set view of the mappings contained in this map.
+     */
+	public Set<Map.Entry<K,V>> entrySet()
+	{
+		if (entrySet == null)
+			entrySet = new SubMap(null, null).entrySet();
+
+		return entrySet;
+	}
+
+	// a location in the leaf list. leaf is null past the last key
+	private class Position
+	{
+		Leaf leaf;
+		int index;
+
+		Position(Leaf leaf, int index)
+		{
+			this.leaf = leaf;
+			this.index = index;
+		}
+
+		K key()
+		{
+			return (leaf == null) ? null : (K)leaf.keys[index];
+		}
+	}
+
+	// iterator that scans the linked leaves. it is abstract because
+	// it does not implement next(). that method returns either an
+	// object of type K or Map.Entry<K,V> depending on what type of
+	// iterator we want
+	private abstract class IteratorImpl<T> implements Iterator<T>
+	{
+		// set expectedModCount to the number of tree changes
+		// at the time of iterator creation
+		private int expectedModCount = modCount;
+		// leaf and index of the key returned by a subsequent call to next()
+		private Leaf leaf;
+		private int index;
+		// the iteration stops before this key; null if the
+		// iteration continues to the last key
+		private K toKey;
+		// key returned by the last call to next(); null if there
+		// is none or it was removed
+		private K lastKey = null;
+		// value of lastKey
+		V lastValue;
+
+		// the iteration starts at position start and stops before
+		// the first key >= toKey
+		IteratorImpl(Position start, K toKey)
+		{
+			leaf = start.leaf;
+			index = start.index;
+			this.toKey = toKey;
+		}
+
+		// returns true if the tree has more unvisited elements
+		public boolean hasNext()
+		{
+			return leaf != null && (toKey == null ||
+				((Comparable<K>)leaf.keys[index]).compareTo(toKey) < 0);
+		}
+
+		// returns the next key in the iteration and sets lastValue.
+		// throws NoSuchElementException if the iteration
+		// has no more elements
+		final K nextKey()
+		{
+			checkIteratorState();
+
+			if (!hasNext())
+				throw new NoSuchElementException(
+						"Iteration has no more elements");
+
+			lastKey = (K)leaf.keys[index];
+			lastValue = (V)leaf.values[index];
+
+			// move to the next leaf in the list at the end of this one
+			index++;
+			if (index == leaf.numKeys)
+			{
+				leaf = leaf.next;
+				index = 0;
+			}
+
+			return lastKey;
+		}
+
+		// removes the last element returned by next() from the map.
+		// a deletion can move keys between leaves, so the iterator
+		// searches again for the first key after the deleted one
+		public void remove()
+		{
+			if (lastKey == null)
+				throw new IllegalStateException(
+					"Iterator call to next() " +
+					"required before calling remove()");
+
+			checkIteratorState();
+
+			BPlusTreeMap.this.remove(lastKey);
+			Position p = ceilingPosition(lastKey, false);
+			leaf = p.leaf;
+			index = p.index;
+
+			expectedModCount = modCount;
+			lastKey = null;
+		}
+
+		private void checkIteratorState()
+		{
+			if (expectedModCount != modCount)
+				throw new ConcurrentModificationException(
+					"Inconsistent iterator");
+		}
+	}
+
+	private class KeyIterator extends IteratorImpl<K>
+	{
+		KeyIterator(Position start, K toKey)
+		{
+			super(start, toKey);
+		}
+
+		public K next()
+		{
+			return nextKey();
+		}
+	}
+
+	private class EntryIterator extends IteratorImpl<Map.Entry<K,V>>
+	{
+		EntryIterator(Position start, K toKey)
+		{
+			super(start, toKey);
+		}
+
+		public Map.Entry<K,V> next()
+		{
+			K key = nextKey();
+			return new WriteThroughEntry(key, lastValue);
+		}
+	}
+
+	// entry returned by the entry iterator. the leaves store keys
+	// and values in arrays, so setValue() updates the map with put()
+	private class WriteThroughEntry extends MapEntry<K,V>
+	{
+		WriteThroughEntry(K key, V value)
+		{
+			super(key, value);
+		}
+
+		public V setValue(V value)
+		{
+			V oldValue = super.setValue(value);
+			put(getKey(), value);
+			return oldValue;
+		}
+	}
+
+	// a key-value pair that is not stored in the tree
+	private static class MapEntry<K,V> implements Map.Entry<K,V>
+	{
+		private K key;
+		private V value;
+
+		MapEntry(K key, V value)
+		{
+			this.key = key;
+			this.value = value;
+		}
+
+		public K getKey()
+		{
+			return key;
+		}
+
+		public V getValue()
+		{
+			return value;
+		}
+
+		public V setValue(V value)
+		{
+			V oldValue = this.value;
+			this.value = value;
+			return oldValue;
+		}
+
+		public String toString()
+		{
+			return key + "=" + value;
+		}
+	}
+
+	// a range view of the map. fromKey is the inclusive lower bound and
+	// toKey the exclusive upper bound; a null bound means the range is
+	// unbounded on that side. keySet() and entrySet() of the map are
+	// the key and entry sets of an unbounded view
+	private class SubMap implements OrderedMap<K,V>
+	{
+		private K fromKey, toKey;
+
+		private Set<K> subKeySet = null;
+		private Set<Map.Entry<K,V>> subEntrySet = null;
+
+		SubMap(K fromKey, K toKey)
+		{
+			this.fromKey = fromKey;
+			this.toKey = toKey;
+		}
+
+		private boolean inRange(Object key)
+		{
+			return (fromKey == null ||
+						((Comparable<K>)key).compareTo(fromKey) >= 0) &&
+					 (toKey == null ||
+						((Comparable<K>)key).compareTo(toKey) < 0);
+		}
+
+		// position of the first key in the range, ignoring the upper bound
+		private Position lowPosition()
+		{
+			if (fromKey != null)
+				return ceilingPosition(fromKey, true);
+
+			if (root == null)
+				return new Position(null, 0);
+
+			Node node = root;
+			while (node instanceof Internal)
+				node = ((Internal)node).children[0];
+
+			return new Position((Leaf)node, 0);
+		}
+
+		public int size()
+		{
+			if (fromKey == null && toKey == null)
+				return mapSize;
+
+			// whole leaves below toKey are counted without looking
+			// at their keys
+			Position p = lowPosition();
+			Leaf leaf = p.leaf;
+			int count = -p.index;
+
+			while (leaf != null)
+			{
+				if (toKey != null && ((Comparable<K>)leaf.keys[
+						leaf.numKeys-1]).compareTo(toKey) >= 0)
+				{
+					int i = search(leaf, toKey);
+					return count + ((i >= 0) ? i : -(i + 1));
+				}
+
+				count += leaf.numKeys;
+				leaf = leaf.next;
+			}
+
+			return count;
+		}
+
+		public boolean isEmpty()
+		{
+			return !new KeyIterator(lowPosition(), toKey).hasNext();
+		}
+
+		public boolean containsKey(Object key)
+		{
+			return inRange(key) && BPlusTreeMap.this.containsKey(key);
+		}
+
+		public V get(Object key)
+		{
+			return inRange(key) ? BPlusTreeMap.this.get(key) : null;
+		}
+
+		public V put(K key, V value)
+		{
+			if (!inRange(key))
+				throw new IllegalArgumentException(
+					"BPlusTreeMap view put(): key out of range");
+
+			return BPlusTreeMap.this.put(key, value);
+		}
+
+		public V remove(Object key)
+		{
+			return inRange(key) ? BPlusTreeMap.this.remove(key) : null;
+		}
+
+		public void clear()
+		{
+			if (fromKey == null && toKey == null)
+			{
+				BPlusTreeMap.this.clear();
+				return;
+			}
+
+			Iterator<K> iter = new KeyIterator(lowPosition(), toKey);
+
+			while (iter.hasNext())
+			{
+				iter.next();
+				iter.remove();
+			}
+		}
+
+		public K firstKey()
+		{
+			K key = lowPosition().key();
+
+			if (key == null || !inRange(key))
+				return null;
+			return key;
+		}
+
+		public K lastKey()
+		{
+			K key = (toKey == null) ? BPlusTreeMap.this.lastKey() :
+						lowerKey(toKey);
+
+			if (key == null || !inRange(key))
+				return null;
+			return key;
+		}
+
+		public Set<K> keySet()
+		{
+			if (subKeySet == null)
+			{
+				subKeySet = new Set<K>()
+				{
+					public Iterator<K> iterator()
+					{
+						return new KeyIterator(lowPosition(), toKey);
+					}
+
+					public int size()
+					{
+						return SubMap.this.size();
+					}
+
+					public boolean contains(Object item)
+					{
+						return containsKey(item);
+					}
+
+					public boolean remove(Object item)
+					{
+						if (!containsKey(item))
+							return false;
+
+						SubMap.this.remove(item);
+						return true;
+					}
+
+					public void clear()
+					{
+						SubMap.this.clear();
+					}
+
+					public boolean isEmpty()
+					{
+						return SubMap.this.isEmpty();
+					}
+
+					public Object[] toArray()
+					{
+						Object[] arr = new Object[size()];
+						Iterator<K> iter = iterator();
+
+						for (int i=0;i < arr.length;i++)
+							arr[i] = iter.next();
+
+						return arr;
+					}
+
+					public String toString()
+					{
+						StringBuffer buf = new StringBuffer();
+						Iterator<K> iter = iterator();
+
+						buf.append("[");
+						while (iter.hasNext())
+						{
+							buf.append(iter.next());
+							if (iter.hasNext())
+								buf.append(", ");
+						}
+						buf.append("]");
+
+						return buf.toString();
+					}
+
+					public boolean add(K key)
+					{
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+
+			return subKeySet;
+		}
+
+		public Set<Map.Entry<K,V>> entrySet()
+		{
+			if (subEntrySet == null)
+			{
+				subEntrySet = new Set<Map.Entry<K,V>>()
+				{
+					public Iterator<Map.Entry<K,V>> iterator()
+					{
+						return new EntryIterator(lowPosition(), toKey);
+					}
+
+					public int size()
+					{
+						return SubMap.this.size();
+					}
+
+					public boolean contains(Object item)
+					{
+						if (!(item instanceof Map.Entry))
+							return false;
+
+						Map.Entry<K,V> entry = (Map.Entry<K,V>)item;
+						K key = entry.getKey();
+
+						if (!containsKey(key))
+							return false;
+
+						V value = get(key);
+
+						return (value == null) ? entry.getValue() == null :
+									value.equals(entry.getValue());
+					}
+
+					public boolean remove(Object item)
+					{
+						if (!contains(item))
+							return false;
+
+						SubMap.this.remove(((Map.Entry<K,V>)item).getKey());
+						return true;
+					}
+
+					public void clear()
+					{
+						SubMap.this.clear();
+					}
+
+					public boolean isEmpty()
+					{
+						return SubMap.this.isEmpty();
+					}
+
+					public Object[] toArray()
+					{
+						Object[] arr = new Object[size()];
+						Iterator<Map.Entry<K,V>> iter = iterator();
+
+						for (int i=0;i < arr.length;i++)
+							arr[i] = iter.next();
+
+						return arr;
+					}
+
+					public String toString()
+					{
+						return SubMap.this.toString();
+					}
+
+					public boolean add(Map.Entry<K,V> obj)
+					{
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+
+			return subEntrySet;
+		}
+
+		public String toString()
+		{
+			StringBuffer buf = new StringBuffer();
+			Iterator<Map.Entry<K,V>> iter = entrySet().iterator();
+
+			buf.append("{");
+			while (iter.hasNext())
+			{
+				Map.Entry<K,V> e = iter.next();
+				buf.append(e.getKey() + "=" + e.getValue());
+				if (iter.hasNext())
+					buf.append(", ");
+			}
+			buf.append("}");
+
+			return buf.toString();
+		}
+	}
+
+	// a node holds numKeys keys in ascending order in keys[0] to
+	// keys[numKeys-1]
+	private static class Node
+	{
+		Object[] keys;
+		int numKeys;
+	}
+
+	// a leaf stores the value for keys[i] in values[i] and links to
+	// the leaf that follows it in key order
+	private static class Leaf extends Node
+	{
+		Object[] values;
+		Leaf next;
+
+		Leaf(int capacity)
+		{
+			keys = new Object[capacity];
+			values = new Object[capacity];
+		}
+	}
+
+	// an index node has numKeys+1 children. keys[i] separates
+	// children[i], whose keys are less than keys[i], from children[i+1],
+	// whose keys are greater than or equal to keys[i]
+	private static class Internal extends Node
+	{
+		Node[] children;
+
+		Internal(int capacity)
+		{
+			keys = new Object[capacity];
+			children = new Node[capacity + 1];
+		}
+	}
+}
@@ -0,0 +1,367 @@
+/*
+ * @(#)BPlusTreeSet.java
+ *
+ */
+
+package ds.util;
+
+/**
+ * This class implements the <tt>OrderedSet</tt> interface, backed by a
+ * B+tree (actually a <tt>BPlusTreeMap</tt> instance).  The elements are
+ * stored in arrays in linked leaves, so iteration and range views scan
+ * memory sequentially.  <tt>add</tt>, <tt>contains</tt> and
+ * <tt>remove</tt> run in O(log n) time.
+ *
+ * @see	    BPlusTreeMap
+ */
+
+public class BPlusTreeSet<T> implements OrderedSet<T>, Iterable<T>
+{
+	// value for each key in the map
+	private static final Object PRESENT = new Object();
+
+	// set implemented using a B+tree map
+	private BPlusTreeMap<T,Object> map;
+
+   /**
+    * Creates an empty set whose nodes hold up to
+    * <tt>BPlusTreeMap.DEFAULT_ORDER</tt> elements.
+    */
+	public BPlusTreeSet()
+	{
+		map = new BPlusTreeMap<T,Object>();
+	}
+
+   /**
+    * Creates an empty set whose nodes hold up to <tt>order</tt> elements.
+    *
+    * @param order the maximum number of elements in a node.
+    * @throws IllegalArgumentException if <tt>order</tt> is less than 3.
+    */
+	public BPlusTreeSet(int order)
+	{
+		map = new BPlusTreeMap<T,Object>(order);
+	}
+
+	private BPlusTreeSet(BPlusTreeMap<T,Object> map)
+	{
+		this.map = map;
+	}
+
+   /**
+    * Builds a set from elements in strictly ascending order in O(n) time.
+    *
+    * @param iter iterator over the elements in ascending order.
+    * @param order the maximum number of elements in a node.
+    * @return a set containing the elements.
+    * @throws IllegalArgumentException if the elements are not in strictly
+    *         ascending order or <tt>order</tt> is less than 3.
+    */
+	public static <T> BPlusTreeSet<T> fromSorted(Iterator<? extends T> iter,
+		int order)
+	{
+		return new BPlusTreeSet<T>(
+			BPlusTreeMap.<T,Object>fromSortedKeys(iter, PRESENT, order));
+	}
+
+   /**
+    * Builds a set with nodes of <tt>BPlusTreeMap.DEFAULT_ORDER</tt>
+    * elements from elements in strictly ascending order.
+    *
+    * @param iter iterator over the elements in ascending order.
+    * @return a set containing the elements.
+    * @throws IllegalArgumentException if the elements are not in strictly
+    *         ascending order.
+    */
+	public static <T> BPlusTreeSet<T> fromSorted(Iterator<? extends T> iter)
+	{
+		return fromSorted(iter, BPlusTreeMap.DEFAULT_ORDER);
+	}
+
+   /**
+    * Builds a set from an array whose elements are in strictly ascending
+    * order in O(n) time.
+    *
+    * @param arr elements in strictly ascending order.
+    * @return a set containing the elements.
+    * @throws IllegalArgumentException if the elements are not in strictly
+    *         ascending order.
+    */
+	public static <T> BPlusTreeSet<T> fromSorted(T[] arr)
+	{
+		return new BPlusTreeSet<T>(BPlusTreeMap.<T,Object>fromSortedKeys(
+			java.util.Arrays.asList(arr).iterator(), PRESENT,
+			BPlusTreeMap.DEFAULT_ORDER));
+	}
+
+   /**
+    * Adds the specified element to this set if it is not already present.
+    *
+    * @param item element to be added to this set.
+    * @return <tt>true</tt> if this set did not already contain the specified
+    *         element.
+    */
+	public boolean add(T item)
+	{
+		return map.put(item, PRESENT) == null;
+	}
+
+   /**
+    * Removes all of the elements from this set.
+    */
+	public void clear()
+	{
+		map.clear();
+	}
+
+   /**
+    * Returns <tt>true</tt> if this set contains the specified element.
+    *
+    * @param item element whose presence in this set is to be tested.
+    * @return <tt>true</tt> if this set contains the specified element.
+    */
+	public boolean contains(Object item)
+	{
+		return map.containsKey(item);
+	}
+
+   /**
+    * Returns <tt>true</tt> if this set contains no elements.
+    *
+    * @return <tt>true</tt> if this set contains no elements.
+    */
+	public boolean isEmpty()
+	{
+		return map.isEmpty();
+	}
+
+   /**
+    * Returns an iterator over the elements in this set in ascending order.
+    *
+    * @return an iterator over the elements in this set.
+    */
+	public Iterator<T> iterator()
+	{
+		return map.keySet().iterator();
+	}
+
+   /**
+    * Removes the specified element from this set if it is present.
+    *
+    * @param item object to be removed from this set, if present.
+    * @return <tt>true</tt> if the set contained the specified element.
+    */
+	public boolean remove(Object item)
+	{
+		return map.remove(item) != null;
+	}
+
+   /**
+    * Returns the number of elements in this set.
+    *
+    * @return the number of elements in this set.
+    */
+	public int size()
+	{
+		return map.size();
+	}
+
+   /**
+    * Returns the first (minimum) element currently in this set.
+    *
+    * @return the first (minimum) element currently in this set or
+    *         <tt>null</tt> if the set is empty.
+    */
+	public T first()
+	{
+		return map.firstKey();
+	}
+
+   /**
+    * Returns the last (maximum) element currently in this set.
+    *
+    * @return the last (maximum) element currently in this set or
+    *         <tt>null</tt> if the set is empty.
+    */
+	public T last()
+	{
+		return map.lastKey();
+	}
+
+    /**
+     * Returns the greatest element in this set less than or equal to
+     * <tt>item</tt>, or <tt>null</tt> if there is no such element.
+     *
+     * @param item the value to match.
+     * @return the greatest element less than or equal to <tt>item</tt>.
+     */
+	public T floor(T item)
+	{
+		return map.floorKey(item);
+	}
+
+    /**
+     * Returns the least element in this set greater than or equal to
+     * <tt>item</tt>, or <tt>null</tt> if there is no such element.
+     *
+     * @param item the value to match.
+     * @return the least element greater than or equal to <tt>item</tt>.
+     */
+	public T ceiling(T item)
+	{
+		return map.ceilingKey(item);
+	}
+
+    /**
+     * Returns the greatest element in this set strictly less than
+     * <tt>item</tt>, or <tt>null</tt> if there is no such element.
+     *
+     * @param item the value to match.
+     * @return the greatest element less than <tt>item</tt>.
+     */
+	public T lower(T item)
+	{
+		return map.lowerKey(item);
+	}
+
+    /**
+     * Returns the least element in this set strictly greater than
+     * <tt>item</tt>, or <tt>null</tt> if there is no such element.
+     *
+     * @param item the value to match.
+     * @return the least element greater than <tt>item</tt>.
+     */
+	public T higher(T item)
+	{
+		return map.higherKey(item);
+	}
+
+    /**
+     * Returns a view of the portion of this set whose elements are strictly
+     * less than <tt>toItem</tt>.  The view is backed by this set, so changes
+     * in one are reflected in the other.  Adding an element outside the
+     * range of the view throws <tt>IllegalArgumentException</tt>.
+     *
+     * @param toItem high endpoint (exclusive) of the view.
+     * @return a view of the elements less than <tt>toItem</tt>.
+     */
+	public OrderedSet<T> headSet(T toItem)
+	{
+		return new SubSet(map.headMap(toItem));
+	}
+
+    /**
+     * Returns a view of the portion of this set whose elements are greater
+     * than or equal to <tt>fromItem</tt>.  The view is backed by this set.
+     *
+     * @param fromItem low endpoint (inclusive) of the view.
+     * @return a view of the elements greater than or equal to
+     *         <tt>fromItem</tt>.
+     */
+	public OrderedSet<T> tailSet(T fromItem)
+	{
+		return new SubSet(map.tailMap(fromItem));
+	}
+
+    /**
+     * Returns a view of the portion of this set whose elements range from
+     * <tt>fromItem</tt>, inclusive, to <tt>toItem</tt>, exclusive.  The view
+     * is backed by this set.
+     *
+     * @param fromItem low endpoint (inclusive) of the view.
+     * @param toItem high endpoint (exclusive) of the view.
+     * @return a view of the elements in the range.
+     * @throws IllegalArgumentException if <tt>fromItem</tt> is greater
+     *         than <tt>toItem</tt>.
+     */
+	public OrderedSet<T> subSet(T fromItem, T toItem)
+	{
+		return new SubSet(map.subMap(fromItem, toItem));
+	}
+
+   /**
+    * Returns an array containing all of the elements in this set in
+    * ascending order.
+    *
+    * @return an array containing all of the elements in this set.
+    */
+	public Object[] toArray()
+	{
+		return map.keySet().toArray();
+	}
+
+   /**
+    * Returns a string representation of this set. The representation is a
+    * comma separated list in ascending order enclosed in square brackets.
+    */
+	public String toString()
+	{
+		return map.keySet().toString();
+	}
+
+	// a range view of the set backed by a range view of the map
+	private class SubSet implements OrderedSet<T>
+	{
+		private OrderedMap<T,Object> view;
+
+		SubSet(OrderedMap<T,Object> view)
+		{
+			this.view = view;
+		}
+
+		public boolean add(T item)
+		{
+			return view.put(item, PRESENT) == null;
+		}
+
+		public void clear()
+		{
+			view.clear();
+		}
+
+		public boolean contains(Object item)
+		{
+			return view.containsKey(item);
+		}
+
+		public boolean isEmpty()
+		{
+			return view.isEmpty();
+		}
+
+		public Iterator<T> iterator()
+		{
+			return view.keySet().iterator();
+		}
+
+		public boolean remove(Object item)
+		{
+			return view.remove(item) != null;
+		}
+
+		public int size()
+		{
+			return view.size();
+		}
+
+		public T first()
+		{
+			return view.firstKey();
+		}
+
+		public T last()
+		{
+			return view.lastKey();
+		}
+
+		public Object[] toArray()
+		{
+			return view.keySet().toArray();
+		}
+
+		public String toString()
+		{
+			return view.keySet().toString();
+		}
+	}
+}
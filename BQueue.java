@@ -19,7 +19,7 @@ public class BQueue<T> implements Queue<T>
    private T[] queueArray;
    // index of the front and back of the queue
    private int qfront, qback;
-   // the number of elements in the queue, 0 <= count <= MAXQSIZE
+   // the number of elements in the queue, 0 <= count <= queueArray.length
    private int count;
 
    /**
@@ -53,12 +53,12 @@ public class BQueue<T> implements Queue<T>
    public void push(T item)
    {
       // is the array filled up? if so, throw IndexOutOfBoundsException
-      if (count == MAXQSIZE)
+      if (count == queueArray.length)
          throw new IndexOutOfBoundsException("BQueue push(): queue full");
 
       // perform a circular queue insertion
       queueArray[qback] = item;
-      qback = (qback+1) % MAXQSIZE;
+      qback = (qback+1) % queueArray.length;
 
       // increment the queue size
       count++;
@@ -75,11 +75,12 @@ public class BQueue<T> implements Queue<T>
       if (count == 0)
          throw new NoSuchElementException("BQueue pop(): empty queue");
 
-      // save the front of the queue
+      // save the front of the queue and release the slot
       T queueFront = queueArray[qfront];
+      queueArray[qfront] = null;
 
       // perform a circular queue deletion
-      qfront = (qfront+1) % MAXQSIZE;
+      qfront = (qfront+1) % queueArray.length;
 
       // decrement the queue size
       count--;
@@ -128,7 +129,7 @@ public class BQueue<T> implements Queue<T>
     */
    public boolean full()
    {
-      return count == MAXQSIZE;
+      return count == queueArray.length;
    }
 
    /**
@@ -139,21 +140,18 @@ public class BQueue<T> implements Queue<T>
     */
    public String toString()
    {
-		if (queueArray == null)
-			return "null";
-		else if (queueArray.length == 0)
+		if (count == 0)
 			return "[]";
 
-		// start with the left bracket
-		String str = "[" + queueArray[0];
+		// start with the left bracket and the front of the queue
+		StringBuilder str = new StringBuilder("[").append(queueArray[qfront]);
 
-		// append all but the last element, separating items with a comma
-		// polymorphism calls toString() for the array type
-		for (int i = 1; i < queueArray.length; i++)
-			str +=  ", " + queueArray[i];
+		// append the remaining elements in queue order, separating
+		// items with a comma. polymorphism calls toString() for the
+		// element type
+		for (int i = 1; i < count; i++)
+			str.append(", ").append(queueArray[(qfront + i) % queueArray.length]);
 
-		str += "]";
-
-		return str;
+		return str.append("]").toString();
 	}
 }
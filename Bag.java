@@ -4,7 +4,8 @@
 
 package ds.util;
 
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
 import ds.util.Arrays;
 import java.util.NoSuchElementException;
 
@@ -17,9 +18,6 @@ public class Bag<T> implements Collection<T>, Iterable<T>
 	private T[] bagArr;		// storage structure
 	private int bagSize;		// size of collection
 
-	// used by grab()
-	private static Random rnd = new Random();
-
 	// remove the element bagArr[i] by shifting the tail of the
 	// array left one position and decrementing bagSize
 	private void remove(int i)
@@ -172,7 +170,9 @@ public class Bag<T> implements Collection<T>, Iterable<T>
 	{ return new IteratorImpl(); }
 
    /**
-    * Returns the value of a random element in the bag.
+    * Returns the value of a random element in the bag.  The random number
+    * comes from the calling thread's own generator, so bags can be sampled
+    * from many threads without contention.
     * @return value of a random element in the bag.
     * @throws <tt>NoSuchElementException</tt> if the bag is empty.
     */
@@ -180,6 +180,23 @@ public class Bag<T> implements Collection<T>, Iterable<T>
 	public T grab()
 	{
       // if the bag is empty, throw  NoSuchElementException
+      if (bagSize == 0)
+         throw new
+            NoSuchElementException ("Bag grab(): bag empty");
+		return bagArr[ThreadLocalRandom.current().nextInt(bagSize)];
+	}
+
+   /**
+    * Returns the value of a random element in the bag using the generator
+    * <tt>rnd</tt>.  A generator created with a fixed seed gives a
+    * reproducible sequence of choices; give each thread its own
+    * generator, for instance with <tt>rnd.split()</tt>.
+    * @param rnd  the random number generator.
+    * @return value of a random element in the bag.
+    * @throws <tt>NoSuchElementException</tt> if the bag is empty.
+    */
+	public T grab(SplittableRandom rnd)
+	{
       if (bagSize == 0)
          throw new
             NoSuchElementException ("Bag grab(): bag empty");
@@ -6,10 +6,17 @@ package ds.util;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 
 /**
- * This class has objects that support bit handling for a large array of bytes.
+ * This class has objects that support bit handling for a large array of bits.
+ * The bits are packed 64 to a <tt>long</tt>, so the bulk operations, the
+ * shifts and <tt>cardinality()</tt> process a word at a time.
  */
 
 public class BitArray
@@ -17,27 +24,52 @@ public class BitArray
    // number of bits in the bit array
    private int numberOfBits;
 
-   // number of byte values used for the bit array
-   private int byteArraySize;
-   // the array itself
-   private byte[] member;
+   // the array itself. bit i is bit (i & 63) of words[i >>> 6].
+   // bits past numberOfBits in the last word are always 0
+   private long[] words;
 
 	// determine the index of the array element
 	// containing bit i
-	private int arrayIndex(int i)
+	private static int arrayIndex(int i)
 	{
-		 return i/8;
+		 return i >>> 6;
 	}
 
-	// bit i is represented by a bit in member[arrayIndex(i)].
-	// return a byte value with a 1 in the
+	// bit i is represented by a bit in words[arrayIndex(i)].
+	// return a long value with a 1 in the
 	// position that represents bit i
-	private byte bitMask(int i)
+	private static long bitMask(int i)
 	{
-		// use & to find the remainder after dividing by
-		// 8. remainder 0 puts a 1 in the left-most bit
-		// and 7 puts a 1 in the right-most bit
-		return (byte)(1 << (7 - (i & 7)));
+		// the shift count is taken mod 64, so remainder 0
+		// puts a 1 in the right-most bit and 63 puts a 1
+		// in the left-most bit
+		return 1L << i;
+	}
+
+	// number of long values needed to hold numBits bits
+	private static int wordCount(int numBits)
+	{
+		return (numBits + 63) >>> 6;
+	}
+
+	// mask of the bits of the last word that are in use
+	private long lastWordMask()
+	{
+		return -1L >>> (-numberOfBits & 63);
+	}
+
+	// clear the unused bits of the last word
+	private void clearUnusedBits()
+	{
+		if (words.length > 0)
+			words[words.length - 1] &= lastWordMask();
+	}
+
+	// allocate the array for numBits bits, all 0
+	private void allocate(int numBits)
+	{
+		numberOfBits = numBits;
+		words = new long[wordCount(numBits)];
 	}
 
    // CONSTRUCTORS
@@ -49,16 +81,7 @@ public class BitArray
 	 */
 	public BitArray(int numBits)
 	{
-		numberOfBits = numBits;
-
-		// number of bytes's needed to hold
-		// numberOfBits elements
-		byteArraySize = (numberOfBits+7)/8;
-
-		// initialize the array with all bytes 0
-		member = new byte[byteArraySize];
-		for (int i=0;i < member.length;i++)
-			member[i] = 0;
+		allocate(numBits);
 	}
 
  	/**
@@ -69,159 +92,73 @@ public class BitArray
 	 */
    public BitArray(int[] b)
    {
-      int i;
-
-		numberOfBits = b.length;
-
-      // number of bytes needed to hold
-      // numberOfBits elements
-      byteArraySize = (numberOfBits+7)/8;
-
-      // initialize the array with all bytes 0
-      member = new byte[byteArraySize];
-      for (i=0;i < member.length;i++)
-         member[i] = 0;
+		allocate(b.length);
 
       // set all bits i for which b[i] != 0
-      for (i=0; i < numberOfBits; i++)
+      for (int i=0; i < numberOfBits; i++)
          if (b[i] != 0)
-         	set(i);
+         	words[arrayIndex(i)] |= bitMask(i);
 	}
 
+   // create a copy of x
+   private BitArray(BitArray x)
+   {
+		numberOfBits = x.numberOfBits;
+		words = x.words.clone();
+   }
+
+   // create a bit array that uses w for its bits. the caller must
+   // have cleared the unused bits of the last word
+   BitArray(int numBits, long[] w)
+   {
+		numberOfBits = numBits;
+		words = w;
+   }
+
+   // the array of words, for classes in the package that copy bits
+   // a word at a time
+   long[] words()
+   {
+		return words;
+   }
+
    /**
-    * ???
-    * @param n  ???
+    * Makes this a 32 bit array holding the bits of <tt>n</tt>, with
+    * bit 0 the high-order bit of <tt>n</tt>.
+    * @param n  integer whose bits are copied.
     */
     public void assignInt(int n)
    {
-		// nullify current reference
-		member = null;
-
-      int b;
-      // ~0 has value 111...111 in binary.
-      // (~0) >>> 1 has value 011...111.
-      // ~((~0) >>> 1) has value 100...000.
-      // when mask and n are combined with &,
-      // all bits but the bit corresponding to the
-      // 1 in mask are 0, and the bit corresponding
-      // to the 1 in mask retains its value. this
-      // allows us to determine if the designated bit
-      // is 0 (mask & value == 0) or 1 (mask & value != 0)
-      int mask = ~((~0) >>> 1);
-
-      // there are 32 bits in an int
-      numberOfBits = 32;
-      // the member array needs 4 elements
-      byteArraySize = 4;
-
-      // initialize the array with all bytes 0
-      member = new byte[byteArraySize];
-      for (int i=0;i < member.length;i++)
-         member[i] = 0;
-
-      for (b=0;b < numberOfBits;b++)
-      {
-         // see if the current bit of n is 1. if
-         // so, set bit b
-         if ((mask & n) != 0 )
-            set(b);
-         else
-            clear(b);
-         // move the 1 bit to the right
-         mask >>>= 1;
-      }
+		allocate(32);
+
+		// bit b of the array is bit 31-b of n
+		words[0] = Integer.reverse(n) & 0xFFFFFFFFL;
    }
 
-    /**
-    * ???
-    * @param c  character that ???
+   /**
+    * Makes this a 16 bit array holding the bits of <tt>c</tt>, with
+    * bit 0 the high-order bit of <tt>c</tt>.
+    * @param c  character whose bits are copied.
     */
   public void assignChar(char c)
    {
-		member = null;
-
-      int b;
-      // ~0 has value 111...111 in binary.
-      // (~0) >>> 1 has value 011...111.
-      // ~((~0) >>> 1) has value 100...000.
-      // do an unsigned shift of this value
-      // 16 bits to the right to obtain
-      // 00...01000000000000000.
-      // when mask and c are combined with &,
-      // all bits but the bit corresponding to the
-      // 1 in mask are 0, and the bit corresponding
-      // to the 1 in mask retains its value. this
-      // allows us to determine if the designated bit
-      // is 0 (mask & c == 0) or 1 (mask & c != 0)
-      int mask = (~((~0) >>> 1)) >>> 16;
-
-      // there are 16 bits in a char
-      numberOfBits = 16;
-      // the member array needs 2 elements
-      byteArraySize = 2;
-
-      // initialize the array with all bytes 0
-      member = new byte[byteArraySize];
-      for (int i=0;i < member.length;i++)
-         member[i] = 0;
-
-      for (b=0;b < numberOfBits;b++)
-      {
-         // see if the current bit of c is 1. if
-         // so, set bit b
-         if ((mask & c) != 0)
-            set(b);
-         else
-            clear(b);
-         // move the 1 bit to the right
-         mask >>>= 1;
-      }
+		allocate(16);
+
+		// bit b of the array is bit 15-b of c
+		words[0] = Integer.reverse(c) >>> 16;
    }
 
-     /**
-    * ???
-    * @param b  byte that ???
+   /**
+    * Makes this an 8 bit array holding the bits of <tt>b</tt>, with
+    * bit 0 the high-order bit of <tt>b</tt>.
+    * @param b  byte whose bits are copied.
     */
   	public void assignByte(byte b)
    {
-		member = null;
-
-      int bit;
-      // ~0 has value 111...111 in binary.
-      // (~0) >>> 1 has value 011...111.
-      // ~((~0) >>> 1) has value 100...000.
-      // do an unsigned shift of this value
-      // 24 bits to the right to obtain
-      // 00...00000000010000000.
-      // when mask and c are combined with &,
-      // all bits but the bit corresponding to the
-      // 1 in mask are 0, and the bit corresponding
-      // to the 1 in mask retains its value. this
-      // allows us to determine if the designated bit
-      // is 0 (mask & c == 0) or 1 (mask & c != 0)
-      int mask = (~((~0) >>> 1)) >>> 24;
-
-      // there are 8 bits in a byte
-      numberOfBits = 8;
-      // the member array needs 1 element
-      byteArraySize = 1;
-
-      // initialize the array with all bytes 0
-      member = new byte[byteArraySize];
-      for (int i=0;i < member.length;i++)
-         member[i] = 0;
-
-      for (bit=0;bit < numberOfBits;bit++)
-      {
-         // see if the current bit of c is 1. if
-         // so, set bit b
-         if ((mask & b) != 0)
-            set(bit);
-         else
-            clear(bit);
-         // move the 1 bit to the right
-         mask >>>= 1;
-      }
+		allocate(8);
+
+		// bit i of the array is bit 7-i of b
+		words[0] = Integer.reverse(b & 0xFF) >>> 24;
    }
 
     /**
@@ -248,7 +185,7 @@ public class BitArray
 							"BitArray bit(): bit out of range");
 
 		// return the bit corresponding to i
-		if ((member[arrayIndex(i)] & bitMask(i)) != 0)
+		if ((words[arrayIndex(i)] & bitMask(i)) != 0)
 			return 1;
 		else
 			return 0;
@@ -268,7 +205,39 @@ public class BitArray
                "BitArray set(): bit out of range");
 
        // set bit i
-       member[arrayIndex(i)] |= bitMask(i);
+       words[arrayIndex(i)] |= bitMask(i);
+   }
+
+    /**
+    * Sets the bits from <tt>fromIndex</tt> (inclusive) to
+    * <tt>toIndex</tt> (exclusive).
+    * @param fromIndex  index of the first bit to set.
+    * @param toIndex  index after the last bit to set.
+    * @throws    IndexOutOfBoundsException if the range is not valid
+    *		  (fromIndex &lt; 0 || toIndex &gt; numberOfBits ||
+    *		  fromIndex &gt; toIndex).
+    */
+   public void set(int fromIndex, int toIndex)
+   {
+		checkRange(fromIndex, toIndex, "set");
+
+		if (fromIndex == toIndex)
+			return;
+
+		int first = arrayIndex(fromIndex), last = arrayIndex(toIndex - 1);
+		// -1L << fromIndex has 1's from bit fromIndex & 63 up and
+		// -1L >>> -toIndex has 1's up to bit (toIndex-1) & 63
+		long firstMask = -1L << fromIndex, lastMask = -1L >>> -toIndex;
+
+		if (first == last)
+			words[first] |= firstMask & lastMask;
+		else
+		{
+			words[first] |= firstMask;
+			for (int k = first + 1; k < last; k++)
+				words[k] = -1L;
+			words[last] |= lastMask;
+		}
    }
 
     /**
@@ -287,18 +256,123 @@ public class BitArray
 		 // clear the bit corresponding to i. note
 		 // that ~bitMask(i) has a 0 in the bit
 		 // we are interested in an 1 in all others
-		 member[arrayIndex(i)] &= ~bitMask(i);
+		 words[arrayIndex(i)] &= ~bitMask(i);
 	}
 
+    /**
+    * Clears the bits from <tt>fromIndex</tt> (inclusive) to
+    * <tt>toIndex</tt> (exclusive).
+    * @param fromIndex  index of the first bit to clear.
+    * @param toIndex  index after the last bit to clear.
+    * @throws    IndexOutOfBoundsException if the range is not valid
+    *		  (fromIndex &lt; 0 || toIndex &gt; numberOfBits ||
+    *		  fromIndex &gt; toIndex).
+    */
+   public void clear(int fromIndex, int toIndex)
+   {
+		checkRange(fromIndex, toIndex, "clear");
+
+		if (fromIndex == toIndex)
+			return;
+
+		int first = arrayIndex(fromIndex), last = arrayIndex(toIndex - 1);
+		long firstMask = -1L << fromIndex, lastMask = -1L >>> -toIndex;
+
+		if (first == last)
+			words[first] &= ~(firstMask & lastMask);
+		else
+		{
+			words[first] &= ~firstMask;
+			for (int k = first + 1; k < last; k++)
+				words[k] = 0;
+			words[last] &= ~lastMask;
+		}
+   }
+
     /**
     * Clears all of the bits in this bit array.
     */
    public void clear()
    {
-      int i;
+      for (int i=0;i < words.length;i++)
+         words[i] = 0;
+   }
+
+    /**
+    * Returns the number of bits that have value 1.
+    * @return the number of bits that have value 1.
+    */
+   public int cardinality()
+   {
+		int count = 0;
+
+		for (int k = 0; k < words.length; k++)
+			count += Long.bitCount(words[k]);
+
+		return count;
+   }
+
+    /**
+    * Returns the index of the first bit that has value 1 at or after
+    * <tt>fromIndex</tt>.
+    * @param fromIndex  index at which to start the search.
+    * @return the index of the next bit with value 1, or -1 if there is
+    *         none.
+    * @throws    IndexOutOfBoundsException if <tt>fromIndex</tt> is negative.
+    */
+   public int nextSetBit(int fromIndex)
+   {
+		if (fromIndex < 0)
+			throw new IndexOutOfBoundsException(
+					"BitArray nextSetBit(): bit out of range");
+		if (fromIndex >= numberOfBits)
+			return -1;
+
+		int k = arrayIndex(fromIndex);
+		// ignore the bits below fromIndex in the first word
+		long word = words[k] & (-1L << fromIndex);
+
+		while (word == 0)
+		{
+			if (++k == words.length)
+				return -1;
+			word = words[k];
+		}
+
+		return (k << 6) + Long.numberOfTrailingZeros(word);
+   }
+
+    /**
+    * Returns the index of the first bit that has value 0 at or after
+    * <tt>fromIndex</tt>.
+    * @param fromIndex  index at which to start the search.
+    * @return the index of the next bit with value 0, or -1 if there is
+    *         none.
+    * @throws    IndexOutOfBoundsException if <tt>fromIndex</tt> is negative.
+    */
+   public int nextClearBit(int fromIndex)
+   {
+		if (fromIndex < 0)
+			throw new IndexOutOfBoundsException(
+					"BitArray nextClearBit(): bit out of range");
+		if (fromIndex >= numberOfBits)
+			return -1;
+
+		int k = arrayIndex(fromIndex);
+		long word = ~words[k] & (-1L << fromIndex);
+
+		while (word == 0)
+		{
+			if (++k == words.length)
+				return -1;
+			word = ~words[k];
+		}
+
+		// the unused bits of the last word are 0, so a clear bit
+		// may be found past the end
+		int i = (k << 6) + Long.numberOfTrailingZeros(word);
 
-      for (i=0;i < byteArraySize;i++)
-         member[i] = 0;
+		return (i < numberOfBits) ? i : -1;
    }
 
    // BIT ARRAY OPERATORS
@@ -312,22 +386,18 @@ public class BitArray
    public boolean equals(Object x)
    {
       BitArray b = (BitArray)x;
-      boolean result = true;
 
       // the bit arrays must have the same size
       if (numberOfBits != b.numberOfBits)
          throw new IllegalArgumentException(
 					"BitArray ==: bit arrays are not the same size");
 
-      // compare the member arrays byte by byte
-      for(int i=0;i < byteArraySize;i++)
-         if (member[i] != b.member[i])
-         {
-            result = false;
-            break;
-         }
+      // compare the arrays a word at a time
+      for(int i=0;i < words.length;i++)
+         if (words[i] != b.words[i])
+            return false;
 
-      return result;
+      return true;
    }
 
     /**
@@ -341,24 +411,25 @@ public class BitArray
     */
 	public BitArray or(BitArray x)
 	{
-		int i;
-
-		// the bit arrays must have the same size
-		if (numberOfBits != x.numberOfBits)
-			throw
-				new IllegalArgumentException(
-						"BitArray |: bit arrays are not the same size");
+		BitArray tmp = new BitArray(this);
 
-		// form the bitwise OR in tmp
-		BitArray tmp = new BitArray(numberOfBits);
+		tmp.orAssign(x);
+		return tmp;
+	}
 
-		// each member element of tmp is the bitwise
-		// OR of the current object and x
-		for (i = 0; i < byteArraySize; i++)
-			tmp.member[i] = (byte)(member[i] | x.member[i]);
+    /**
+    * Replaces this bit array with the bitwise <tt>or</tt> between
+    * this instance and x.
+    * @param x  a <tt>BitArray</tt> that is an operand.
+    * @throws    IllegalArgumentException if the two bit arrays do not have
+    *		  the same size.
+    */
+	public void orAssign(BitArray x)
+	{
+		checkSize(x, "|");
 
-		// return the bitwise OR
-		return tmp;
+		for (int i = 0; i < words.length; i++)
+			words[i] |= x.words[i];
 	}
 
     /**
@@ -372,24 +443,56 @@ public class BitArray
     */
    public BitArray and(BitArray x)
    {
-      int i;
+		BitArray tmp = new BitArray(this);
 
-      // the bit arrays must have the same size
-      if (numberOfBits != x.numberOfBits)
-         throw
-            new IllegalArgumentException(
-						"BitArray &: bit arrays are not the same size");
+		tmp.andAssign(x);
+		return tmp;
+   }
+
+    /**
+    * Replaces this bit array with the bitwise <tt>and</tt> between
+    * this instance and x.
+    * @param x  a <tt>BitArray</tt> that is an operand.
+    * @throws    IllegalArgumentException if the two bit arrays do not have
+    *		  the same size.
+    */
+   public void andAssign(BitArray x)
+   {
+		checkSize(x, "&");
 
-      // form the bitwise AND in tmp
-      BitArray tmp = new BitArray(numberOfBits);
+		for (int i = 0; i < words.length; i++)
+			words[i] &= x.words[i];
+   }
 
-      // each member element of tmp is the bitwise
-      // AND of the current object and x
-      for (i = 0; i < byteArraySize; i++)
-         tmp.member[i] = (byte)(member[i] & x.member[i]);
+    /**
+    * Returns a <tt>BitArray</tt> which is the bitwise <tt>and</tt> between
+    * this instance and the <tt>not</tt> of x.
+    * @param x  a <tt>BitArray</tt> that is an operand.
+    * @return a <tt>BitArray</tt> with the bits of this instance that are
+    * not set in x.
+    * @throws    IllegalArgumentException if the two bit arrays do not have
+    *		  the same size.
+    */
+   public BitArray andNot(BitArray x)
+   {
+		BitArray tmp = new BitArray(this);
 
-      // return the bitwise AND
-      return tmp;
+		tmp.andNotAssign(x);
+		return tmp;
+   }
+
+    /**
+    * Clears the bits of this bit array that are set in x.
+    * @param x  a <tt>BitArray</tt> that is an operand.
+    * @throws    IllegalArgumentException if the two bit arrays do not have
+    *		  the same size.
+    */
+   public void andNotAssign(BitArray x)
+   {
+		checkSize(x, "&~");
+
+		for (int i = 0; i < words.length; i++)
+			words[i] &= ~x.words[i];
    }
 
     /**
@@ -403,27 +506,27 @@ public class BitArray
     */
    public BitArray xor(BitArray x)
    {
-      int i;
-
-      // the bit arrays must have the same size
-      if (numberOfBits != x.numberOfBits)
-         throw
-            new IllegalArgumentException(
-						"BitArray ^: bit arrays are not the same size");
+		BitArray tmp = new BitArray(this);
 
-      // form the bitwise XOR in tmp
-      BitArray tmp = new BitArray(numberOfBits);
+		tmp.xorAssign(x);
+		return tmp;
+   }
 
-      // each member element of tmp is the bitwise
-      // XOR of the current object and x
-      for (i = 0; i < byteArraySize; i++)
-         tmp.member[i] = (byte)(member[i] ^ x.member[i]);
+    /**
+    * Replaces this bit array with the bitwise <tt>xor</tt> between
+    * this instance and x.
+    * @param x  a <tt>BitArray</tt> that is an operand.
+    * @throws    IllegalArgumentException if the two bit arrays do not have
+    *		  the same size.
+    */
+   public void xorAssign(BitArray x)
+   {
+		checkSize(x, "^");
 
-      // return the bitwise XOR
-      return tmp;
+		for (int i = 0; i < words.length; i++)
+			words[i] ^= x.words[i];
    }
 
-
     /**
     * Returns a <tt>BitArray</tt> which is the bitwise <tt>not</tt> complement of
     * this instance.
@@ -431,177 +534,152 @@ public class BitArray
     */
    public BitArray not()
    {
-      // form the bitwise NOT in tmp
-      BitArray tmp = new BitArray(numberOfBits);
-
-      // each element of tmp is the bitwise
-      // NOT of the current object's member values
-      for (int i = 0; i < byteArraySize; i++)
-         tmp.member[i] = (byte)~member[i];
+		BitArray tmp = new BitArray(this);
 
-      // return the bitwise NOT
-      return tmp;
+		tmp.notAssign();
+		return tmp;
 	}
 
+    /**
+    * Replaces this bit array with its bitwise <tt>not</tt> complement.
+    */
+   public void notAssign()
+   {
+		for (int i = 0; i < words.length; i++)
+			words[i] = ~words[i];
+
+		// the unused bits must stay 0
+		clearUnusedBits();
+   }
+
     /**
     * Returns a <tt>BitArray</tt> which is this instance but with the bits
-    * shifted to the left n positions.
+    * shifted to the left n positions.  Bit i of the result is bit i+n of
+    * this instance, and the last n bits are 0.
     * @param n  number of bits to shift left.
     * @return a <tt>BitArray</tt> which is this instance but with the bits
     * shifted to the left n positions..
     */
    public BitArray shiftLeft(int n)
    {
-      BitArray tmp = new BitArray(numberOfBits);
-      int i, j;
-      int prevLeftBit, currLeftBit;
-      // ~0 has value 111...111 in binary.
-      // (~0) >>> 1 has value 011...111.
-      // ~((~0) >>> 1) has value 100...000.
-      // do an unsigned shift of this value
-      // 24 bits to the right to obtain
-      // 00...00000000010000000.
-      // when mask and member[i] are combined with &,
-      // all bits but the bit corresponding to the
-      // 1 in mask are 0, and the bit corresponding
-      // to the 1 in mask retains its value
-      int mask = (~((~0) >>> 1)) >>> 24;
-
-      // make tmp a copy of the current object
-      for (i=0;i < tmp.byteArraySize;i++)
-         tmp.member[i] = member[i];
-
-      // shift left one bit a total of n times
-      for (i=0;i < n;i++)
-      {
-         prevLeftBit = 0;
-         // cycle through member array right to left
-         for (j=tmp.byteArraySize-1;j >= 0;j--)
-         {
-            // extract the left bit of member[j] and move it
-            // to the right 7 bits. it will become
-            // the right bit of member[j-1]
-            currLeftBit = (tmp.member[j] & mask) >> 7;
-            // shift left
-            tmp.member[j] <<= 1;
-            // add left bit of member[j+1] in right bit
-            // of member[j]
-            tmp.member[j] |= prevLeftBit;
-            // prepare for next iteration
-            prevLeftBit = currLeftBit;
-         }
-      }
-
-      return tmp;
+		BitArray tmp = new BitArray(numberOfBits);
+
+		if (n <= 0)
+			System.arraycopy(words, 0, tmp.words, 0, words.length);
+		else
+			shiftDown(words, tmp.words, n);
+
+		return tmp;
    }
 
     /**
     * Returns a <tt>BitArray</tt> which is this instance but with the bits
-    * shifted ??? to the right n positions.
+    * shifted to the right n positions.  Bit i+n of the result is bit i of
+    * this instance, and the first n bits are copies of bit 0.
     * @param n  number of bits to shift right.
     * @return a <tt>BitArray</tt> which is this instance but with the bits
-    * shifted ??? to the right n positions..
+    * shifted to the right n positions with sign extension.
     */
    public BitArray shiftSignedRight(int n)
    {
-      BitArray tmp = new BitArray(numberOfBits);
-      int i, j;
-      int prevRightBit, currRightBit;
-      // used to isolate the right-most bit of a
-      // member entry
-      int mask = 1, maskbit7 = 127;
+		BitArray tmp = shiftUnsignedRight(n);
 
-      // make tmp a copy of the current object
-      for (i=0;i < tmp.byteArraySize;i++)
-         tmp.member[i] = member[i];
+		// bit 0 is the sign bit
+		if (n > 0 && numberOfBits > 0 && (words[0] & 1L) != 0)
+			tmp.set(0, Math.min(n, numberOfBits));
 
-      // shift right one bit a total of n times
-      for (i=0;i < n;i++)
-      {
-         prevRightBit = 0;
-         // cycle through member array left to right
-         for (j=0;j < tmp.byteArraySize;j++)
-         {
-            // extract right bit of member[j]. it will become
-            // the left bit of member[j+1]
-            currRightBit = tmp.member[j] & mask;
-
-            if (j == 0)
-               // do signed shift right
-               tmp.member[j] >>= 1;
-            else
-               // do unsigned shift right for j >= 1
-               tmp.member[j] = (byte)((tmp.member[j] >>> 1) & maskbit7);
-
-            // add right bit of member[j-1] in left bit
-            // of member[j]
-            tmp.member[j] |= (prevRightBit << 7);
-
-            // prepare for next iteration
-            prevRightBit = currRightBit;
-         }
-      }
-
-      return tmp;
+		return tmp;
    }
 
     /**
     * Returns a <tt>BitArray</tt> which is this instance but with the bits
-    * shifted ??? to the right n positions.
+    * shifted to the right n positions.  Bit i+n of the result is bit i of
+    * this instance, and the first n bits are 0.
     * @param n  number of bits to shift right.
     * @return a <tt>BitArray</tt> which is this instance but with the bits
-    * shifted ??? to the right n positions..
+    * shifted to the right n positions with zero fill.
     */
    public BitArray shiftUnsignedRight(int n)
    {
-      BitArray tmp = new BitArray(numberOfBits);
-      int i, j;
-      int prevRightBit, currRightBit;
-      // used to isolate the right-most bit of a
-      // member entry
-      int mask = 1, maskbit7 = 127;
-
+		BitArray tmp = new BitArray(numberOfBits);
 
-      // make tmp a copy of the current object
-      for (i=0;i < tmp.byteArraySize;i++)
-         tmp.member[i] = member[i];
+		if (n <= 0)
+			System.arraycopy(words, 0, tmp.words, 0, words.length);
+		else
+		{
+			shiftUp(words, tmp.words, n);
+			tmp.clearUnusedBits();
+		}
 
-      // shift right one bit a total of n times
-      for (i=0;i < n;i++)
-      {
-         prevRightBit = 0;
-         // cycle through member array left to right
-         for (j=0;j < tmp.byteArraySize;j++)
-         {
-            // extract right bit of member[j]. it will become
-            // the left bit of member[j+1]
-            currRightBit = tmp.member[j] & mask;
-
-            // do unsigned shift right
-            tmp.member[j] = (byte)((tmp.member[j] >>> 1) & maskbit7);
-
-            // add right bit of member[j-1] in left bit
-            // of member[j]
-            tmp.member[j] |= (prevRightBit << 7);
-
-            // prepare for next iteration
-            prevRightBit = currRightBit;
-         }
-      }
-
-      return tmp;
+		return tmp;
    }
 
+	// dst bit i = src bit i+n. the bits past the end of src are 0
+	private static void shiftDown(long[] src, long[] dst, int n)
+	{
+		int wordShift = n >>> 6, bitShift = n & 63;
+
+		for (int k = 0; k + wordShift < src.length; k++)
+		{
+			int j = k + wordShift;
+
+			dst[k] = src[j] >>> bitShift;
+			// the low bits of the next word fill the top of this one
+			if (bitShift != 0 && j + 1 < src.length)
+				dst[k] |= src[j + 1] << (64 - bitShift);
+		}
+	}
+
+	// dst bit i+n = src bit i. bits shifted past the last word are lost
+	private static void shiftUp(long[] src, long[] dst, int n)
+	{
+		int wordShift = n >>> 6, bitShift = n & 63;
+
+		for (int k = dst.length - 1; k >= wordShift; k--)
+		{
+			int j = k - wordShift;
+
+			dst[k] = src[j] << bitShift;
+			// the high bits of the previous word fill the bottom of this one
+			if (bitShift != 0 && j > 0)
+				dst[k] |= src[j - 1] >>> (64 - bitShift);
+		}
+	}
+
+	private void checkSize(BitArray x, String op)
+	{
+		// the bit arrays must have the same size
+		if (numberOfBits != x.numberOfBits)
+			throw
+				new IllegalArgumentException(
+						"BitArray " + op + ": bit arrays are not the same size");
+	}
+
+	private void checkRange(int fromIndex, int toIndex, String method)
+	{
+		if (fromIndex < 0 || toIndex > numberOfBits || fromIndex > toIndex)
+			throw new IndexOutOfBoundsException(
+					"BitArray " + method + "(): bit range out of range");
+	}
+
     /**
     * Write the bit array as a sequence of bytes to a <tt>DataOutputStream</tt>.
+    * Bit 0 is the high-order bit of the first byte.
     * @param ostr  <tt>DataOutputStream</tt> that stores the bit array.
     */
    // output the bit array to the binary file stream ostr
    public void write(DataOutputStream ostr) throws IOException
    {
+		byte[] bytes = new byte[(numberOfBits+7)/8];
+
+		// byte k holds bits 8k through 8k+7 in reverse order
+		for (int k = 0; k < bytes.length; k++)
+			bytes[k] = (byte)(Integer.reverse(
+				(int)(words[k >>> 3] >>> ((k & 7) << 3)) & 0xFF) >>> 24);
+
       try
       {
-			ostr.write(member,0,byteArraySize);
+			ostr.write(bytes,0,bytes.length);
 		}
 		catch (IOException ioe)
 		{
@@ -616,31 +694,279 @@ public class BitArray
    public void read(DataInputStream istr, int numBits)
    	throws IllegalArgumentException, IOException
    {
-		member = null;
-
-		// reassign numberOfBits
-		numberOfBits = numBits;
-
 		// number of bytes needed to hold numBits
 		// elements
-		byteArraySize = (numberOfBits+7)/8;
-
-		member = new byte[byteArraySize];
+		byte[] bytes = new byte[(numBits+7)/8];
 
 		try
 		{
-			if (istr.read(member) != byteArraySize)
-					throw
-						new IllegalArgumentException(
-								"BitArray read(): end of file reached " +
-								"before reading required number of bits");
+			istr.readFully(bytes);
+		}
+		catch(EOFException eofe)
+		{
+			throw
+				new IllegalArgumentException(
+						"BitArray read(): end of file reached " +
+						"before reading required number of bits");
 		}
 		catch(IOException ioe)
 		{
 			throw new IOException("BitArray read(): I/O error");
 		}
+
+		// reassign numberOfBits
+		allocate(numBits);
+
+		for (int k = 0; k < bytes.length; k++)
+			words[k >>> 3] |= (long)(Integer.reverse(bytes[k] & 0xFF) >>> 24)
+				<< ((k & 7) << 3);
+
+		// the last byte may have bits past numBits
+		clearUnusedBits();
+   }
+
+   // the self-describing format of writeTo() starts with a 16 byte
+   // header: the magic number "BITA", a version byte, an encoding byte,
+   // two reserved bytes, the number of bits and the number of payload
+   // bytes that follow. the header fields are big-endian
+   private static final int FORMAT_MAGIC = 0x42495441;
+   private static final byte FORMAT_VERSION = 1;
+   private static final int HEADER_SIZE = 16;
+
+   // the payload of a DENSE array is its words as little-endian longs.
+   // the payload of a RUN_LENGTH array is a pair of unsigned varints for
+   // each run of 1's: the number of 0's before the run and the length
+   // of the run
+   private static final byte DENSE = 0, RUN_LENGTH = 1;
+
+   // largest buffer used to move bytes to and from a channel. a
+   // smaller bit array uses a buffer just large enough for its bytes
+   private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+    * Writes the bit array to a channel in a self-describing format that
+    * <tt>readFrom</tt> reads back without being told the number of bits.
+    * The bits are run-length encoded when that is smaller than writing
+    * them as raw words, which is the case for sparse bit arrays.
+    * @param ch  the channel that receives the bit array.
+    * @throws IOException if an I/O error occurs.
+    */
+   public void writeTo(WritableByteChannel ch) throws IOException
+   {
+		long denseSize = 8L * words.length;
+		long rleSize = runLengthSize(denseSize);
+		boolean rle = rleSize < denseSize;
+		long payloadSize = rle ? rleSize : denseSize;
+		ByteBuffer buf = ByteBuffer.allocate(
+			(int)Math.min(BUFFER_SIZE, HEADER_SIZE + payloadSize));
+
+		buf.putInt(FORMAT_MAGIC);
+		buf.put(FORMAT_VERSION);
+		buf.put(rle ? RUN_LENGTH : DENSE);
+		buf.putShort((short)0);
+		buf.putInt(numberOfBits);
+		buf.putInt((int)payloadSize);
+
+		if (rle)
+		{
+			int end = 0, i = nextSetBit(0);
+
+			while (i >= 0)
+			{
+				int j = nextClearBit(i);
+
+				if (j < 0)
+					j = numberOfBits;
+				// two varints take at most 10 bytes
+				if (buf.remaining() < 10)
+					drain(ch, buf);
+				putVarint(buf, i - end);
+				putVarint(buf, j - i);
+				end = j;
+				i = (j < numberOfBits) ? nextSetBit(j) : -1;
+			}
+		}
+		else
+		{
+			buf.order(ByteOrder.LITTLE_ENDIAN);
+			for (int k = 0; k < words.length; )
+			{
+				int n = Math.min(buf.remaining() >>> 3, words.length - k);
+
+				if (n == 0)
+				{
+					drain(ch, buf);
+					continue;
+				}
+				// bulk copy the words into the buffer
+				buf.asLongBuffer().put(words, k, n);
+				buf.position(buf.position() + 8 * n);
+				k += n;
+			}
+		}
+
+		drain(ch, buf);
    }
 
+    /**
+    * Reads a bit array written by <tt>writeTo</tt> from a channel.  Only
+    * the bytes of the bit array are consumed, so several bit arrays can
+    * be read in turn from one channel.
+    * @param ch  the channel that holds the bit array.
+    * @return the bit array.
+    * @throws IllegalArgumentException if the channel does not hold a
+    *		  bit array in a supported format.
+    * @throws IOException if an I/O error occurs.
+    */
+   public static BitArray readFrom(ReadableByteChannel ch)
+		throws IOException
+   {
+		ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE);
+
+		readFully(ch, buf);
+
+		if (buf.getInt() != FORMAT_MAGIC)
+			throw new IllegalArgumentException(
+					"BitArray readFrom(): not a bit array");
+		if (buf.get() != FORMAT_VERSION)
+			throw new IllegalArgumentException(
+					"BitArray readFrom(): unsupported format version");
+
+		byte encoding = buf.get();
+		buf.getShort();
+		int numBits = buf.getInt();
+		long remaining = buf.getInt() & 0xFFFFFFFFL;
+
+		if (numBits < 0 || (encoding != DENSE && encoding != RUN_LENGTH) ||
+			(encoding == DENSE && remaining != 8L * wordCount(numBits)))
+			throw new IllegalArgumentException(
+					"BitArray readFrom(): corrupt header");
+
+		BitArray b = new BitArray(numBits);
+		// for run-length data, the end of the last run, the number
+		// of 0's before the next run or -1 if it is not yet read, and
+		// the varint being assembled
+		long end = 0, gap = -1, value = 0;
+		int shift = 0, k = 0;
+
+		buf = ByteBuffer.allocate((int)Math.min(BUFFER_SIZE, remaining));
+		buf.order(ByteOrder.LITTLE_ENDIAN);
+		while (remaining > 0)
+		{
+			buf.clear();
+			buf.limit((int)Math.min(buf.capacity(), remaining));
+			readFully(ch, buf);
+			remaining -= buf.limit();
+
+			if (encoding == DENSE)
+			{
+				int n = buf.limit() >>> 3;
+
+				buf.asLongBuffer().get(b.words, k, n);
+				k += n;
+				continue;
+			}
+
+			while (buf.hasRemaining())
+			{
+				int c = buf.get();
+
+				value |= (long)(c & 0x7F) << shift;
+				if (c < 0)
+				{
+					// the varint continues in the next byte
+					shift += 7;
+					if (shift > 28)
+						throw new IllegalArgumentException(
+							"BitArray readFrom(): corrupt run length");
+					continue;
+				}
+
+				if (gap < 0)
+					gap = value;
+				else
+				{
+					if (end + gap + value > numBits)
+						throw new IllegalArgumentException(
+							"BitArray readFrom(): run past end of bit array");
+					b.set((int)(end + gap), (int)(end + gap + value));
+					end += gap + value;
+					gap = -1;
+				}
+				value = 0;
+				shift = 0;
+			}
+		}
+
+		if (gap >= 0 || shift != 0)
+			throw new IllegalArgumentException(
+					"BitArray readFrom(): corrupt run length");
+
+		b.clearUnusedBits();
+		return b;
+   }
+
+	// number of bytes in the run-length encoding, or limit if that
+	// is reached first
+	private long runLengthSize(long limit)
+	{
+		long size = 0;
+		int end = 0, i = nextSetBit(0);
+
+		while (i >= 0 && size < limit)
+		{
+			int j = nextClearBit(i);
+
+			if (j < 0)
+				j = numberOfBits;
+			size += varintSize(i - end) + varintSize(j - i);
+			end = j;
+			i = (j < numberOfBits) ? nextSetBit(j) : -1;
+		}
+
+		return Math.min(size, limit);
+	}
+
+	private static int varintSize(int v)
+	{
+		// 7 bits per byte and at least one byte
+		return (31 - Integer.numberOfLeadingZeros(v | 1)) / 7 + 1;
+	}
+
+	// write v 7 bits at a time, low bits first, with the high bit of
+	// each byte but the last set
+	private static void putVarint(ByteBuffer buf, int v)
+	{
+		while ((v & ~0x7F) != 0)
+		{
+			buf.put((byte)((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		buf.put((byte)v);
+	}
+
+	// write the buffered bytes to ch and empty the buffer
+	private static void drain(WritableByteChannel ch, ByteBuffer buf)
+		throws IOException
+	{
+		buf.flip();
+		while (buf.hasRemaining())
+			ch.write(buf);
+		buf.clear();
+	}
+
+	// read from ch until buf is full, then flip it
+	private static void readFully(ReadableByteChannel ch, ByteBuffer buf)
+		throws IOException
+	{
+		while (buf.hasRemaining())
+			if (ch.read(buf) < 0)
+				throw new IllegalArgumentException(
+					"BitArray readFrom(): end of stream reached " +
+					"before reading required number of bits");
+		buf.flip();
+	}
+
    /**
     * Returns a string representation of bit array.
     * @return a string representation of bit array.
@@ -648,14 +974,11 @@ public class BitArray
    // output the bit array as a string
    public String toString()
    {
-		String s = "";
+		char[] s = new char[numberOfBits];
 
 		for (int b = 0; b < numberOfBits; b++)
-			if (bit(b) != 0)
-				s += "1";
-			else
-				s += "0";
+			s[b] = ((words[arrayIndex(b)] & bitMask(b)) != 0) ? '1' : '0';
 
-		return s;
+		return new String(s);
    }
 }
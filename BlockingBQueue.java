@@ -0,0 +1,488 @@
+/*
+ * @(#)BlockingBQueue.java
+ */
+
+package ds.util;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread-safe bounded queue that uses the circular queue model of
+ * <tt>BQueue</tt>.  A producer that calls <tt>put</tt> on a full queue
+ * waits until a consumer makes room, and a consumer that calls
+ * <tt>take</tt> on an empty queue waits for an element, so producers
+ * that outpace their consumers are slowed down rather than failed.  The
+ * timed <tt>offer</tt> and <tt>poll</tt> wait at most a given time.<p>
+ *
+ * The queue is guarded by a <tt>ReentrantLock</tt> with separate
+ * conditions for "not empty" and "not full".  A virtual thread that
+ * waits on a condition unmounts from its carrier thread, which it cannot
+ * do while waiting in a <tt>synchronized</tt> block.<p>
+ *
+ * The <tt>Queue</tt> methods keep the behavior of <tt>BQueue</tt>:
+ * <tt>push</tt> throws an exception if the queue is full and
+ * <tt>pop</tt> throws an exception if it is empty.  The queue does not
+ * hold <tt>null</tt> elements.<p>
+ */
+
+public class BlockingBQueue<T> implements Queue<T>
+{
+	// array holding the queue elements
+	private final Object[] queueArray;
+	// index of the front and back of the queue
+	private int qfront, qback;
+	// the number of elements in the queue, 0 <= count <= queueArray.length
+	private int count;
+
+	// guards all access to the fields above
+	private final ReentrantLock lock;
+	// signaled when an element is added and when room is made
+	private final Condition notEmpty;
+	private final Condition notFull;
+
+	/**
+	 * Creates an empty queue that holds a maximum of 50 elements.
+	 */
+	public BlockingBQueue()
+	{
+		this(BQueue.MAXQSIZE);
+	}
+
+	/**
+	 * Creates an empty queue that holds a maximum of <tt>size</tt>
+	 * elements.
+	 *
+	 * @param size  maximum number of elements in the queue.
+	 * @throws IllegalArgumentException if <tt>size</tt> is not positive.
+	 */
+	public BlockingBQueue(int size)
+	{
+		this(size, false);
+	}
+
+	/**
+	 * Creates an empty queue that holds a maximum of <tt>size</tt>
+	 * elements.  If <tt>fair</tt> is <tt>true</tt>, waiting threads are
+	 * served in the order in which they arrived, at some cost in
+	 * throughput.
+	 *
+	 * @param size  maximum number of elements in the queue.
+	 * @param fair  whether the lock serves waiting threads in order.
+	 * @throws IllegalArgumentException if <tt>size</tt> is not positive.
+	 */
+	public BlockingBQueue(int size, boolean fair)
+	{
+		if (size <= 0)
+			throw new IllegalArgumentException(
+				"BlockingBQueue(): size must be positive");
+
+		queueArray = new Object[size];
+		qfront = 0;
+		qback = 0;
+		count = 0;
+		lock = new ReentrantLock(fair);
+		notEmpty = lock.newCondition();
+		notFull = lock.newCondition();
+	}
+
+	// insert item at the back; the caller holds the lock and has
+	// checked that the queue is not full
+	private void enqueue(T item)
+	{
+		queueArray[qback] = item;
+		if (++qback == queueArray.length)
+			qback = 0;
+		count++;
+		notEmpty.signal();
+	}
+
+	// remove the front element; the caller holds the lock and has
+	// checked that the queue is not empty
+	private T dequeue()
+	{
+		T item = (T)queueArray[qfront];
+
+		queueArray[qfront] = null;
+		if (++qfront == queueArray.length)
+			qfront = 0;
+		count--;
+		notFull.signal();
+
+		return item;
+	}
+
+	private static void checkNotNull(Object item, String method)
+	{
+		if (item == null)
+			throw new NullPointerException(
+				"BlockingBQueue " + method + "(): null element");
+	}
+
+	/**
+	 * Inserts item at the back of the queue, waiting if necessary for
+	 * room to become available.
+	 *
+	 * @param item  the element to add.
+	 * @throws InterruptedException if the thread is interrupted while
+	 *         waiting.
+	 * @throws NullPointerException if <tt>item</tt> is <tt>null</tt>.
+	 */
+	public void put(T item) throws InterruptedException
+	{
+		checkNotNull(item, "put");
+
+		lock.lockInterruptibly();
+		try
+		{
+			while (count == queueArray.length)
+				notFull.await();
+			enqueue(item);
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Inserts item at the back of the queue if there is room.
+	 *
+	 * @param item  the element to add.
+	 * @return <tt>true</tt> if the item was added and <tt>false</tt> if the
+	 *         queue is full.
+	 * @throws NullPointerException if <tt>item</tt> is <tt>null</tt>.
+	 */
+	public boolean offer(T item)
+	{
+		checkNotNull(item, "offer");
+
+		lock.lock();
+		try
+		{
+			if (count == queueArray.length)
+				return false;
+			enqueue(item);
+			return true;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Inserts item at the back of the queue, waiting up to the given
+	 * time for room to become available.
+	 *
+	 * @param item  the element to add.
+	 * @param timeout  how long to wait, in units of <tt>unit</tt>.
+	 * @param unit  the unit of <tt>timeout</tt>.
+	 * @return <tt>true</tt> if the item was added and <tt>false</tt> if the
+	 *         time ran out first.
+	 * @throws InterruptedException if the thread is interrupted while
+	 *         waiting.
+	 * @throws NullPointerException if <tt>item</tt> is <tt>null</tt>.
+	 */
+	public boolean offer(T item, long timeout, TimeUnit unit)
+		throws InterruptedException
+	{
+		checkNotNull(item, "offer");
+
+		long nanos = unit.toNanos(timeout);
+
+		lock.lockInterruptibly();
+		try
+		{
+			while (count == queueArray.length)
+			{
+				if (nanos <= 0)
+					return false;
+				nanos = notFull.awaitNanos(nanos);
+			}
+			enqueue(item);
+			return true;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes and returns the element at the front of the queue, waiting
+	 * if necessary for an element to become available.
+	 *
+	 * @return the front element.
+	 * @throws InterruptedException if the thread is interrupted while
+	 *         waiting.
+	 */
+	public T take() throws InterruptedException
+	{
+		lock.lockInterruptibly();
+		try
+		{
+			while (count == 0)
+				notEmpty.await();
+			return dequeue();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes and returns the element at the front of the queue, or
+	 * returns <tt>null</tt> if the queue is empty.
+	 *
+	 * @return the front element or <tt>null</tt>.
+	 */
+	public T poll()
+	{
+		lock.lock();
+		try
+		{
+			return (count == 0) ? null : dequeue();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes and returns the element at the front of the queue, waiting
+	 * up to the given time for an element to become available.
+	 *
+	 * @param timeout  how long to wait, in units of <tt>unit</tt>.
+	 * @param unit  the unit of <tt>timeout</tt>.
+	 * @return the front element, or <tt>null</tt> if the time ran out
+	 *         first.
+	 * @throws InterruptedException if the thread is interrupted while
+	 *         waiting.
+	 */
+	public T poll(long timeout, TimeUnit unit) throws InterruptedException
+	{
+		long nanos = unit.toNanos(timeout);
+
+		lock.lockInterruptibly();
+		try
+		{
+			while (count == 0)
+			{
+				if (nanos <= 0)
+					return null;
+				nanos = notEmpty.awaitNanos(nanos);
+			}
+			return dequeue();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Insert item at the back of the queue provided the queue is not full.
+	 *
+	 * @param item  insert item at the back of the queue
+	 * @throws IndexOutOfBoundsException if the queue is full.
+	 * @throws NullPointerException if <tt>item</tt> is <tt>null</tt>.
+	 */
+	public void push(T item)
+	{
+		if (!offer(item))
+			throw new IndexOutOfBoundsException("BlockingBQueue push(): queue full");
+	}
+
+	/**
+	 * Remove the element at the front of the queue and return its value.
+	 *
+	 * @return value of the element removed from the front of the queue.
+	 * @throws <tt>NoSuchElementException</tt> if the queue is empty.
+	 */
+	public T pop()
+	{
+		T item = poll();
+
+		if (item == null)
+			throw new NoSuchElementException("BlockingBQueue pop(): empty queue");
+
+		return item;
+	}
+
+	/**
+	 * Return the value of the element at the front of the queue.
+	 *
+	 * @return value of element at the front of the queue.
+	 * @throws <tt>NoSuchElementException</tt> if the queue is empty.
+	 */
+	public T peek()
+	{
+		lock.lock();
+		try
+		{
+			if (count == 0)
+				throw new NoSuchElementException("BlockingBQueue peek(): empty queue");
+			return (T)queueArray[qfront];
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes up to <tt>maxElements</tt> elements from the front of the
+	 * queue and adds them to <tt>c</tt> in order, holding the lock once
+	 * for the whole batch.  Producers waiting for room are signaled once
+	 * for each element removed.
+	 *
+	 * @param c  the collection that receives the elements.
+	 * @param maxElements  the largest number of elements to move.
+	 * @return the number of elements moved.
+	 */
+	public int drainTo(Collection<? super T> c, int maxElements)
+	{
+		lock.lock();
+		try
+		{
+			int n = Math.min(Math.max(maxElements, 0), count);
+
+			for (int i = 0; i < n; i++)
+				c.add(dequeue());
+
+			return n;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes all of the elements in the queue and adds them to
+	 * <tt>c</tt> in order.
+	 *
+	 * @param c  the collection that receives the elements.
+	 * @return the number of elements moved.
+	 */
+	public int drainTo(Collection<? super T> c)
+	{
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Removes all of the elements from the queue and wakes the producers
+	 * waiting for room.
+	 */
+	public void clear()
+	{
+		lock.lock();
+		try
+		{
+			while (count > 0)
+			{
+				queueArray[qfront] = null;
+				if (++qfront == queueArray.length)
+					qfront = 0;
+				count--;
+			}
+			qfront = qback = 0;
+			notFull.signalAll();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Return the number of elements currently in the queue.
+	 *
+	 * @return number of elements in the queue.
+	 */
+	public int size()
+	{
+		lock.lock();
+		try
+		{
+			return count;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Return the number of elements that can be added before the queue
+	 * is full.
+	 *
+	 * @return the remaining capacity of the queue.
+	 */
+	public int remainingCapacity()
+	{
+		lock.lock();
+		try
+		{
+			return queueArray.length - count;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Return a boolean value that indicates whether the queue is empty.
+	 *
+	 * @return true if the queue is empty and false otherwise.
+	 */
+	public boolean isEmpty()
+	{
+		return size() == 0;
+	}
+
+	/**
+	 * Return a boolean value that indicates whether the queue is full.
+	 *
+	 * @return true if the queue is full and false otherwise.
+	 */
+	public boolean full()
+	{
+		return remainingCapacity() == 0;
+	}
+
+	/**
+	 * Returns a string that displays the elements in the queue from
+	 * front to back. The description is a comma separated list of
+	 * elements enclosed in brackets.
+	 *
+	 * @return string that contains the list of elements in the queue.
+	 */
+	public String toString()
+	{
+		lock.lock();
+		try
+		{
+			StringBuilder str = new StringBuilder("[");
+
+			for (int i = 0; i < count; i++)
+			{
+				if (i > 0)
+					str.append(", ");
+				str.append(queueArray[(qfront + i) % queueArray.length]);
+			}
+
+			return str.append("]").toString();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,359 @@
+/*
+ * @(#)BloomFilter.java
+ */
+
+package ds.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A Bloom filter is a probabilistic set that answers membership queries
+ * in constant time and a few bits per element.  <tt>mightContain</tt>
+ * never returns <tt>false</tt> for an element that was added, but may
+ * return <tt>true</tt> for one that was not, with a probability fixed
+ * when the filter is created.  Elements cannot be removed; see
+ * <tt>CountingBloomFilter</tt> for a filter that supports removal.
+ * <p>
+ * The filter stores its bits in a <tt>BitArray</tt>.  Each element sets
+ * k bits chosen by double hashing: bit i is h1 + i*h2 mod m, where h1 and
+ * h2 are the halves of a 64-bit hash of the element.  <tt>Long</tt>,
+ * <tt>Double</tt>, <tt>CharSequence</tt> and <tt>byte[]</tt> elements are
+ * hashed from their contents; other elements from their
+ * <tt>hashCode()</tt>.
+ *
+ * @see BitArray
+ * @see CountingBloomFilter
+ */
+
+public class BloomFilter<T>
+{
+	// the filter bits
+	private BitArray bits;
+
+	// number of bits (m) and hash functions (k)
+	private int numBits;
+	private int numHashes;
+
+	/**
+	 * Creates a filter sized for <tt>expectedItems</tt> elements with a
+	 * false positive probability of <tt>fpp</tt> once that many elements
+	 * are added.
+	 *
+	 * @param expectedItems  the number of elements expected.
+	 * @param fpp  the desired false positive probability.
+	 * @throws IllegalArgumentException if <tt>expectedItems</tt> is not
+	 *         positive or <tt>fpp</tt> is not between 0 and 1 (exclusive).
+	 */
+	public BloomFilter(int expectedItems, double fpp)
+	{
+		this(optimalNumBits(expectedItems, fpp),
+			optimalNumHashes(expectedItems, optimalNumBits(expectedItems, fpp)));
+	}
+
+	/**
+	 * Creates a filter of <tt>numBits</tt> bits that sets
+	 * <tt>numHashes</tt> bits per element.
+	 *
+	 * @param numBits  number of bits in the filter.
+	 * @param numHashes  number of bits set for each element.
+	 * @throws IllegalArgumentException if either argument is not positive.
+	 */
+	public BloomFilter(int numBits, int numHashes)
+	{
+		if (numBits <= 0 || numHashes <= 0)
+			throw new IllegalArgumentException(
+				"BloomFilter(): number of bits and hashes must be positive");
+
+		this.numBits = numBits;
+		this.numHashes = numHashes;
+		bits = new BitArray(numBits);
+	}
+
+	private BloomFilter(BitArray bits, int numHashes)
+	{
+		this.bits = bits;
+		this.numBits = bits.size();
+		this.numHashes = numHashes;
+	}
+
+	// number of bits m = -n ln(p) / (ln 2)^2 for n elements at
+	// false positive probability p
+	static int optimalNumBits(int expectedItems, double fpp)
+	{
+		if (expectedItems <= 0)
+			throw new IllegalArgumentException(
+				"BloomFilter(): expected number of items must be positive");
+		if (!(fpp > 0.0 && fpp < 1.0))
+			throw new IllegalArgumentException(
+				"BloomFilter(): false positive probability must be in (0, 1)");
+
+		double m = -expectedItems * Math.log(fpp) / (Math.log(2) * Math.log(2));
+
+		return (int)Math.min(Math.ceil(m), Integer.MAX_VALUE);
+	}
+
+	// number of hash functions k = (m/n) ln 2
+	static int optimalNumHashes(int expectedItems, int numBits)
+	{
+		return Math.max(1,
+			(int)Math.round((double)numBits / expectedItems * Math.log(2)));
+	}
+
+	// a 64-bit hash of item, spread so that every bit depends on all of
+	// the input. the low half is h1 and the high half is h2. Long,
+	// Double, CharSequence and byte[] elements are hashed from their
+	// full contents. other elements are hashed from hashCode(), so they
+	// produce at most 2^32 distinct values
+	static long hash(Object item)
+	{
+		long h;
+
+		if (item instanceof Long)
+			h = (Long)item;
+		else if (item instanceof Double)
+			h = Double.doubleToLongBits((Double)item);
+		else if (item instanceof CharSequence)
+		{
+			// 64-bit FNV-1a over the characters
+			CharSequence cs = (CharSequence)item;
+
+			h = 0xCBF29CE484222325L;
+			for (int i = 0; i < cs.length(); i++)
+				h = (h ^ cs.charAt(i)) * 0x100000001B3L;
+		}
+		else if (item instanceof byte[])
+		{
+			byte[] b = (byte[])item;
+
+			h = 0xCBF29CE484222325L;
+			for (int i = 0; i < b.length; i++)
+				h = (h ^ (b[i] & 0xFF)) * 0x100000001B3L;
+		}
+		else
+			h = item.hashCode();
+
+		return mix(h);
+	}
+
+	// the MurmurHash3 64-bit finalizer, applied after a multiplication
+	// that spreads small values
+	static long mix(long h)
+	{
+		h *= 0x9E3779B97F4A7C15L;
+		h ^= (h >>> 33);
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= (h >>> 33);
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= (h >>> 33);
+		return h;
+	}
+
+	// index of the i-th bit for the hash value h in a filter of m bits
+	static int index(long h, int i, int m)
+	{
+		int combined = (int)h + i * (int)(h >>> 32);
+
+		// flip a negative value rather than take its absolute value,
+		// which fails for Integer.MIN_VALUE
+		if (combined < 0)
+			combined = ~combined;
+		return combined % m;
+	}
+
+	/**
+	 * Adds an element to the filter.
+	 *
+	 * @param item  the element to add.
+	 * @return <tt>true</tt> if the filter changed, so the element was
+	 *         certainly not in it before.
+	 */
+	public boolean add(T item)
+	{
+		long h = hash(item);
+		boolean changed = false;
+
+		for (int i = 0; i < numHashes; i++)
+		{
+			int b = index(h, i, numBits);
+
+			if (bits.bit(b) == 0)
+			{
+				bits.set(b);
+				changed = true;
+			}
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Returns <tt>false</tt> if the element is certainly not in the
+	 * filter and <tt>true</tt> if it might be.
+	 *
+	 * @param item  the element to test.
+	 * @return <tt>true</tt> if the element might have been added.
+	 */
+	public boolean mightContain(Object item)
+	{
+		long h = hash(item);
+
+		for (int i = 0; i < numHashes; i++)
+			if (bits.bit(index(h, i, numBits)) == 0)
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * Removes all of the elements from the filter.
+	 */
+	public void clear()
+	{
+		bits.clear();
+	}
+
+	/**
+	 * Returns the number of bits in the filter.
+	 *
+	 * @return the number of bits in the filter.
+	 */
+	public int numBits()
+	{
+		return numBits;
+	}
+
+	/**
+	 * Returns the number of bits set for each element.
+	 *
+	 * @return the number of hash functions.
+	 */
+	public int numHashes()
+	{
+		return numHashes;
+	}
+
+	/**
+	 * Returns the probability that <tt>mightContain</tt> returns
+	 * <tt>true</tt> for an element that was not added, given the bits
+	 * currently set.
+	 *
+	 * @return the current false positive probability.
+	 */
+	public double expectedFpp()
+	{
+		return Math.pow((double)bits.cardinality() / numBits, numHashes);
+	}
+
+	/**
+	 * Returns an estimate of the number of distinct elements added,
+	 * computed from the number of bits set.
+	 *
+	 * @return the estimated number of elements in the filter.
+	 */
+	public long approximateSize()
+	{
+		int setBits = bits.cardinality();
+
+		if (setBits == numBits)
+			return Long.MAX_VALUE;
+
+		// n = -(m/k) ln(1 - X/m) for X bits set
+		return Math.round(-(double)numBits / numHashes *
+			Math.log(1 - (double)setBits / numBits));
+	}
+
+	/**
+	 * Returns a filter that holds the elements of this filter and
+	 * <tt>x</tt>.  The result is the same filter that adding the elements
+	 * of both to an empty filter would give.
+	 *
+	 * @param x  a filter with the same number of bits and hashes.
+	 * @return the union of the filters.
+	 * @throws IllegalArgumentException if the filters are not compatible.
+	 */
+	public BloomFilter<T> union(BloomFilter<T> x)
+	{
+		checkCompatible(x, "union");
+		return new BloomFilter<T>(bits.or(x.bits), numHashes);
+	}
+
+	/**
+	 * Returns a filter that reports <tt>true</tt> for the elements of both
+	 * this filter and <tt>x</tt>.  Its false positive probability is at
+	 * most that of either operand.
+	 *
+	 * @param x  a filter with the same number of bits and hashes.
+	 * @return the intersection of the filters.
+	 * @throws IllegalArgumentException if the filters are not compatible.
+	 */
+	public BloomFilter<T> intersection(BloomFilter<T> x)
+	{
+		checkCompatible(x, "intersection");
+		return new BloomFilter<T>(bits.and(x.bits), numHashes);
+	}
+
+	/**
+	 * Adds the elements of <tt>x</tt> to this filter.
+	 *
+	 * @param x  a filter with the same number of bits and hashes.
+	 * @throws IllegalArgumentException if the filters are not compatible.
+	 */
+	public void addAll(BloomFilter<T> x)
+	{
+		checkCompatible(x, "addAll");
+		bits.orAssign(x.bits);
+	}
+
+	/**
+	 * Writes the number of hashes, the number of bits and then the bits
+	 * in <tt>BitArray.write</tt> format.
+	 *
+	 * @param ostr  the stream that receives the filter.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void write(DataOutputStream ostr) throws IOException
+	{
+		ostr.writeInt(numHashes);
+		ostr.writeInt(numBits);
+		bits.write(ostr);
+	}
+
+	/**
+	 * Reads a filter written by <tt>write</tt>.
+	 *
+	 * @param istr  the stream that holds the filter.
+	 * @return the filter.
+	 * @throws IllegalArgumentException if the stream does not hold a
+	 *         valid filter.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static <T> BloomFilter<T> read(DataInputStream istr)
+		throws IOException
+	{
+		int k = istr.readInt(), m = istr.readInt();
+
+		if (k <= 0 || m <= 0)
+			throw new IllegalArgumentException(
+				"BloomFilter read(): invalid filter header");
+
+		BitArray b = new BitArray(0);
+
+		b.read(istr, m);
+		return new BloomFilter<T>(b, k);
+	}
+
+	// wrap an existing bit array; used by CountingBloomFilter
+	static <T> BloomFilter<T> fromBits(BitArray bits, int numHashes)
+	{
+		return new BloomFilter<T>(bits, numHashes);
+	}
+
+	private void checkCompatible(BloomFilter<T> x, String method)
+	{
+		if (numBits != x.numBits || numHashes != x.numHashes)
+			throw new IllegalArgumentException(
+				"BloomFilter " + method + "(): filters are not compatible");
+	}
+}
@@ -0,0 +1,584 @@
+/*
+ * @(#)ChunkedList.java
+ */
+
+package ds.util;
+
+import java.lang.IndexOutOfBoundsException;
+import java.util.NoSuchElementException;
+import java.lang.IllegalStateException;
+import java.util.ConcurrentModificationException;
+
+/**
+ * An implementation of the <tt>List</tt> interface that stores its
+ * elements in fixed-size chunks rather than in one array.  The list
+ * never allocates or copies more than one chunk at a time, so a list of
+ * hundreds of millions of elements grows without the large allocations
+ * and copies of an <tt>ArrayList</tt>; only the index of chunks, one
+ * reference per chunk, is reallocated.<p>
+ *
+ * Every chunk except the last is full, so <tt>get</tt> and <tt>set</tt>
+ * find an element's chunk by a shift and run in constant time, and
+ * <tt>add</tt> at the end runs in constant time.  Each chunk is a
+ * circular buffer, which lets an element move from the end of one chunk
+ * to the front of the next in constant time.  Inserting or removing at
+ * an index shifts at most half of one chunk and moves one element across
+ * each following chunk boundary, so it runs in O(b + n/b) time for chunk
+ * size b.<p>
+ */
+
+public class ChunkedList<T> implements List<T>, Iterable<T>
+{
+	// default number of elements in a chunk
+	private static final int DEFAULT_CHUNK_SIZE = 1024;
+
+	// chunks[0] through chunks[numChunks-1] hold the elements. element
+	// j of chunk c is chunks[c][(head[c] + j) & mask]. chunks before the
+	// last hold chunkSize elements
+	private Object[][] chunks;
+	private int[] head;
+	private int numChunks;
+
+	// chunkSize = 1 << shift and mask = chunkSize-1
+	private int shift;
+	private int mask;
+
+	// number of elements in the list
+	private int listSize;
+
+	// a chunk emptied by remove(), kept so that alternately adding and
+	// removing at a chunk boundary does not allocate
+	private Object[] spare;
+
+	// increases whenever the list changes. the class creates
+	// iterators whose variable expectedModCount equals the current
+	// value of modCount. for an iterator operation to be valid,
+	// modCount must equal expectedModCount
+	private int modCount = 0;
+
+	/**
+	 * Creates an empty list with chunks of 1024 elements.
+	 */
+	public ChunkedList()
+	{
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Creates an empty list whose chunks hold <tt>chunkSize</tt>
+	 * elements, rounded up to a power of 2.
+	 *
+	 * @param chunkSize  the number of elements in a chunk.
+	 * @throws IllegalArgumentException if <tt>chunkSize</tt> is not in the
+	 *         range 2 to 2^24.
+	 */
+	public ChunkedList(int chunkSize)
+	{
+		if (chunkSize < 2 || chunkSize > (1 << 24))
+			throw new IllegalArgumentException(
+				"ChunkedList(): chunk size must be in the range 2 to 2^24");
+
+		shift = 32 - Integer.numberOfLeadingZeros(chunkSize - 1);
+		mask = (1 << shift) - 1;
+		chunks = new Object[8][];
+		head = new int[8];
+		numChunks = 0;
+		listSize = 0;
+	}
+
+	// verify that index is in the range 0 <= index <= upperBound. if
+	// not throw the IndexOutOfBoundsException exception
+	private void rangeCheck(int index, String msg, int upperBound)
+	{
+		if (index < 0 || index >= upperBound+1)
+			throw new IndexOutOfBoundsException("\n" + msg + ": index " + index +
+				" out of bounds. Should be in the range 0 to " +
+				upperBound);
+	}
+
+	// number of elements in chunk c
+	private int chunkCount(int c)
+	{
+		return (c < numChunks-1) ? mask+1 : listSize - (c << shift);
+	}
+
+	// append an empty chunk
+	private void addChunk()
+	{
+		if (numChunks == chunks.length)
+		{
+			// the index holds one reference per chunk, so doubling it
+			// copies little
+			int newLength = chunks.length << 1;
+
+			if (newLength < 0)
+				throw new OutOfMemoryError("ChunkedList: too many chunks");
+			chunks = java.util.Arrays.copyOf(chunks, newLength);
+			head = java.util.Arrays.copyOf(head, newLength);
+		}
+
+		if (spare != null)
+		{
+			chunks[numChunks] = spare;
+			spare = null;
+		}
+		else
+			chunks[numChunks] = new Object[mask+1];
+		head[numChunks] = 0;
+		numChunks++;
+	}
+
+	// drop the last chunk, which is empty
+	private void removeChunk()
+	{
+		numChunks--;
+		spare = chunks[numChunks];
+		chunks[numChunks] = null;
+	}
+
+	/**
+	 * Appends the specified element to the end of this list.
+	 *
+	 * @param item element to be appended to this list.
+	 * @return <tt>true</tt>
+	 */
+	public boolean add(T item)
+	{
+		if (listSize == Integer.MAX_VALUE)
+			throw new OutOfMemoryError("ChunkedList: list too large");
+		if ((listSize & mask) == 0 && (listSize >>> shift) == numChunks)
+			addChunk();
+
+		int c = numChunks-1;
+
+		chunks[c][(head[c] + (listSize & mask)) & mask] = item;
+		listSize++;
+		modCount++;
+
+		return true;
+	}
+
+	/**
+	 * Appends all of the elements in the specified collection to the end
+	 * of this list.
+	 *
+	 * @param c collection whose elements are appended to this list.
+	 * @return <tt>true</tt> if the list changed as a result of the call.
+	 */
+	public boolean addAll(Collection<? extends T> c)
+	{
+		Object[] arr = c.toArray();
+
+		for (int i = 0; i < arr.length; i++)
+			add((T)arr[i]);
+
+		return arr.length != 0;
+	}
+
+	/**
+	 * Inserts the specified item at the specified position in this
+	 * list.
+	 *
+	 * @param index position at which the specified element is to be inserted.
+	 * @param item element to be inserted.
+	 * @throws    IndexOutOfBoundsException if index is out of range
+	 *		  <tt>(index &lt; 0 || index &gt; size())</tt>.
+	 */
+	public void add(int index, T item)
+	{
+		rangeCheck(index, "ChunkedList add()", listSize);
+
+		if (index == listSize)
+		{
+			add(item);
+			return;
+		}
+
+		int c = index >>> shift;
+
+		// make room at the end, then move the last element of each
+		// full chunk after c to the front of the next chunk. chunk c
+		// is then the only one with a free slot
+		if (listSize == Integer.MAX_VALUE)
+			throw new OutOfMemoryError("ChunkedList: list too large");
+		if ((listSize & mask) == 0)
+			addChunk();
+		for (int k = numChunks-1; k > c; k--)
+		{
+			int last = (head[k-1] + mask) & mask;
+
+			head[k] = (head[k] - 1) & mask;
+			chunks[k][head[k]] = chunks[k-1][last];
+			chunks[k-1][last] = null;
+		}
+
+		insertInChunk(c, index & mask, chunkCount(c) - (c < numChunks-1 ? 1 : 0),
+			item);
+		listSize++;
+		modCount++;
+	}
+
+	// insert item at position off of chunk c, which holds count elements
+	// and has a free slot. shift the shorter side of the chunk
+	private void insertInChunk(int c, int off, int count, T item)
+	{
+		Object[] ch = chunks[c];
+		int h = head[c];
+
+		if (off < count - off)
+		{
+			// move elements 0 through off-1 one slot toward the front
+			h = (h - 1) & mask;
+			for (int j = 0; j < off; j++)
+				ch[(h + j) & mask] = ch[(h + j + 1) & mask];
+			head[c] = h;
+		}
+		else
+		{
+			// move elements off through count-1 one slot toward the back
+			for (int j = count; j > off; j--)
+				ch[(h + j) & mask] = ch[(h + j - 1) & mask];
+		}
+
+		ch[(h + off) & mask] = item;
+	}
+
+	/**
+	 * Removes the element at the specified position in this list.
+	 *
+	 * @param index the position of the element to removed.
+	 * @return the element that was removed from the list.
+	 * @throws    IndexOutOfBoundsException if index out of range <tt>(index
+	 * 		  &lt; 0 || index &gt;= size())</tt>.
+	 */
+	public T remove(int index)
+	{
+		rangeCheck(index, "ChunkedList remove()", listSize-1);
+
+		int c = index >>> shift;
+		Object[] ch = chunks[c];
+		int h = head[c], off = index & mask, count = chunkCount(c);
+		T returnElement = (T)ch[(h + off) & mask];
+
+		// close the gap from the shorter side of the chunk
+		if (off < count - 1 - off)
+		{
+			for (int j = off; j > 0; j--)
+				ch[(h + j) & mask] = ch[(h + j - 1) & mask];
+			ch[h] = null;
+			head[c] = (h + 1) & mask;
+		}
+		else
+		{
+			for (int j = off; j < count - 1; j++)
+				ch[(h + j) & mask] = ch[(h + j + 1) & mask];
+			ch[(h + count - 1) & mask] = null;
+		}
+
+		// refill each full chunk from the front of the next one
+		for (int k = c; k < numChunks-1; k++)
+		{
+			int first = head[k+1];
+
+			chunks[k][(head[k] + mask) & mask] = chunks[k+1][first];
+			chunks[k+1][first] = null;
+			head[k+1] = (first + 1) & mask;
+		}
+
+		listSize--;
+		if ((listSize & mask) == 0 && (listSize >>> shift) < numChunks)
+			removeChunk();
+		modCount++;
+
+		return returnElement;
+	}
+
+	/**
+	 * Removes the first occurrence of the specified element from this
+	 * list, if it is present.
+	 *
+	 * @param item element to be removed from this list, if present.
+	 * @return <tt>true</tt> if the list contained the specified element.
+	 */
+	public boolean remove(Object item)
+	{
+		int i = indexOf(item);
+
+		if (i == -1)
+			return false;
+
+		remove(i);
+		return true;
+	}
+
+	/**
+	 * Returns the element at the specified position in this list.
+	 *
+	 * @param  index position of the element to return.
+	 * @return the element at the specified position in this list.
+	 * @throws    IndexOutOfBoundsException if index is out of range <tt>(index
+	 * 		  &lt; 0 || index &gt;= size())</tt>.
+	 */
+	public T get(int index)
+	{
+		rangeCheck(index, "ChunkedList get()", listSize-1);
+
+		int c = index >>> shift;
+
+		return (T)chunks[c][(head[c] + index) & mask];
+	}
+
+	/**
+	 * Replaces the element at the specified position in this list with
+	 * the specified item.
+	 *
+	 * @param index position of the element to update.
+	 * @param item new value to stored at the specified position.
+	 * @return the element previously at the specified position.
+	 * @throws    IndexOutOfBoundsException if index out of range
+	 *		  <tt>(index &lt; 0 || index &gt;= size())</tt>.
+	 */
+	public T set(int index, T item)
+	{
+		rangeCheck(index, "ChunkedList set()", listSize-1);
+
+		int c = index >>> shift, slot = (head[c] + index) & mask;
+		T previousValue = (T)chunks[c][slot];
+
+		chunks[c][slot] = item;
+		return previousValue;
+	}
+
+	/**
+	 * Removes all of the elements from this list and releases its
+	 * chunks.
+	 */
+	public void clear()
+	{
+		for (int c = 0; c < numChunks; c++)
+			chunks[c] = null;
+		numChunks = 0;
+		spare = null;
+		listSize = 0;
+		modCount++;
+	}
+
+	/**
+	 * Returns <tt>true</tt> if this list contains the specified element.
+	 *
+	 * @param item element whose presence in this List is to be tested.
+	 * @return  <tt>true</tt> if the specified element is present;
+	 *		<tt>false</tt> otherwise.
+	 */
+	public boolean contains(Object item)
+	{
+		return indexOf(item) >= 0;
+	}
+
+	/**
+	 * Searches for the first occurence of the given argument using
+	 * the <tt>equals</tt> method.
+	 *
+	 * @param   item   an object.
+	 * @return  the index of the first occurrence of the argument in this
+	 *          list; returns <tt>-1</tt> if the object is not found.
+	 */
+	public int indexOf(Object item)
+	{
+		for (int c = 0; c < numChunks; c++)
+		{
+			Object[] ch = chunks[c];
+			int h = head[c], count = chunkCount(c);
+
+			for (int j = 0; j < count; j++)
+				if (item.equals(ch[(h + j) & mask]))
+					return (c << shift) + j;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Tests if this list has no elements.
+	 *
+	 * @return  <tt>true</tt> if this list has no elements;
+	 *          <tt>false</tt> otherwise.
+	 */
+	public boolean isEmpty()
+	{
+		return listSize == 0;
+	}
+
+	/**
+	 * Returns the number of elements in this list.
+	 *
+	 * @return  the number of elements in this list.
+	 */
+	public int size()
+	{
+		return listSize;
+	}
+
+	/**
+	 * Returns an array containing all of the elements in this list
+	 * in index-order.  Each chunk is copied with at most two calls to
+	 * <tt>System.arraycopy</tt>.
+	 *
+	 * @return an array containing all of the elements in this list
+	 * 	       in index-order.
+	 */
+	public Object[] toArray()
+	{
+		Object[] returnArray = new Object[listSize];
+
+		for (int c = 0; c < numChunks; c++)
+		{
+			int h = head[c], count = chunkCount(c), pos = c << shift;
+			// elements from head to the end of the array, then the
+			// elements that wrapped around to the start
+			int first = Math.min(count, mask + 1 - h);
+
+			System.arraycopy(chunks[c], h, returnArray, pos, first);
+			System.arraycopy(chunks[c], 0, returnArray, pos + first, count - first);
+		}
+
+		return returnArray;
+	}
+
+	/**
+	 * Returns a string representation of this list. The
+	 * representation is a comma separated list in index order from
+	 * 0 to size()-1, enclosed in square brackets.
+	 *
+	 * @return string representation of the list.
+	 */
+	public String toString()
+	{
+		return Arrays.toString(toArray());
+	}
+
+	/**
+	 * Returns an iterator over the elements in this list in the index order
+	 * 0 to size()-1.
+	 *
+	 * @return an <tt>Iterator</tt> positioned initially referencing the first element.
+	 */
+	public Iterator<T> iterator()
+	{
+		return new ListIteratorImpl(0);
+	}
+
+	/**
+	 * Returns a list iterator over the elements in this list in the index
+	 * order 0 to size()-1, positioned at the first element.
+	 *
+	 * @return a <tt>ListIterator</tt> positioned at the first element in the list.
+	 */
+	public ListIterator<T> listIterator()
+	{
+		return new ListIteratorImpl(0);
+	}
+
+	/**
+	 * Returns a list iterator over the elements in this list in the index
+	 * order 0 to size()-1, positioned at the specified index.
+	 *
+	 * @param index  initial position for the list iterator.
+	 * @return a <tt>ListIterator</tt> referencing the specified index position.
+	 * @throws    IndexOutOfBoundsException if index is out of range
+	 *		  <tt>(index &lt; 0 || index &gt; size())</tt>.
+	 */
+	public ListIterator<T> listIterator(int index)
+	{
+		rangeCheck(index, "ChunkedList listIterator()", listSize);
+
+		return new ListIteratorImpl(index);
+	}
+
+	private class ListIteratorImpl implements ListIterator<T>
+	{
+		// set expectedModCount to the number of list changes
+		// at the time of iterator creation
+		private int expectedModCount = modCount;
+
+		// index of the element returned by next() and of the last
+		// element returned, or -1 after remove() or add()
+		private int nextIndex;
+		private int prevIndex = -1;
+
+		ListIteratorImpl(int index)
+		{
+			nextIndex = index;
+		}
+
+		public boolean hasNext()
+		{
+			return nextIndex != listSize;
+		}
+
+		public T next()
+		{
+			checkIteratorState();
+			if (nextIndex >= listSize)
+				throw new NoSuchElementException("Iteration has no more elements");
+
+			prevIndex = nextIndex++;
+			return get(prevIndex);
+		}
+
+		public boolean hasPrevious()
+		{
+			return nextIndex > 0;
+		}
+
+		public T previous()
+		{
+			checkIteratorState();
+			if (nextIndex <= 0)
+				throw new NoSuchElementException("Iteration has no more elements");
+
+			prevIndex = --nextIndex;
+			return get(prevIndex);
+		}
+
+		public void remove()
+		{
+			if (prevIndex == -1)
+				throw new IllegalStateException(
+					"Iterator call to next() or previous() " +
+					"required before calling remove()");
+
+			checkIteratorState();
+			ChunkedList.this.remove(prevIndex);
+			expectedModCount = modCount;
+
+			nextIndex = prevIndex;
+			prevIndex = -1;
+		}
+
+		public void set(T item)
+		{
+			if (prevIndex == -1)
+				throw new IllegalStateException(
+					"Iterator call to next() or previous() " +
+					"required before calling set()");
+
+			checkIteratorState();
+			ChunkedList.this.set(prevIndex, item);
+		}
+
+		public void add(T item)
+		{
+			checkIteratorState();
+			ChunkedList.this.add(nextIndex++, item);
+			expectedModCount = modCount;
+			prevIndex = -1;
+		}
+
+		private void checkIteratorState()
+		{
+			if (expectedModCount != modCount)
+				throw new ConcurrentModificationException("Inconsistent iterator");
+		}
+	}
+}
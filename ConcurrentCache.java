@@ -0,0 +1,1148 @@
+/*
+ * @(#)ConcurrentCache.java
+ *
+ */
+
+package ds.util;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * A thread-safe, bounded <tt>Map</tt> that evicts the least-recently used
+ * entries once it holds more than its maximum number of key-value pairs.<p>
+ *
+ * The map is split into <i>segments</i> selected by the high bits of the
+ * hash value of a key.  Each segment is a hash table with its own lock
+ * and its own least-recently-used (LRU) list.  A segment table starts
+ * small and doubles as entries are added, up to the size needed for the
+ * segment's share of the maximum number of pairs.<p>
+ *
+ * <tt>get</tt> does not lock.  A read records the entry it touched in a
+ * small per-segment <i>read buffer</i>; the buffer is drained into the LRU
+ * list in a batch by whichever thread next acquires the segment lock, so
+ * readers never contend on the LRU list.  The buffer is lossy: if it fills
+ * before a drain, further reads are not recorded, which only makes the
+ * recency order approximate.<p>
+ *
+ * <tt>getOrLoad</tt> computes a missing value with a loader function.
+ * Concurrent misses on the same key are coalesced so the loader runs once
+ * and every caller receives the same value.  <tt>getOrLoadAsync</tt> runs
+ * the loader on a caller-supplied <tt>Executor</tt>, for example one that
+ * starts a virtual thread per task.<p>
+ *
+ * Iterators over the key and entry views are <i>weakly consistent</i>: they
+ * never throw <tt>ConcurrentModificationException</tt> and reflect some
+ * state of the cache at or after the creation of the iterator.  Keys and
+ * values may not be <tt>null</tt>.
+ *
+ * @see HashMap
+ */
+
+public class ConcurrentCache<K,V> implements Map<K,V>
+{
+	// default number of segments
+	static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+	// upper bound on the number of segments
+	static final int MAX_SEGMENTS = 1 << 16;
+	static final double MAX_LOAD_FACTOR = .75;
+	// initial and largest number of slots in a segment table
+	static final int INITIAL_TABLE_SIZE = 16;
+	static final int MAXIMUM_TABLE_SIZE = 1 << 30;
+	// number of slots in each segment read buffer; a power of 2
+	static final int READ_BUFFER_SIZE = 64;
+	// number of pending reads that triggers an attempt to drain
+	static final int DRAIN_THRESHOLD = 32;
+
+	// the segments and the values used to select one from a hash value
+	private final Segment<K,V>[] segments;
+	private final int segmentShift;
+	private final int segmentMask;
+	private final int maxSize;
+
+	// views
+	private Set<K> keySet = null;
+	private Set<Map.Entry<K,V>> entrySet = null;
+
+    /**
+     * Creates an empty cache holding at most <tt>maxSize</tt> key-value pairs,
+     * using 16 segments.
+     *
+     * @param maxSize maximum number of key-value pairs in the cache.
+     * @throws IllegalArgumentException if <tt>maxSize</tt> is not positive.
+     */
+	public ConcurrentCache(int maxSize)
+	{
+		this(maxSize, DEFAULT_CONCURRENCY_LEVEL);
+	}
+
+    /**
+     * Creates an empty cache holding at most <tt>maxSize</tt> key-value pairs.
+     * The number of segments is <tt>concurrencyLevel</tt> rounded up to a power
+     * of 2, but no more than needed to give each segment at least one entry.
+     *
+     * @param maxSize maximum number of key-value pairs in the cache.
+     * @param concurrencyLevel estimated number of concurrently updating threads.
+     * @throws IllegalArgumentException if either argument is not positive.
+     */
+	public ConcurrentCache(int maxSize, int concurrencyLevel)
+	{
+		if (maxSize <= 0 || concurrencyLevel <= 0)
+			throw new IllegalArgumentException("ConcurrentCache(): " +
+				"maxSize and concurrencyLevel must be positive");
+
+		if (concurrencyLevel > MAX_SEGMENTS)
+			concurrencyLevel = MAX_SEGMENTS;
+
+		// the number of segments is a power of 2 no larger than maxSize
+		int shift = 0, numSegments = 1;
+		while (numSegments < concurrencyLevel && 2 * numSegments <= maxSize)
+		{
+			numSegments <<= 1;
+			shift++;
+		}
+		segmentShift = 32 - shift;
+		segmentMask = numSegments - 1;
+		this.maxSize = maxSize;
+
+		// spread maxSize over the segments; the first maxSize % numSegments
+		// segments hold one extra entry
+		segments = (Segment<K,V>[])new Segment[numSegments];
+		for (int i = 0; i < numSegments; i++)
+			segments[i] = new Segment<K,V>(maxSize / numSegments +
+				(i < maxSize % numSegments ? 1 : 0));
+	}
+
+	// spread the bits of hashCode() so that both the high bits (segment)
+	// and the low bits (bucket) depend on the whole hash code
+	static int hash(Object key)
+	{
+		int h = key.hashCode();
+
+		h ^= (h >>> 16);
+		h *= 0x85ebca6b;
+		h ^= (h >>> 13);
+		return h;
+	}
+
+	private Segment<K,V> segmentFor(int hashValue)
+	{
+		// with a single segment, segmentShift is 32 and the shift is
+		// a no-op, but the mask is 0
+		return segments[(hashValue >>> segmentShift) & segmentMask];
+	}
+
+    /**
+     * Returns the maximum number of key-value pairs this cache holds.
+     *
+     * @return the maximum number of key-value pairs in this cache.
+     */
+	public int maxSize()
+	{ return maxSize; }
+
+    /**
+     * Returns the number of Entry pairs in this cache. The value is a
+     * snapshot that may already be stale when concurrent updates occur.
+     *
+     * @return the number of Entry pairs in this cache.
+     */
+	public int size()
+	{
+		long n = 0;
+
+		for (int i = 0; i < segments.length; i++)
+			n += segments[i].count;
+
+		return (int)n;
+	}
+
+     /**
+     * Returns <tt>true</tt> if this cache contains no elements.
+     *
+     * @return <tt>true</tt> if this cache contains no elements.
+     */
+	public boolean isEmpty()
+	{
+		for (int i = 0; i < segments.length; i++)
+			if (segments[i].count != 0)
+				return false;
+
+		return true;
+	}
+
+    /**
+     * Returns <tt>true</tt> if this cache contains an Entry pair with the
+     * specified key.  The call does not update the recency of the entry.
+     *
+     * @param key key component for an Entry pair whose presence is to be tested.
+     * @return <tt>true</tt> if this cache contains the specified Entry pair.
+     */
+	public boolean containsKey(Object key)
+	{
+		int hashValue = hash(key);
+
+		return segmentFor(hashValue).getEntry(key, hashValue) != null;
+	}
+
+   /**
+    * Returns the value component for an Entry pair specified by the key
+    * component and marks the pair as recently used. Returns <tt>null</tt>
+    * if no Entry pair exists or its value is still being loaded.
+    *
+    * @param key  key component for an Entry pair.
+    * @return value of the Entry pair or <tt>null</tt> if a pair does not exist.
+    */
+	public V get(Object key)
+	{
+		int hashValue = hash(key);
+		Segment<K,V> seg = segmentFor(hashValue);
+		Entry<K,V> entry = seg.getEntry(key, hashValue);
+
+		if (entry == null)
+			return null;
+
+		seg.recordRead(entry);
+		return entry.value;
+	}
+
+    /**
+     * Associates the specified value with the specified key in this cache
+     * and marks the pair as recently used.  If the segment holding the key
+     * is full, its least-recently used pair is evicted.
+     *
+     * @param key key with which the specified value is to be associated.
+     * @param value value to be associated with the specified key.
+     * @return previous value associated with specified key, or <tt>null</tt>
+     *	       if there was no mapping for key.
+     */
+	public V put(K key, V value)
+	{
+		if (value == null)
+			throw new NullPointerException();
+
+		int hashValue = hash(key);
+
+		return segmentFor(hashValue).put(key, hashValue, value);
+	}
+
+     /**
+     * Removes the Entry pair for this key from this cache if it is present.
+     *
+     * @param key key whose mapping is to be removed from the cache.
+     * @return previous value associated with specified key, or <tt>null</tt>
+     *	       if there was no mapping for key.
+     */
+	public V remove(Object key)
+	{
+		int hashValue = hash(key);
+
+		return segmentFor(hashValue).remove(key, hashValue);
+	}
+
+    /**
+     * Removes all of the elements from this cache. Loads in progress
+     * complete normally but their values are not kept in the cache.
+     */
+	public void clear()
+	{
+		for (int i = 0; i < segments.length; i++)
+			segments[i].clear();
+	}
+
+    /**
+     * Returns the value associated with <tt>key</tt>, computing it with
+     * <tt>loader</tt> in the calling thread if the key is absent.  If other
+     * threads request the same absent key while the computation runs, they
+     * wait for and return the same value; the loader runs only once.
+     *
+     * @param key key whose value is returned.
+     * @param loader function that computes the value of a missing key; it
+     *        must not return <tt>null</tt>.
+     * @return the current or newly loaded value associated with the key.
+     * @throws NullPointerException if the loader returns <tt>null</tt>.
+     * @throws CompletionException wrapping any exception thrown by the loader;
+     *         the key remains absent.
+     */
+	public V getOrLoad(K key, Function<? super K, ? extends V> loader)
+	{
+		int hashValue = hash(key);
+		Segment<K,V> seg = segmentFor(hashValue);
+		Entry<K,V> entry = seg.getEntry(key, hashValue);
+
+		if (entry != null)
+		{
+			seg.recordRead(entry);
+			return entry.value;
+		}
+
+		CompletableFuture<V> pending = new CompletableFuture<V>();
+		CompletableFuture<V> current = seg.startLoad(key, hashValue, pending);
+
+		// current is the loaded value, another thread's load, or our own
+		// placeholder if this thread must run the loader
+		if (current != pending)
+			return current.join();
+
+		seg.runLoad(key, hashValue, pending, loader);
+		return pending.join();
+	}
+
+    /**
+     * Returns a future for the value associated with <tt>key</tt>.  If the
+     * key is absent, <tt>loader</tt> is run as a task on <tt>executor</tt>
+     * and concurrent requests for the same key share the same future.  An
+     * executor that starts a virtual thread per task lets many slow loads
+     * wait on I/O without occupying platform threads.
+     *
+     * @param key key whose value is returned.
+     * @param loader function that computes the value of a missing key.
+     * @param executor executor that runs the loader.
+     * @return a future that completes with the value associated with the key.
+     */
+	public CompletableFuture<V> getOrLoadAsync(final K key,
+		final Function<? super K, ? extends V> loader, Executor executor)
+	{
+		final int hashValue = hash(key);
+		final Segment<K,V> seg = segmentFor(hashValue);
+		Entry<K,V> entry = seg.getEntry(key, hashValue);
+
+		if (entry != null)
+		{
+			seg.recordRead(entry);
+			return CompletableFuture.completedFuture(entry.value);
+		}
+
+		final CompletableFuture<V> pending = new CompletableFuture<V>();
+		CompletableFuture<V> current = seg.startLoad(key, hashValue, pending);
+
+		if (current == pending)
+		{
+			try
+			{
+				executor.execute(new Runnable()
+				{
+					public void run()
+					{
+						seg.runLoad(key, hashValue, pending, loader);
+					}
+				});
+			}
+			catch (RuntimeException e)
+			{
+				// the executor rejected the task; release the waiters
+				seg.failLoad(key, hashValue, pending, e);
+			}
+		}
+
+		return current;
+	}
+
+   /**
+    * Returns a string representation of this cache. The representation is
+    * a comma separated list of Entry objects enclosed in curly braces; each
+    * Entry object has the form key=value.
+    */
+	public String toString()
+	{
+		StringBuffer buf = new StringBuffer();
+		Iterator<Map.Entry<K,V>> iter = entrySet().iterator();
+
+		buf.append("{");
+		while (iter.hasNext())
+		{
+			Map.Entry<K,V> e = iter.next();
+			buf.append(e.getKey() + "=" + e.getValue());
+			if (iter.hasNext())
+				buf.append(", ");
+		}
+		buf.append("}");
+
+		return buf.toString();
+	}
+
+    /**
+     * Returns a set view of the keys contained in this cache.  The set
+     * supports element removal but not <tt>add</tt>.  Iterating the view
+     * does not change the recency of the entries.
+     *
+     * @return a set view of the keys contained in this cache.
+     */
+	public Set<K> keySet()
+	{
+		if (keySet == null)
+		{
+			keySet = new Set<K>()
+			{
+				public Iterator<K> iterator()
+				{
+					return new KeyIterator();
+				}
+
+				public int size()
+				{
+					return ConcurrentCache.this.size();
+				}
+
+				public boolean isEmpty()
+				{
+					return ConcurrentCache.this.isEmpty();
+				}
+
+				public boolean contains(Object item)
+				{
+					return containsKey(item);
+				}
+
+				public boolean remove(Object item)
+				{
+					return ConcurrentCache.this.remove(item) != null;
+				}
+
+				public void clear()
+				{
+					ConcurrentCache.this.clear();
+				}
+
+				// add is not allowed in a key set
+				public boolean add(K item)
+				{
+					throw new UnsupportedOperationException();
+				}
+
+				public Object[] toArray()
+				{
+					ArrayList<Object> list = new ArrayList<Object>();
+					Iterator<K> iter = iterator();
+
+					while (iter.hasNext())
+						list.add(iter.next());
+
+					return list.toArray();
+				}
+
+				public String toString()
+				{
+					StringBuffer buf = new StringBuffer();
+					Iterator<K> iter = iterator();
+
+					buf.append("[");
+					while (iter.hasNext())
+					{
+						buf.append(iter.next());
+						if (iter.hasNext())
+							buf.append(", ");
+					}
+					buf.append("]");
+
+					return buf.toString();
+				}
+			};
+		}
+
+		return keySet;
+	}
+
+    /**
+     * Returns a set view of the mappings contained in this cache.  The set
+     * supports element removal but not <tt>add</tt>.  Calling
+     * <tt>setValue</tt> on an entry writes through to the cache.
+     *
+     * @return a set view of the mappings contained in this cache.
+     */
+	public Set<Map.Entry<K,V>> entrySet()
+	{
+		if (entrySet == null)
+		{
+			entrySet = new Set<Map.Entry<K,V>>()
+			{
+				public Iterator<Map.Entry<K,V>> iterator()
+				{
+					return new EntryIterator();
+				}
+
+				public int size()
+				{
+					return ConcurrentCache.this.size();
+				}
+
+				public boolean isEmpty()
+				{
+					return ConcurrentCache.this.isEmpty();
+				}
+
+				public boolean contains(Object item)
+				{
+					if (!(item instanceof Map.Entry))
+						return false;
+
+					Map.Entry<K,V> entry = (Map.Entry<K,V>)item;
+					int hashValue = hash(entry.getKey());
+					Entry<K,V> p =
+						segmentFor(hashValue).getEntry(entry.getKey(), hashValue);
+
+					return p != null && p.value.equals(entry.getValue());
+				}
+
+				public boolean remove(Object item)
+				{
+					if (!(item instanceof Map.Entry))
+						return false;
+
+					Map.Entry<K,V> entry = (Map.Entry<K,V>)item;
+
+					return ConcurrentCache.this.remove(entry.getKey()) != null;
+				}
+
+				public void clear()
+				{
+					ConcurrentCache.this.clear();
+				}
+
+				// add is not allowed in an entry set
+				public boolean add(Map.Entry<K,V> item)
+				{
+					throw new UnsupportedOperationException();
+				}
+
+				public Object[] toArray()
+				{
+					ArrayList<Object> list = new ArrayList<Object>();
+					Iterator<Map.Entry<K,V>> iter = iterator();
+
+					while (iter.hasNext())
+						list.add(iter.next());
+
+					return list.toArray();
+				}
+
+				public String toString()
+				{
+					return ConcurrentCache.this.toString();
+				}
+			};
+		}
+
+		return entrySet;
+	}
+
+	// an entry in a segment hash table.  key, hashValue and value are
+	// read without locking; next, the LRU links and the loading future are
+	// written only while holding the segment lock
+	static final class Entry<K,V>
+	{
+		final K key;
+		final int hashValue;
+		volatile V value;
+		volatile Entry<K,V> next;
+
+		// LRU list links; guarded by the segment lock
+		Entry<K,V> before, after;
+		// true once the entry is unlinked from its table
+		boolean removed;
+		// non-null while the value is being loaded
+		volatile CompletableFuture<V> loading;
+
+		Entry(K key, int hashValue, V value, Entry<K,V> next)
+		{
+			this.key = key;
+			this.hashValue = hashValue;
+			this.value = value;
+			this.next = next;
+		}
+	}
+
+	// one hash table with its lock, LRU list and read buffer.  the
+	// segment is the lock
+	static final class Segment<K,V> extends ReentrantLock
+	{
+		// table of collision chains, doubled by rehash() as entries are
+		// added. readers that do not lock may still be walking an older
+		// table, so a table's chains are never relinked
+		volatile AtomicReferenceArray<Entry<K,V>> table;
+		// largest table, enough for capacity entries at MAX_LOAD_FACTOR
+		final int maxTableSize;
+		// number of entries in the table, including the placeholders of
+		// loads in progress; written under the lock
+		int tableCount;
+		// maximum number of loaded entries in this segment
+		final int capacity;
+		// number of entries with a value; written under the lock
+		volatile int count;
+
+		// header of the circular LRU list; header.after is the least
+		// recently used entry and header.before the most recently used
+		final Entry<K,V> header = new Entry<K,V>(null, 0, null, null);
+
+		// read buffer of recently accessed entries. readCount is the
+		// number of reads recorded, drainCount the number drained
+		final AtomicReferenceArray<Entry<K,V>> readBuffer =
+			new AtomicReferenceArray<Entry<K,V>>(READ_BUFFER_SIZE);
+		final AtomicLong readCount = new AtomicLong();
+		volatile long drainCount;
+
+		Segment(int capacity)
+		{
+			int tableSize = 1;
+
+			while (tableSize * MAX_LOAD_FACTOR < capacity &&
+					 tableSize < MAXIMUM_TABLE_SIZE)
+				tableSize <<= 1;
+
+			this.maxTableSize = tableSize;
+			this.table = new AtomicReferenceArray<Entry<K,V>>(
+				Math.min(tableSize, INITIAL_TABLE_SIZE));
+			this.capacity = capacity;
+			header.before = header.after = header;
+		}
+
+		// return the entry with a value for key, or null. does not lock
+		Entry<K,V> getEntry(Object key, int hashValue)
+		{
+			AtomicReferenceArray<Entry<K,V>> tab = table;
+			Entry<K,V> entry = tab.get(hashValue & (tab.length() - 1));
+
+			while (entry != null)
+			{
+				if (entry.hashValue == hashValue && entry.key.equals(key))
+					return entry.value != null ? entry : null;
+				entry = entry.next;
+			}
+
+			return null;
+		}
+
+		// return the entry for key, loaded or not; caller holds the lock
+		Entry<K,V> findLocked(Object key, int hashValue)
+		{
+			AtomicReferenceArray<Entry<K,V>> tab = table;
+			Entry<K,V> entry = tab.get(hashValue & (tab.length() - 1));
+
+			while (entry != null)
+			{
+				if (entry.hashValue == hashValue && entry.key.equals(key))
+					return entry;
+				entry = entry.next;
+			}
+
+			return null;
+		}
+
+		// record a read of entry in the read buffer and drain the buffer
+		// if enough reads are pending and the lock is free
+		void recordRead(Entry<K,V> entry)
+		{
+			long n = readCount.get();
+
+			// the buffer is full; drop the read
+			if (n - drainCount >= READ_BUFFER_SIZE)
+			{
+				tryDrain();
+				return;
+			}
+
+			n = readCount.getAndIncrement();
+			readBuffer.lazySet((int)n & (READ_BUFFER_SIZE - 1), entry);
+
+			if (n - drainCount >= DRAIN_THRESHOLD)
+				tryDrain();
+		}
+
+		void tryDrain()
+		{
+			if (tryLock())
+			{
+				try
+				{
+					drainReads();
+				}
+				finally
+				{
+					unlock();
+				}
+			}
+		}
+
+		// move the entries in the read buffer to the end of the LRU list;
+		// caller holds the lock
+		void drainReads()
+		{
+			long end = readCount.get();
+
+			// recordRead may have dropped reads while the buffer was
+			// full; never drain more than one buffer
+			if (end - drainCount > READ_BUFFER_SIZE)
+				drainCount = end - READ_BUFFER_SIZE;
+
+			while (drainCount < end)
+			{
+				int index = (int)drainCount & (READ_BUFFER_SIZE - 1);
+				Entry<K,V> entry = readBuffer.getAndSet(index, null);
+
+				// a slot is null if its writer has not published yet
+				if (entry != null && !entry.removed && entry.value != null)
+					moveToEnd(entry);
+				drainCount++;
+			}
+		}
+
+		// LRU list operations; caller holds the lock
+
+		void moveToEnd(Entry<K,V> entry)
+		{
+			if (entry.after != null)
+			{
+				entry.before.after = entry.after;
+				entry.after.before = entry.before;
+			}
+
+			entry.before = header.before;
+			entry.after = header;
+			header.before.after = entry;
+			header.before = entry;
+		}
+
+		void unlinkLRU(Entry<K,V> entry)
+		{
+			if (entry.after != null)
+			{
+				entry.before.after = entry.after;
+				entry.after.before = entry.before;
+				entry.before = entry.after = null;
+			}
+		}
+
+		// unlink entry from its collision chain. readers that already
+		// hold entry still follow entry.next to the rest of the chain
+		void unlinkTable(Entry<K,V> entry)
+		{
+			AtomicReferenceArray<Entry<K,V>> tab = table;
+			int index = entry.hashValue & (tab.length() - 1);
+			Entry<K,V> curr = tab.get(index), prev = null;
+
+			while (curr != entry)
+			{
+				prev = curr;
+				curr = curr.next;
+			}
+
+			if (prev == null)
+				tab.set(index, entry.next);
+			else
+				prev.next = entry.next;
+
+			tableCount--;
+			entry.removed = true;
+			unlinkLRU(entry);
+		}
+
+		// link a new entry at the head of its chain, doubling the table
+		// first if it is full; caller holds the lock
+		Entry<K,V> addEntry(K key, int hashValue, V value)
+		{
+			if (tableCount >= table.length() * MAX_LOAD_FACTOR &&
+				 table.length() < maxTableSize)
+				rehash();
+
+			AtomicReferenceArray<Entry<K,V>> tab = table;
+			int index = hashValue & (tab.length() - 1);
+			Entry<K,V> entry = new Entry<K,V>(key, hashValue, value,
+				tab.get(index));
+
+			tab.set(index, entry);
+			tableCount++;
+			return entry;
+		}
+
+		// double the table; caller holds the lock. readers may still be
+		// walking the old table, so its chains are left as they are and
+		// every entry is copied into the new table. the copy takes the
+		// original's place on the LRU list and the original is marked
+		// removed, so reads of it still in the read buffer are skipped
+		void rehash()
+		{
+			AtomicReferenceArray<Entry<K,V>> oldTable = table;
+			int newSize = oldTable.length() << 1;
+			AtomicReferenceArray<Entry<K,V>> newTable =
+				new AtomicReferenceArray<Entry<K,V>>(newSize);
+
+			for (int i = 0; i < oldTable.length(); i++)
+				for (Entry<K,V> e = oldTable.get(i); e != null; e = e.next)
+				{
+					int index = e.hashValue & (newSize - 1);
+					Entry<K,V> copy = new Entry<K,V>(e.key, e.hashValue,
+						e.value, newTable.get(index));
+
+					copy.loading = e.loading;
+					if (e.after != null)
+					{
+						copy.before = e.before;
+						copy.after = e.after;
+						e.before.after = copy;
+						e.after.before = copy;
+						e.before = e.after = null;
+					}
+					e.removed = true;
+					newTable.set(index, copy);
+				}
+
+			table = newTable;
+		}
+
+		// evict least-recently used entries until count <= capacity
+		void evict()
+		{
+			while (count > capacity)
+			{
+				Entry<K,V> eldest = header.after;
+
+				unlinkTable(eldest);
+				count--;
+			}
+		}
+
+		V put(K key, int hashValue, V value)
+		{
+			lock();
+			try
+			{
+				drainReads();
+
+				Entry<K,V> entry = findLocked(key, hashValue);
+				V oldValue = null;
+
+				if (entry == null)
+				{
+					entry = addEntry(key, hashValue, value);
+					count++;
+				}
+				else
+				{
+					oldValue = entry.value;
+					entry.value = value;
+					// a put overrides a load in progress
+					if (oldValue == null)
+						count++;
+					completeLoad(entry, value);
+				}
+
+				moveToEnd(entry);
+				evict();
+
+				return oldValue;
+			}
+			finally
+			{
+				unlock();
+			}
+		}
+
+		V remove(Object key, int hashValue)
+		{
+			lock();
+			try
+			{
+				drainReads();
+
+				Entry<K,V> entry = findLocked(key, hashValue);
+
+				// an entry that is still loading is not in the map
+				if (entry == null || entry.value == null)
+					return null;
+
+				V oldValue = entry.value;
+
+				unlinkTable(entry);
+				count--;
+
+				return oldValue;
+			}
+			finally
+			{
+				unlock();
+			}
+		}
+
+		void clear()
+		{
+			lock();
+			try
+			{
+				AtomicReferenceArray<Entry<K,V>> tab = table;
+
+				for (int i = 0; i < tab.length(); i++)
+				{
+					Entry<K,V> entry = tab.get(i);
+
+					while (entry != null)
+					{
+						entry.removed = true;
+						entry.before = entry.after = null;
+						entry = entry.next;
+					}
+					tab.set(i, null);
+				}
+
+				header.before = header.after = header;
+				count = 0;
+				tableCount = 0;
+				drainCount = readCount.get();
+				for (int i = 0; i < READ_BUFFER_SIZE; i++)
+					readBuffer.set(i, null);
+			}
+			finally
+			{
+				unlock();
+			}
+		}
+
+		// if key has a value, return a completed future. if another thread
+		// is loading key, return its future. otherwise install pending as
+		// the load of key and return it
+		CompletableFuture<V> startLoad(K key, int hashValue,
+			CompletableFuture<V> pending)
+		{
+			lock();
+			try
+			{
+				Entry<K,V> entry = findLocked(key, hashValue);
+
+				if (entry != null)
+				{
+					V value = entry.value;
+
+					if (value != null)
+					{
+						moveToEnd(entry);
+						return CompletableFuture.completedFuture(value);
+					}
+					return entry.loading;
+				}
+
+				// a placeholder entry has no value and is not on the LRU
+				// list, so it is neither visible to get() nor evictable
+				entry = addEntry(key, hashValue, null);
+				entry.loading = pending;
+
+				return pending;
+			}
+			finally
+			{
+				unlock();
+			}
+		}
+
+		// run loader for the placeholder installed by startLoad
+		void runLoad(K key, int hashValue, CompletableFuture<V> pending,
+			Function<? super K, ? extends V> loader)
+		{
+			V value;
+
+			try
+			{
+				value = loader.apply(key);
+				if (value == null)
+					throw new NullPointerException("loader returned null");
+			}
+			catch (Throwable t)
+			{
+				failLoad(key, hashValue, pending, t);
+				return;
+			}
+
+			lock();
+			try
+			{
+				Entry<K,V> entry = findLocked(key, hashValue);
+
+				// the placeholder is still ours unless a put or clear
+				// replaced it
+				if (entry != null && entry.loading == pending)
+				{
+					entry.value = value;
+					entry.loading = null;
+					count++;
+					moveToEnd(entry);
+					evict();
+				}
+			}
+			finally
+			{
+				unlock();
+			}
+
+			pending.complete(value);
+		}
+
+		// remove the placeholder for pending and fail its waiters
+		void failLoad(K key, int hashValue, CompletableFuture<V> pending,
+			Throwable t)
+		{
+			lock();
+			try
+			{
+				Entry<K,V> entry = findLocked(key, hashValue);
+
+				if (entry != null && entry.loading == pending)
+				{
+					unlinkTable(entry);
+					entry.loading = null;
+				}
+			}
+			finally
+			{
+				unlock();
+			}
+
+			pending.completeExceptionally(t);
+		}
+
+		// a put replaced a load in progress; its waiters see the put value
+		void completeLoad(Entry<K,V> entry, V value)
+		{
+			CompletableFuture<V> f = entry.loading;
+
+			if (f != null)
+			{
+				entry.loading = null;
+				f.complete(value);
+			}
+		}
+	}
+
+	// an entry handed out by an iterator; setValue writes through
+	private final class WriteThroughEntry implements Map.Entry<K,V>
+	{
+		final K key;
+		V value;
+
+		WriteThroughEntry(K key, V value)
+		{
+			this.key = key;
+			this.value = value;
+		}
+
+		public K getKey()
+		{
+			return key;
+		}
+
+		public V getValue()
+		{
+			return value;
+		}
+
+		public V setValue(V value)
+		{
+			V oldValue = this.value;
+
+			this.value = value;
+			put(key, value);
+			return oldValue;
+		}
+
+		public String toString()
+		{
+			return key + "=" + value;
+		}
+	}
+
+	// weakly consistent iterator over the segment tables
+	private class IteratorImpl
+	{
+		int segmentIndex = 0;
+		int bucket = -1;
+		// the table of segments[segmentIndex] when the iterator reached
+		// it. a rehash leaves this table intact, so no entry is returned
+		// twice
+		AtomicReferenceArray<Entry<K,V>> table = null;
+		// next entry to return and its value when it was located
+		Entry<K,V> next = null;
+		V nextValue = null;
+		Entry<K,V> lastReturned = null;
+
+		IteratorImpl()
+		{
+			advance();
+		}
+
+		// move next to the following entry that has a value
+		private void advance()
+		{
+			if (next != null)
+				next = next.next;
+
+			while (true)
+			{
+				while (next != null && (nextValue = next.value) == null)
+					next = next.next;
+
+				if (next != null || segmentIndex >= segments.length)
+					return;
+
+				if (table == null)
+					table = segments[segmentIndex].table;
+
+				if (++bucket < table.length())
+					next = table.get(bucket);
+				else
+				{
+					segmentIndex++;
+					bucket = -1;
+					table = null;
+				}
+			}
+		}
+
+		public boolean hasNext()
+		{
+			return next != null;
+		}
+
+		Map.Entry<K,V> nextEntry()
+		{
+			if (next == null)
+				throw new NoSuchElementException();
+
+			Map.Entry<K,V> entry = new WriteThroughEntry(next.key, nextValue);
+
+			lastReturned = next;
+			advance();
+
+			return entry;
+		}
+
+		public void remove()
+		{
+			if (lastReturned == null)
+				throw new IllegalStateException(
+					"Iterator call to next() " +
+					"required before calling remove()");
+
+			ConcurrentCache.this.remove(lastReturned.key);
+			lastReturned = null;
+		}
+	}
+
+	private class KeyIterator extends IteratorImpl implements Iterator<K>
+	{
+		public K next()
+		{
+			return nextEntry().getKey();
+		}
+	}
+
+	private class EntryIterator extends IteratorImpl
+		implements Iterator<Map.Entry<K,V>>
+	{
+		public Map.Entry<K,V> next()
+		{
+			return nextEntry();
+		}
+	}
+}
@@ -0,0 +1,220 @@
+/*
+ * @(#)CountMinSketch.java
+ */
+
+package ds.util;
+
+/**
+ * A Count-Min sketch estimates how often each element occurs in a stream
+ * using a fixed amount of memory, however many distinct elements there
+ * are.  The sketch is a table of counters with <tt>depth</tt> rows of
+ * <tt>width</tt> columns; each element hashes to one counter per row, and
+ * its estimated count is the smallest of those counters.  An estimate is
+ * never below the true count, and exceeds it by more than
+ * epsilon * <tt>totalCount()</tt> with probability at most delta.
+ * <p>
+ * <tt>add</tt> uses conservative update: it raises only the counters that
+ * are below the element's new estimate, which reduces the overestimate
+ * for light elements considerably.
+ * <p>
+ * The sketch is not synchronized.  To count a stream in several
+ * threads, give each thread its own sketch with the same dimensions and
+ * combine them with <tt>merge</tt>.
+ */
+
+public class CountMinSketch<T>
+{
+	// counters for row r are table[r*width] through table[r*width + width-1]
+	private long[] table;
+	private int depth;
+	private int width;
+
+	// largest number of counters. some virtual machines cannot allocate
+	// an array of more than Integer.MAX_VALUE - 8 elements
+	private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+	// sum of all counts added
+	private long totalCount;
+
+	/**
+	 * Creates a sketch whose estimates exceed the true count by at most
+	 * <tt>epsilon * totalCount()</tt> with probability at least
+	 * 1 - <tt>delta</tt>.
+	 *
+	 * @param epsilon  the error bound as a fraction of the total count.
+	 * @param delta  the probability that the bound is exceeded.
+	 * @throws IllegalArgumentException if <tt>epsilon</tt> or
+	 *         <tt>delta</tt> is not between 0 and 1 (exclusive), or if
+	 *         the sketch would have too many counters.
+	 */
+	public CountMinSketch(double epsilon, double delta)
+	{
+		this(depthFor(delta), widthFor(epsilon));
+	}
+
+	/**
+	 * Creates a sketch with the given number of rows and columns.
+	 *
+	 * @param depth  number of rows (hash functions).
+	 * @param width  number of counters in each row.
+	 * @throws IllegalArgumentException if either argument is not positive
+	 *         or if <tt>depth * width</tt> is too large for an array.
+	 */
+	public CountMinSketch(int depth, int width)
+	{
+		if (depth <= 0 || width <= 0)
+			throw new IllegalArgumentException(
+				"CountMinSketch(): depth and width must be positive");
+		if ((long)depth * width > MAX_ARRAY_SIZE)
+			throw new IllegalArgumentException(
+				"CountMinSketch(): depth * width too large");
+
+		this.depth = depth;
+		this.width = width;
+		table = new long[depth * width];
+		totalCount = 0;
+	}
+
+	// width = e / epsilon
+	private static int widthFor(double epsilon)
+	{
+		if (!(epsilon > 0.0 && epsilon < 1.0))
+			throw new IllegalArgumentException(
+				"CountMinSketch(): epsilon must be in (0, 1)");
+		return (int)Math.ceil(Math.E / epsilon);
+	}
+
+	// depth = ln(1 / delta)
+	private static int depthFor(double delta)
+	{
+		if (!(delta > 0.0 && delta < 1.0))
+			throw new IllegalArgumentException(
+				"CountMinSketch(): delta must be in (0, 1)");
+		return Math.max(1, (int)Math.ceil(Math.log(1 / delta)));
+	}
+
+	/**
+	 * Records one occurrence of an element.
+	 *
+	 * @param item  the element.
+	 */
+	public void add(T item)
+	{
+		add(item, 1);
+	}
+
+	/**
+	 * Records <tt>count</tt> occurrences of an element.
+	 *
+	 * @param item  the element.
+	 * @param count  the number of occurrences.
+	 * @throws IllegalArgumentException if <tt>count</tt> is negative.
+	 */
+	public void add(T item, long count)
+	{
+		if (count < 0)
+			throw new IllegalArgumentException(
+				"CountMinSketch add(): negative count");
+
+		long h = BloomFilter.hash(item);
+		long estimate = Long.MAX_VALUE;
+
+		for (int r = 0; r < depth; r++)
+			estimate = Math.min(estimate,
+				table[r * width + BloomFilter.index(h, r, width)]);
+
+		// raise each counter to at least the new estimate, but no
+		// further; counters already above it were inflated by other
+		// elements
+		long target = estimate + count;
+
+		for (int r = 0; r < depth; r++)
+		{
+			int c = r * width + BloomFilter.index(h, r, width);
+
+			if (table[c] < target)
+				table[c] = target;
+		}
+
+		totalCount += count;
+	}
+
+	/**
+	 * Returns the estimated number of occurrences of an element.  The
+	 * estimate is never less than the true count.
+	 *
+	 * @param item  the element.
+	 * @return the estimated count.
+	 */
+	public long estimateCount(Object item)
+	{
+		long h = BloomFilter.hash(item);
+		long estimate = Long.MAX_VALUE;
+
+		for (int r = 0; r < depth; r++)
+			estimate = Math.min(estimate,
+				table[r * width + BloomFilter.index(h, r, width)]);
+
+		return estimate;
+	}
+
+	/**
+	 * Returns the sum of the counts of all elements added.
+	 *
+	 * @return the total count.
+	 */
+	public long totalCount()
+	{
+		return totalCount;
+	}
+
+	/**
+	 * Returns the number of rows in the sketch.
+	 *
+	 * @return the depth of the sketch.
+	 */
+	public int depth()
+	{
+		return depth;
+	}
+
+	/**
+	 * Returns the number of counters in each row.
+	 *
+	 * @return the width of the sketch.
+	 */
+	public int width()
+	{
+		return width;
+	}
+
+	/**
+	 * Adds the counts of <tt>x</tt> to this sketch, which then
+	 * estimates the counts of the combined streams.  Estimates remain
+	 * upper bounds.
+	 *
+	 * @param x  a sketch with the same depth and width.
+	 * @throws IllegalArgumentException if the sketches have different
+	 *         dimensions.
+	 */
+	public void merge(CountMinSketch<T> x)
+	{
+		if (depth != x.depth || width != x.width)
+			throw new IllegalArgumentException(
+				"CountMinSketch merge(): sketches are not compatible");
+
+		for (int i = 0; i < table.length; i++)
+			table[i] += x.table[i];
+		totalCount += x.totalCount;
+	}
+
+	/**
+	 * Sets all of the counts to 0.
+	 */
+	public void clear()
+	{
+		for (int i = 0; i < table.length; i++)
+			table[i] = 0;
+		totalCount = 0;
+	}
+}
@@ -0,0 +1,298 @@
+/*
+ * @(#)CountingBloomFilter.java
+ */
+
+package ds.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A Bloom filter that keeps a small counter in place of each bit, so
+ * elements can be removed as well as added.  Each counter takes 4 bits and
+ * sticks at its maximum value of 15; a counter that reaches 15 is never
+ * decremented, which keeps <tt>mightContain</tt> free of false negatives
+ * at the cost of a few bits that can no longer be cleared.
+ * <p>
+ * The filter hashes elements exactly as <tt>BloomFilter</tt> does, so
+ * <tt>toBloomFilter()</tt> gives the plain filter holding the same
+ * elements.
+ *
+ * @see BloomFilter
+ */
+
+public class CountingBloomFilter<T>
+{
+	// counters per long and the largest counter value
+	private static final int COUNTERS_PER_WORD = 16;
+	private static final int MAX_COUNT = 15;
+
+	// counter i is bits 4*(i % 16) through 4*(i % 16) + 3 of
+	// counters[i / 16]
+	private long[] counters;
+
+	// number of counters (m) and hash functions (k)
+	private int numCounters;
+	private int numHashes;
+
+	/**
+	 * Creates a filter sized for <tt>expectedItems</tt> elements with a
+	 * false positive probability of <tt>fpp</tt> once that many elements
+	 * are present.
+	 *
+	 * @param expectedItems  the number of elements expected.
+	 * @param fpp  the desired false positive probability.
+	 * @throws IllegalArgumentException if <tt>expectedItems</tt> is not
+	 *         positive or <tt>fpp</tt> is not between 0 and 1 (exclusive).
+	 */
+	public CountingBloomFilter(int expectedItems, double fpp)
+	{
+		this(BloomFilter.optimalNumBits(expectedItems, fpp),
+			BloomFilter.optimalNumHashes(expectedItems,
+				BloomFilter.optimalNumBits(expectedItems, fpp)));
+	}
+
+	/**
+	 * Creates a filter of <tt>numCounters</tt> counters that updates
+	 * <tt>numHashes</tt> counters per element.
+	 *
+	 * @param numCounters  number of counters in the filter.
+	 * @param numHashes  number of counters updated for each element.
+	 * @throws IllegalArgumentException if either argument is not positive.
+	 */
+	public CountingBloomFilter(int numCounters, int numHashes)
+	{
+		if (numCounters <= 0 || numHashes <= 0)
+			throw new IllegalArgumentException("CountingBloomFilter(): " +
+				"number of counters and hashes must be positive");
+
+		this.numCounters = numCounters;
+		this.numHashes = numHashes;
+		counters = new long[(numCounters + COUNTERS_PER_WORD - 1) /
+			COUNTERS_PER_WORD];
+	}
+
+	private int count(int i)
+	{
+		return (int)(counters[i >>> 4] >>> ((i & 15) << 2)) & MAX_COUNT;
+	}
+
+	// add delta (1 or -1) to counter i, which is not saturated
+	private void adjust(int i, long delta)
+	{
+		counters[i >>> 4] += delta << ((i & 15) << 2);
+	}
+
+	/**
+	 * Adds an element to the filter.
+	 *
+	 * @param item  the element to add.
+	 */
+	public void add(T item)
+	{
+		long h = BloomFilter.hash(item);
+
+		for (int i = 0; i < numHashes; i++)
+		{
+			int c = BloomFilter.index(h, i, numCounters);
+
+			if (count(c) < MAX_COUNT)
+				adjust(c, 1);
+		}
+	}
+
+	/**
+	 * Removes one occurrence of an element from the filter.  The element
+	 * must have been added; removing an element that was not added can
+	 * make <tt>mightContain</tt> return <tt>false</tt> for elements that
+	 * were.
+	 *
+	 * @param item  the element to remove.
+	 * @return <tt>false</tt> if the element was certainly not in the
+	 *         filter, in which case the filter is unchanged.
+	 */
+	public boolean remove(Object item)
+	{
+		if (!mightContain(item))
+			return false;
+
+		long h = BloomFilter.hash(item);
+
+		for (int i = 0; i < numHashes; i++)
+		{
+			int c = BloomFilter.index(h, i, numCounters);
+			int n = count(c);
+
+			// a saturated counter no longer records an exact count
+			if (n > 0 && n < MAX_COUNT)
+				adjust(c, -1);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns <tt>false</tt> if the element is certainly not in the
+	 * filter and <tt>true</tt> if it might be.
+	 *
+	 * @param item  the element to test.
+	 * @return <tt>true</tt> if the element might be in the filter.
+	 */
+	public boolean mightContain(Object item)
+	{
+		long h = BloomFilter.hash(item);
+
+		for (int i = 0; i < numHashes; i++)
+			if (count(BloomFilter.index(h, i, numCounters)) == 0)
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * Removes all of the elements from the filter.
+	 */
+	public void clear()
+	{
+		for (int i = 0; i < counters.length; i++)
+			counters[i] = 0;
+	}
+
+	/**
+	 * Returns the number of counters in the filter.
+	 *
+	 * @return the number of counters in the filter.
+	 */
+	public int numCounters()
+	{
+		return numCounters;
+	}
+
+	/**
+	 * Returns the number of counters updated for each element.
+	 *
+	 * @return the number of hash functions.
+	 */
+	public int numHashes()
+	{
+		return numHashes;
+	}
+
+	/**
+	 * Returns a plain Bloom filter with a bit set for each nonzero
+	 * counter.  The result holds the same elements and can be
+	 * serialized with <tt>BloomFilter.write</tt>.
+	 *
+	 * @return a <tt>BloomFilter</tt> with the same elements.
+	 */
+	public BloomFilter<T> toBloomFilter()
+	{
+		BitArray bits = new BitArray(numCounters);
+
+		for (int i = 0; i < numCounters; i++)
+			if (count(i) != 0)
+				bits.set(i);
+
+		return BloomFilter.fromBits(bits, numHashes);
+	}
+
+	/**
+	 * Returns a filter whose counters are the sums of the counters of this
+	 * filter and <tt>x</tt>, capped at 15.  It holds the elements of both.
+	 *
+	 * @param x  a filter with the same number of counters and hashes.
+	 * @return the union of the filters.
+	 * @throws IllegalArgumentException if the filters are not compatible.
+	 */
+	public CountingBloomFilter<T> union(CountingBloomFilter<T> x)
+	{
+		checkCompatible(x, "union");
+
+		CountingBloomFilter<T> result =
+			new CountingBloomFilter<T>(numCounters, numHashes);
+
+		for (int i = 0; i < numCounters; i++)
+		{
+			int n = Math.min(count(i) + x.count(i), MAX_COUNT);
+
+			result.counters[i >>> 4] |= (long)n << ((i & 15) << 2);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns a filter whose counters are the minimum of the counters of
+	 * this filter and <tt>x</tt>.  It reports <tt>true</tt> only for
+	 * elements that both filters might contain.
+	 *
+	 * @param x  a filter with the same number of counters and hashes.
+	 * @return the intersection of the filters.
+	 * @throws IllegalArgumentException if the filters are not compatible.
+	 */
+	public CountingBloomFilter<T> intersection(CountingBloomFilter<T> x)
+	{
+		checkCompatible(x, "intersection");
+
+		CountingBloomFilter<T> result =
+			new CountingBloomFilter<T>(numCounters, numHashes);
+
+		for (int i = 0; i < numCounters; i++)
+		{
+			int n = Math.min(count(i), x.count(i));
+
+			result.counters[i >>> 4] |= (long)n << ((i & 15) << 2);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Writes the number of hashes, the number of counters and then the
+	 * packed counters as longs.
+	 *
+	 * @param ostr  the stream that receives the filter.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void write(DataOutputStream ostr) throws IOException
+	{
+		ostr.writeInt(numHashes);
+		ostr.writeInt(numCounters);
+		for (int i = 0; i < counters.length; i++)
+			ostr.writeLong(counters[i]);
+	}
+
+	/**
+	 * Reads a filter written by <tt>write</tt>.
+	 *
+	 * @param istr  the stream that holds the filter.
+	 * @return the filter.
+	 * @throws IllegalArgumentException if the stream does not hold a
+	 *         valid filter.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static <T> CountingBloomFilter<T> read(DataInputStream istr)
+		throws IOException
+	{
+		int k = istr.readInt(), m = istr.readInt();
+
+		if (k <= 0 || m <= 0)
+			throw new IllegalArgumentException(
+				"CountingBloomFilter read(): invalid filter header");
+
+		CountingBloomFilter<T> f = new CountingBloomFilter<T>(m, k);
+
+		for (int i = 0; i < f.counters.length; i++)
+			f.counters[i] = istr.readLong();
+
+		return f;
+	}
+
+	private void checkCompatible(CountingBloomFilter<T> x, String method)
+	{
+		if (numCounters != x.numCounters || numHashes != x.numHashes)
+			throw new IllegalArgumentException("CountingBloomFilter " +
+				method + "(): filters are not compatible");
+	}
+}
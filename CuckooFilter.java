@@ -0,0 +1,308 @@
+/*
+ * @(#)CuckooFilter.java
+ */
+
+package ds.util;
+
+import java.util.SplittableRandom;
+
+/**
+ * A cuckoo filter is a probabilistic set that, unlike a Bloom filter,
+ * supports removal.  It stores a 16-bit fingerprint of each element in
+ * one of two buckets of four slots.  The second bucket is computed from
+ * the first and the fingerprint alone, so a fingerprint can be moved
+ * ("kicked") to its other bucket to make room without knowing the element.
+ * The false positive probability is about 8 / 2^16, or 0.012%.
+ * <p>
+ * <tt>add</tt> fails, returning <tt>false</tt>, once the filter is about
+ * 95% full.  Only elements that were added may be removed; removing
+ * anything else may remove the fingerprint of a different element.
+ * <p>
+ * The filter is not synchronized.  Filters with the same capacity built
+ * in different threads can be combined with <tt>merge</tt>.
+ */
+
+public class CuckooFilter<T>
+{
+	// slots in a bucket and the number of kicks tried before add fails
+	private static final int BUCKET_SIZE = 4;
+	private static final int MAX_KICKS = 500;
+
+	// largest number of buckets, so that the table length fits in an int
+	private static final int MAX_BUCKETS = 1 << 28;
+
+	// bucket b holds slots table[4*b] through table[4*b+3]. a
+	// fingerprint is never 0, which marks an empty slot
+	private char[] table;
+	private int numBuckets;
+	private int bucketMask;
+
+	// number of fingerprints stored
+	private int size;
+
+	// a fingerprint that could not be placed when the last kick
+	// sequence failed, kept so no element is lost. add fails while
+	// it is in use
+	private char victim;
+	private int victimBucket;
+
+	// chooses which slot to kick
+	private SplittableRandom rnd;
+
+	/**
+	 * Creates a filter that can hold at least <tt>capacity</tt>
+	 * elements.
+	 *
+	 * @param capacity  the number of elements expected.
+	 * @throws IllegalArgumentException if <tt>capacity</tt> is not
+	 *         positive or is greater than about 1.02 * 10^9.
+	 */
+	public CuckooFilter(int capacity)
+	{
+		this(capacity, new SplittableRandom());
+	}
+
+	/**
+	 * Creates a filter that can hold at least <tt>capacity</tt>
+	 * elements and uses <tt>rnd</tt> to choose the fingerprints it
+	 * kicks.  A generator with a fixed seed makes the placement of the
+	 * fingerprints, and the point at which <tt>add</tt> fails,
+	 * reproducible.
+	 *
+	 * @param capacity  the number of elements expected.
+	 * @param rnd  the random number generator.
+	 * @throws IllegalArgumentException if <tt>capacity</tt> is not
+	 *         positive or is greater than about 1.02 * 10^9.
+	 */
+	public CuckooFilter(int capacity, SplittableRandom rnd)
+	{
+		if (capacity <= 0)
+			throw new IllegalArgumentException(
+				"CuckooFilter(): capacity out of range");
+
+		// buckets fill to about 95% before kicks start to fail
+		long buckets = (long)Math.ceil(capacity / (BUCKET_SIZE * 0.95));
+
+		if (buckets > MAX_BUCKETS)
+			throw new IllegalArgumentException(
+				"CuckooFilter(): capacity out of range");
+
+		numBuckets = Integer.highestOneBit((int)Math.max(buckets - 1, 1)) << 1;
+		bucketMask = numBuckets - 1;
+		table = new char[numBuckets * BUCKET_SIZE];
+		size = 0;
+		victim = 0;
+		this.rnd = rnd;
+	}
+
+	// fingerprint from the high bits of the hash, avoiding 0
+	private static char fingerprint(long h)
+	{
+		char fp = (char)(h >>> 48);
+
+		return (fp == 0) ? 1 : fp;
+	}
+
+	// the other bucket of fingerprint fp stored in bucket b. applying
+	// this twice gives b again
+	private int altBucket(int b, char fp)
+	{
+		return (b ^ (fp * 0x5BD1E995)) & bucketMask;
+	}
+
+	/**
+	 * Adds an element to the filter.  Adding an element twice stores two
+	 * fingerprints, so it must be removed twice.
+	 *
+	 * @param item  the element to add.
+	 * @return <tt>true</tt> if the element was added and <tt>false</tt>
+	 *         if the filter is too full.
+	 */
+	public boolean add(T item)
+	{
+		long h = BloomFilter.hash(item);
+
+		return addFingerprint((int)h & bucketMask, fingerprint(h));
+	}
+
+	/**
+	 * Returns <tt>false</tt> if the element is certainly not in the
+	 * filter and <tt>true</tt> if it might be.
+	 *
+	 * @param item  the element to test.
+	 * @return <tt>true</tt> if the element might be in the filter.
+	 */
+	public boolean mightContain(Object item)
+	{
+		long h = BloomFilter.hash(item);
+		char fp = fingerprint(h);
+		int b1 = (int)h & bucketMask, b2 = altBucket(b1, fp);
+
+		if (victim == fp && (victimBucket == b1 || victimBucket == b2))
+			return true;
+
+		return find(b1, fp) >= 0 || find(b2, fp) >= 0;
+	}
+
+	/**
+	 * Removes one copy of an element's fingerprint from the filter.
+	 *
+	 * @param item  the element to remove, which must have been added.
+	 * @return <tt>true</tt> if a fingerprint was removed.
+	 */
+	public boolean remove(Object item)
+	{
+		long h = BloomFilter.hash(item);
+		char fp = fingerprint(h);
+		int b1 = (int)h & bucketMask, b2 = altBucket(b1, fp);
+		int slot = find(b1, fp);
+
+		if (slot < 0)
+			slot = find(b2, fp);
+
+		if (slot >= 0)
+			table[slot] = 0;
+		else if (victim == fp && (victimBucket == b1 || victimBucket == b2))
+			victim = 0;
+		else
+			return false;
+
+		size--;
+
+		// the freed slot may make room for the victim
+		if (victim != 0)
+		{
+			char v = victim;
+
+			victim = 0;
+			if (!insert(victimBucket, v) &&
+				!insert(altBucket(victimBucket, v), v))
+				victim = v;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns the number of fingerprints in the filter.
+	 *
+	 * @return the number of elements added and not removed.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns <tt>true</tt> if the filter holds no fingerprints.
+	 *
+	 * @return <tt>true</tt> if the filter is empty.
+	 */
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	/**
+	 * Removes all of the elements from the filter.
+	 */
+	public void clear()
+	{
+		for (int i = 0; i < table.length; i++)
+			table[i] = 0;
+		victim = 0;
+		size = 0;
+	}
+
+	/**
+	 * Adds the fingerprints of <tt>x</tt> to this filter, which then
+	 * holds the elements of both.
+	 *
+	 * @param x  a filter created with the same capacity.
+	 * @return <tt>true</tt> if every fingerprint was added, or
+	 *         <tt>false</tt> if this filter became too full.
+	 * @throws IllegalArgumentException if the filters have a different
+	 *         number of buckets.
+	 */
+	public boolean merge(CuckooFilter<T> x)
+	{
+		if (numBuckets != x.numBuckets)
+			throw new IllegalArgumentException(
+				"CuckooFilter merge(): filters are not compatible");
+
+		for (int i = 0; i < x.table.length; i++)
+			if (x.table[i] != 0 && !addFingerprint(i / BUCKET_SIZE, x.table[i]))
+				return false;
+
+		if (x.victim != 0)
+			return addFingerprint(x.victimBucket, x.victim);
+
+		return true;
+	}
+
+	// add fingerprint fp whose bucket is b (or its alternate)
+	private boolean addFingerprint(int b, char fp)
+	{
+		if (victim != 0)
+			return false;
+		if (insert(b, fp) || insert(altBucket(b, fp), fp))
+		{
+			size++;
+			return true;
+		}
+
+		// kick a random fingerprint from one of the buckets to its
+		// other bucket and repeat with the fingerprint displaced
+		if (rnd.nextBoolean())
+			b = altBucket(b, fp);
+
+		for (int n = 0; n < MAX_KICKS; n++)
+		{
+			int slot = b * BUCKET_SIZE + rnd.nextInt(BUCKET_SIZE);
+			char kicked = table[slot];
+
+			table[slot] = fp;
+			fp = kicked;
+			b = altBucket(b, fp);
+			if (insert(b, fp))
+			{
+				size++;
+				return true;
+			}
+		}
+
+		// fp is stored; the last fingerprint displaced waits in the
+		// victim slot
+		victim = fp;
+		victimBucket = b;
+		size++;
+		return true;
+	}
+
+	// store fp in an empty slot of bucket b
+	private boolean insert(int b, char fp)
+	{
+		int base = b * BUCKET_SIZE;
+
+		for (int i = base; i < base + BUCKET_SIZE; i++)
+			if (table[i] == 0)
+			{
+				table[i] = fp;
+				return true;
+			}
+
+		return false;
+	}
+
+	// slot of bucket b holding fp, or -1
+	private int find(int b, char fp)
+	{
+		int base = b * BUCKET_SIZE;
+
+		for (int i = base; i < base + BUCKET_SIZE; i++)
+			if (table[i] == fp)
+				return i;
+
+		return -1;
+	}
+}
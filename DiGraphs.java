@@ -27,7 +27,7 @@ public class DiGraphs
 	{
 		// queue stores adjacent vertices; list stored visited
 		// vertices
-		LinkedQueue<T> visitQueue = new LinkedQueue<T>();
+		ArrayDeque<T> visitQueue = new ArrayDeque<T>();
 		LinkedList<T> visitList = new LinkedList<T>();
 
 		// set and iterator retrieve and scan neighbors of a vertex
@@ -125,7 +125,7 @@ public class DiGraphs
 	public static <T> void shortestPath(DiGraph<T> g, T sVertex)
 	{
 		// BFS uses a queue to store adjacent vertices
-		LinkedQueue<T> visitQueue = new LinkedQueue<T>();
+		ArrayDeque<T> visitQueue = new ArrayDeque<T>();
 		Set<T> edgeSet;
 		Iterator<T> edgeIter;
 		T currVertex = null, neighborVertex = null;
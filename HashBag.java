@@ -0,0 +1,538 @@
+/*
+ * @(#)HashBag.java
+ */
+
+package ds.util;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.NoSuchElementException;
+import java.util.ConcurrentModificationException;
+
+/**
+ * This class implements the Collection interface as a multiset that keeps
+ * each distinct element once along with an <tt>int</tt> count of its
+ * occurrences.  <tt>add</tt>, <tt>remove</tt>, <tt>contains</tt> and
+ * <tt>count</tt> run in constant expected time, and the bag grows as
+ * needed.  <tt>grab</tt> returns a random element weighted by its count
+ * in O(log n) time, where n is the number of distinct elements.
+ * <p>
+ * The distinct elements are kept in a dense array indexed by an open
+ * addressing hash table, and a Fenwick tree over their counts locates
+ * the element holding a given occurrence.
+ *
+ * @see Bag
+ */
+
+public class HashBag<T> implements Collection<T>, Iterable<T>
+{
+	// elements[i] occurs counts[i] times; hashes[i] is its spread hash
+	// code. only the first distinct entries are used
+	private T[] elements;
+	private int[] counts;
+	private int[] hashes;
+	private int distinct;
+
+	// table[h] is 1 + the index in elements of an element whose hash
+	// probes through h, or 0 if the slot is empty
+	private int[] table;
+
+	// Fenwick tree over counts; tree[i] is the sum of the counts in
+	// a range of elements ending at index i-1
+	private long[] tree;
+
+	// total number of occurrences
+	private long total;
+
+	private int modCount;
+
+	/**
+	 * Creates an empty bag.
+	 */
+	public HashBag()
+	{
+		this(16);
+	}
+
+	/**
+	 * Creates an empty bag with room for <tt>capacity</tt> distinct
+	 * elements before it grows.
+	 *
+	 * @param capacity  initial number of distinct elements.
+	 */
+	public HashBag(int capacity)
+	{
+		int cap = Math.max(capacity, 4);
+
+		elements = (T[])new Object[cap];
+		counts = new int[cap];
+		hashes = new int[cap];
+		tree = new long[cap + 1];
+		table = new int[tableSize(cap)];
+		distinct = 0;
+		total = 0;
+	}
+
+	// the table is a power of 2 at least twice the capacity
+	private static int tableSize(int capacity)
+	{
+		return Integer.highestOneBit(capacity * 2 - 1) << 1;
+	}
+
+	// spread the bits of hashCode() over the low bits used by the table
+	private static int hash(Object item)
+	{
+		int h = item.hashCode();
+
+		h ^= (h >>> 16);
+		h *= 0x85ebca6b;
+		h ^= (h >>> 13);
+		return h;
+	}
+
+	// return the table slot holding item, or -(empty slot) - 1
+	private int find(Object item, int h)
+	{
+		int mask = table.length - 1, i = h & mask;
+
+		while (table[i] != 0)
+		{
+			int e = table[i] - 1;
+
+			if (hashes[e] == h && elements[e].equals(item))
+				return i;
+			i = (i + 1) & mask;
+		}
+
+		return -(i + 1);
+	}
+
+	// add delta to the count of element e in the Fenwick tree
+	private void treeAdd(int e, long delta)
+	{
+		for (int i = e + 1; i < tree.length; i += i & -i)
+			tree[i] += delta;
+	}
+
+    /**
+     * Adds one occurrence of item to the bag.
+     *
+     * @param item element to add.
+     * @return <tt>true</tt>, since the bag always changes.
+     * @throws IllegalStateException if the count of item would overflow.
+     */
+	public boolean add(T item)
+	{
+		add(item, 1);
+		return true;
+	}
+
+    /**
+     * Adds <tt>occurrences</tt> occurrences of item to the bag.
+     *
+     * @param item element to add.
+     * @param occurrences number of occurrences to add.
+     * @return the count of item before the call.
+     * @throws IllegalArgumentException if <tt>occurrences</tt> is negative.
+     * @throws IllegalStateException if the count of item would overflow.
+     */
+	public int add(T item, int occurrences)
+	{
+		if (occurrences < 0)
+			throw new IllegalArgumentException(
+				"HashBag add(): negative number of occurrences");
+
+		int h = hash(item), slot = find(item, h);
+
+		if (slot >= 0)
+		{
+			int e = table[slot] - 1, old = counts[e];
+
+			if (old + occurrences < 0)
+				throw new IllegalStateException(
+					"HashBag add(): count overflow");
+			counts[e] += occurrences;
+			treeAdd(e, occurrences);
+			total += occurrences;
+			modCount++;
+			return old;
+		}
+
+		if (occurrences == 0)
+			return 0;
+
+		if (distinct == elements.length)
+		{
+			grow();
+			slot = find(item, h);
+		}
+
+		int e = distinct++;
+
+		elements[e] = item;
+		counts[e] = occurrences;
+		hashes[e] = h;
+		table[-(slot + 1)] = e + 1;
+		treeAdd(e, occurrences);
+		total += occurrences;
+		modCount++;
+
+		return 0;
+	}
+
+	// double the capacity and rebuild the table and Fenwick tree
+	private void grow()
+	{
+		int cap = 2 * elements.length;
+
+		elements = java.util.Arrays.copyOf(elements, cap);
+		counts = java.util.Arrays.copyOf(counts, cap);
+		hashes = java.util.Arrays.copyOf(hashes, cap);
+
+		table = new int[tableSize(cap)];
+		int mask = table.length - 1;
+
+		for (int e = 0; e < distinct; e++)
+		{
+			int i = hashes[e] & mask;
+
+			while (table[i] != 0)
+				i = (i + 1) & mask;
+			table[i] = e + 1;
+		}
+
+		// build the Fenwick tree in linear time by pushing each
+		// node's sum to its parent. nodes above distinct hold no counts
+		// of their own but must still pass their sums up, since cap
+		// need not be a power of 2
+		tree = new long[cap + 1];
+		for (int i = 1; i <= cap; i++)
+		{
+			tree[i] += counts[i - 1];
+
+			int parent = i + (i & -i);
+
+			if (parent <= cap)
+				tree[parent] += tree[i];
+		}
+	}
+
+    /**
+     * Removes all of the elements from this bag.
+     */
+	public void clear()
+	{
+		for (int i = 0; i < distinct; i++)
+			elements[i] = null;
+		java.util.Arrays.fill(table, 0);
+		java.util.Arrays.fill(tree, 0);
+		distinct = 0;
+		total = 0;
+		modCount++;
+	}
+
+	/**
+	 * Returns <tt>true</tt> if this bag contains the specified
+	 * element and false otherwise.
+	 *
+	 * @param item element whose occurrence in the bag is checked
+	 * @return <tt>true</tt> if this bag contains the specified
+	 *         element
+	 */
+	public boolean contains(Object item)
+	{
+		return find(item, hash(item)) >= 0;
+	}
+
+	/**
+	 * Returns the number of occurrences of item in this bag.
+	 *
+	 * @param item element whose occurrences are counted.
+	 * @return the count of item, or 0 if it is not in the bag.
+	 */
+	public int count(Object item)
+	{
+		int slot = find(item, hash(item));
+
+		return (slot >= 0) ? counts[table[slot] - 1] : 0;
+	}
+
+	/**
+	* Returns <tt>true</tt> if this collection contains no elements.
+	*
+	* @return <tt>true</tt> if this collection contains no elements
+	*/
+	public boolean isEmpty()
+	{
+		return total == 0;
+	}
+
+    /**
+     * Removes a single occurrence of item from this bag and returns
+     * <tt>true</tt> if it is present; otherwise returns <tt>false</tt>.
+     *
+     * @param item element to be removed from this bag, if present.
+     * @return <tt>true</tt> if this bag is modified
+     */
+	public boolean remove(Object item)
+	{
+		return remove(item, 1) > 0;
+	}
+
+    /**
+     * Removes up to <tt>occurrences</tt> occurrences of item from this bag.
+     *
+     * @param item element to be removed from this bag, if present.
+     * @param occurrences number of occurrences to remove.
+     * @return the count of item before the call.
+     * @throws IllegalArgumentException if <tt>occurrences</tt> is negative.
+     */
+	public int remove(Object item, int occurrences)
+	{
+		if (occurrences < 0)
+			throw new IllegalArgumentException(
+				"HashBag remove(): negative number of occurrences");
+
+		int slot = find(item, hash(item));
+
+		if (slot < 0)
+			return 0;
+
+		int e = table[slot] - 1, old = counts[e];
+
+		if (occurrences == 0)
+			return old;
+
+		int n = Math.min(occurrences, old);
+
+		counts[e] -= n;
+		treeAdd(e, -n);
+		total -= n;
+		if (counts[e] == 0)
+			removeEntry(slot, e);
+		modCount++;
+
+		return old;
+	}
+
+	// remove element e, whose count is 0 and whose table slot is slot.
+	// the last element moves into index e to keep the array dense
+	private void removeEntry(int slot, int e)
+	{
+		deleteSlot(slot);
+
+		int last = --distinct;
+
+		if (e != last)
+		{
+			int c = counts[last];
+
+			// point the moved element's table slot at its new index
+			int mask = table.length - 1, i = hashes[last] & mask;
+
+			while (table[i] != last + 1)
+				i = (i + 1) & mask;
+			table[i] = e + 1;
+
+			elements[e] = elements[last];
+			counts[e] = c;
+			hashes[e] = hashes[last];
+			treeAdd(last, -c);
+			treeAdd(e, c);
+		}
+
+		elements[last] = null;
+		counts[last] = 0;
+	}
+
+	// empty table slot i, moving later entries of its probe sequence
+	// back so that every element stays reachable from its home slot
+	private void deleteSlot(int i)
+	{
+		int mask = table.length - 1, j = i;
+
+		while (true)
+		{
+			j = (j + 1) & mask;
+			if (table[j] == 0)
+				break;
+
+			int home = hashes[table[j] - 1] & mask;
+
+			// the entry at j can move to i if its home slot is not
+			// cyclically in (i, j]
+			if (((j - home) & mask) >= ((j - i) & mask))
+			{
+				table[i] = table[j];
+				i = j;
+			}
+		}
+
+		table[i] = 0;
+	}
+
+	  /**
+		* Returns the number of elements in this bag, counting each
+		* occurrence.
+		*
+		* @return the number of elements in this bag
+		*/
+	public int size()
+	{
+		return (int)Math.min(total, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns the number of distinct elements in this bag.
+	 *
+	 * @return the number of distinct elements.
+	 */
+	public int distinctSize()
+	{
+		return distinct;
+	}
+
+    /**
+     * Returns an array containing all of the elements in this bag, with
+     * each element repeated according to its count.
+     *
+     * @return an array containing all of the elements in this bag
+     */
+	public Object[] toArray()
+	{
+		Object[] returnArray = new Object[size()];
+		int n = 0;
+
+		for (int e = 0; e < distinct; e++)
+			for (int k = 0; k < counts[e]; k++)
+				returnArray[n++] = elements[e];
+
+		return returnArray;
+	}
+
+   /**
+    * Returns a string that displays the elements in the bag.
+    * The description is a comma separated list of
+    * elements enclosed in brackets.
+    * @return string that contains the list of elements in the bag.
+    */
+	public String toString()
+	{
+		return Arrays.toString(toArray());
+	}
+
+   /**
+    * Returns a random element of the bag.  Each occurrence is equally
+    * likely, so an element is returned with probability proportional to
+    * its count.  The random numbers come from the calling thread's own
+    * generator, so threads sampling at once do not contend.
+    * @return value of a random element in the bag.
+    * @throws NoSuchElementException if the bag is empty.
+    */
+	public T grab()
+	{
+		if (total == 0)
+			throw new NoSuchElementException("HashBag grab(): bag empty");
+
+		return elements[findOccurrence(
+			ThreadLocalRandom.current().nextLong(total))];
+	}
+
+   /**
+    * Returns a random element of the bag, weighted by count, using the
+    * generator <tt>rnd</tt>.  A generator created with a fixed seed gives
+    * a reproducible sequence of choices.
+    * @param rnd  the random number generator.
+    * @return value of a random element in the bag.
+    * @throws NoSuchElementException if the bag is empty.
+    */
+	public T grab(SplittableRandom rnd)
+	{
+		if (total == 0)
+			throw new NoSuchElementException("HashBag grab(): bag empty");
+
+		return elements[findOccurrence(rnd.nextLong(total))];
+	}
+
+	// index of the element holding occurrence r, where the
+	// occurrences of elements 0, 1, ... are numbered consecutively
+	private int findOccurrence(long r)
+	{
+		int pos = 0;
+
+		for (int step = Integer.highestOneBit(tree.length - 1); step > 0;
+			step >>= 1)
+			if (pos + step < tree.length && tree[pos + step] <= r)
+			{
+				pos += step;
+				r -= tree[pos];
+			}
+
+		return pos;
+	}
+
+	/**
+	* Returns an iterator over the elements in this bag.  An element with
+	* count k is returned k times in a row.
+	*
+	* @return an <tt>Iterator</tt> over the elements in this bag
+	*/
+	public Iterator<T> iterator()
+	{
+		return new IteratorImpl();
+	}
+
+	private class IteratorImpl implements Iterator<T>
+	{
+		// index of the current element and the number of its
+		// occurrences returned so far
+		private int e = 0;
+		private int returned = 0;
+		private boolean canRemove = false;
+		private int expectedModCount = modCount;
+
+		public boolean hasNext()
+		{
+			return (e < distinct && returned < counts[e]) || e + 1 < distinct;
+		}
+
+		public T next()
+		{
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+
+			if (e < distinct && returned == counts[e])
+			{
+				e++;
+				returned = 0;
+			}
+			if (e >= distinct)
+				throw new NoSuchElementException(
+					"HashBag iterator(): no more elements");
+
+			returned++;
+			canRemove = true;
+			return elements[e];
+		}
+
+		public void remove()
+		{
+			if (!canRemove)
+				throw new IllegalStateException(
+					"HashBag iterator(): next() required before remove()");
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+
+			// when the count drops to 0, the last element moves into
+			// index e and has not been returned yet
+			if (counts[e] == 1)
+				returned = 0;
+			else
+				returned--;
+
+			HashBag.this.remove(elements[e], 1);
+			canRemove = false;
+			expectedModCount = modCount;
+		}
+	}
+}
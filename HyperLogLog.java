@@ -0,0 +1,178 @@
+/*
+ * @(#)HyperLogLog.java
+ */
+
+package ds.util;
+
+/**
+ * HyperLogLog estimates the number of distinct elements in a stream in a
+ * few kilobytes of memory.  Each element's hash selects one of 2^p
+ * registers, and the register keeps the largest number of leading zeros
+ * seen in the rest of the hash.  The relative standard error of the
+ * estimate is about 1.04 / sqrt(2^p); the default precision of 14 uses
+ * 16K registers for an error near 0.8%.
+ * <p>
+ * The estimate is only as good as the hash.  <tt>Long</tt>,
+ * <tt>Double</tt>, <tt>CharSequence</tt> and <tt>byte[]</tt> elements get a
+ * 64-bit hash of their contents.  Other elements are hashed from
+ * <tt>hashCode()</tt>, which has at most 2^32 values; collisions make the
+ * estimate low once a stream has more than about 10^8 distinct elements.
+ * For such streams, record a 64-bit hash of each element with
+ * <tt>addHash</tt>.
+ * <p>
+ * The estimator is not synchronized.  Threads can keep their own
+ * estimators with the same precision and combine them with
+ * <tt>merge</tt>; the result is the estimator of the combined streams.
+ */
+
+public class HyperLogLog<T>
+{
+	// default number of index bits
+	private static final int DEFAULT_PRECISION = 14;
+
+	// number of index bits (p) and registers (m = 2^p)
+	private int precision;
+	private byte[] registers;
+
+	/**
+	 * Creates an estimator with 2^14 registers.
+	 */
+	public HyperLogLog()
+	{
+		this(DEFAULT_PRECISION);
+	}
+
+	/**
+	 * Creates an estimator with 2^<tt>precision</tt> registers.
+	 *
+	 * @param precision  number of hash bits used to choose a register.
+	 * @throws IllegalArgumentException if <tt>precision</tt> is not in the
+	 *         range 4 through 18.
+	 */
+	public HyperLogLog(int precision)
+	{
+		if (precision < 4 || precision > 18)
+			throw new IllegalArgumentException(
+				"HyperLogLog(): precision must be in the range 4 to 18");
+
+		this.precision = precision;
+		registers = new byte[1 << precision];
+	}
+
+	/**
+	 * Records an element.
+	 *
+	 * @param item  the element.
+	 * @return <tt>true</tt> if the estimate may have changed.
+	 */
+	public boolean add(T item)
+	{
+		return addHash(BloomFilter.hash(item));
+	}
+
+	/**
+	 * Records an element given a 64-bit hash whose bits are uniformly
+	 * distributed.  An element recorded with both <tt>add</tt> and
+	 * <tt>addHash</tt> is counted twice.
+	 *
+	 * @param h  a 64-bit hash of the element.
+	 * @return <tt>true</tt> if the estimate may have changed.
+	 */
+	public boolean addHash(long h)
+	{
+		// the high p bits choose the register
+		int idx = (int)(h >>> (64 - precision));
+		// the rank is the position of the first 1 in the remaining
+		// bits. the sentinel bit caps it at 64 - p + 1
+		long rest = (h << precision) | (1L << (precision - 1));
+		byte rank = (byte)(Long.numberOfLeadingZeros(rest) + 1);
+
+		if (rank > registers[idx])
+		{
+			registers[idx] = rank;
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns the estimated number of distinct elements recorded.
+	 *
+	 * @return the estimated cardinality.
+	 */
+	public long cardinality()
+	{
+		int m = registers.length, zeros = 0;
+		double sum = 0;
+
+		for (int i = 0; i < m; i++)
+		{
+			sum += 1.0 / (1L << registers[i]);
+			if (registers[i] == 0)
+				zeros++;
+		}
+
+		double estimate = alpha(m) * m * m / sum;
+
+		// for small cardinalities, count the empty registers instead
+		// (linear counting)
+		if (estimate <= 2.5 * m && zeros > 0)
+			estimate = m * Math.log((double)m / zeros);
+
+		return Math.round(estimate);
+	}
+
+	// bias correction constant for m registers
+	private static double alpha(int m)
+	{
+		switch (m)
+		{
+			case 16:
+				return 0.673;
+			case 32:
+				return 0.697;
+			case 64:
+				return 0.709;
+			default:
+				return 0.7213 / (1 + 1.079 / m);
+		}
+	}
+
+	/**
+	 * Returns the number of hash bits used to choose a register.
+	 *
+	 * @return the precision of the estimator.
+	 */
+	public int precision()
+	{
+		return precision;
+	}
+
+	/**
+	 * Combines <tt>x</tt> into this estimator, which then estimates the
+	 * number of distinct elements recorded by either.
+	 *
+	 * @param x  an estimator with the same precision.
+	 * @throws IllegalArgumentException if the precisions differ.
+	 */
+	public void merge(HyperLogLog<T> x)
+	{
+		if (precision != x.precision)
+			throw new IllegalArgumentException(
+				"HyperLogLog merge(): estimators are not compatible");
+
+		for (int i = 0; i < registers.length; i++)
+			if (x.registers[i] > registers[i])
+				registers[i] = x.registers[i];
+	}
+
+	/**
+	 * Resets the estimator to the state of an empty stream.
+	 */
+	public void clear()
+	{
+		for (int i = 0; i < registers.length; i++)
+			registers[i] = 0;
+	}
+}
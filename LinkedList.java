@@ -15,6 +15,12 @@ import java.io.*;
  * doubly-linked list as the underlying storage structure. In addition to
  * implementing the <tt>List</tt> interface, the class provides methods to add, remove,
  * an access elements at the ends of the list.<p>
+ *
+ * The list remembers the node most recently located by position.  The
+ * methods that take an index walk to it from the front, the back or that
+ * node, whichever is nearest, so a sequence of positional operations at
+ * nearby indices runs in time proportional to the distance between them
+ * rather than to the distance from the front of the list.<p>
  */
 
 public class LinkedList<T>
@@ -31,6 +37,19 @@ public class LinkedList<T>
    // modCount must equal expectedModCount
    transient private int modCount;
 
+   // the node most recently located by nodeAtIndex() and its position,
+   // or null. operations that insert or remove nodes keep cursorIndex
+   // equal to the position of cursor
+   transient private DNode<T> cursor;
+   transient private int cursorIndex;
+
+   // removed nodes kept for reuse, linked through next. addBefore()
+   // takes a node from freeList before it allocates one. the list keeps
+   // at most maxPooledNodes free nodes; 0 disables pooling
+   transient private DNode<T> freeList;
+   transient private int freeCount;
+   transient private int maxPooledNodes;
+
     /**
      * Creates an empty list.
      */
@@ -41,6 +60,27 @@ public class LinkedList<T>
 		modCount = 0;
 	}
 
+    /**
+     * Creates an empty list that keeps up to <tt>maxPooledNodes</tt>
+     * removed nodes and reuses them for later insertions.  When elements
+     * are added and removed at about the same rate, as in a queue, the
+     * list allocates no nodes once the pool holds enough of them.  The
+     * pool is not copied by <tt>clone</tt> and is not serialized.
+     *
+     * @param maxPooledNodes  the largest number of free nodes kept.
+     * @throws IllegalArgumentException if <tt>maxPooledNodes</tt> is negative.
+     */
+	public LinkedList(int maxPooledNodes)
+	{
+		this();
+
+		if (maxPooledNodes < 0)
+			throw new IllegalArgumentException(
+				"LinkedList(): negative pool size");
+
+		this.maxPooledNodes = maxPooledNodes;
+	}
+
 	/**
 	 * Appends the specified element to the end of this list.
 	 *
@@ -96,9 +136,17 @@ public class LinkedList<T>
 
       // insert item before node p and increment the
       // list size
-      addBefore(p, item);
+      DNode<T> newNode = addBefore(p, item);
       listSize++;
       modCount++;
+
+      // the new node is at position index. the next positional
+      // operation is likely to be nearby
+      if (p != header)
+      {
+         cursor = newNode;
+         cursorIndex = index;
+      }
    }
 
     /**
@@ -111,6 +159,7 @@ public class LinkedList<T>
       // add item before header and increment
       // the list size
       addBefore(header.next,item);
+      insertedAt(0);
       listSize++;
       modCount++;
    }
@@ -122,12 +171,21 @@ public class LinkedList<T>
    public void clear()
    {
       // replace each element of list by null so garbage
-      // collection will kick in
-      for (DNode<T> curr = header.next; curr != header; curr = curr.next)
+      // collection will kick in, and return nodes to the pool
+      // while it has room
+      DNode<T> curr = header.next, succ;
+
+      while (curr != header)
+      {
+         succ = curr.next;
          curr.nodeValue = null;
+         recycle(curr);
+         curr = succ;
+      }
 
       // reset header reference to create empty list
       header.prev = header.next = header;
+      cursor = null;
 
       // change list size to 0 and increment modCount
       listSize = 0;
@@ -272,9 +330,10 @@ public class LinkedList<T>
 	{
 		boolean retValue = false;
 		DNode<T> curr;
+		int index = 0;
 
 		// search for item
-		for (curr = header.next; curr != header; curr = curr.next)
+		for (curr = header.next; curr != header; curr = curr.next, index++)
 			if (item.equals(curr.nodeValue))
 				break;
 
@@ -282,6 +341,7 @@ public class LinkedList<T>
 		if (curr != header)
 		{
 			retValue = true;
+			removingAt(index, curr);
 			remove(curr);
 			listSize--;
 			modCount++;
@@ -310,6 +370,7 @@ public class LinkedList<T>
 		T returnElement = p.nodeValue;
 
 		// remove element at node p
+		removingAt(index, p);
 		remove(p);
 
 		// decrement list size
@@ -335,6 +396,7 @@ public class LinkedList<T>
 
 		T first = header.next.nodeValue;
 
+		removingAt(0, header.next);
 		remove(header.next);
 		listSize--;
 
@@ -355,6 +417,7 @@ public class LinkedList<T>
 
 		T last = header.prev.nodeValue;
 
+		removingAt(listSize-1, header.prev);
 		remove(header.prev);
 		listSize--;
 
@@ -451,19 +514,60 @@ public class LinkedList<T>
       // check if index is in range
       rangeCheck(index);
 
-		// start at the header
-		DNode<T> p = header;
+      DNode<T> p;
+      int fromFront = index, fromBack = listSize-1 - index;
+      int fromCursor = (cursor == null) ?
+         Integer.MAX_VALUE : Math.abs(index - cursorIndex);
+
+      // go to index from the front of the list, the back of the
+      // list or the cursor, whichever is closest
+      if (fromCursor <= fromFront && fromCursor <= fromBack)
+      {
+         p = cursor;
+         for (int j = cursorIndex; j < index; j++)
+            p = p.next;
+         for (int j = cursorIndex; j > index; j--)
+            p = p.prev;
+      }
+      else if (fromFront <= fromBack)
+      {
+         p = header.next;
+         for (int j = 0; j < index; j++)
+            p = p.next;
+      }
+      else
+      {
+         p = header.prev;
+         for (int j = listSize-1; j > index; j--)
+            p = p.prev;
+      }
 
-		// go to index either by moving forward from the front
-		// of the list. see Programming Exercise 10-17 for a way
-		// to improve the performance of this method
-		for (int j = 0; j <= index; j++)
-         p = p.next;
+      // remember the node for the next positional operation
+      cursor = p;
+      cursorIndex = index;
 
       // return reference to node at position p
       return p;
    }
 
+   // a node was inserted at position index. nodes at index and
+   // beyond moved up one position
+   private void insertedAt(int index)
+   {
+      if (cursor != null && cursorIndex >= index)
+         cursorIndex++;
+   }
+
+   // node p at position index is about to be removed. if p is the
+   // cursor, its successor takes its place at the same index
+   private void removingAt(int index, DNode<T> p)
+   {
+      if (cursor == p)
+         cursor = (p.next != header) ? p.next : null;
+      else if (cursor != null && cursorIndex > index)
+         cursorIndex--;
+   }
+
 	// remove DNode referenced by curr
 	private void remove(DNode<T> curr)
 	{
@@ -477,6 +581,21 @@ public class LinkedList<T>
 		// update reference fields for predecessor and successor
 		prevNode.next = succNode;
 		succNode.prev = prevNode;
+
+		recycle(curr);
+	}
+
+	// keep the unlinked node p for reuse if the pool has room. callers
+	// must not use p after it is recycled
+	private void recycle(DNode<T> p)
+	{
+		if (freeCount < maxPooledNodes)
+		{
+			p.nodeValue = null;
+			p.next = freeList;
+			freeList = p;
+			freeCount++;
+		}
 	}
 
 	private DNode<T> addBefore(DNode<T> curr, T item)
@@ -484,8 +603,17 @@ public class LinkedList<T>
 		// declare reference variables for new node and previous node
 		DNode<T> newNode, prevNode;
 
-		// create new DNode with item as initial value
-		newNode = new DNode<T>(item);
+		// take a node from the pool or create new DNode with
+		// item as initial value
+		if (freeList != null)
+		{
+			newNode = freeList;
+			freeList = newNode.next;
+			freeCount--;
+			newNode.nodeValue = item;
+		}
+		else
+			newNode = new DNode<T>(item);
 
 		// assign prevNode the reference value of node before p
 		prevNode = curr.prev;
@@ -512,6 +640,8 @@ public class LinkedList<T>
       // node of the last value returned by next() or header if that
       // value was deleted by the iterator method remove()
       DNode<T> lastReturned = header;
+      // position of nextNode in the list
+      int nextIndex = 0;
 
       // constructor. not strictly necessary
       IteratorImpl()
@@ -543,6 +673,7 @@ public class LinkedList<T>
 			// advance next and nextIndex
 			lastReturned = nextNode;
 			nextNode = nextNode.next;
+			nextIndex++;
 
 			// return value of lastReturned
 			return lastReturned.nodeValue;
@@ -563,6 +694,9 @@ public class LinkedList<T>
 					"Iterator call to next() " +
 					"required before calling remove()");
 
+			// lastReturned precedes nextNode
+			nextIndex--;
+			removingAt(nextIndex, lastReturned);
 			LinkedList.this.remove(lastReturned);
 
 			// list has been modified
@@ -593,12 +727,10 @@ public class LinkedList<T>
 				throw new IndexOutOfBoundsException(
 							"Index: "+ index+ ", Size: "+ listSize);
 
-			// go to index either by moving forward from the front
-			// of the list. see Programming Exercise 12-7 for a way
-			// to improve the performance of this constructor
-			nextNode = header.next;
-			for (int i=0; i < index; i++)
-				nextNode = nextNode.next;
+			// go to index from the nearest of the front, the back
+			// and the cursor
+			nextNode = (index == listSize) ? header : nodeAtIndex(index);
+			nextIndex = index;
 		}
 
 		// removes the last element returned by next() or previous().
@@ -616,13 +748,17 @@ public class LinkedList<T>
 					"ListIterator call to next() or previous() " +
 					"required before calling remove()");
 
-			LinkedList.this.remove(lastReturned);
-
 			// lastReturned can equal nextNode if the ListIterator
 			// method previous() was called. in this case, move
-			// nextNode forward one node
+			// nextNode forward one node before the removal recycles
+			// lastReturned; its position is unchanged. otherwise
+			// lastReturned precedes nextNode
 			if (lastReturned == nextNode)
 				nextNode = nextNode.next;
+			else
+				nextIndex--;
+			removingAt(nextIndex, lastReturned);
+			LinkedList.this.remove(lastReturned);
 
 			// list has been modified
 			modCount++;
@@ -648,6 +784,8 @@ public class LinkedList<T>
 
 			// insert item before nextNode
 			addBefore(nextNode, item);
+			insertedAt(nextIndex);
+			nextIndex++;
 			modCount++;
 			expectedModCount = modCount;
 
@@ -677,6 +815,7 @@ public class LinkedList<T>
 
 			// move backward one position
 			lastReturned = nextNode = nextNode.prev;
+			nextIndex--;
 
 			return lastReturned.nodeValue;
 		}
@@ -760,6 +899,9 @@ public class LinkedList<T>
 		copy.header = new DNode<T>();
 		copy.listSize= 0;
 		copy.modCount = 0;
+		copy.cursor = null;
+		copy.freeList = null;
+		copy.freeCount = 0;
 
 
 		DNode<T> curr = header.next;
@@ -24,6 +24,19 @@ public class LinkedQueue<T> implements Queue<T>
       qlist = new LinkedList<T>();
    }
 
+   /**
+    * Creates an empty queue that keeps up to <tt>maxPooledNodes</tt> nodes
+    * released by <tt>pop()</tt> and reuses them in <tt>push()</tt>.  A
+    * queue whose size stays below that bound runs without allocating
+    * once it has reached its largest size.
+    * @param maxPooledNodes  the largest number of free nodes kept.
+    * @throws IllegalArgumentException if <tt>maxPooledNodes</tt> is negative.
+    */
+   public LinkedQueue (int maxPooledNodes)
+   {
+      qlist = new LinkedList<T>(maxPooledNodes);
+   }
+
    /**
     * Insert item at the back of the queue.
     * @param item  insert item at the back of the queue
@@ -0,0 +1,945 @@
+/*
+ * @(#)LongBPlusTreeSet.java
+ *
+ */
+
+package ds.util;
+
+import java.util.NoSuchElementException;
+import java.util.ConcurrentModificationException;
+
+/**
+ * A B+tree set of <tt>long</tt> values.  It uses the algorithms of
+ * <tt>BPlusTreeMap</tt>, but the nodes store their keys in
+ * <tt>long[]</tt> arrays, so a search compares primitive values in
+ * contiguous memory with no boxing and no calls to <tt>compareTo</tt>,
+ * and the leaves carry no value arrays.  The primitive methods
+ * <tt>add(long)</tt>, <tt>contains(long)</tt> and <tt>remove(long)</tt>
+ * run in O(log n) time; <tt>toLongArray(from, to)</tt> copies a range of
+ * values a leaf at a time.  The class also implements
+ * <tt>OrderedSet&lt;Long&gt;</tt>, whose methods box and unbox their
+ * arguments.
+ *
+ * @see	    BPlusTreeMap
+ */
+
+public class LongBPlusTreeSet implements OrderedSet<Long>, Iterable<Long>
+{
+	// maximum and minimum number of keys in a node other than the root
+	private final int maxKeys, minKeys;
+
+	// root of the tree; null when the set is empty. height is the
+	// number of index levels above the leaves
+	private Node root = null;
+	private int height = 0;
+
+	// size of the set and record of changes to the set for iterators
+	private int setSize = 0, modCount = 0;
+
+	// path from the root to a leaf recorded by add() and remove()
+	private Internal[] path = new Internal[4];
+	private int[] pathIndex = new int[4];
+
+	// leaf position found by seek()
+	private Leaf cursorLeaf;
+	private int cursorIndex;
+
+   /**
+    * Creates an empty set whose nodes hold up to
+    * <tt>BPlusTreeMap.DEFAULT_ORDER</tt> values.
+    */
+	public LongBPlusTreeSet()
+	{
+		this(BPlusTreeMap.DEFAULT_ORDER);
+	}
+
+   /**
+    * Creates an empty set whose nodes hold up to <tt>order</tt> values.
+    *
+    * @param order the maximum number of values in a node.
+    * @throws IllegalArgumentException if <tt>order</tt> is less than 3.
+    */
+	public LongBPlusTreeSet(int order)
+	{
+		if (order < 3)
+			throw new IllegalArgumentException(
+				"LongBPlusTreeSet(): order must be at least 3");
+
+		maxKeys = order;
+		minKeys = order / 2;
+	}
+
+   /**
+    * Builds a set from an array whose values are in strictly ascending
+    * order.  The leaves are filled with <tt>System.arraycopy</tt> and the
+    * index levels are built above them, so the method runs in O(n) time.
+    *
+    * @param arr values in strictly ascending order.
+    * @return a set containing the values.
+    * @throws IllegalArgumentException if the values are not in strictly
+    *         ascending order.
+    */
+	public static LongBPlusTreeSet fromSorted(long[] arr)
+	{
+		LongBPlusTreeSet set = new LongBPlusTreeSet();
+		ArrayList<Node> level = new ArrayList<Node>();
+		Leaf prev = null;
+		int i, n;
+
+		for (i = 1; i < arr.length; i++)
+			if (arr[i-1] >= arr[i])
+				throw new IllegalArgumentException(
+					"LongBPlusTreeSet fromSorted(): values are not in " +
+					"strictly ascending order");
+
+		for (i = 0; i < arr.length; i += n)
+		{
+			Leaf leaf = new Leaf(set.maxKeys + 1);
+
+			n = Math.min(set.maxKeys, arr.length - i);
+			System.arraycopy(arr, i, leaf.keys, 0, n);
+			leaf.numKeys = n;
+			if (prev != null)
+				prev.next = leaf;
+			prev = leaf;
+			level.add(leaf);
+		}
+
+		set.setSize = arr.length;
+		set.buildIndex(level);
+
+		return set;
+	}
+
+	// make the linked leaves in level the bottom of the tree and
+	// build the index levels above them
+	private void buildIndex(ArrayList<Node> level)
+	{
+		if (level.size() == 0)
+			return;
+
+		balanceLast(level);
+
+		while (level.size() > 1)
+		{
+			ArrayList<Node> parents = new ArrayList<Node>();
+			Internal parent = null;
+
+			for (int i = 0; i < level.size(); i++)
+			{
+				Node child = level.get(i);
+
+				if (parent == null || parent.numKeys == maxKeys)
+				{
+					parent = new Internal(maxKeys + 1);
+					parent.children[0] = child;
+					parents.add(parent);
+				}
+				else
+				{
+					parent.keys[parent.numKeys] = minKey(child);
+					parent.numKeys++;
+					parent.children[parent.numKeys] = child;
+				}
+			}
+
+			balanceLast(parents);
+			level = parents;
+			height++;
+		}
+
+		root = level.get(0);
+	}
+
+	// if the last node in level has fewer than minKeys keys, move keys
+	// from its left neighbor so both have at least minKeys
+	private void balanceLast(ArrayList<Node> level)
+	{
+		int n = level.size();
+
+		if (n < 2 || level.get(n-1).numKeys >= minKeys)
+			return;
+
+		Node l = level.get(n-2), r = level.get(n-1);
+
+		if (r instanceof Leaf)
+		{
+			int move = (l.numKeys + r.numKeys)/2 - r.numKeys;
+
+			System.arraycopy(r.keys, 0, r.keys, move, r.numKeys);
+			System.arraycopy(l.keys, l.numKeys - move, r.keys, 0, move);
+			l.numKeys -= move;
+			r.numKeys += move;
+		}
+		else
+		{
+			Internal left = (Internal)l, right = (Internal)r;
+
+			while (right.numKeys < minKeys)
+			{
+				System.arraycopy(right.keys, 0, right.keys, 1, right.numKeys);
+				System.arraycopy(right.children, 0, right.children, 1,
+					right.numKeys+1);
+				right.keys[0] = minKey(right.children[1]);
+				right.children[0] = left.children[left.numKeys];
+				right.numKeys++;
+				left.children[left.numKeys] = null;
+				left.numKeys--;
+			}
+		}
+	}
+
+	// least key in the subtree with root node
+	private static long minKey(Node node)
+	{
+		while (node instanceof Internal)
+			node = ((Internal)node).children[0];
+
+		return node.keys[0];
+	}
+
+	// binary search for key among the keys of node. returns the index of
+	// key, or -(insertion point)-1 if key is not in the node
+	private static int search(Node node, long key)
+	{
+		long[] keys = node.keys;
+		int low = 0, high = node.numKeys - 1, mid;
+
+		while (low <= high)
+		{
+			mid = (low + high) >>> 1;
+
+			if (key < keys[mid])
+				high = mid - 1;
+			else if (key > keys[mid])
+				low = mid + 1;
+			else
+				return mid;
+		}
+
+		return -(low + 1);
+	}
+
+	// index of the child of node whose subtree may contain key
+	private static int childIndex(Internal node, long key)
+	{
+		int i = search(node, key);
+
+		return (i >= 0) ? i + 1 : -(i + 1);
+	}
+
+	// return the leaf whose key range includes key. the tree is not empty
+	private Leaf findLeaf(long key)
+	{
+		Node node = root;
+
+		for (int level = 0; level < height; level++)
+			node = ((Internal)node).children[childIndex((Internal)node, key)];
+
+		return (Leaf)node;
+	}
+
+	// descend to the leaf for key, recording the path in path and pathIndex
+	private Leaf findLeafPath(long key)
+	{
+		if (path.length < height)
+		{
+			path = new Internal[2 * height];
+			pathIndex = new int[2 * height];
+		}
+
+		Node node = root;
+
+		for (int level = 0; level < height; level++)
+		{
+			Internal index = (Internal)node;
+			int i = childIndex(index, key);
+
+			path[level] = index;
+			pathIndex[level] = i;
+			node = index.children[i];
+		}
+
+		return (Leaf)node;
+	}
+
+	// set cursorLeaf and cursorIndex to the first key >= key (inclusive)
+	// or > key (!inclusive). cursorLeaf is null if there is no such key
+	private void seek(long key, boolean inclusive)
+	{
+		cursorLeaf = null;
+		cursorIndex = 0;
+		if (root == null)
+			return;
+
+		Leaf leaf = findLeaf(key);
+		int i = search(leaf, key);
+
+		if (i < 0)
+			i = -(i + 1);
+		else if (!inclusive)
+			i++;
+
+		if (i == leaf.numKeys)
+		{
+			leaf = leaf.next;
+			i = 0;
+		}
+
+		cursorLeaf = leaf;
+		cursorIndex = i;
+	}
+
+	// return the greatest key <= key (inclusive) or < key (!inclusive),
+	// or null if there is no such key
+	private Long floorValue(long key, boolean inclusive)
+	{
+		if (root == null)
+			return null;
+
+		Node leftTree = null, node = root;
+
+		for (int level = 0; level < height; level++)
+		{
+			Internal index = (Internal)node;
+			int i = childIndex(index, key);
+
+			if (i > 0)
+				leftTree = index.children[i-1];
+			node = index.children[i];
+		}
+
+		int i = search(node, key);
+
+		if (i < 0)
+			i = -(i + 1) - 1;
+		else if (!inclusive)
+			i--;
+
+		if (i >= 0)
+			return node.keys[i];
+		if (leftTree == null)
+			return null;
+
+		while (leftTree instanceof Internal)
+			leftTree = ((Internal)leftTree).children[leftTree.numKeys];
+
+		return leftTree.keys[leftTree.numKeys-1];
+	}
+
+   /**
+    * Adds <tt>key</tt> to this set if it is not already present.
+    *
+    * @param key value to be added to this set.
+    * @return <tt>true</tt> if this set did not already contain the value.
+    */
+	public boolean add(long key)
+	{
+		if (root == null)
+		{
+			Leaf leaf = new Leaf(maxKeys + 1);
+
+			leaf.keys[0] = key;
+			leaf.numKeys = 1;
+			root = leaf;
+			setSize = 1;
+			modCount++;
+			return true;
+		}
+
+		Leaf leaf = findLeafPath(key);
+		int i = search(leaf, key);
+
+		if (i >= 0)
+			return false;
+
+		i = -(i + 1);
+		System.arraycopy(leaf.keys, i, leaf.keys, i+1, leaf.numKeys - i);
+		leaf.keys[i] = key;
+		leaf.numKeys++;
+		setSize++;
+		modCount++;
+
+		if (leaf.numKeys <= maxKeys)
+			return true;
+
+		// split the leaf and pass the separator up the path
+		Leaf newLeaf = new Leaf(maxKeys + 1);
+		int half = leaf.numKeys / 2;
+
+		newLeaf.numKeys = leaf.numKeys - half;
+		System.arraycopy(leaf.keys, half, newLeaf.keys, 0, newLeaf.numKeys);
+		leaf.numKeys = half;
+		newLeaf.next = leaf.next;
+		leaf.next = newLeaf;
+
+		Node right = newLeaf;
+		long separator = newLeaf.keys[0];
+
+		for (int level = height - 1; level >= 0; level--)
+		{
+			Internal parent = path[level];
+			int ci = pathIndex[level];
+
+			System.arraycopy(parent.keys, ci, parent.keys, ci+1,
+				parent.numKeys - ci);
+			System.arraycopy(parent.children, ci+1, parent.children, ci+2,
+				parent.numKeys - ci);
+			parent.keys[ci] = separator;
+			parent.children[ci+1] = right;
+			parent.numKeys++;
+
+			if (parent.numKeys <= maxKeys)
+				return true;
+
+			// the middle key moves up to the next level
+			Internal newIndex = new Internal(maxKeys + 1);
+			int mid = parent.numKeys / 2, move = parent.numKeys - mid - 1;
+
+			separator = parent.keys[mid];
+			System.arraycopy(parent.keys, mid+1, newIndex.keys, 0, move);
+			System.arraycopy(parent.children, mid+1, newIndex.children, 0,
+				move+1);
+			for (int j = mid+1; j <= parent.numKeys; j++)
+				parent.children[j] = null;
+			newIndex.numKeys = move;
+			parent.numKeys = mid;
+			right = newIndex;
+		}
+
+		Internal newRoot = new Internal(maxKeys + 1);
+
+		newRoot.keys[0] = separator;
+		newRoot.children[0] = root;
+		newRoot.children[1] = right;
+		newRoot.numKeys = 1;
+		root = newRoot;
+		height++;
+
+		return true;
+	}
+
+   /**
+    * Returns <tt>true</tt> if this set contains <tt>key</tt>.
+    *
+    * @param key value whose presence in this set is to be tested.
+    * @return <tt>true</tt> if this set contains the value.
+    */
+	public boolean contains(long key)
+	{
+		return root != null && search(findLeaf(key), key) >= 0;
+	}
+
+   /**
+    * Removes <tt>key</tt> from this set if it is present.
+    *
+    * @param key value to be removed from this set, if present.
+    * @return <tt>true</tt> if the set contained the value.
+    */
+	public boolean remove(long key)
+	{
+		if (root == null)
+			return false;
+
+		Leaf leaf = findLeafPath(key);
+		int i = search(leaf, key);
+
+		if (i < 0)
+			return false;
+
+		System.arraycopy(leaf.keys, i+1, leaf.keys, i, leaf.numKeys - i - 1);
+		leaf.numKeys--;
+		setSize--;
+		modCount++;
+
+		Node node = leaf;
+		for (int level = height - 1; level >= 0 && node.numKeys < minKeys;
+				level--)
+		{
+			fixUnderflow(path[level], pathIndex[level]);
+			node = path[level];
+		}
+
+		if (root.numKeys == 0)
+		{
+			if (root instanceof Internal)
+			{
+				root = ((Internal)root).children[0];
+				height--;
+			}
+			else
+				root = null;
+		}
+
+		return true;
+	}
+
+	// the child at position ci of parent has minKeys-1 keys. borrow
+	// a key from a sibling that can spare one, or merge with a sibling
+	private void fixUnderflow(Internal parent, int ci)
+	{
+		if (ci > 0 && parent.children[ci-1].numKeys > minKeys)
+			borrowFromLeft(parent, ci);
+		else if (ci < parent.numKeys &&
+					parent.children[ci+1].numKeys > minKeys)
+			borrowFromRight(parent, ci);
+		else if (ci > 0)
+			merge(parent, ci-1);
+		else
+			merge(parent, ci);
+	}
+
+	private void borrowFromLeft(Internal parent, int ci)
+	{
+		Node left = parent.children[ci-1], child = parent.children[ci];
+
+		System.arraycopy(child.keys, 0, child.keys, 1, child.numKeys);
+
+		if (child instanceof Leaf)
+		{
+			child.keys[0] = left.keys[left.numKeys-1];
+			parent.keys[ci-1] = child.keys[0];
+		}
+		else
+		{
+			Internal l = (Internal)left, c = (Internal)child;
+
+			System.arraycopy(c.children, 0, c.children, 1, c.numKeys+1);
+			c.keys[0] = parent.keys[ci-1];
+			c.children[0] = l.children[l.numKeys];
+			l.children[l.numKeys] = null;
+			parent.keys[ci-1] = l.keys[l.numKeys-1];
+		}
+
+		left.numKeys--;
+		child.numKeys++;
+	}
+
+	private void borrowFromRight(Internal parent, int ci)
+	{
+		Node child = parent.children[ci], right = parent.children[ci+1];
+
+		if (child instanceof Leaf)
+		{
+			child.keys[child.numKeys] = right.keys[0];
+			System.arraycopy(right.keys, 1, right.keys, 0, right.numKeys-1);
+			parent.keys[ci] = right.keys[0];
+		}
+		else
+		{
+			Internal c = (Internal)child, r = (Internal)right;
+
+			c.keys[c.numKeys] = parent.keys[ci];
+			c.children[c.numKeys+1] = r.children[0];
+			parent.keys[ci] = r.keys[0];
+			System.arraycopy(r.keys, 1, r.keys, 0, r.numKeys-1);
+			System.arraycopy(r.children, 1, r.children, 0, r.numKeys);
+			r.children[r.numKeys] = null;
+		}
+
+		right.numKeys--;
+		child.numKeys++;
+	}
+
+	// append parent.children[s+1] to parent.children[s] and remove
+	// the separator between them from parent
+	private void merge(Internal parent, int s)
+	{
+		Node left = parent.children[s], right = parent.children[s+1];
+
+		if (left instanceof Leaf)
+		{
+			System.arraycopy(right.keys, 0, left.keys, left.numKeys,
+				right.numKeys);
+			left.numKeys += right.numKeys;
+			((Leaf)left).next = ((Leaf)right).next;
+		}
+		else
+		{
+			Internal l = (Internal)left, r = (Internal)right;
+
+			l.keys[l.numKeys] = parent.keys[s];
+			System.arraycopy(r.keys, 0, l.keys, l.numKeys+1, r.numKeys);
+			System.arraycopy(r.children, 0, l.children, l.numKeys+1,
+				r.numKeys+1);
+			l.numKeys += r.numKeys + 1;
+		}
+
+		System.arraycopy(parent.keys, s+1, parent.keys, s,
+			parent.numKeys - s - 1);
+		System.arraycopy(parent.children, s+2, parent.children, s+1,
+			parent.numKeys - s - 1);
+		parent.children[parent.numKeys] = null;
+		parent.numKeys--;
+	}
+
+   /**
+    * Returns the least value in this set greater than or equal to
+    * <tt>key</tt>, or <tt>null</tt> if there is no such value.
+    *
+    * @param key the value to match.
+    * @return the least value greater than or equal to <tt>key</tt>.
+    */
+	public Long ceiling(long key)
+	{
+		seek(key, true);
+		return (cursorLeaf == null) ? null : cursorLeaf.keys[cursorIndex];
+	}
+
+   /**
+    * Returns the least value in this set strictly greater than
+    * <tt>key</tt>, or <tt>null</tt> if there is no such value.
+    *
+    * @param key the value to match.
+    * @return the least value greater than <tt>key</tt>.
+    */
+	public Long higher(long key)
+	{
+		seek(key, false);
+		return (cursorLeaf == null) ? null : cursorLeaf.keys[cursorIndex];
+	}
+
+   /**
+    * Returns the greatest value in this set less than or equal to
+    * <tt>key</tt>, or <tt>null</tt> if there is no such value.
+    *
+    * @param key the value to match.
+    * @return the greatest value less than or equal to <tt>key</tt>.
+    */
+	public Long floor(long key)
+	{
+		return floorValue(key, true);
+	}
+
+   /**
+    * Returns the greatest value in this set strictly less than
+    * <tt>key</tt>, or <tt>null</tt> if there is no such value.
+    *
+    * @param key the value to match.
+    * @return the greatest value less than <tt>key</tt>.
+    */
+	public Long lower(long key)
+	{
+		return floorValue(key, false);
+	}
+
+   /**
+    * Returns the values in this set in ascending order.
+    *
+    * @return an array containing the values in this set.
+    */
+	public long[] toLongArray()
+	{
+		return toLongArray(Long.MIN_VALUE, Long.MAX_VALUE, true);
+	}
+
+   /**
+    * Returns the values in this set that range from <tt>fromKey</tt>,
+    * inclusive, to <tt>toKey</tt>, exclusive, in ascending order.  The
+    * method descends the tree once and then copies the values a leaf at
+    * a time with <tt>System.arraycopy</tt>.
+    *
+    * @param fromKey low endpoint (inclusive) of the range.
+    * @param toKey high endpoint (exclusive) of the range.
+    * @return an array containing the values in the range.
+    * @throws IllegalArgumentException if <tt>fromKey</tt> is greater
+    *         than <tt>toKey</tt>.
+    */
+	public long[] toLongArray(long fromKey, long toKey)
+	{
+		if (fromKey > toKey)
+			throw new IllegalArgumentException(
+				"LongBPlusTreeSet toLongArray(): fromKey > toKey");
+
+		return toLongArray(fromKey, toKey, false);
+	}
+
+	// copy the keys from fromKey to toKey, including toKey if
+	// toInclusive is true
+	private long[] toLongArray(long fromKey, long toKey, boolean toInclusive)
+	{
+		long[] arr = new long[16];
+		int n = 0, count;
+
+		seek(fromKey, true);
+		Leaf leaf = cursorLeaf;
+		int start = cursorIndex;
+
+		while (leaf != null)
+		{
+			// number of keys of the leaf in range
+			int i = search(leaf, toKey);
+
+			if (i >= 0)
+				count = toInclusive ? i + 1 : i;
+			else
+				count = -(i + 1);
+			count -= start;
+
+			if (n + count > arr.length)
+				arr = java.util.Arrays.copyOf(arr,
+					Math.max(2 * arr.length, n + count));
+			System.arraycopy(leaf.keys, start, arr, n, count);
+			n += count;
+
+			// stop at a leaf that has keys past the range
+			if (start + count < leaf.numKeys)
+				break;
+			leaf = leaf.next;
+			start = 0;
+		}
+
+		return java.util.Arrays.copyOf(arr, n);
+	}
+
+	// OrderedSet<Long> methods
+
+   /**
+    * Adds the specified value to this set if it is not already present.
+    *
+    * @param item value to be added to this set.
+    * @return <tt>true</tt> if this set did not already contain the value.
+    */
+	public boolean add(Long item)
+	{
+		return add(item.longValue());
+	}
+
+   /**
+    * Removes all of the values from this set.
+    */
+	public void clear()
+	{
+		modCount++;
+		setSize = 0;
+		root = null;
+		height = 0;
+	}
+
+   /**
+    * Returns <tt>true</tt> if this set contains the specified value.
+    *
+    * @param item value whose presence in this set is to be tested.
+    * @return <tt>true</tt> if this set contains the value.
+    */
+	public boolean contains(Object item)
+	{
+		return (item instanceof Long) && contains(((Long)item).longValue());
+	}
+
+   /**
+    * Returns <tt>true</tt> if this set contains no values.
+    *
+    * @return <tt>true</tt> if this set contains no values.
+    */
+	public boolean isEmpty()
+	{
+		return setSize == 0;
+	}
+
+   /**
+    * Returns an iterator over the values in this set in ascending order.
+    *
+    * @return an iterator over the values in this set.
+    */
+	public Iterator<Long> iterator()
+	{
+		return new IteratorImpl();
+	}
+
+   /**
+    * Removes the specified value from this set if it is present.
+    *
+    * @param item value to be removed from this set, if present.
+    * @return <tt>true</tt> if the set contained the value.
+    */
+	public boolean remove(Object item)
+	{
+		return (item instanceof Long) && remove(((Long)item).longValue());
+	}
+
+   /**
+    * Returns the number of values in this set.
+    *
+    * @return the number of values in this set.
+    */
+	public int size()
+	{
+		return setSize;
+	}
+
+   /**
+    * Returns the first (minimum) value currently in this set.
+    *
+    * @return the first (minimum) value currently in this set or
+    *         <tt>null</tt> if the set is empty.
+    */
+	public Long first()
+	{
+		return (root == null) ? null : minKey(root);
+	}
+
+   /**
+    * Returns the last (maximum) value currently in this set.
+    *
+    * @return the last (maximum) value currently in this set or
+    *         <tt>null</tt> if the set is empty.
+    */
+	public Long last()
+	{
+		if (root == null)
+			return null;
+
+		Node node = root;
+		while (node instanceof Internal)
+			node = ((Internal)node).children[node.numKeys];
+
+		return node.keys[node.numKeys-1];
+	}
+
+   /**
+    * Returns an array containing all of the values in this set in
+    * ascending order as <tt>Long</tt> objects.
+    *
+    * @return an array containing all of the values in this set.
+    */
+	public Object[] toArray()
+	{
+		long[] values = toLongArray();
+		Object[] arr = new Object[values.length];
+
+		for (int i = 0; i < values.length; i++)
+			arr[i] = values[i];
+
+		return arr;
+	}
+
+   /**
+    * Returns a string representation of this set. The representation is a
+    * comma separated list in ascending order enclosed in square brackets.
+    */
+	public String toString()
+	{
+		StringBuffer buf = new StringBuffer();
+		Iterator<Long> iter = iterator();
+
+		buf.append("[");
+		while (iter.hasNext())
+		{
+			buf.append(iter.next());
+			if (iter.hasNext())
+				buf.append(", ");
+		}
+		buf.append("]");
+
+		return buf.toString();
+	}
+
+	// iterator that scans the linked leaves
+	private class IteratorImpl implements Iterator<Long>
+	{
+		private int expectedModCount = modCount;
+		// leaf and index of the value returned by the next call to next()
+		private Leaf leaf;
+		private int index = 0;
+		// value returned by the last call to next() and whether
+		// remove() may delete it
+		private long lastValue;
+		private boolean canRemove = false;
+
+		IteratorImpl()
+		{
+			Node node = root;
+
+			if (node != null)
+				while (node instanceof Internal)
+					node = ((Internal)node).children[0];
+			leaf = (Leaf)node;
+		}
+
+		public boolean hasNext()
+		{
+			return leaf != null;
+		}
+
+		public Long next()
+		{
+			checkIteratorState();
+
+			if (leaf == null)
+				throw new NoSuchElementException(
+						"Iteration has no more elements");
+
+			lastValue = leaf.keys[index];
+			canRemove = true;
+
+			index++;
+			if (index == leaf.numKeys)
+			{
+				leaf = leaf.next;
+				index = 0;
+			}
+
+			return lastValue;
+		}
+
+		// a deletion can move keys between leaves, so the iterator
+		// searches again for the first value after the deleted one
+		public void remove()
+		{
+			if (!canRemove)
+				throw new IllegalStateException(
+					"Iterator call to next() " +
+					"required before calling remove()");
+
+			checkIteratorState();
+
+			LongBPlusTreeSet.this.remove(lastValue);
+			seek(lastValue, false);
+			leaf = cursorLeaf;
+			index = cursorIndex;
+
+			expectedModCount = modCount;
+			canRemove = false;
+		}
+
+		private void checkIteratorState()
+		{
+			if (expectedModCount != modCount)
+				throw new ConcurrentModificationException(
+					"Inconsistent iterator");
+		}
+	}
+
+	// a node holds numKeys keys in ascending order in keys[0] to
+	// keys[numKeys-1]. slots past numKeys hold stale values
+	private static class Node
+	{
+		long[] keys;
+		int numKeys;
+	}
+
+	// a leaf links to the leaf that follows it in key order
+	private static class Leaf extends Node
+	{
+		Leaf next;
+
+		Leaf(int capacity)
+		{
+			keys = new long[capacity];
+		}
+	}
+
+	// keys[i] separates children[i], whose keys are less than keys[i],
+	// from children[i+1], whose keys are greater than or equal to keys[i]
+	private static class Internal extends Node
+	{
+		Node[] children;
+
+		Internal(int capacity)
+		{
+			keys = new long[capacity];
+			children = new Node[capacity + 1];
+		}
+	}
+}
@@ -0,0 +1,494 @@
+/*
+ * @(#)MappedBitArray.java
+ */
+
+package ds.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A bit array stored in a file and accessed through memory-mapped
+ * segments, so the number of bits is limited by the file system rather
+ * than the heap.  Bits are indexed by <tt>long</tt>.  The operating system
+ * reads a page of the file only when a bit in it is first touched, and
+ * writes modified pages back on its own schedule or when <tt>force()</tt>
+ * is called.
+ * <p>
+ * The file holds the bits as little-endian 64-bit words: bit i is bit
+ * (i % 64) of the word at byte offset 8 * (i / 64).  Opening an existing
+ * file keeps the bits it holds below the new size, so the bits persist
+ * between runs.  The file is truncated to the new size, so reopening it
+ * later with a larger size never brings back bits past a smaller size.
+ *
+ * @see BitArray
+ */
+
+public class MappedBitArray implements Closeable
+{
+	// each segment maps 2^30 bytes, or 2^27 words
+	private static final int SEGMENT_SHIFT = 27;
+	private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+	// number of bits in the bit array
+	private long numberOfBits;
+
+	// number of long words used for the bit array
+	private long numberOfWords;
+
+	private RandomAccessFile file;
+	private FileChannel channel;
+
+	// the mapped segments and long views of them
+	private MappedByteBuffer[] segments;
+	private LongBuffer[] words;
+
+	/**
+	 * Opens a bit array of <tt>numBits</tt> bits stored in the file
+	 * <tt>f</tt>.  A new file, or one shorter than needed, is extended
+	 * with bits having value 0.  A longer file is truncated to
+	 * <tt>numBits</tt> bits, rounded up to a whole word, and the bits
+	 * past <tt>numBits</tt> in the last word are cleared.
+	 *
+	 * @param f  the file holding the bits.
+	 * @param numBits  number of bits in the bit array.
+	 * @throws IllegalArgumentException if <tt>numBits</tt> is negative.
+	 * @throws IOException if the file cannot be opened or mapped.
+	 */
+	public MappedBitArray(File f, long numBits) throws IOException
+	{
+		if (numBits < 0)
+			throw new IllegalArgumentException(
+				"MappedBitArray(): negative number of bits");
+
+		numberOfBits = numBits;
+		numberOfWords = (numBits + 63) >>> 6;
+
+		file = new RandomAccessFile(f, "rw");
+		channel = file.getChannel();
+
+		long bytes = numberOfWords << 3;
+
+		// truncate before mapping; a mapped file cannot always be
+		// resized
+		if (file.length() != bytes)
+			file.setLength(bytes);
+
+		int numSegments = (int)((numberOfWords + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+
+		segments = new MappedByteBuffer[numSegments];
+		words = new LongBuffer[numSegments];
+
+		try
+		{
+			for (int s = 0; s < numSegments; s++)
+			{
+				long offset = ((long)s << SEGMENT_SHIFT) << 3;
+				long length = Math.min(bytes - offset, (SEGMENT_MASK + 1) << 3);
+
+				segments[s] = channel.map(FileChannel.MapMode.READ_WRITE,
+					offset, length);
+				segments[s].order(ByteOrder.LITTLE_ENDIAN);
+				words[s] = segments[s].asLongBuffer();
+			}
+		}
+		catch (IOException ioe)
+		{
+			file.close();
+			throw ioe;
+		}
+
+		// the truncation keeps whole words, so a file written with a
+		// larger size may still have bits past the end in the last word
+		if (numberOfWords > 0)
+			putWord(numberOfWords - 1,
+				getWord(numberOfWords - 1) & lastWordMask());
+	}
+
+	/**
+	 * Returns the number of bits in this bit array.
+	 *
+	 * @return the number of bits in this bit array.
+	 */
+	public long size()
+	{
+		return numberOfBits;
+	}
+
+	/**
+	 * Returns the value of <tt>bit i</tt> in this bit array.
+	 *
+	 * @param i  specified bit location in the bit array.
+	 * @return the value of <tt>bit i</tt> in this bit array.
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 *         (i &lt; 0 || i &gt;= size()).
+	 */
+	public int bit(long i)
+	{
+		checkIndex(i, "bit");
+
+		if ((getWord(i >>> 6) & (1L << i)) != 0)
+			return 1;
+		else
+			return 0;
+	}
+
+	/**
+	 * Sets <tt>bit i</tt> in this bit array.
+	 *
+	 * @param i  specified bit location in the bit array.
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 *         (i &lt; 0 || i &gt;= size()).
+	 */
+	public void set(long i)
+	{
+		checkIndex(i, "set");
+
+		long k = i >>> 6;
+
+		putWord(k, getWord(k) | (1L << i));
+	}
+
+	/**
+	 * Sets <tt>bit i</tt> and returns its previous value, so a caller
+	 * can test and set a bit with one word access.
+	 *
+	 * @param i  specified bit location in the bit array.
+	 * @return <tt>true</tt> if the bit was already set.
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 *         (i &lt; 0 || i &gt;= size()).
+	 */
+	public boolean getAndSet(long i)
+	{
+		checkIndex(i, "getAndSet");
+
+		long k = i >>> 6, mask = 1L << i, w = getWord(k);
+
+		if ((w & mask) != 0)
+			return true;
+		putWord(k, w | mask);
+		return false;
+	}
+
+	/**
+	 * Clears <tt>bit i</tt> in this bit array.
+	 *
+	 * @param i  specified bit location in the bit array.
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 *         (i &lt; 0 || i &gt;= size()).
+	 */
+	public void clear(long i)
+	{
+		checkIndex(i, "clear");
+
+		long k = i >>> 6;
+
+		putWord(k, getWord(k) & ~(1L << i));
+	}
+
+	/**
+	 * Sets the bits from <tt>fromIndex</tt> (inclusive) to
+	 * <tt>toIndex</tt> (exclusive).
+	 *
+	 * @param fromIndex  index of the first bit to set.
+	 * @param toIndex  index after the last bit to set.
+	 * @throws IndexOutOfBoundsException if the range is not valid.
+	 */
+	public void set(long fromIndex, long toIndex)
+	{
+		fill(fromIndex, toIndex, true, "set");
+	}
+
+	/**
+	 * Clears the bits from <tt>fromIndex</tt> (inclusive) to
+	 * <tt>toIndex</tt> (exclusive).
+	 *
+	 * @param fromIndex  index of the first bit to clear.
+	 * @param toIndex  index after the last bit to clear.
+	 * @throws IndexOutOfBoundsException if the range is not valid.
+	 */
+	public void clear(long fromIndex, long toIndex)
+	{
+		fill(fromIndex, toIndex, false, "clear");
+	}
+
+	/**
+	 * Clears all of the bits in this bit array.
+	 */
+	public void clear()
+	{
+		for (long k = 0; k < numberOfWords; k++)
+			putWord(k, 0);
+	}
+
+	/**
+	 * Returns the number of bits that have value 1.
+	 *
+	 * @return the number of bits that have value 1.
+	 */
+	public long cardinality()
+	{
+		long count = 0;
+
+		for (int s = 0; s < words.length; s++)
+		{
+			LongBuffer buf = words[s];
+			int n = buf.limit();
+
+			for (int k = 0; k < n; k++)
+				count += Long.bitCount(buf.get(k));
+		}
+
+		return count;
+	}
+
+	/**
+	 * Returns the index of the first bit that has value 1 at or after
+	 * <tt>fromIndex</tt>.
+	 *
+	 * @param fromIndex  index at which to start the search.
+	 * @return the index of the next bit with value 1, or -1 if there is
+	 *         none.
+	 * @throws IndexOutOfBoundsException if <tt>fromIndex</tt> is negative.
+	 */
+	public long nextSetBit(long fromIndex)
+	{
+		if (fromIndex < 0)
+			throw new IndexOutOfBoundsException(
+				"MappedBitArray nextSetBit(): bit out of range");
+		if (fromIndex >= numberOfBits)
+			return -1;
+
+		long k = fromIndex >>> 6;
+		long word = getWord(k) & (-1L << fromIndex);
+
+		while (word == 0)
+		{
+			if (++k == numberOfWords)
+				return -1;
+			word = getWord(k);
+		}
+
+		return (k << 6) + Long.numberOfTrailingZeros(word);
+	}
+
+	/**
+	 * Returns the index of the first bit that has value 0 at or after
+	 * <tt>fromIndex</tt>.
+	 *
+	 * @param fromIndex  index at which to start the search.
+	 * @return the index of the next bit with value 0, or -1 if there is
+	 *         none.
+	 * @throws IndexOutOfBoundsException if <tt>fromIndex</tt> is negative.
+	 */
+	public long nextClearBit(long fromIndex)
+	{
+		if (fromIndex < 0)
+			throw new IndexOutOfBoundsException(
+				"MappedBitArray nextClearBit(): bit out of range");
+		if (fromIndex >= numberOfBits)
+			return -1;
+
+		long k = fromIndex >>> 6;
+		long word = ~getWord(k) & (-1L << fromIndex);
+
+		while (word == 0)
+		{
+			if (++k == numberOfWords)
+				return -1;
+			word = ~getWord(k);
+		}
+
+		long i = (k << 6) + Long.numberOfTrailingZeros(word);
+
+		return (i < numberOfBits) ? i : -1;
+	}
+
+	/**
+	 * Replaces this bit array with the bitwise <tt>or</tt> between this
+	 * instance and x.
+	 *
+	 * @param x  a <tt>MappedBitArray</tt> that is an operand.
+	 * @throws IllegalArgumentException if the two bit arrays do not have
+	 *         the same size.
+	 */
+	public void orAssign(MappedBitArray x)
+	{
+		combine(x, OR, "|");
+	}
+
+	/**
+	 * Replaces this bit array with the bitwise <tt>and</tt> between this
+	 * instance and x.
+	 *
+	 * @param x  a <tt>MappedBitArray</tt> that is an operand.
+	 * @throws IllegalArgumentException if the two bit arrays do not have
+	 *         the same size.
+	 */
+	public void andAssign(MappedBitArray x)
+	{
+		combine(x, AND, "&");
+	}
+
+	/**
+	 * Clears the bits of this bit array that are set in x.
+	 *
+	 * @param x  a <tt>MappedBitArray</tt> that is an operand.
+	 * @throws IllegalArgumentException if the two bit arrays do not have
+	 *         the same size.
+	 */
+	public void andNotAssign(MappedBitArray x)
+	{
+		combine(x, AND_NOT, "&~");
+	}
+
+	/**
+	 * Replaces this bit array with the bitwise <tt>xor</tt> between this
+	 * instance and x.
+	 *
+	 * @param x  a <tt>MappedBitArray</tt> that is an operand.
+	 * @throws IllegalArgumentException if the two bit arrays do not have
+	 *         the same size.
+	 */
+	public void xorAssign(MappedBitArray x)
+	{
+		combine(x, XOR, "^");
+	}
+
+	/**
+	 * Replaces this bit array with its bitwise <tt>not</tt> complement.
+	 */
+	public void notAssign()
+	{
+		for (int s = 0; s < words.length; s++)
+		{
+			LongBuffer buf = words[s];
+			int n = buf.limit();
+
+			for (int k = 0; k < n; k++)
+				buf.put(k, ~buf.get(k));
+		}
+
+		// the unused bits must stay 0
+		if (numberOfWords > 0)
+			putWord(numberOfWords - 1,
+				getWord(numberOfWords - 1) & lastWordMask());
+	}
+
+	/**
+	 * Writes the modified pages of the bit array to the file.
+	 */
+	public void force()
+	{
+		for (int s = 0; s < segments.length; s++)
+			segments[s].force();
+	}
+
+	/**
+	 * Writes the modified pages to the file and closes it.  The bit
+	 * array must not be used afterwards.
+	 *
+	 * @throws IOException if the file cannot be closed.
+	 */
+	public void close() throws IOException
+	{
+		force();
+		segments = null;
+		words = null;
+		channel.close();
+		file.close();
+	}
+
+	// operations for combine()
+	private static final int OR = 0, AND = 1, AND_NOT = 2, XOR = 3;
+
+	// apply op to each pair of words. segments of equal size line
+	// up, so the loops run over one buffer at a time
+	private void combine(MappedBitArray x, int op, String opName)
+	{
+		if (numberOfBits != x.numberOfBits)
+			throw new IllegalArgumentException("MappedBitArray " + opName +
+				": bit arrays are not the same size");
+
+		for (int s = 0; s < words.length; s++)
+		{
+			LongBuffer a = words[s], b = x.words[s];
+			int n = a.limit();
+
+			switch (op)
+			{
+				case OR:
+					for (int k = 0; k < n; k++)
+						a.put(k, a.get(k) | b.get(k));
+					break;
+				case AND:
+					for (int k = 0; k < n; k++)
+						a.put(k, a.get(k) & b.get(k));
+					break;
+				case AND_NOT:
+					for (int k = 0; k < n; k++)
+						a.put(k, a.get(k) & ~b.get(k));
+					break;
+				default:
+					for (int k = 0; k < n; k++)
+						a.put(k, a.get(k) ^ b.get(k));
+					break;
+			}
+		}
+	}
+
+	// set or clear the bits in [fromIndex, toIndex)
+	private void fill(long fromIndex, long toIndex, boolean value,
+		String method)
+	{
+		if (fromIndex < 0 || toIndex > numberOfBits || fromIndex > toIndex)
+			throw new IndexOutOfBoundsException("MappedBitArray " + method +
+				"(): bit range out of range");
+
+		if (fromIndex == toIndex)
+			return;
+
+		long first = fromIndex >>> 6, last = (toIndex - 1) >>> 6;
+		long firstMask = -1L << fromIndex, lastMask = -1L >>> -toIndex;
+
+		if (first == last)
+			firstMask &= lastMask;
+
+		putWord(first, value ? getWord(first) | firstMask
+			: getWord(first) & ~firstMask);
+		for (long k = first + 1; k < last; k++)
+			putWord(k, value ? -1L : 0L);
+		if (first != last)
+			putWord(last, value ? getWord(last) | lastMask
+				: getWord(last) & ~lastMask);
+	}
+
+	private long getWord(long k)
+	{
+		return words[(int)(k >>> SEGMENT_SHIFT)].get((int)(k & SEGMENT_MASK));
+	}
+
+	private void putWord(long k, long w)
+	{
+		words[(int)(k >>> SEGMENT_SHIFT)].put((int)(k & SEGMENT_MASK), w);
+	}
+
+	// mask of the bits of the last word that are in use
+	private long lastWordMask()
+	{
+		return -1L >>> (-numberOfBits & 63);
+	}
+
+	private void checkIndex(long i, String method)
+	{
+		if (i < 0 || i >= numberOfBits)
+			throw new IndexOutOfBoundsException(
+				"MappedBitArray " + method + "(): bit out of range");
+	}
+}
@@ -0,0 +1,302 @@
+/*
+ * @(#)MpscLinkedQueue.java
+ */
+
+package ds.util;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A lock-free queue for handing elements from any number of producer
+ * threads to exactly one consumer thread.  Any thread may call
+ * <tt>push</tt> and <tt>offer</tt>; only the consumer may call
+ * <tt>pop</tt>, <tt>poll</tt>, <tt>peek</tt>, <tt>drainTo</tt>,
+ * <tt>isEmpty</tt> and <tt>size</tt>.<p>
+ *
+ * The queue is a singly linked list in the style of Vyukov's intrusive
+ * MPSC queue.  A producer swaps its node into the tail with a single
+ * atomic exchange and then links the previous tail to it, so producers
+ * never retry.  The consumer follows the links from a sentinel node
+ * without atomic operations.  Between a producer's exchange and its link
+ * the new element is not yet reachable; a consumer that finds the queue
+ * in this state waits briefly for the link rather than report an
+ * element missing.<p>
+ *
+ * A queue created with a capacity counts its elements with an atomic
+ * counter and refuses elements beyond the capacity; an unbounded queue
+ * does no counting.  The queue does not hold <tt>null</tt> elements.<p>
+ */
+
+public class MpscLinkedQueue<T> implements Queue<T>
+{
+	// a list node. the node's own value as an AtomicReference is the
+	// link to its successor, so linking needs no second object
+	private static final class Node<T> extends AtomicReference<Node<T>>
+	{
+		T value;
+
+		Node(T value)
+		{
+			this.value = value;
+		}
+	}
+
+	// the producers' end of the list, padded so that the consumer's
+	// fields do not share its cache line
+	private static final class Tail<T> extends AtomicReference<Node<T>>
+	{
+		long p1, p2, p3, p4, p5, p6, p7;
+
+		Tail(Node<T> node)
+		{
+			super(node);
+		}
+	}
+
+	private final Tail<T> tail;
+
+	// the consumer's sentinel. the first element is in head's successor
+	private Node<T> head;
+
+	// number of elements when the queue is bounded, otherwise null
+	private final AtomicInteger count;
+	private final int capacity;
+
+	/**
+	 * Creates an empty queue with no bound on its size.
+	 */
+	public MpscLinkedQueue()
+	{
+		head = new Node<T>(null);
+		tail = new Tail<T>(head);
+		count = null;
+		capacity = Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Creates an empty queue that holds at most <tt>capacity</tt>
+	 * elements.
+	 *
+	 * @param capacity  the largest number of elements in the queue.
+	 * @throws IllegalArgumentException if <tt>capacity</tt> is not
+	 *         positive.
+	 */
+	public MpscLinkedQueue(int capacity)
+	{
+		if (capacity <= 0)
+			throw new IllegalArgumentException(
+				"MpscLinkedQueue(): capacity must be positive");
+
+		head = new Node<T>(null);
+		tail = new Tail<T>(head);
+		count = new AtomicInteger();
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Adds item at the back of the queue if there is room.  May be
+	 * called by any thread.
+	 *
+	 * @param item  the element to add.
+	 * @return <tt>true</tt> if the item was added and <tt>false</tt> if the
+	 *         queue is bounded and full.
+	 * @throws NullPointerException if <tt>item</tt> is <tt>null</tt>.
+	 */
+	public boolean offer(T item)
+	{
+		if (item == null)
+			throw new NullPointerException("MpscLinkedQueue offer(): null element");
+
+		if (count != null)
+		{
+			int n;
+
+			do
+			{
+				n = count.get();
+				if (n >= capacity)
+					return false;
+			}
+			while (!count.compareAndSet(n, n + 1));
+		}
+
+		Node<T> node = new Node<T>(item);
+		Node<T> prev = tail.getAndSet(node);
+
+		// the ordered write publishes node and its value to the consumer
+		prev.lazySet(node);
+		return true;
+	}
+
+	/**
+	 * Insert item at the back of the queue.  May be called by any thread.
+	 *
+	 * @param item  insert item at the back of the queue
+	 * @throws IndexOutOfBoundsException if the queue is bounded and full.
+	 * @throws NullPointerException if <tt>item</tt> is <tt>null</tt>.
+	 */
+	public void push(T item)
+	{
+		if (!offer(item))
+			throw new IndexOutOfBoundsException("MpscLinkedQueue push(): queue full");
+	}
+
+	// the node after head, waiting for a producer that has swapped in
+	// its node but not yet linked it. null if the queue is empty
+	private Node<T> firstNode()
+	{
+		Node<T> next = head.get();
+
+		if (next == null && head != tail.get())
+			while ((next = head.get()) == null)
+				Thread.onSpinWait();
+
+		return next;
+	}
+
+	/**
+	 * Removes and returns the element at the front of the queue, or
+	 * returns <tt>null</tt> if the queue is empty.  Called only by the
+	 * consumer thread.
+	 *
+	 * @return the front element or <tt>null</tt>.
+	 */
+	public T poll()
+	{
+		Node<T> next = firstNode();
+
+		if (next == null)
+			return null;
+
+		// next becomes the sentinel. drop its value so the queue does
+		// not keep the element reachable, and link the old sentinel to
+		// itself so that a dead node does not keep live ones reachable
+		T item = next.value;
+
+		next.value = null;
+		head.lazySet(head);
+		head = next;
+
+		if (count != null)
+			count.decrementAndGet();
+
+		return item;
+	}
+
+	/**
+	 * Remove the element at the front of the queue and return its value.
+	 * Called only by the consumer thread.
+	 *
+	 * @return value of the element removed from the front of the queue.
+	 * @throws <tt>NoSuchElementException</tt> if the queue is empty.
+	 */
+	public T pop()
+	{
+		T item = poll();
+
+		if (item == null)
+			throw new NoSuchElementException("MpscLinkedQueue pop(): queue empty");
+
+		return item;
+	}
+
+	/**
+	 * Return the value of the element at the front of the queue.  Called
+	 * only by the consumer thread.
+	 *
+	 * @return value of element at the front of the queue.
+	 * @throws <tt>NoSuchElementException</tt> if the queue is empty.
+	 */
+	public T peek()
+	{
+		Node<T> next = firstNode();
+
+		if (next == null)
+			throw new NoSuchElementException("MpscLinkedQueue peek(): queue empty");
+
+		return next.value;
+	}
+
+	/**
+	 * Removes up to <tt>maxElements</tt> elements from the front of the
+	 * queue and adds them to <tt>c</tt> in order.  A bounded queue
+	 * updates its counter once for the whole batch.  Called only by the
+	 * consumer thread.
+	 *
+	 * @param c  the collection that receives the elements.
+	 * @param maxElements  the largest number of elements to move.
+	 * @return the number of elements moved.
+	 */
+	public int drainTo(Collection<? super T> c, int maxElements)
+	{
+		int n = 0;
+		Node<T> next;
+
+		while (n < maxElements && (next = firstNode()) != null)
+		{
+			c.add(next.value);
+			next.value = null;
+			head.lazySet(head);
+			head = next;
+			n++;
+		}
+
+		if (count != null && n > 0)
+			count.addAndGet(-n);
+
+		return n;
+	}
+
+	/**
+	 * Removes all of the elements available in the queue and adds them
+	 * to <tt>c</tt> in order.  Called only by the consumer thread.
+	 *
+	 * @param c  the collection that receives the elements.
+	 * @return the number of elements moved.
+	 */
+	public int drainTo(Collection<? super T> c)
+	{
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Return a boolean value that indicates whether the queue is empty.
+	 * Called only by the consumer thread.
+	 *
+	 * @return true if the queue is empty and false otherwise.
+	 */
+	public boolean isEmpty()
+	{
+		return head == tail.get();
+	}
+
+	/**
+	 * Return the number of elements currently in the queue.  A bounded
+	 * queue reads its counter; an unbounded queue counts the linked
+	 * nodes, which takes time proportional to the size.  Called only by
+	 * the consumer thread.
+	 *
+	 * @return number of elements in the queue.
+	 */
+	public int size()
+	{
+		if (count != null)
+			return count.get();
+
+		int n = 0;
+		Node<T> last = tail.get();
+
+		for (Node<T> p = head; p != last && n < Integer.MAX_VALUE; n++)
+		{
+			Node<T> next;
+
+			while ((next = p.get()) == null)
+				Thread.onSpinWait();
+			p = next;
+		}
+
+		return n;
+	}
+}
@@ -16,6 +16,8 @@ package ds.util;
  * allows for an unlimited number of element or fixed-length ("bounded") queue.
  * @see LinkedQueue
  * @see BQueue
+ * @see ArrayDeque
+ * @see BlockingBQueue
  */
 
 
@@ -0,0 +1,1740 @@
+/*
+ * @(#)RoaringBitmap.java
+ */
+
+package ds.util;
+
+import java.util.NoSuchElementException;
+import java.util.ConcurrentModificationException;
+
+/**
+ * A compressed set of bits indexed by non-negative integers.  The bits
+ * are split into chunks of 65536 by the high 16 bits of their index, and
+ * only chunks with at least one set bit are stored.  Each chunk uses the
+ * cheapest of three containers for its low 16 bits: a sorted array of up
+ * to 4096 values, a 65536-bit bitmap, or a list of runs of consecutive
+ * values (built by <tt>runOptimize()</tt>).  A sparse set of bits over a
+ * range of 100 million therefore costs memory in proportion to the number
+ * of set bits rather than the range.
+ * <p>
+ * The bitwise operations come in two forms.  <tt>and</tt>, <tt>or</tt>,
+ * <tt>xor</tt> and <tt>andNot</tt> return a new bitmap and leave their
+ * operands unchanged.  <tt>andAssign</tt>, <tt>orAssign</tt>,
+ * <tt>xorAssign</tt> and <tt>andNotAssign</tt> update this bitmap,
+ * reusing its containers; combining two bitmap containers, or narrowing an
+ * array container, allocates nothing.
+ *
+ * @see BitArray
+ */
+
+public class RoaringBitmap implements Iterable<Integer>
+{
+	// largest number of values held by an array container. a
+	// chunk with more values uses a bitmap container, which
+	// takes 8K bytes, the same as 4096 chars
+	private static final int ARRAY_MAX = 4096;
+
+	// number of long words in a bitmap container
+	private static final int BITMAP_WORDS = 1024;
+
+	// keys[i] holds the high 16 bits of the indexes stored in
+	// containers[i]. keys is in ascending order
+	private char[] keys;
+	private Container[] containers;
+	private int numChunks;
+
+	// counts changes in the set of bits, so iterators fail fast
+	private int modCount;
+
+	/**
+	 * Creates an empty bitmap.
+	 */
+	public RoaringBitmap()
+	{
+		keys = new char[4];
+		containers = new Container[4];
+		numChunks = 0;
+	}
+
+	/**
+	 * Creates a bitmap with the bits of <tt>b</tt> that have value 1.
+	 *
+	 * @param b  bit array whose set bits are copied.
+	 * @return a bitmap with bit i set if and only if <tt>b.bit(i)</tt>
+	 *         is 1.
+	 */
+	public static RoaringBitmap fromBitArray(BitArray b)
+	{
+		RoaringBitmap rb = new RoaringBitmap();
+
+		for (int i = b.nextSetBit(0); i >= 0; i = b.nextSetBit(i+1))
+			rb.set(i);
+
+		return rb;
+	}
+
+	/**
+	 * Creates a bitmap with the bits at the indexes in <tt>arr</tt> set.
+	 *
+	 * @param arr  indexes of the bits to set, in any order.
+	 * @return a bitmap with the specified bits set.
+	 * @throws IndexOutOfBoundsException if an index is negative.
+	 */
+	public static RoaringBitmap of(int... arr)
+	{
+		RoaringBitmap rb = new RoaringBitmap();
+
+		for (int i = 0; i < arr.length; i++)
+			rb.set(arr[i]);
+
+		return rb;
+	}
+
+	/**
+	 * Returns a <tt>BitArray</tt> of <tt>numBits</tt> bits holding the
+	 * bits of this bitmap with index less than <tt>numBits</tt>.
+	 *
+	 * @param numBits  number of bits in the bit array.
+	 * @return a bit array with the same bits set as this bitmap.
+	 */
+	public BitArray toBitArray(int numBits)
+	{
+		BitArray b = new BitArray(numBits);
+		int i = nextSetBit(0);
+
+		while (i >= 0 && i < numBits)
+		{
+			b.set(i);
+			i = (i == Integer.MAX_VALUE) ? -1 : nextSetBit(i+1);
+		}
+
+		return b;
+	}
+
+	/**
+	 * Returns the value of bit i.
+	 *
+	 * @param i  index of the bit.
+	 * @return 1 if bit i is set and 0 otherwise.
+	 * @throws IndexOutOfBoundsException if <tt>i</tt> is negative.
+	 */
+	public int bit(int i)
+	{
+		checkIndex(i, "bit");
+
+		int idx = chunkIndex((char)(i >>> 16));
+
+		if (idx >= 0 && containers[idx].contains(i & 0xFFFF))
+			return 1;
+		else
+			return 0;
+	}
+
+	/**
+	 * Returns <tt>true</tt> if bit i is set.
+	 *
+	 * @param i  index of the bit.
+	 * @return <tt>true</tt> if bit i is set.
+	 * @throws IndexOutOfBoundsException if <tt>i</tt> is negative.
+	 */
+	public boolean contains(int i)
+	{
+		return bit(i) != 0;
+	}
+
+	/**
+	 * Sets bit i to 1.
+	 *
+	 * @param i  index of the bit.
+	 * @throws IndexOutOfBoundsException if <tt>i</tt> is negative.
+	 */
+	public void set(int i)
+	{
+		checkIndex(i, "set");
+
+		char key = (char)(i >>> 16);
+		int idx = chunkIndex(key);
+
+		if (idx >= 0)
+		{
+			Container c = containers[idx];
+			int card = c.cardinality();
+
+			containers[idx] = c.add(i & 0xFFFF);
+			if (containers[idx].cardinality() != card)
+				modCount++;
+		}
+		else
+		{
+			Container c = new ArrayContainer(4);
+			insertChunk(-(idx+1), key, c.add(i & 0xFFFF));
+			modCount++;
+		}
+	}
+
+	/**
+	 * Clears bit i to 0.
+	 *
+	 * @param i  index of the bit.
+	 * @throws IndexOutOfBoundsException if <tt>i</tt> is negative.
+	 */
+	public void clear(int i)
+	{
+		checkIndex(i, "clear");
+
+		int idx = chunkIndex((char)(i >>> 16));
+
+		if (idx < 0 || !containers[idx].contains(i & 0xFFFF))
+			return;
+
+		Container c = containers[idx].remove(i & 0xFFFF);
+
+		if (c.cardinality() == 0)
+			removeChunk(idx);
+		else
+			containers[idx] = c;
+		modCount++;
+	}
+
+	/**
+	 * Clears all of the bits in this bitmap.
+	 */
+	public void clear()
+	{
+		for (int i = 0; i < numChunks; i++)
+			containers[i] = null;
+		numChunks = 0;
+		modCount++;
+	}
+
+	/**
+	 * Returns <tt>true</tt> if no bit is set.
+	 *
+	 * @return <tt>true</tt> if no bit is set.
+	 */
+	public boolean isEmpty()
+	{
+		return numChunks == 0;
+	}
+
+	/**
+	 * Returns the number of bits set to 1.
+	 *
+	 * @return the number of set bits.
+	 */
+	public int cardinality()
+	{
+		int count = 0;
+
+		for (int i = 0; i < numChunks; i++)
+			count += containers[i].cardinality();
+
+		return count;
+	}
+
+	/**
+	 * Returns the number of set bits with index less than <tt>i</tt>.
+	 *
+	 * @param i  the index.
+	 * @return the number of set bits in the range [0, i).
+	 * @throws IndexOutOfBoundsException if <tt>i</tt> is negative.
+	 */
+	public int rank(int i)
+	{
+		checkIndex(i, "rank");
+
+		char key = (char)(i >>> 16);
+		int count = 0, idx;
+
+		for (idx = 0; idx < numChunks && keys[idx] < key; idx++)
+			count += containers[idx].cardinality();
+
+		if (idx < numChunks && keys[idx] == key)
+			count += containers[idx].rank(i & 0xFFFF);
+
+		return count;
+	}
+
+	/**
+	 * Returns the index of the set bit with rank <tt>j</tt>; that is, the
+	 * set bit with exactly <tt>j</tt> set bits below it.
+	 *
+	 * @param j  the rank, counting from 0.
+	 * @return the index of the (j+1)st set bit.
+	 * @throws IndexOutOfBoundsException if <tt>j</tt> is negative or not
+	 *         less than <tt>cardinality()</tt>.
+	 */
+	public int select(int j)
+	{
+		if (j >= 0)
+			for (int idx = 0; idx < numChunks; idx++)
+			{
+				int card = containers[idx].cardinality();
+
+				if (j < card)
+					return (keys[idx] << 16) | containers[idx].select(j);
+				j -= card;
+			}
+
+		throw new IndexOutOfBoundsException(
+			"RoaringBitmap select(): rank out of range");
+	}
+
+	/**
+	 * Returns the index of the first set bit at or after index
+	 * <tt>from</tt>.
+	 *
+	 * @param from  the index to start searching at.
+	 * @return the index of the next set bit or -1 if there is none.
+	 * @throws IndexOutOfBoundsException if <tt>from</tt> is negative.
+	 */
+	public int nextSetBit(int from)
+	{
+		checkIndex(from, "nextSetBit");
+
+		char key = (char)(from >>> 16);
+		int idx = chunkIndex(key);
+
+		if (idx >= 0)
+		{
+			int low = containers[idx].nextValue(from & 0xFFFF);
+
+			if (low >= 0)
+				return (key << 16) | low;
+			idx++;
+		}
+		else
+			idx = -(idx+1);
+
+		// the first value of any container is its smallest
+		if (idx < numChunks)
+			return (keys[idx] << 16) | containers[idx].nextValue(0);
+
+		return -1;
+	}
+
+	/**
+	 * Returns the indexes of the set bits in ascending order.
+	 *
+	 * @return an array of the indexes of the set bits.
+	 */
+	public int[] toArray()
+	{
+		int[] arr = new int[cardinality()];
+		int n = 0;
+
+		for (int i = 0; i < numChunks; i++)
+			n = containers[i].fill(arr, n, keys[i] << 16);
+
+		return arr;
+	}
+
+	/**
+	 * Returns an iterator over the indexes of the set bits in ascending
+	 * order.  The iterator's <tt>remove</tt> clears the last bit returned.
+	 *
+	 * @return an iterator over the set bits.
+	 */
+	public Iterator<Integer> iterator()
+	{
+		return new IteratorImpl();
+	}
+
+	/**
+	 * Converts each chunk to a run container if runs of consecutive set
+	 * bits store it more compactly.  Setting or clearing a bit in a run
+	 * container turns it back into an array or bitmap container, so call
+	 * this method after a batch of updates.
+	 *
+	 * @return <tt>true</tt> if any container was converted.
+	 */
+	public boolean runOptimize()
+	{
+		boolean changed = false;
+
+		for (int i = 0; i < numChunks; i++)
+			if (!(containers[i] instanceof RunContainer))
+			{
+				RunContainer rc = RunContainer.fromContainer(containers[i]);
+
+				if (rc.sizeInBytes() < containers[i].sizeInBytes())
+				{
+					containers[i] = rc;
+					changed = true;
+				}
+			}
+
+		return changed;
+	}
+
+	/**
+	 * Returns an estimate of the number of bytes used to hold the bits.
+	 *
+	 * @return the approximate size of the bitmap in bytes.
+	 */
+	public long sizeInBytes()
+	{
+		long bytes = 6L * keys.length;
+
+		for (int i = 0; i < numChunks; i++)
+			bytes += containers[i].sizeInBytes();
+
+		return bytes;
+	}
+
+	/**
+	 * Returns a bitmap with the bits set in both this bitmap and
+	 * <tt>x</tt>.
+	 *
+	 * @param x  the other operand.
+	 * @return the bitwise AND of this bitmap and <tt>x</tt>.
+	 */
+	public RoaringBitmap and(RoaringBitmap x)
+	{
+		RoaringBitmap result = new RoaringBitmap();
+		int i = 0, j = 0;
+
+		while (i < numChunks && j < x.numChunks)
+			if (keys[i] < x.keys[j])
+				i++;
+			else if (keys[i] > x.keys[j])
+				j++;
+			else
+			{
+				Container c = and(containers[i], x.containers[j], false);
+
+				if (c.cardinality() > 0)
+					result.appendChunk(keys[i], c);
+				i++;
+				j++;
+			}
+
+		return result;
+	}
+
+	/**
+	 * Returns a bitmap with the bits set in this bitmap, in <tt>x</tt>,
+	 * or in both.
+	 *
+	 * @param x  the other operand.
+	 * @return the bitwise OR of this bitmap and <tt>x</tt>.
+	 */
+	public RoaringBitmap or(RoaringBitmap x)
+	{
+		RoaringBitmap result = new RoaringBitmap();
+		int i = 0, j = 0;
+
+		while (i < numChunks || j < x.numChunks)
+			if (j == x.numChunks || (i < numChunks && keys[i] < x.keys[j]))
+			{
+				result.appendChunk(keys[i], containers[i].copy());
+				i++;
+			}
+			else if (i == numChunks || keys[i] > x.keys[j])
+			{
+				result.appendChunk(x.keys[j], x.containers[j].copy());
+				j++;
+			}
+			else
+			{
+				result.appendChunk(keys[i],
+					or(containers[i], x.containers[j], false));
+				i++;
+				j++;
+			}
+
+		return result;
+	}
+
+	/**
+	 * Returns a bitmap with the bits set in exactly one of this bitmap and
+	 * <tt>x</tt>.
+	 *
+	 * @param x  the other operand.
+	 * @return the bitwise XOR of this bitmap and <tt>x</tt>.
+	 */
+	public RoaringBitmap xor(RoaringBitmap x)
+	{
+		RoaringBitmap result = new RoaringBitmap();
+		int i = 0, j = 0;
+
+		while (i < numChunks || j < x.numChunks)
+			if (j == x.numChunks || (i < numChunks && keys[i] < x.keys[j]))
+			{
+				result.appendChunk(keys[i], containers[i].copy());
+				i++;
+			}
+			else if (i == numChunks || keys[i] > x.keys[j])
+			{
+				result.appendChunk(x.keys[j], x.containers[j].copy());
+				j++;
+			}
+			else
+			{
+				Container c = xor(containers[i], x.containers[j], false);
+
+				if (c.cardinality() > 0)
+					result.appendChunk(keys[i], c);
+				i++;
+				j++;
+			}
+
+		return result;
+	}
+
+	/**
+	 * Returns a bitmap with the bits set in this bitmap but not in
+	 * <tt>x</tt>.
+	 *
+	 * @param x  the other operand.
+	 * @return the bitwise AND of this bitmap and the complement of
+	 *         <tt>x</tt>.
+	 */
+	public RoaringBitmap andNot(RoaringBitmap x)
+	{
+		RoaringBitmap result = new RoaringBitmap();
+		int i = 0, j = 0;
+
+		while (i < numChunks)
+			if (j == x.numChunks || keys[i] < x.keys[j])
+			{
+				result.appendChunk(keys[i], containers[i].copy());
+				i++;
+			}
+			else if (keys[i] > x.keys[j])
+				j++;
+			else
+			{
+				Container c = andNot(containers[i], x.containers[j], false);
+
+				if (c.cardinality() > 0)
+					result.appendChunk(keys[i], c);
+				i++;
+				j++;
+			}
+
+		return result;
+	}
+
+	/**
+	 * Clears the bits of this bitmap that are not set in <tt>x</tt>.
+	 *
+	 * @param x  the other operand.
+	 */
+	public void andAssign(RoaringBitmap x)
+	{
+		// a bitmap and'ed with itself is unchanged
+		if (x == this)
+			return;
+
+		int i = 0, j = 0, n = 0;
+
+		while (i < numChunks && j < x.numChunks)
+			if (keys[i] < x.keys[j])
+				i++;
+			else if (keys[i] > x.keys[j])
+				j++;
+			else
+			{
+				Container c = and(containers[i], x.containers[j], true);
+
+				if (c.cardinality() > 0)
+				{
+					keys[n] = keys[i];
+					containers[n++] = c;
+				}
+				i++;
+				j++;
+			}
+
+		truncate(n);
+	}
+
+	/**
+	 * Sets the bits of this bitmap that are set in <tt>x</tt>.
+	 *
+	 * @param x  the other operand.
+	 */
+	public void orAssign(RoaringBitmap x)
+	{
+		// a bitmap or'ed with itself is unchanged
+		if (x == this)
+			return;
+
+		int i = 0, j = 0;
+
+		while (j < x.numChunks)
+			if (i < numChunks && keys[i] < x.keys[j])
+				i++;
+			else if (i < numChunks && keys[i] == x.keys[j])
+			{
+				containers[i] = or(containers[i], x.containers[j], true);
+				i++;
+				j++;
+			}
+			else
+			{
+				insertChunk(i, x.keys[j], x.containers[j].copy());
+				i++;
+				j++;
+			}
+
+		modCount++;
+	}
+
+	/**
+	 * Flips the bits of this bitmap that are set in <tt>x</tt>.
+	 *
+	 * @param x  the other operand.
+	 */
+	public void xorAssign(RoaringBitmap x)
+	{
+		// a bitmap xor'ed with itself is empty. the loop below cannot
+		// handle this case, since removing a chunk would also remove it
+		// from x
+		if (x == this)
+		{
+			clear();
+			return;
+		}
+
+		int i = 0, j = 0;
+
+		while (j < x.numChunks)
+			if (i < numChunks && keys[i] < x.keys[j])
+				i++;
+			else if (i < numChunks && keys[i] == x.keys[j])
+			{
+				Container c = xor(containers[i], x.containers[j], true);
+
+				if (c.cardinality() > 0)
+				{
+					containers[i] = c;
+					i++;
+				}
+				else
+					removeChunk(i);
+				j++;
+			}
+			else
+			{
+				insertChunk(i, x.keys[j], x.containers[j].copy());
+				i++;
+				j++;
+			}
+
+		modCount++;
+	}
+
+	/**
+	 * Clears the bits of this bitmap that are set in <tt>x</tt>.
+	 *
+	 * @param x  the other operand.
+	 */
+	public void andNotAssign(RoaringBitmap x)
+	{
+		// a bitmap minus itself is empty. the loop below would also
+		// compact x while walking it
+		if (x == this)
+		{
+			clear();
+			return;
+		}
+
+		int i = 0, j = 0, n = 0;
+
+		while (i < numChunks)
+			if (j == x.numChunks || keys[i] < x.keys[j])
+			{
+				keys[n] = keys[i];
+				containers[n++] = containers[i++];
+			}
+			else if (keys[i] > x.keys[j])
+				j++;
+			else
+			{
+				Container c = andNot(containers[i], x.containers[j], true);
+
+				if (c.cardinality() > 0)
+				{
+					keys[n] = keys[i];
+					containers[n++] = c;
+				}
+				i++;
+				j++;
+			}
+
+		truncate(n);
+	}
+
+	/**
+	 * Returns <tt>true</tt> if <tt>x</tt> is a <tt>RoaringBitmap</tt>
+	 * with the same bits set as this bitmap.
+	 *
+	 * @param x  object to compare with this bitmap.
+	 * @return <tt>true</tt> if the bitmaps have the same set bits.
+	 */
+	public boolean equals(Object x)
+	{
+		if (x == this)
+			return true;
+		if (!(x instanceof RoaringBitmap))
+			return false;
+
+		RoaringBitmap rb = (RoaringBitmap)x;
+
+		if (numChunks != rb.numChunks)
+			return false;
+
+		for (int i = 0; i < numChunks; i++)
+			if (keys[i] != rb.keys[i] ||
+				!sameValues(containers[i], rb.containers[i]))
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * Returns a hash code computed from the indexes of the set bits.
+	 *
+	 * @return the hash code of this bitmap.
+	 */
+	public int hashCode()
+	{
+		int h = 0;
+
+		for (int i = 0; i < numChunks; i++)
+		{
+			Container c = containers[i];
+
+			for (int v = c.nextValue(0); v >= 0; v = c.nextValue(v+1))
+				h = 31 * h + ((keys[i] << 16) | v);
+		}
+
+		return h;
+	}
+
+	/**
+	 * Returns a string representation of the bitmap.  The representation
+	 * is a comma separated list of the indexes of the set bits in
+	 * ascending order enclosed in braces.
+	 *
+	 * @return a string representation of the bitmap.
+	 */
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder("{");
+		int i = nextSetBit(0);
+
+		while (i >= 0)
+		{
+			sb.append(i);
+			i = (i == Integer.MAX_VALUE) ? -1 : nextSetBit(i+1);
+			if (i >= 0)
+				sb.append(", ");
+		}
+
+		return sb.append('}').toString();
+	}
+
+	private static void checkIndex(int i, String method)
+	{
+		if (i < 0)
+			throw new IndexOutOfBoundsException(
+				"RoaringBitmap " + method + "(): bit out of range");
+	}
+
+	// binary search keys for key. return its position or
+	// -(insertion point) - 1
+	private int chunkIndex(char key)
+	{
+		int low = 0, high = numChunks - 1;
+
+		while (low <= high)
+		{
+			int mid = (low + high) >>> 1;
+
+			if (keys[mid] < key)
+				low = mid + 1;
+			else if (keys[mid] > key)
+				high = mid - 1;
+			else
+				return mid;
+		}
+
+		return -(low + 1);
+	}
+
+	private void ensureCapacity(int n)
+	{
+		if (n > keys.length)
+		{
+			int cap = Math.max(n, 2 * keys.length);
+
+			keys = java.util.Arrays.copyOf(keys, cap);
+			containers = java.util.Arrays.copyOf(containers, cap);
+		}
+	}
+
+	private void insertChunk(int idx, char key, Container c)
+	{
+		ensureCapacity(numChunks + 1);
+		System.arraycopy(keys, idx, keys, idx + 1, numChunks - idx);
+		System.arraycopy(containers, idx, containers, idx + 1, numChunks - idx);
+		keys[idx] = key;
+		containers[idx] = c;
+		numChunks++;
+	}
+
+	private void removeChunk(int idx)
+	{
+		System.arraycopy(keys, idx + 1, keys, idx, numChunks - idx - 1);
+		System.arraycopy(containers, idx + 1, containers, idx,
+			numChunks - idx - 1);
+		containers[--numChunks] = null;
+	}
+
+	// add a chunk whose key is greater than every current key
+	private void appendChunk(char key, Container c)
+	{
+		ensureCapacity(numChunks + 1);
+		keys[numChunks] = key;
+		containers[numChunks++] = c;
+	}
+
+	// keep only the first n chunks
+	private void truncate(int n)
+	{
+		for (int i = n; i < numChunks; i++)
+			containers[i] = null;
+		numChunks = n;
+		modCount++;
+	}
+
+	private static boolean sameValues(Container a, Container b)
+	{
+		if (a.cardinality() != b.cardinality())
+			return false;
+
+		int u = a.nextValue(0), v = b.nextValue(0);
+
+		while (u >= 0 && u == v)
+		{
+			u = a.nextValue(u+1);
+			v = b.nextValue(v+1);
+		}
+
+		return u == v;
+	}
+
+	// the binary operations work on array and bitmap containers, so
+	// a run container operand is expanded first
+	private static Container expand(Container c)
+	{
+		if (c instanceof RunContainer)
+			return ((RunContainer)c).toArrayOrBitmap();
+		return c;
+	}
+
+	// return the AND of a and b. if inPlace is true, a may be
+	// overwritten and returned; b is never changed
+	private static Container and(Container a, Container b, boolean inPlace)
+	{
+		if (a instanceof RunContainer)
+		{
+			a = expand(a);
+			inPlace = true;
+		}
+		b = expand(b);
+
+		if (a instanceof ArrayContainer)
+		{
+			ArrayContainer ac = (ArrayContainer)a;
+			ArrayContainer dest = inPlace ? ac : new ArrayContainer(ac.card);
+
+			if (b instanceof ArrayContainer)
+				return ArrayContainer.intersect(ac, (ArrayContainer)b, dest);
+			else
+				return ArrayContainer.filter(ac, (BitmapContainer)b, true, dest);
+		}
+
+		BitmapContainer bc = (BitmapContainer)a;
+
+		if (b instanceof ArrayContainer)
+		{
+			ArrayContainer ac = (ArrayContainer)b;
+			return ArrayContainer.filter(ac, bc, true,
+				new ArrayContainer(ac.card));
+		}
+
+		BitmapContainer dest = inPlace ? bc : new BitmapContainer();
+		long[] w = bc.words, v = ((BitmapContainer)b).words, d = dest.words;
+		int card = 0;
+
+		for (int k = 0; k < BITMAP_WORDS; k++)
+		{
+			d[k] = w[k] & v[k];
+			card += Long.bitCount(d[k]);
+		}
+		dest.card = card;
+
+		return dest.normalize();
+	}
+
+	// return the OR of a and b. if inPlace is true, a may be
+	// overwritten and returned; b is never changed
+	private static Container or(Container a, Container b, boolean inPlace)
+	{
+		if (a instanceof RunContainer)
+		{
+			a = expand(a);
+			inPlace = true;
+		}
+		b = expand(b);
+
+		if (a instanceof ArrayContainer && b instanceof ArrayContainer)
+			return ArrayContainer.union((ArrayContainer)a, (ArrayContainer)b,
+				inPlace);
+
+		if (a instanceof ArrayContainer)
+		{
+			BitmapContainer dest = ((BitmapContainer)b).copy();
+			dest.addAll((ArrayContainer)a);
+			return dest;
+		}
+
+		BitmapContainer dest = inPlace ? (BitmapContainer)a
+			: ((BitmapContainer)a).copy();
+
+		if (b instanceof ArrayContainer)
+			dest.addAll((ArrayContainer)b);
+		else
+		{
+			long[] d = dest.words, v = ((BitmapContainer)b).words;
+			int card = 0;
+
+			for (int k = 0; k < BITMAP_WORDS; k++)
+			{
+				d[k] |= v[k];
+				card += Long.bitCount(d[k]);
+			}
+			dest.card = card;
+		}
+
+		return dest;
+	}
+
+	// return the XOR of a and b. if inPlace is true, a may be
+	// overwritten and returned; b is never changed
+	private static Container xor(Container a, Container b, boolean inPlace)
+	{
+		if (a instanceof RunContainer)
+		{
+			a = expand(a);
+			inPlace = true;
+		}
+		b = expand(b);
+
+		if (a instanceof ArrayContainer && b instanceof ArrayContainer)
+			return ArrayContainer.symmetricDifference((ArrayContainer)a,
+				(ArrayContainer)b);
+
+		if (a instanceof ArrayContainer)
+		{
+			BitmapContainer dest = ((BitmapContainer)b).copy();
+			dest.flipAll((ArrayContainer)a);
+			return dest.normalize();
+		}
+
+		BitmapContainer dest = inPlace ? (BitmapContainer)a
+			: ((BitmapContainer)a).copy();
+
+		if (b instanceof ArrayContainer)
+			dest.flipAll((ArrayContainer)b);
+		else
+		{
+			long[] d = dest.words, v = ((BitmapContainer)b).words;
+			int card = 0;
+
+			for (int k = 0; k < BITMAP_WORDS; k++)
+			{
+				d[k] ^= v[k];
+				card += Long.bitCount(d[k]);
+			}
+			dest.card = card;
+		}
+
+		return dest.normalize();
+	}
+
+	// return a AND NOT b. if inPlace is true, a may be overwritten
+	// and returned; b is never changed
+	private static Container andNot(Container a, Container b,
+		boolean inPlace)
+	{
+		if (a instanceof RunContainer)
+		{
+			a = expand(a);
+			inPlace = true;
+		}
+		b = expand(b);
+
+		if (a instanceof ArrayContainer)
+		{
+			ArrayContainer ac = (ArrayContainer)a;
+			ArrayContainer dest = inPlace ? ac : new ArrayContainer(ac.card);
+
+			if (b instanceof ArrayContainer)
+				return ArrayContainer.difference(ac, (ArrayContainer)b, dest);
+			else
+				return ArrayContainer.filter(ac, (BitmapContainer)b, false,
+					dest);
+		}
+
+		BitmapContainer dest = inPlace ? (BitmapContainer)a
+			: ((BitmapContainer)a).copy();
+
+		if (b instanceof ArrayContainer)
+			dest.removeAll((ArrayContainer)b);
+		else
+		{
+			long[] d = dest.words, v = ((BitmapContainer)b).words;
+			int card = 0;
+
+			for (int k = 0; k < BITMAP_WORDS; k++)
+			{
+				d[k] &= ~v[k];
+				card += Long.bitCount(d[k]);
+			}
+			dest.card = card;
+		}
+
+		return dest.normalize();
+	}
+
+	// holds a set of 16-bit values. add and remove return the
+	// container that holds the result, which may be a new container
+	// of a different kind
+	private static abstract class Container
+	{
+		abstract Container add(int x);
+
+		abstract Container remove(int x);
+
+		abstract boolean contains(int x);
+
+		abstract int cardinality();
+
+		// number of values less than x
+		abstract int rank(int x);
+
+		// value with rank j
+		abstract int select(int j);
+
+		// smallest value >= from or -1 if there is none
+		abstract int nextValue(int from);
+
+		abstract Container copy();
+
+		abstract int sizeInBytes();
+
+		// store each value or'ed with high in arr[n], arr[n+1], ...
+		// and return the index after the last one stored
+		abstract int fill(int[] arr, int n, int high);
+	}
+
+	// a sorted array of at most ARRAY_MAX values
+	private static class ArrayContainer extends Container
+	{
+		char[] content;
+		int card;
+
+		ArrayContainer(int capacity)
+		{
+			content = new char[Math.max(capacity, 1)];
+			card = 0;
+		}
+
+		ArrayContainer(char[] content, int card)
+		{
+			this.content = content;
+			this.card = card;
+		}
+
+		// binary search content for x. return its position or
+		// -(insertion point) - 1
+		int search(int x)
+		{
+			int low = 0, high = card - 1;
+
+			while (low <= high)
+			{
+				int mid = (low + high) >>> 1;
+
+				if (content[mid] < x)
+					low = mid + 1;
+				else if (content[mid] > x)
+					high = mid - 1;
+				else
+					return mid;
+			}
+
+			return -(low + 1);
+		}
+
+		Container add(int x)
+		{
+			int i = search(x);
+
+			if (i >= 0)
+				return this;
+			if (card == ARRAY_MAX)
+				return toBitmap().add(x);
+
+			i = -(i + 1);
+			if (card == content.length)
+				content = java.util.Arrays.copyOf(content,
+					Math.min(2 * card, ARRAY_MAX));
+			System.arraycopy(content, i, content, i + 1, card - i);
+			content[i] = (char)x;
+			card++;
+
+			return this;
+		}
+
+		Container remove(int x)
+		{
+			int i = search(x);
+
+			if (i >= 0)
+			{
+				System.arraycopy(content, i + 1, content, i, card - i - 1);
+				card--;
+			}
+
+			return this;
+		}
+
+		boolean contains(int x)
+		{
+			return search(x) >= 0;
+		}
+
+		int cardinality()
+		{
+			return card;
+		}
+
+		int rank(int x)
+		{
+			int i = search(x);
+
+			return (i >= 0) ? i : -(i + 1);
+		}
+
+		int select(int j)
+		{
+			return content[j];
+		}
+
+		int nextValue(int from)
+		{
+			int i = rank(from);
+
+			return (i < card) ? content[i] : -1;
+		}
+
+		Container copy()
+		{
+			return new ArrayContainer(java.util.Arrays.copyOf(content,
+				Math.max(card, 1)), card);
+		}
+
+		int sizeInBytes()
+		{
+			return 2 * content.length + 4;
+		}
+
+		int fill(int[] arr, int n, int high)
+		{
+			for (int i = 0; i < card; i++)
+				arr[n++] = high | content[i];
+			return n;
+		}
+
+		BitmapContainer toBitmap()
+		{
+			BitmapContainer bc = new BitmapContainer();
+
+			bc.addAll(this);
+			return bc;
+		}
+
+		// a bitmap holds more than ARRAY_MAX values
+		Container normalize()
+		{
+			return (card > ARRAY_MAX) ? toBitmap() : this;
+		}
+
+		// dest may be a; values are written no faster than they are read
+		static ArrayContainer intersect(ArrayContainer a, ArrayContainer b,
+			ArrayContainer dest)
+		{
+			int i = 0, j = 0, n = 0;
+
+			while (i < a.card && j < b.card)
+				if (a.content[i] < b.content[j])
+					i++;
+				else if (a.content[i] > b.content[j])
+					j++;
+				else
+				{
+					dest.content[n++] = a.content[i];
+					i++;
+					j++;
+				}
+			dest.card = n;
+
+			return dest;
+		}
+
+		static ArrayContainer difference(ArrayContainer a, ArrayContainer b,
+			ArrayContainer dest)
+		{
+			int i = 0, j = 0, n = 0;
+
+			while (i < a.card)
+				if (j == b.card || a.content[i] < b.content[j])
+					dest.content[n++] = a.content[i++];
+				else if (a.content[i] > b.content[j])
+					j++;
+				else
+				{
+					i++;
+					j++;
+				}
+			dest.card = n;
+
+			return dest;
+		}
+
+		// keep the values of a whose bit in b equals keep
+		static ArrayContainer filter(ArrayContainer a, BitmapContainer b,
+			boolean keep, ArrayContainer dest)
+		{
+			int n = 0;
+
+			for (int i = 0; i < a.card; i++)
+				if (b.contains(a.content[i]) == keep)
+					dest.content[n++] = a.content[i];
+			dest.card = n;
+
+			return dest;
+		}
+
+		// if inPlace is true and a has room for the result, merge
+		// from the back into a without allocating
+		static Container union(ArrayContainer a, ArrayContainer b,
+			boolean inPlace)
+		{
+			if (a.card + b.card > ARRAY_MAX)
+			{
+				BitmapContainer bc = a.toBitmap();
+
+				bc.addAll(b);
+				return bc.normalize();
+			}
+
+			int total = a.card + b.card;
+
+			if (inPlace && a.content.length >= total)
+			{
+				int i = a.card - 1, j = b.card - 1, k = total - 1;
+
+				while (j >= 0)
+					if (i >= 0 && a.content[i] > b.content[j])
+						a.content[k--] = a.content[i--];
+					else
+					{
+						if (i >= 0 && a.content[i] == b.content[j])
+							i--;
+						a.content[k--] = b.content[j--];
+					}
+
+				// content[0..i] is untouched and the merged values are in
+				// content[k+1..total-1]. each duplicate leaves a gap of one
+				// slot between them, so shift the merged values down
+				if (k > i)
+					System.arraycopy(a.content, k + 1, a.content, i + 1,
+						total - 1 - k);
+				a.card = i + 1 + total - 1 - k;
+
+				return a;
+			}
+
+			ArrayContainer dest = new ArrayContainer(total);
+			int i = 0, j = 0, n = 0;
+
+			while (i < a.card || j < b.card)
+				if (j == b.card || (i < a.card && a.content[i] < b.content[j]))
+					dest.content[n++] = a.content[i++];
+				else if (i == a.card || a.content[i] > b.content[j])
+					dest.content[n++] = b.content[j++];
+				else
+				{
+					dest.content[n++] = a.content[i++];
+					j++;
+				}
+			dest.card = n;
+
+			return dest;
+		}
+
+		static Container symmetricDifference(ArrayContainer a,
+			ArrayContainer b)
+		{
+			ArrayContainer dest = new ArrayContainer(a.card + b.card);
+			int i = 0, j = 0, n = 0;
+
+			while (i < a.card || j < b.card)
+				if (j == b.card || (i < a.card && a.content[i] < b.content[j]))
+					dest.content[n++] = a.content[i++];
+				else if (i == a.card || a.content[i] > b.content[j])
+					dest.content[n++] = b.content[j++];
+				else
+				{
+					i++;
+					j++;
+				}
+			dest.card = n;
+
+			return dest.normalize();
+		}
+	}
+
+	// one bit for each of the 65536 values
+	private static class BitmapContainer extends Container
+	{
+		long[] words;
+		int card;
+
+		BitmapContainer()
+		{
+			words = new long[BITMAP_WORDS];
+			card = 0;
+		}
+
+		Container add(int x)
+		{
+			long mask = 1L << x;
+
+			if ((words[x >>> 6] & mask) == 0)
+			{
+				words[x >>> 6] |= mask;
+				card++;
+			}
+
+			return this;
+		}
+
+		Container remove(int x)
+		{
+			long mask = 1L << x;
+
+			if ((words[x >>> 6] & mask) != 0)
+			{
+				words[x >>> 6] &= ~mask;
+				card--;
+			}
+
+			return normalize();
+		}
+
+		boolean contains(int x)
+		{
+			return (words[x >>> 6] & (1L << x)) != 0;
+		}
+
+		int cardinality()
+		{
+			return card;
+		}
+
+		int rank(int x)
+		{
+			int w = x >>> 6, count = 0;
+
+			for (int k = 0; k < w; k++)
+				count += Long.bitCount(words[k]);
+
+			// 1L << x is 1 when x is a multiple of 64, so mask is 0
+			return count + Long.bitCount(words[w] & ((1L << x) - 1));
+		}
+
+		int select(int j)
+		{
+			for (int k = 0; k < BITMAP_WORDS; k++)
+			{
+				int count = Long.bitCount(words[k]);
+
+				if (j < count)
+				{
+					long word = words[k];
+
+					// clear the j lowest set bits
+					for (; j > 0; j--)
+						word &= word - 1;
+					return (k << 6) + Long.numberOfTrailingZeros(word);
+				}
+				j -= count;
+			}
+
+			throw new IndexOutOfBoundsException(
+				"RoaringBitmap select(): rank out of range");
+		}
+
+		int nextValue(int from)
+		{
+			if (from >= 65536)
+				return -1;
+
+			int k = from >>> 6;
+			long word = words[k] & (-1L << from);
+
+			while (word == 0)
+			{
+				if (++k == BITMAP_WORDS)
+					return -1;
+				word = words[k];
+			}
+
+			return (k << 6) + Long.numberOfTrailingZeros(word);
+		}
+
+		BitmapContainer copy()
+		{
+			BitmapContainer bc = new BitmapContainer();
+
+			System.arraycopy(words, 0, bc.words, 0, BITMAP_WORDS);
+			bc.card = card;
+			return bc;
+		}
+
+		int sizeInBytes()
+		{
+			return 8 * BITMAP_WORDS + 4;
+		}
+
+		int fill(int[] arr, int n, int high)
+		{
+			for (int k = 0; k < BITMAP_WORDS; k++)
+			{
+				long word = words[k];
+
+				while (word != 0)
+				{
+					arr[n++] = high | (k << 6) | Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+				}
+			}
+
+			return n;
+		}
+
+		void addAll(ArrayContainer a)
+		{
+			for (int i = 0; i < a.card; i++)
+				add(a.content[i]);
+		}
+
+		void removeAll(ArrayContainer a)
+		{
+			for (int i = 0; i < a.card; i++)
+			{
+				int x = a.content[i];
+				long mask = 1L << x;
+
+				if ((words[x >>> 6] & mask) != 0)
+				{
+					words[x >>> 6] &= ~mask;
+					card--;
+				}
+			}
+		}
+
+		void flipAll(ArrayContainer a)
+		{
+			for (int i = 0; i < a.card; i++)
+			{
+				int x = a.content[i];
+				long mask = 1L << x;
+
+				words[x >>> 6] ^= mask;
+				card += ((words[x >>> 6] & mask) != 0) ? 1 : -1;
+			}
+		}
+
+		// an array holds ARRAY_MAX or fewer values
+		Container normalize()
+		{
+			if (card > ARRAY_MAX)
+				return this;
+
+			ArrayContainer ac = new ArrayContainer(card);
+
+			ac.card = fill16(ac.content);
+			return ac;
+		}
+
+		private int fill16(char[] arr)
+		{
+			int n = 0;
+
+			for (int k = 0; k < BITMAP_WORDS; k++)
+			{
+				long word = words[k];
+
+				while (word != 0)
+				{
+					arr[n++] = (char)((k << 6) + Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+
+			return n;
+		}
+	}
+
+	// runs of consecutive values. run i covers the values from
+	// runs[2*i] through runs[2*i] + runs[2*i+1]
+	private static class RunContainer extends Container
+	{
+		char[] runs;
+		int numRuns;
+		int card;
+
+		RunContainer(char[] runs, int numRuns, int card)
+		{
+			this.runs = runs;
+			this.numRuns = numRuns;
+			this.card = card;
+		}
+
+		static RunContainer fromContainer(Container c)
+		{
+			// count the runs first so the array is exact
+			int count = 0, prev = -2;
+
+			for (int v = c.nextValue(0); v >= 0; v = c.nextValue(v+1))
+			{
+				if (v != prev + 1)
+					count++;
+				prev = v;
+			}
+
+			char[] runs = new char[2 * count];
+			int r = -1;
+
+			prev = -2;
+			for (int v = c.nextValue(0); v >= 0; v = c.nextValue(v+1))
+			{
+				if (v != prev + 1)
+				{
+					r++;
+					runs[2*r] = (char)v;
+					runs[2*r+1] = 0;
+				}
+				else
+					runs[2*r+1]++;
+				prev = v;
+			}
+
+			return new RunContainer(runs, count, c.cardinality());
+		}
+
+		Container toArrayOrBitmap()
+		{
+			if (card <= ARRAY_MAX)
+			{
+				ArrayContainer ac = new ArrayContainer(card);
+
+				for (int r = 0; r < numRuns; r++)
+				{
+					int start = runs[2*r], end = start + runs[2*r+1];
+
+					for (int v = start; v <= end; v++)
+						ac.content[ac.card++] = (char)v;
+				}
+				return ac;
+			}
+
+			BitmapContainer bc = new BitmapContainer();
+
+			for (int r = 0; r < numRuns; r++)
+			{
+				int start = runs[2*r], end = start + runs[2*r+1];
+
+				for (int v = start; v <= end; v++)
+					bc.words[v >>> 6] |= 1L << v;
+			}
+			bc.card = card;
+			return bc;
+		}
+
+		// index of the last run starting at or before x, or -1
+		private int findRun(int x)
+		{
+			int low = 0, high = numRuns - 1;
+
+			while (low <= high)
+			{
+				int mid = (low + high) >>> 1;
+
+				if (runs[2*mid] <= x)
+					low = mid + 1;
+				else
+					high = mid - 1;
+			}
+
+			return high;
+		}
+
+		Container add(int x)
+		{
+			if (contains(x))
+				return this;
+			return toArrayOrBitmap().add(x);
+		}
+
+		Container remove(int x)
+		{
+			if (!contains(x))
+				return this;
+			return toArrayOrBitmap().remove(x);
+		}
+
+		boolean contains(int x)
+		{
+			int r = findRun(x);
+
+			return r >= 0 && x <= runs[2*r] + runs[2*r+1];
+		}
+
+		int cardinality()
+		{
+			return card;
+		}
+
+		int rank(int x)
+		{
+			int count = 0;
+
+			for (int r = 0; r < numRuns; r++)
+			{
+				int start = runs[2*r], len = runs[2*r+1] + 1;
+
+				if (x <= start)
+					break;
+				count += Math.min(len, x - start);
+			}
+
+			return count;
+		}
+
+		int select(int j)
+		{
+			for (int r = 0; r < numRuns; r++)
+			{
+				int len = runs[2*r+1] + 1;
+
+				if (j < len)
+					return runs[2*r] + j;
+				j -= len;
+			}
+
+			throw new IndexOutOfBoundsException(
+				"RoaringBitmap select(): rank out of range");
+		}
+
+		int nextValue(int from)
+		{
+			int r = findRun(from);
+
+			if (r >= 0 && from <= runs[2*r] + runs[2*r+1])
+				return from;
+			r++;
+
+			return (r < numRuns) ? runs[2*r] : -1;
+		}
+
+		Container copy()
+		{
+			return new RunContainer(runs.clone(), numRuns, card);
+		}
+
+		int sizeInBytes()
+		{
+			return 2 * runs.length + 8;
+		}
+
+		int fill(int[] arr, int n, int high)
+		{
+			for (int r = 0; r < numRuns; r++)
+			{
+				int start = runs[2*r], end = start + runs[2*r+1];
+
+				for (int v = start; v <= end; v++)
+					arr[n++] = high | v;
+			}
+
+			return n;
+		}
+	}
+
+	private class IteratorImpl implements Iterator<Integer>
+	{
+		// index of the next set bit or -1
+		private int nextBit;
+		// index returned by the last call to next() or -1
+		private int lastReturned = -1;
+		private int expectedModCount = modCount;
+
+		IteratorImpl()
+		{
+			nextBit = nextSetBit(0);
+		}
+
+		public boolean hasNext()
+		{
+			return nextBit >= 0;
+		}
+
+		public Integer next()
+		{
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			if (nextBit < 0)
+				throw new NoSuchElementException(
+					"RoaringBitmap iterator(): no more elements");
+
+			lastReturned = nextBit;
+			nextBit = (nextBit == Integer.MAX_VALUE) ? -1
+				: nextSetBit(nextBit + 1);
+
+			return lastReturned;
+		}
+
+		public void remove()
+		{
+			if (lastReturned == -1)
+				throw new IllegalStateException(
+					"RoaringBitmap iterator(): no element to remove");
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+
+			RoaringBitmap.this.clear(lastReturned);
+			lastReturned = -1;
+			expectedModCount = modCount;
+		}
+	}
+}
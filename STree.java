@@ -30,6 +30,11 @@ public class STree<T>
 	// to verify that it is in a consistent state
 	transient private int modCount;
 
+	// addAll() rebuilds the tree when it adds at least
+	// treeSize/BULK_RATIO sorted elements. a rebuild takes O(n + m)
+	// time, and m insertions take O(m log n) time
+	private static final int BULK_RATIO = 16;
+
 	// build a shadow tree that is used for tree display
 	private STNodeShadow buildShadowTree(STNode<T> t, int level)
    {
@@ -205,6 +210,62 @@ public class STree<T>
 	   treeSize = 0;
 	}
 
+    /**
+     * Builds a binary search tree from an array whose elements are in
+     * strictly ascending order.  Like the tree that <tt>readObject</tt>
+     * builds, the tree is perfectly balanced, and the method runs in
+     * O(n) time.
+     *
+     * @param arr elements in strictly ascending order.
+     * @return a tree containing the elements.
+     * @throws IllegalArgumentException if the elements are not in strictly
+     *         ascending order.
+     */
+	public static <T> STree<T> fromSorted(T[] arr)
+	{
+		return buildFromSorted(arr, arr.length);
+	}
+
+    /**
+     * Builds a perfectly balanced binary search tree from elements in
+     * strictly ascending order in O(n) time.
+     *
+     * @param iter iterator over the elements in ascending order.
+     * @return a tree containing the elements.
+     * @throws IllegalArgumentException if the elements are not in strictly
+     *         ascending order.
+     */
+	public static <T> STree<T> fromSorted(Iterator<? extends T> iter)
+	{
+		Object[] arr = new Object[16];
+		int n = 0;
+
+		while (iter.hasNext())
+		{
+			if (n == arr.length)
+				arr = java.util.Arrays.copyOf(arr, 2 * n);
+			arr[n++] = iter.next();
+		}
+
+		return buildFromSorted(arr, n);
+	}
+
+	// build a tree from arr[0] to arr[n-1]
+	private static <T> STree<T> buildFromSorted(Object[] arr, int n)
+	{
+		if (!SortedArrays.isAscending(arr, n))
+			throw new IllegalArgumentException(
+				"STree fromSorted(): elements are not in " +
+				"strictly ascending order");
+
+		STree<T> tree = new STree<T>();
+
+		tree.root = buildTree(arr, 0, n-1);
+		tree.treeSize = n;
+
+		return tree;
+	}
+
     /**
      * Adds the specified item to this tree if it is not already present.
      *
@@ -258,6 +319,46 @@ public class STree<T>
 		return true;
 	}
 
+    /**
+     * Adds all of the elements in the specified collection to this tree.
+     * When the elements of <tt>c</tt> are in strictly ascending order, as
+     * they are for an ordered collection, and there are at least
+     * 1/16 as many of them as there are elements in the tree, the method
+     * merges them with the elements of the tree and rebuilds a perfectly
+     * balanced tree in O(n + m) time.  Otherwise it adds the elements one
+     * at a time.
+     *
+     * @param c collection whose elements are added to this tree.
+     * @return <tt>true</tt> if the tree changed as a result of the call.
+     */
+	public boolean addAll(Collection<? extends T> c)
+	{
+		Object[] arr = c.toArray();
+		int oldSize = treeSize;
+
+		if (arr.length == 0)
+			return false;
+
+		if (arr.length >= treeSize / BULK_RATIO &&
+			 SortedArrays.isAscending(arr, arr.length))
+		{
+			Object[] merged = SortedArrays.mergeSorted(toArray(), arr);
+
+			if (merged.length == treeSize)
+				return false;
+
+			root = buildTree(merged, 0, merged.length-1);
+			treeSize = merged.length;
+			modCount++;
+			return true;
+		}
+
+		for (int i = 0; i < arr.length; i++)
+			add((T)arr[i]);
+
+		return treeSize != oldSize;
+	}
+
     /**
      * Removes all of the elements from this tree. The resulting tree is empty
      * after the method executes.
@@ -620,6 +721,29 @@ public class STree<T>
         return newNode;
     }
 
+	// build a perfectly balanced tree from arr[low] to arr[high] using
+	// the strategy of buildEquivTree(). the middle element is the root
+	// and the elements on either side of it form its subtrees
+	private static <T> STNode<T> buildTree(Object[] arr, int low, int high)
+	{
+		if (high < low)
+			return null;
+
+		int mid = (low + high) >>> 1;
+		STNode<T> newNode = new STNode<T>((T)arr[mid], null),
+					 left = buildTree(arr, low, mid-1),
+					 right = buildTree(arr, mid+1, high);
+
+		newNode.left = left;
+		newNode.right = right;
+		if (left != null)
+			left.parent = newNode;
+		if (right != null)
+			right.parent = newNode;
+
+		return newNode;
+	}
+
 	/**
 	 * Return a copy of this <tt>STree</tt> instance.
 	 */
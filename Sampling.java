@@ -0,0 +1,205 @@
+/*
+ * @(#)Sampling.java
+ */
+
+package ds.util;
+
+import java.util.SplittableRandom;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * This class contains static methods that draw random samples from a
+ * sequence of elements of unknown length in a single pass.  Each method
+ * takes the random number generator as an argument, so a fixed seed
+ * reproduces a sample and concurrent callers never share a generator;
+ * the overloads without one create a new generator for the call.
+ */
+
+public class Sampling
+{
+	// no instances
+	private Sampling()
+	{}
+
+	/**
+	 * Returns a uniform random sample of <tt>k</tt> elements from the
+	 * iterator, or all of its elements if there are fewer than
+	 * <tt>k</tt>.  Every subset of <tt>k</tt> elements is equally likely.
+	 *
+	 * @param iter  iterator over the elements to sample.
+	 * @param k  the sample size.
+	 * @return a list holding the sample, in no particular order.
+	 * @throws IllegalArgumentException if <tt>k</tt> is negative.
+	 */
+	public static <T> ArrayList<T> reservoirSample(
+		java.util.Iterator<? extends T> iter, int k)
+	{
+		return reservoirSample(iter, k, new SplittableRandom());
+	}
+
+	/**
+	 * Returns a uniform random sample of <tt>k</tt> elements from the
+	 * iterator using the generator <tt>rnd</tt>.  The method skips over
+	 * elements that will not enter the sample (Li's Algorithm L), so it
+	 * draws O(k log(n/k)) random numbers for n elements.
+	 *
+	 * @param iter  iterator over the elements to sample.
+	 * @param k  the sample size.
+	 * @param rnd  the random number generator.
+	 * @return a list holding the sample, in no particular order.
+	 * @throws IllegalArgumentException if <tt>k</tt> is negative.
+	 */
+	public static <T> ArrayList<T> reservoirSample(
+		java.util.Iterator<? extends T> iter, int k, SplittableRandom rnd)
+	{
+		if (k < 0)
+			throw new IllegalArgumentException(
+				"Sampling reservoirSample(): negative sample size");
+
+		ArrayList<T> reservoir = new ArrayList<T>();
+
+		// the first k elements fill the reservoir
+		while (reservoir.size() < k && iter.hasNext())
+			reservoir.add(iter.next());
+
+		if (k == 0 || !iter.hasNext())
+			return reservoir;
+
+		// w is the largest of k uniform random keys; an element
+		// enters the sample when its key is below w. the number of
+		// elements until that happens is geometric, so skip them
+		double w = Math.exp(Math.log(uniform(rnd)) / k);
+
+		while (true)
+		{
+			long skip = (long)Math.floor(Math.log(uniform(rnd)) /
+				Math.log1p(-w));
+
+			for (long i = 0; i < skip; i++)
+			{
+				if (!iter.hasNext())
+					return reservoir;
+				iter.next();
+			}
+
+			if (!iter.hasNext())
+				return reservoir;
+
+			reservoir.set(rnd.nextInt(k), iter.next());
+			w *= Math.exp(Math.log(uniform(rnd)) / k);
+		}
+	}
+
+	/**
+	 * Returns a weighted random sample of <tt>k</tt> elements from the
+	 * iterator, drawn without replacement with probabilities proportional
+	 * to <tt>weight</tt>.
+	 *
+	 * @param iter  iterator over the elements to sample.
+	 * @param weight  function giving the nonnegative weight of an element.
+	 * @param k  the sample size.
+	 * @return a list holding the sample, in no particular order.
+	 * @throws IllegalArgumentException if <tt>k</tt> or a weight is
+	 *         negative.
+	 */
+	public static <T> ArrayList<T> weightedReservoirSample(
+		java.util.Iterator<? extends T> iter,
+		ToDoubleFunction<? super T> weight, int k)
+	{
+		return weightedReservoirSample(iter, weight, k,
+			new SplittableRandom());
+	}
+
+	/**
+	 * Returns a weighted random sample of <tt>k</tt> elements using the
+	 * generator <tt>rnd</tt>.  Each element with weight w gets the key
+	 * u^(1/w) for a uniform random u, and the sample is the k elements
+	 * with the largest keys (Efraimidis and Spirakis' A-Res).  Elements
+	 * of weight 0 are never chosen.
+	 *
+	 * @param iter  iterator over the elements to sample.
+	 * @param weight  function giving the nonnegative weight of an element.
+	 * @param k  the sample size.
+	 * @param rnd  the random number generator.
+	 * @return a list holding the sample, in no particular order.
+	 * @throws IllegalArgumentException if <tt>k</tt> or a weight is
+	 *         negative.
+	 */
+	public static <T> ArrayList<T> weightedReservoirSample(
+		java.util.Iterator<? extends T> iter,
+		ToDoubleFunction<? super T> weight, int k, SplittableRandom rnd)
+	{
+		if (k < 0)
+			throw new IllegalArgumentException(
+				"Sampling weightedReservoirSample(): negative sample size");
+
+		// a min-heap of the k largest keys and their elements. the
+		// keys are ln(u)/w, which orders the elements as u^(1/w) does
+		// without underflowing for large weights
+		double[] keys = new double[k];
+		Object[] items = new Object[k];
+		int n = 0;
+
+		while (iter.hasNext())
+		{
+			T item = iter.next();
+			double w = weight.applyAsDouble(item);
+
+			if (!(w >= 0.0))
+				throw new IllegalArgumentException(
+					"Sampling weightedReservoirSample(): negative weight");
+			if (w == 0.0 || k == 0)
+				continue;
+
+			double key = Math.log(uniform(rnd)) / w;
+
+			if (n < k)
+			{
+				// sift the new key up from the end of the heap
+				int i = n++;
+
+				while (i > 0 && keys[(i - 1) / 2] > key)
+				{
+					keys[i] = keys[(i - 1) / 2];
+					items[i] = items[(i - 1) / 2];
+					i = (i - 1) / 2;
+				}
+				keys[i] = key;
+				items[i] = item;
+			}
+			else if (key > keys[0])
+			{
+				// replace the smallest key and sift down
+				int i = 0;
+
+				while (2 * i + 1 < n)
+				{
+					int child = 2 * i + 1;
+
+					if (child + 1 < n && keys[child + 1] < keys[child])
+						child++;
+					if (keys[child] >= key)
+						break;
+					keys[i] = keys[child];
+					items[i] = items[child];
+					i = child;
+				}
+				keys[i] = key;
+				items[i] = item;
+			}
+		}
+
+		ArrayList<T> sample = new ArrayList<T>();
+
+		for (int i = 0; i < n; i++)
+			sample.add((T)items[i]);
+
+		return sample;
+	}
+
+	// uniform random double in (0, 1]
+	private static double uniform(SplittableRandom rnd)
+	{
+		return 1.0 - rnd.nextDouble();
+	}
+}
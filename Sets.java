@@ -7,10 +7,21 @@ package ds.util;
 /**
  * This class contains static methods for creating the union, intersection, and difference
  * of two sets as well as determining the "subset" relation between two sets.
+ * When both sets are ordered, the methods walk their iterators together in
+ * ascending order and build the resulting <tt>TreeSet</tt> directly from the
+ * merged elements, so they run in time linear in the sizes of the sets.
  */
 
 public class Sets
 {
+	// operations performed by mergeOrdered()
+	private static final int UNION = 0, INTERSECTION = 1, DIFFERENCE = 2,
+									 SYMMETRIC_DIFFERENCE = 3;
+
+	// an intersection looks up the elements of the smaller set in the
+	// larger one when the larger is more than GALLOP_RATIO times the size
+	// of the smaller. otherwise it walks both sets
+	private static final int GALLOP_RATIO = 16;
 	/**
 	 * Creates a new <tt>TreeSet</tt> or <tt>HashSet</tt> object that is the
 	 * set of all elements that are either in the first set or the second set. The
@@ -23,6 +34,9 @@ public class Sets
 	 */
 	public static <T> Set<T> union (Set<T> setA, Set<T> setB)
 	{
+		if (setA instanceof OrderedSet && setB instanceof OrderedSet)
+			return mergeOrdered((OrderedSet<T>)setA, (OrderedSet<T>)setB, UNION);
+
 		Set<T> setUnion;
 
 		// create a new TreeSet or HashSet object that
@@ -57,6 +71,10 @@ public class Sets
 	 */
 	public static <T> Set<T> intersection (Set<T> setA, Set<T> setB)
 	{
+		if (setA instanceof OrderedSet && setB instanceof OrderedSet)
+			return mergeOrdered((OrderedSet<T>)setA, (OrderedSet<T>)setB,
+				INTERSECTION);
+
 		Set<T> setIntersection;
 		T item;
 
@@ -92,6 +110,10 @@ public class Sets
 	 */
 	public static <T> Set<T> difference (Set<T> setA, Set<T> setB)
 	{
+		if (setA instanceof OrderedSet && setB instanceof OrderedSet)
+			return mergeOrdered((OrderedSet<T>)setA, (OrderedSet<T>)setB,
+				DIFFERENCE);
+
 		Set<T> setDifference;
 		T item;
 
@@ -126,7 +148,71 @@ public class Sets
 	 */
 	public static <T> boolean subset(Set<T> setA, Set<T> setB)
 	{
-		return intersection(setA, setB).size() == setA.size();
+		if (setA.size() > setB.size())
+			return false;
+
+		Iterator<T> iterA = setA.iterator();
+
+		// with ordered sets, walk setB alongside setA and stop at
+		// the first element of setA that setB skips over
+		if (setA instanceof OrderedSet && setB instanceof OrderedSet)
+		{
+			Iterator<T> iterB = setB.iterator();
+			T valueB = advance(iterB);
+			int orderValue;
+
+			while (iterA.hasNext())
+			{
+				T valueA = iterA.next();
+
+				orderValue = 1;
+				while (valueB != null &&
+						 (orderValue = ((Comparable<T>)valueA).compareTo(valueB)) > 0)
+					valueB = advance(iterB);
+
+				if (orderValue != 0)
+					return false;
+			}
+
+			return true;
+		}
+
+		while (iterA.hasNext())
+			if (!setB.contains(iterA.next()))
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * Creates a new <tt>TreeSet</tt> or <tt>HashSet</tt> object that is the
+	 * set of all elements that are in exactly one of the two sets. The
+	 * method returns a set with the object type of the first argument.
+	 *
+	 * @param setA  the first set
+	 * @param setB  the second set
+	 * @return a set that contains all of the elements that are in one
+	 *         set but not in the other.
+	 */
+	public static <T> Set<T> symmetricDifference (Set<T> setA, Set<T> setB)
+	{
+		if (setA instanceof OrderedSet && setB instanceof OrderedSet)
+			return mergeOrdered((OrderedSet<T>)setA, (OrderedSet<T>)setB,
+				SYMMETRIC_DIFFERENCE);
+
+		Set<T> setDifference = difference(setA, setB);
+		T item;
+
+		// add the elements of setB that are not in setA
+		Iterator<T> iterB = setB.iterator();
+		while (iterB.hasNext())
+		{
+			item = iterB.next();
+			if (!setA.contains(item))
+				setDifference.add(item);
+		}
+
+		return setDifference;
 	}
 
 	// if more elements remain, return the next value; otherwise,
@@ -141,53 +227,221 @@ public class Sets
 		return value;
 	}
 
-	/**
-	 * A more efficient version of <tt>intersection</tt> when the two set are initially
-	 * ordeed.
-	 *
-	 * @param lhs  the first set for the union
-	 * @param rhs  the second set for the union
-	 * @return a set that contains all of the elements that are in both the
-	 *         first set and in the second set.
-	 */
-	public static <T extends Comparable<? super T>>
-	TreeSet<T> orderedIntersection(TreeSet<T> lhs,TreeSet<T> rhs)
+	// walk the iterators of lhs and rhs together in ascending order,
+	// keeping the elements selected by op. the kept elements are in
+	// ascending order, so the result is built from them in O(n) time
+	private static <T> TreeSet<T> mergeOrdered(OrderedSet<T> lhs,
+		OrderedSet<T> rhs, int op)
 	{
-		// constuct intersection
-		TreeSet<T> setIntersection = new TreeSet<T>();
-		// iterators that traverse the sets
+		Object[] arr;
+
+		// a small set intersected with a large one
+		if (op == INTERSECTION)
+		{
+			OrderedSet<T> small = (lhs.size() <= rhs.size()) ? lhs : rhs,
+							  large = (small == lhs) ? rhs : lhs;
+
+			if ((long)small.size() * GALLOP_RATIO < large.size())
+			{
+				arr = small.toArray();
+				return TreeSet.fromSortedArray(arr,
+					retainOrdered(arr, arr.length, large));
+			}
+		}
+
+		// maximum size of the result
+		if (op == INTERSECTION)
+			arr = new Object[Math.min(lhs.size(), rhs.size())];
+		else if (op == DIFFERENCE)
+			arr = new Object[lhs.size()];
+		else
+			arr = new Object[lhs.size() + rhs.size()];
+
 		Iterator<T> lhsIter = lhs.iterator(), rhsIter = rhs.iterator();
 		T lhsValue, rhsValue;
+		int n = 0, orderValue;
 
 		lhsValue = advance(lhsIter);
 		rhsValue = advance(rhsIter);
 
-		// move forward as long as we have not reached the end of
-		// either set
-		while (lhsValue != null && rhsValue != null)
+		while (lhsValue != null || rhsValue != null)
 		{
-			if (lhsValue.compareTo(rhsValue) < 0)
-				// lhsValue < rhsValue. move to next value in lhs
+			if (lhsValue == null)
+			{
+				// only rhs has values. no more elements can be in an
+				// intersection or difference
+				if (op == INTERSECTION || op == DIFFERENCE)
+					break;
+				orderValue = 1;
+			}
+			else if (rhsValue == null)
+			{
+				if (op == INTERSECTION)
+					break;
+				orderValue = -1;
+			}
+			else
+				orderValue = ((Comparable<T>)lhsValue).compareTo(rhsValue);
+
+			if (orderValue < 0)
+			{
+				// lhsValue is only in lhs
+				if (op != INTERSECTION)
+					arr[n++] = lhsValue;
 				lhsValue = advance(lhsIter);
-			else if (rhsValue.compareTo(lhsValue) < 0)
-				// rhsValue < lhsValue. move to next value in rhs
+			}
+			else if (orderValue > 0)
+			{
+				// rhsValue is only in rhs
+				if (op == UNION || op == SYMMETRIC_DIFFERENCE)
+					arr[n++] = rhsValue;
 				rhsValue = advance(rhsIter);
+			}
 			else
 			{
-				// lhsValue == rhsValue. add it to intersection and
-				// move to next value in both sets
-				setIntersection.add(lhsValue);
+				// the value is in both sets
+				if (op == UNION || op == INTERSECTION)
+					arr[n++] = lhsValue;
 				lhsValue = advance(lhsIter);
 				rhsValue = advance(rhsIter);
 			}
 		}
 
-		return setIntersection;
+		return TreeSet.fromSortedArray(arr, n);
 	}
-}
 
+	// keep the elements of arr[0] to arr[n-1], which are in ascending
+	// order, that are in set, and return how many remain. if set is much
+	// larger than n, each element is looked up in set, whose contains()
+	// descends its tree in O(log m) time. otherwise the method walks the
+	// elements of set alongside arr
+	private static <T> int retainOrdered(Object[] arr, int n, OrderedSet<T> set)
+	{
+		int count = 0, orderValue;
+
+		if ((long)n * GALLOP_RATIO < set.size())
+		{
+			for (int i = 0; i < n; i++)
+				if (set.contains(arr[i]))
+					arr[count++] = arr[i];
+
+			return count;
+		}
+
+		Iterator<T> iter = set.iterator();
+		T value = advance(iter);
+
+		for (int i = 0; i < n && value != null; i++)
+		{
+			orderValue = 1;
+			while (value != null &&
+					 (orderValue = ((Comparable<Object>)arr[i]).compareTo(value)) > 0)
+				value = advance(iter);
+
+			if (orderValue == 0)
+				arr[count++] = arr[i];
+		}
+
+		return count;
+	}
+
+	/**
+	 * Returns the union of two ordered sets in O(n + m) time.
+	 *
+	 * @param lhs  the first set for the union
+	 * @param rhs  the second set for the union
+	 * @return a set that contains all of the elements that are either in the
+	 *         first set or in the second set.
+	 */
+	public static <T extends Comparable<? super T>>
+	TreeSet<T> orderedUnion(OrderedSet<T> lhs, OrderedSet<T> rhs)
+	{
+		return mergeOrdered(lhs, rhs, UNION);
+	}
+
+	/**
+	 * A more efficient version of <tt>intersection</tt> when the two sets are
+	 * ordered.  It runs in O(n + m) time.  If one set is more than 16 times
+	 * larger than the other, the method instead looks up each element of the
+	 * smaller set in the larger one, which takes O(m log n) time.
+	 *
+	 * @param lhs  the first set for the intersection
+	 * @param rhs  the second set for the intersection
+	 * @return a set that contains all of the elements that are in both the
+	 *         first set and in the second set.
+	 */
+	public static <T extends Comparable<? super T>>
+	TreeSet<T> orderedIntersection(OrderedSet<T> lhs, OrderedSet<T> rhs)
+	{
+		return mergeOrdered(lhs, rhs, INTERSECTION);
+	}
+
+	/**
+	 * Returns the intersection of any number of ordered sets.  The sets are
+	 * intersected from smallest to largest, so the candidate elements never
+	 * grow in number, and each step chooses between a merge walk and
+	 * lookups in the next set by their sizes.  The method stops early when
+	 * no candidates remain.
+	 *
+	 * @param sets  the sets for the intersection
+	 * @return a set that contains all of the elements that are in every
+	 *         one of the sets.
+	 */
+	@SafeVarargs
+	public static <T extends Comparable<? super T>>
+	TreeSet<T> orderedIntersection(OrderedSet<T>... sets)
+	{
+		if (sets.length == 0)
+			return new TreeSet<T>();
+
+		// order the sets by size with an insertion sort
+		OrderedSet<T>[] bySize = sets.clone();
+		int i, j;
+
+		for (i = 1; i < bySize.length; i++)
+		{
+			OrderedSet<T> target = bySize[i];
 
+			for (j = i; j > 0 && bySize[j-1].size() > target.size(); j--)
+				bySize[j] = bySize[j-1];
+			bySize[j] = target;
+		}
 
+		Object[] arr = bySize[0].toArray();
+		int n = arr.length;
 
+		for (i = 1; i < bySize.length && n > 0; i++)
+			n = retainOrdered(arr, n, bySize[i]);
 
+		return TreeSet.fromSortedArray(arr, n);
+	}
 
+	/**
+	 * Returns the difference of two ordered sets in O(n + m) time.
+	 *
+	 * @param lhs  the first set
+	 * @param rhs  the set whose elements are excluded
+	 * @return a set that contains all of the elements that are in the
+	 *         first set but not in the second set.
+	 */
+	public static <T extends Comparable<? super T>>
+	TreeSet<T> orderedDifference(OrderedSet<T> lhs, OrderedSet<T> rhs)
+	{
+		return mergeOrdered(lhs, rhs, DIFFERENCE);
+	}
+
+	/**
+	 * Returns the symmetric difference of two ordered sets in O(n + m) time.
+	 *
+	 * @param lhs  the first set
+	 * @param rhs  the second set
+	 * @return a set that contains all of the elements that are in one
+	 *         set but not in the other.
+	 */
+	public static <T extends Comparable<? super T>>
+	TreeSet<T> orderedSymmetricDifference(OrderedSet<T> lhs,
+		OrderedSet<T> rhs)
+	{
+		return mergeOrdered(lhs, rhs, SYMMETRIC_DIFFERENCE);
+	}
+}
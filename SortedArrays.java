@@ -0,0 +1,58 @@
+/*
+ * @(#)SortedArrays.java
+ */
+
+package ds.util;
+
+/**
+ * Helpers for the bulk operations of <tt>STree</tt>, <tt>TreeSet</tt> and
+ * <tt>TreeMap</tt>, which build a tree from an array of elements in
+ * ascending order.  The elements must implement <tt>Comparable</tt>.
+ */
+
+final class SortedArrays
+{
+	// no instances
+	private SortedArrays()
+	{}
+
+	// return true if arr[0] to arr[n-1] are in strictly ascending order
+	static boolean isAscending(Object[] arr, int n)
+	{
+		for (int i = 1; i < n; i++)
+			if (((Comparable<Object>)arr[i-1]).compareTo(arr[i]) >= 0)
+				return false;
+
+		return true;
+	}
+
+	// merge two arrays in strictly ascending order into an array in
+	// strictly ascending order. an element in both is copied from a
+	static Object[] mergeSorted(Object[] a, Object[] b)
+	{
+		Object[] result = new Object[a.length + b.length];
+		int i = 0, j = 0, n = 0, orderValue;
+
+		while (i < a.length && j < b.length)
+		{
+			orderValue = ((Comparable<Object>)a[i]).compareTo(b[j]);
+
+			if (orderValue < 0)
+				result[n++] = a[i++];
+			else if (orderValue > 0)
+				result[n++] = b[j++];
+			else
+			{
+				result[n++] = a[i++];
+				j++;
+			}
+		}
+
+		while (i < a.length)
+			result[n++] = a[i++];
+		while (j < b.length)
+			result[n++] = b[j++];
+
+		return (n == result.length) ? result : java.util.Arrays.copyOf(result, n);
+	}
+}
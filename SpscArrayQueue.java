@@ -0,0 +1,258 @@
+/*
+ * @(#)SpscArrayQueue.java
+ */
+
+package ds.util;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, lock-free queue for handing elements from exactly one
+ * producer thread to exactly one consumer thread.  The elements are held
+ * in a circular array whose capacity is a power of 2.  Only the producer
+ * may call <tt>push</tt> and <tt>offer</tt>, and only the consumer may
+ * call <tt>pop</tt>, <tt>poll</tt>, <tt>peek</tt> and <tt>drainTo</tt>;
+ * <tt>size</tt> and <tt>isEmpty</tt> may be called from any thread and
+ * return a value that was correct at some moment during the call.<p>
+ *
+ * Neither side waits for or locks out the other.  The producer stores an
+ * element and then publishes it by advancing the tail index with an
+ * ordered write (<tt>lazySet</tt>), which is cheaper than a volatile
+ * write; the consumer returns the slot the same way by advancing the head
+ * index.  The head and tail indices live on separate cache lines, and
+ * each side keeps a cached copy of the other's index and reads the shared
+ * one only when the cached value says the queue is full or empty.<p>
+ *
+ * The queue does not hold <tt>null</tt> elements.<p>
+ */
+
+public class SpscArrayQueue<T> implements Queue<T>
+{
+	private final Object[] buffer;
+	private final int mask;
+
+	// number of elements ever removed (head) and added (tail). slot
+	// i & mask holds the element with sequence number i. the consumer
+	// writes head and the producer writes tail
+	private final Index head = new Index();
+	private final Index tail = new Index();
+
+	// an AtomicLong padded to fill a cache line, so that the index
+	// written by one thread does not share a line with data written by
+	// the other. cache is a copy of the other side's index that only the
+	// owner of this index reads and writes
+	private static final class Index extends AtomicLong
+	{
+		long cache;
+		long p1, p2, p3, p4, p5, p6;
+	}
+
+	/**
+	 * Creates an empty queue that holds at most <tt>capacity</tt>
+	 * elements, rounded up to a power of 2.
+	 *
+	 * @param capacity  the least number of elements the queue can hold.
+	 * @throws IllegalArgumentException if <tt>capacity</tt> is not in the
+	 *         range 2 to 2^30.
+	 */
+	public SpscArrayQueue(int capacity)
+	{
+		if (capacity < 2 || capacity > (1 << 30))
+			throw new IllegalArgumentException(
+				"SpscArrayQueue(): capacity must be in the range 2 to 2^30");
+
+		int n = Integer.highestOneBit(capacity - 1) << 1;
+
+		buffer = new Object[n];
+		mask = n - 1;
+	}
+
+	/**
+	 * Returns the number of elements the queue can hold.
+	 *
+	 * @return the capacity of the queue.
+	 */
+	public int capacity()
+	{
+		return buffer.length;
+	}
+
+	/**
+	 * Adds item at the back of the queue if there is room.  Called only
+	 * by the producer thread.
+	 *
+	 * @param item  the element to add.
+	 * @return <tt>true</tt> if the item was added and <tt>false</tt> if the
+	 *         queue is full.
+	 * @throws NullPointerException if <tt>item</tt> is <tt>null</tt>.
+	 */
+	public boolean offer(T item)
+	{
+		if (item == null)
+			throw new NullPointerException("SpscArrayQueue offer(): null element");
+
+		long t = tail.get();
+
+		// the queue looks full with the cached head. read the consumer's
+		// index, which may have moved on
+		if (t - tail.cache >= buffer.length)
+		{
+			tail.cache = head.get();
+			if (t - tail.cache >= buffer.length)
+				return false;
+		}
+
+		buffer[(int)t & mask] = item;
+		// the ordered write makes the element visible before the index
+		tail.lazySet(t + 1);
+		return true;
+	}
+
+	/**
+	 * Insert item at the back of the queue.  Called only by the producer
+	 * thread.
+	 *
+	 * @param item  insert item at the back of the queue
+	 * @throws IndexOutOfBoundsException if the queue is full.
+	 * @throws NullPointerException if <tt>item</tt> is <tt>null</tt>.
+	 */
+	public void push(T item)
+	{
+		if (!offer(item))
+			throw new IndexOutOfBoundsException("SpscArrayQueue push(): queue full");
+	}
+
+	/**
+	 * Removes and returns the element at the front of the queue, or
+	 * returns <tt>null</tt> if the queue is empty.  Called only by the
+	 * consumer thread.
+	 *
+	 * @return the front element or <tt>null</tt>.
+	 */
+	public T poll()
+	{
+		long h = head.get();
+
+		if (h >= head.cache)
+		{
+			head.cache = tail.get();
+			if (h >= head.cache)
+				return null;
+		}
+
+		int slot = (int)h & mask;
+		T item = (T)buffer[slot];
+
+		buffer[slot] = null;
+		// the ordered write releases the slot to the producer
+		head.lazySet(h + 1);
+		return item;
+	}
+
+	/**
+	 * Remove the element at the front of the queue and return its value.
+	 * Called only by the consumer thread.
+	 *
+	 * @return value of the element removed from the front of the queue.
+	 * @throws <tt>NoSuchElementException</tt> if the queue is empty.
+	 */
+	public T pop()
+	{
+		T item = poll();
+
+		if (item == null)
+			throw new NoSuchElementException("SpscArrayQueue pop(): queue empty");
+
+		return item;
+	}
+
+	/**
+	 * Return the value of the element at the front of the queue.  Called
+	 * only by the consumer thread.
+	 *
+	 * @return value of element at the front of the queue.
+	 * @throws <tt>NoSuchElementException</tt> if the queue is empty.
+	 */
+	public T peek()
+	{
+		long h = head.get();
+
+		if (h >= head.cache)
+		{
+			head.cache = tail.get();
+			if (h >= head.cache)
+				throw new NoSuchElementException("SpscArrayQueue peek(): queue empty");
+		}
+
+		return (T)buffer[(int)h & mask];
+	}
+
+	/**
+	 * Removes up to <tt>maxElements</tt> elements from the front of the
+	 * queue and adds them to <tt>c</tt> in order.  The consumer reads the
+	 * producer's index once and releases all of the slots with a single
+	 * ordered write.  Called only by the consumer thread.
+	 *
+	 * @param c  the collection that receives the elements.
+	 * @param maxElements  the largest number of elements to move.
+	 * @return the number of elements moved.
+	 */
+	public int drainTo(Collection<? super T> c, int maxElements)
+	{
+		long h = head.get();
+		long t = tail.get();
+		int n = (int)Math.min(t - h, Math.max(maxElements, 0));
+
+		head.cache = t;
+		for (int i = 0; i < n; i++)
+		{
+			int slot = (int)(h + i) & mask;
+
+			c.add((T)buffer[slot]);
+			buffer[slot] = null;
+		}
+
+		if (n > 0)
+			head.lazySet(h + n);
+
+		return n;
+	}
+
+	/**
+	 * Removes all of the elements available in the queue and adds them
+	 * to <tt>c</tt> in order.  Called only by the consumer thread.
+	 *
+	 * @param c  the collection that receives the elements.
+	 * @return the number of elements moved.
+	 */
+	public int drainTo(Collection<? super T> c)
+	{
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Return the number of elements currently in the queue.
+	 *
+	 * @return number of elements in the queue.
+	 */
+	public int size()
+	{
+		// read head first. the tail read afterward is no older, so the
+		// difference is never negative
+		long h = head.get();
+		long t = tail.get();
+
+		return (int)Math.min(t - h, buffer.length);
+	}
+
+	/**
+	 * Return a boolean value that indicates whether the queue is empty.
+	 *
+	 * @return true if the queue is empty and false otherwise.
+	 */
+	public boolean isEmpty()
+	{
+		return head.get() == tail.get();
+	}
+}
@@ -10,20 +10,35 @@ import java.util.ConcurrentModificationException;
 import java.io.*;
 
 /**
- * An STree implementation of the <tt>OrderedMap</tt> interface. The node value
- * for elements in the tree are key-value pairs defined as Entry objects.
+ * A red-black tree implementation of the <tt>OrderedMap</tt> interface. The node
+ * value for elements in the tree are key-value pairs defined as Entry objects.
+ * The tree uses the <tt>RBTree</tt> insertion and deletion algorithms, so
+ * <tt>put</tt>, <tt>get</tt> and <tt>remove</tt> run in O(log n) time even
+ * when the keys are inserted in sorted order.
  */
 
 public class TreeMap<K,V> implements OrderedMap<K,V>
 {
-	// TreeMap implemented using a binary search tree whose
+	// TreeMap implemented using a red-black tree whose
 	// nodes are Entry objects. each Entry object contains
-	// a key, a value, and references to the left, right, and
+	// a key, a value, a color, and references to the left, right, and
 	// parent subtrees
 	private Entry<K,V> root;
+
+	// used instead of null to represent an empty subtree. its
+	// left and right subtrees are null, its color is Entry.BLACK
+	// and its size is 0. it participates in rotations, just like any
+	// other node
+	private Entry<K,V> NIL = new Entry<K,V>(null, null, null, null, null,
+		Entry.BLACK);
 	// size of the map and record of changes to the map for iterators
 	private int mapSize, modCount;
 
+	// putAll() rebuilds the tree when it adds at least
+	// mapSize/BULK_RATIO sorted pairs. a rebuild takes O(n + m)
+	// time, and m insertions take O(m log n) time
+	private static final int BULK_RATIO = 16;
+
 	// iteratively traverse a path from the root to the entry
 	// key; return a reference to the node containing key or null
 	// if the search fails
@@ -34,7 +49,7 @@ public class TreeMap<K,V> implements OrderedMap<K,V>
 	   int orderValue;
 
 	   // terminate on on empty subtree
-	   while(entry != null)
+	   while(entry != NIL)
 	   {
 	      // compare item and the current node value
 	      orderValue = ((Comparable<K>)key).compareTo(entry.key);
@@ -52,56 +67,61 @@ public class TreeMap<K,V> implements OrderedMap<K,V>
 	   return null;
 	}
 
-	// private method used by removeEntry() and the iterator
+	// private method used by remove() and the iterator
 	// remove() to delete an entry from the tree
-   private void removeNode(Entry<K,V> dNode)
-   {
-      if (dNode == null)
-         return;
+	private void removeNode(Entry<K,V> dNode)
+	{
+		// BOTTOM-UP ERASE
 
-      // dNode = reference to node D that is deleted
-      // pNode = reference to parent P of node D
-      // rNode = reference to node R that replaces D
-      Entry<K,V> pNode, rNode;
+		// dNode = reference to node D that is deleted
+		// pNode = reference to parent P of node D
+		// rNode = reference to node R that replaces D
+		// spliceOut = reference to the node that is spliced out of the tree
+		// childOfSpliceOut = reference to the child of the node we splice out
+		Entry<K,V> pNode, rNode, spliceOut, childOfSpliceOut;
 
-      // assign pNode as a reference to P
-      pNode = dNode.parent;
+		// assign pNode the address of P
+		pNode = dNode.parent;
 
-      // if D has a null child, the
-      // replacement node is the other child
-      if (dNode.left == null || dNode.right == null)
-      {
-         if (dNode.right == null)
-            rNode = dNode.left;
-         else
-            rNode = dNode.right;
+		// if D has a NIL child, the
+		// replacement node is the other child
+		if (dNode.left == NIL || dNode.right == NIL)
+		{
+			if (dNode.right == NIL)
+				rNode = dNode.left;
+			else
+				rNode = dNode.right;
 
-         if (rNode != null)
-            // the parent of R is now the parent of D
-            rNode.parent = pNode;
+			// the parent of R is now the parent of D. if R is NIL,
+			// rbDeleteFixup() uses this link to find P
+			rNode.parent = pNode;
 
 			// complete the link to the parent node.
 
 			// deleting the root node. assign new root
-			if (pNode == null)
+			if (pNode == NIL)
 				root = rNode;
 			// attach R to the correct branch of P
-			else if (((Comparable<K>)dNode.key).compareTo(pNode.key) < 0)
+			else if (dNode == pNode.left)
 				pNode.left = rNode;
 			else
 				pNode.right = rNode;
-      }
-      // both children of dNode are non-null.
-      else
-      {
-         // find and unlink replacement node for D.
-         // starting at the right child of node D,
-         // find the node whose value is the smallest of all
-         // nodes whose values are greater than the value in D.
-         // unlink the node from the tree.
 
-         // pOfRNode is reference to parent of replacement node
-         Entry<K,V> pOfRNode = dNode;
+			// we are splicing dNode out of the tree
+			spliceOut = dNode;
+			childOfSpliceOut = rNode;
+		}
+		// both children of dNode are non-NIL.
+		else
+		{
+			// find and unlink replacement node for D.
+			// starting at the right child of node D,
+			// find the node whose key is the smallest of all
+			// nodes whose keys are greater than the key in D.
+			// unlink the node from the tree.
+
+			// pOfRNode is reference to parent of replacement node
+			Entry<K,V> pOfRNode = dNode;
 
 			// first possible replacement is right child of D
 			rNode = dNode.right;
@@ -109,16 +129,12 @@ public class TreeMap<K,V> implements OrderedMap<K,V>
 			// descend down left subtree of the right child of D,
 			// keeping a record of current node and its parent.
 			// when we stop, we have found the replacement
-			while(rNode.left != null)
+			while(rNode.left != NIL)
 			{
 				pOfRNode = rNode;
 				rNode = rNode.left;
 			}
 
-			// copy the value in R to D
-			dNode.key = rNode.key;
-			dNode.value = rNode.value;
-
 			if (pOfRNode == dNode)
 				dNode.right = rNode.right;
 			else
@@ -126,28 +142,420 @@ public class TreeMap<K,V> implements OrderedMap<K,V>
 
 			// the parent of the right child of R is the
 			// parent of R
-			if (rNode.right != null)
-				rNode.right.parent = pOfRNode;
+			rNode.right.parent = pOfRNode;
 
+			// copy the key and value in R to D
+			dNode.key = rNode.key;
+			dNode.value = rNode.value;
 
-			// we want to dispose of rNode
-			dNode = rNode;
+			// we are splicing rNode out of the tree at its
+			// current location
+			spliceOut = rNode;
+			childOfSpliceOut = rNode.right;
 		}
 
-		// make the reference to the deleted node null
-		dNode = null;
-   }
+		// each ancestor of the spliced out node has one less
+		// entry in its subtree
+		for (pNode = spliceOut.parent; pNode != NIL; pNode = pNode.parent)
+			pNode.size--;
+
+		// fixup the tree if the node spliced out is Entry.BLACK
+		if (spliceOut.color == Entry.BLACK)
+			rbDeleteFixup(childOfSpliceOut);
+	}
+
+	// fix up the tree when x is the child of
+	// a Entry.BLACK node that was unlinked from its
+	// position in the tree
+	private void rbDeleteFixup(Entry<K,V> x)
+	{
+		Entry<K,V> siblingOfx;
+
+		while (x != root && x.color == Entry.BLACK)
+
+			if (x == x.parent.left)
+			{
+				siblingOfx = x.parent.right;
+
+				if (siblingOfx.color == Entry.RED)
+				{
+					// CASE 1:
+					//	 sibling of x is Entry.RED. perform
+					//	 color changes and a left rotation.
+					//	 this produces a configuration that
+					//	 corresponds to cases 2, 3, or 4
+					siblingOfx.color = Entry.BLACK;
+					x.parent.color = Entry.RED;
+					rotateLeft(siblingOfx);
+					siblingOfx = x.parent.right;
+				}
+
+				if (siblingOfx.left.color == Entry.BLACK &&
+					 siblingOfx.right.color == Entry.BLACK)
+				{
+					// CASE 2:
+					//	 both the children of the siblingOfx are Entry.BLACK.
+					//	 take a Entry.BLACK off of x and siblingOfx and
+					//	 consider parent(x) to have an extra Entry.BLACK
+					siblingOfx.color = Entry.RED;
+					x = x.parent;
+				}
+				else
+				{
+					if (siblingOfx.right.color == Entry.BLACK)
+					{
+						// CASE 3:
+						//	 siblingOfx is Entry.BLACK, its left child is
+						//	 Entry.RED, and its right child is Entry.BLACK.
+						//	 color changes and a right rotation transform
+						//	 the configuration into case 4
+						siblingOfx.left.color = Entry.BLACK;
+						siblingOfx.color = Entry.RED;
+						rotateRight(siblingOfx.left);
+						siblingOfx = x.parent.right;
+					}
+
+					// CASE 4:
+					//	 siblingOfx is Entry.BLACK and has a Entry.RED
+					//	 right child. after color changes and a left
+					//	 rotation, the extra Entry.BLACK on x is removed.
+					//	 set x to the root to terminate the loop
+					siblingOfx.color = x.parent.color;
+					x.parent.color = Entry.BLACK;
+					siblingOfx.right.color = Entry.BLACK;
+					rotateLeft(siblingOfx);
+					x = root;
+				}
+			}
+			else  // same as x == x.parent.left, except that
+					// "left" and "right" are interchanged
+			{
+				siblingOfx = x.parent.left;
+
+				if (siblingOfx.color == Entry.RED)
+				{
+					siblingOfx.color = Entry.BLACK;
+					x.parent.color = Entry.RED;
+					rotateRight(siblingOfx);
+					siblingOfx = x.parent.left;
+				}
+
+				if (siblingOfx.right.color == Entry.BLACK &&
+					 siblingOfx.left.color == Entry.BLACK)
+				{
+					siblingOfx.color = Entry.RED;
+					x = x.parent;
+				}
+				else
+				{
+					if (siblingOfx.left.color == Entry.BLACK)
+					{
+						siblingOfx.right.color = Entry.BLACK;
+						siblingOfx.color = Entry.RED;
+						rotateLeft(siblingOfx.right);
+						siblingOfx = x.parent.left;
+					}
+
+					siblingOfx.color = x.parent.color;
+					x.parent.color = Entry.BLACK;
+					siblingOfx.left.color = Entry.BLACK;
+					rotateRight(siblingOfx);
+					x = root;
+				}
+			}
+
+			x.color = Entry.BLACK;
+	}
+
+	// perform a single left rotation
+	private void rotateLeft (Entry<K,V> pivot)
+	{
+		Entry<K,V> p = pivot.parent, g = pivot.parent.parent;
+
+		p.right = pivot.left;
+		pivot.left = p;
+
+		pivot.parent = g;
+		p.parent = pivot;
+		if (p.right != NIL)
+			p.right.parent = p;
+
+		// pivot now roots the subtree that p rooted
+		pivot.size = p.size;
+		p.size = p.left.size + p.right.size + 1;
+
+		if (p == root)
+		  root = pivot;
+		else if (p == g.right)
+			g.right = pivot;
+		else
+			g.left = pivot;
+	}
+
+	// perform a single right rotation
+	private void rotateRight (Entry<K,V> pivot)
+	{
+		// need the parent and grandparent of pivot
+		Entry<K,V> p = pivot.parent, g = pivot.parent.parent;
+
+		// adjust right and left references
+		p.left = pivot.right;
+		pivot.right = p;
+
+		// adjust parent references
+		pivot.parent = g;
+		p.parent = pivot;
+		// don't reset the parent link of the left child of p
+		// if the left child is NIL. this will interfere with
+		// the use of NIL in rbDeleteFixup()
+		if (p.left != NIL)
+			p.left.parent = p;
+
+		// pivot now roots the subtree that p rooted
+		pivot.size = p.size;
+		p.size = p.left.size + p.right.size + 1;
+
+		if (p == root)
+			// pivot is the new root
+			root = pivot;
+		else if (p == g.right)
+			// right link of g must point at pivot now
+			g.right = pivot;
+		else
+			// left link of g must point at pivot now
+			g.left = pivot;
+	}
+
+	// break up a 4-node, performing a rotation, if necessary
+	private void split4Node(Entry<K,V> x)
+	{
+		// perform the color flip
+		x.color = Entry.RED;
+		x.left.color = Entry.BLACK;
+		x.right.color = Entry.BLACK;
+
+		// if we split the root, we are done
+		if (x == root)
+			return;
+
+		// to see if a rotation is required, we need the
+		// parent of x. x is not root, so p != NIL
+		Entry<K,V> p = x.parent;
+
+		// a rotation is needed if the parent of x is Entry.RED
+		if (p.color == Entry.RED)
+		{
+			// we need the grandparent of x. since the root
+			// is Entry.BLACK, p cannot be root, so the grandparent
+			// exists
+			Entry<K,V> g = x.parent.parent;
+
+			// the grandparent of x will be Entry.RED
+			g.color = Entry.RED;
+
+			// a double rotation is required if x is an inside
+			// grandchild. check this by seeing if the orientations
+			// of p to g and x to p are different
+			if ( p == g.left && x == p.right )
+			{
+				// first move x up one level and p down
+				rotateLeft(x);
+
+				// node x will be Entry.BLACK
+				x.color = Entry.BLACK;
+				// prepare for a right single rotation
+				p = x;
+			}
+			else if ( p == g.right && x == p.left )
+			{
+				// first move x up one level and p down
+				rotateRight(x);
+
+				// node x will be Entry.BLACK
+				x.color = Entry.BLACK;
+				// prepare for a left single rotation
+				p = x;
+			}
+			else
+				// single rotation. parent will be Entry.BLACK
+				p.color = Entry.BLACK;
+
+			// perform a single rotation
+			// move p up and g down
+			if (p == g.left)
+				rotateRight(p);
+			else
+				rotateLeft(p);
+		}
+	}
+
+	// return the entry with the least key greater than key, or greater
+	// than or equal to key if inclusive is true. return null if there
+	// is no such entry
+	private Entry<K,V> ceilingEntry(Object key, boolean inclusive)
+	{
+		Entry<K,V> entry = root, candidate = null;
+		int orderValue;
+
+		while (entry != NIL)
+		{
+			orderValue = ((Comparable<K>)key).compareTo(entry.key);
+
+			// entry is a candidate. look for a smaller one on the left
+			if (orderValue < 0 || (orderValue == 0 && inclusive))
+			{
+				candidate = entry;
+				entry = entry.left;
+			}
+			else
+				entry = entry.right;
+		}
+
+		return candidate;
+	}
+
+	// return the entry with the greatest key less than key, or less
+	// than or equal to key if inclusive is true. return null if there
+	// is no such entry
+	private Entry<K,V> floorEntry(Object key, boolean inclusive)
+	{
+		Entry<K,V> entry = root, candidate = null;
+		int orderValue;
+
+		while (entry != NIL)
+		{
+			orderValue = ((Comparable<K>)key).compareTo(entry.key);
+
+			// entry is a candidate. look for a larger one on the right
+			if (orderValue > 0 || (orderValue == 0 && inclusive))
+			{
+				candidate = entry;
+				entry = entry.right;
+			}
+			else
+				entry = entry.left;
+		}
+
+		return candidate;
+	}
+
+	// build a tree from the pairs keys[low], values[low] to keys[high],
+	// values[high], whose keys are in ascending order. the middle pair
+	// is the root and the pairs on either side of it form its subtrees,
+	// so every level of the tree is full except possibly the deepest
+	// one, level redLevel. its entries are Entry.RED and all others are
+	// Entry.BLACK, so every path has the same number of black entries
+	private Entry<K,V> buildTree(Object[] keys, Object[] values, int low,
+		int high, int level, int redLevel, Entry<K,V> parent)
+	{
+		if (high < low)
+			return NIL;
+
+		int mid = (low + high) >>> 1;
+		Entry<K,V> newNode = new Entry<K,V>((K)keys[mid], (V)values[mid],
+			NIL, NIL, parent, (level == redLevel) ? Entry.RED : Entry.BLACK);
+
+		newNode.left = buildTree(keys, values, low, mid-1, level+1,
+			redLevel, newNode);
+		newNode.right = buildTree(keys, values, mid+1, high, level+1,
+			redLevel, newNode);
+		newNode.size = high - low + 1;
+
+		return newNode;
+	}
+
+	// replace the tree by one built from the first n pairs of keys
+	// and values
+	private void rebuild(Object[] keys, Object[] values, int n)
+	{
+		// the deepest level of a tree with n entries built by buildTree()
+		int redLevel = 31 - Integer.numberOfLeadingZeros(Math.max(n, 1));
+
+		root = buildTree(keys, values, 0, n-1, 0, redLevel, NIL);
+		root.color = Entry.BLACK;
+		mapSize = n;
+		modCount++;
+	}
 
     /**
      * Creates an empty TreeMap.
      */
    public TreeMap()
    {
-      root = null;
+      root = NIL;
       mapSize = 0;
       modCount = 0;
    }
 
+    /**
+     * Builds a map from entries whose keys are in strictly ascending order.
+     * The red-black tree is built directly in O(n) time: it is perfectly
+     * balanced, and only the entries on its deepest level, if that level
+     * is not full, are red.
+     *
+     * @param iter iterator over the entries in ascending key order.
+     * @return a map containing the key-value pairs of the entries.
+     * @throws IllegalArgumentException if the keys are not in strictly
+     *         ascending order.
+     */
+	public static <K,V> TreeMap<K,V> fromSorted(
+		Iterator<? extends Map.Entry<K,V>> iter)
+	{
+		Object[] keys = new Object[16], values = new Object[16];
+		int n = 0;
+
+		while (iter.hasNext())
+		{
+			Map.Entry<K,V> entry = iter.next();
+
+			if (n == keys.length)
+			{
+				keys = java.util.Arrays.copyOf(keys, 2 * n);
+				values = java.util.Arrays.copyOf(values, 2 * n);
+			}
+			keys[n] = entry.getKey();
+			values[n] = entry.getValue();
+			n++;
+		}
+
+		return buildFromSorted(keys, values, n);
+	}
+
+    /**
+     * Builds a map from parallel arrays of keys and values, with the keys
+     * in strictly ascending order, in O(n) time.
+     *
+     * @param keys keys in strictly ascending order.
+     * @param values values, with <tt>values[i]</tt> associated with
+     *        <tt>keys[i]</tt>.
+     * @return a map containing the key-value pairs.
+     * @throws IllegalArgumentException if the arrays have different
+     *         lengths or the keys are not in strictly ascending order.
+     */
+	public static <K,V> TreeMap<K,V> fromSorted(K[] keys, V[] values)
+	{
+		if (keys.length != values.length)
+			throw new IllegalArgumentException(
+				"TreeMap fromSorted(): arrays have different lengths");
+
+		return buildFromSorted(keys, values, keys.length);
+	}
+
+	// build a map from the first n pairs of keys and values
+	private static <K,V> TreeMap<K,V> buildFromSorted(Object[] keys,
+		Object[] values, int n)
+	{
+		if (!SortedArrays.isAscending(keys, n))
+			throw new IllegalArgumentException(
+				"TreeMap fromSorted(): keys are not in " +
+				"strictly ascending order");
+
+		TreeMap<K,V> map = new TreeMap<K,V>();
+
+		map.rebuild(keys, values, n);
+		return map;
+	}
+
     /**
      * Removes all of the elements from this map. This map will be empty after
      * this call returns.
@@ -156,7 +564,7 @@ public class TreeMap<K,V> implements OrderedMap<K,V>
    {
       modCount++;
       mapSize = 0;
-      root = null;
+      root = NIL;
    }
 
     /**
@@ -206,43 +614,71 @@ public class TreeMap<K,V> implements OrderedMap<K,V>
      */
 	public V put(K key, V value)
 	{
+		// TOP-DOWN INSERTION
+
 		// entry is current node in traversal, parent the
 		// previous node
-		Entry<K,V> entry = root, parent = null, newNode;
+		Entry<K,V> entry = root, parent = NIL, newNode;
 		int orderValue = 0;
 
 		// terminate on on empty subtree
-		while(entry != null)
+		while(entry != NIL)
 		{
-			// update the parent reference.
-			parent = entry;
-
 			// compare key to the current node key
 			orderValue = ((Comparable<K>)key).compareTo(entry.key);
 
 			// if a match occurs, replace the value in entry
-			// and return the previous value; otherwise, go left
-			// or go right following search tree order
+			// and return the previous value. a split on the way down
+			// may have colored the root Entry.RED, so restore it
 			if (orderValue == 0)
+			{
+				root.color = Entry.BLACK;
 				return entry.setValue(value);
-			else if (orderValue < 0)
+			}
+
+			// a node split is required if both children of entry
+			// are Entry.RED
+			if (entry.left.color == Entry.RED &&
+				 entry.right.color == Entry.RED)
+				split4Node(entry);
+
+			// update the parent reference and go left or go right
+			// following search tree order
+			parent = entry;
+			if (orderValue < 0)
 				entry = entry.left;
 			else
 				entry = entry.right;
 		}
 
 		// create the new node
-		newNode = new Entry<K,V>(key, value, parent);
+		newNode = new Entry<K,V>(key, value, NIL, NIL, parent, Entry.RED);
 
-		if (parent == null)
+		if (parent == NIL)
 			// this is the first node added. make it root
 			root = newNode;
-		else if (orderValue < 0)
-			// attach newNode as the left child of parent
-			parent.left = newNode;
 		else
-			// attach newNode as the right child of parent
-			parent.right = newNode;
+		{
+			if (orderValue < 0)
+				// attach newNode as the left child of parent
+				parent.left = newNode;
+			else
+				// attach newNode as the right child of parent
+				parent.right = newNode;
+
+			// each ancestor of newNode has one more entry in its
+			// subtree. update the sizes before any rotation
+			for (entry = parent; entry != NIL; entry = entry.parent)
+				entry.size++;
+
+			// if the new node's parent is Entry.RED, we
+			// must perform a rotation
+			if (parent.color == Entry.RED)
+				split4Node(newNode);
+		}
+
+		// the color of the root must be BLACK
+		root.color = Entry.BLACK;
 
 		// increment the tree size and modCount
 		mapSize++;
@@ -252,6 +688,75 @@ public class TreeMap<K,V> implements OrderedMap<K,V>
 		return null;
 	}
 
+    /**
+     * Copies all of the mappings from the specified map to this map,
+     * replacing the values of keys that are already in this map.  When
+     * <tt>m</tt> returns its entries in strictly ascending key order, as an
+     * ordered map does, and has at least 1/16 as many entries as this map,
+     * the method merges the two sets of entries and builds a new red-black
+     * tree in O(n + m) time.  Otherwise it puts the entries one at a time.
+     *
+     * @param m mappings to be stored in this map.
+     */
+	public void putAll(Map<? extends K, ? extends V> m)
+	{
+		Object[] entries = m.entrySet().toArray();
+		int n = entries.length, i;
+		Object[] keys = new Object[n], values = new Object[n];
+
+		for (i = 0; i < n; i++)
+		{
+			Map.Entry<K,V> entry = (Map.Entry<K,V>)entries[i];
+			keys[i] = entry.getKey();
+			values[i] = entry.getValue();
+		}
+
+		if (n == 0 || n < mapSize / BULK_RATIO ||
+			 !SortedArrays.isAscending(keys, n))
+		{
+			for (i = 0; i < n; i++)
+				put((K)keys[i], (V)values[i]);
+			return;
+		}
+
+		// merge the entries of the tree with keys and values. a
+		// value from m replaces the value of an equal key
+		Object[] mergedKeys = new Object[mapSize + n],
+					mergedValues = new Object[mapSize + n];
+		Iterator<Map.Entry<K,V>> iter = new EntryIterator();
+		Map.Entry<K,V> entry = iter.hasNext() ? iter.next() : null;
+		int count = 0, orderValue;
+
+		i = 0;
+		while (entry != null || i < n)
+		{
+			if (entry == null)
+				orderValue = 1;
+			else if (i == n)
+				orderValue = -1;
+			else
+				orderValue = ((Comparable<K>)entry.getKey()).compareTo((K)keys[i]);
+
+			if (orderValue < 0)
+			{
+				mergedKeys[count] = entry.getKey();
+				mergedValues[count] = entry.getValue();
+			}
+			else
+			{
+				mergedKeys[count] = keys[i];
+				mergedValues[count] = values[i];
+				i++;
+			}
+			count++;
+
+			if (orderValue <= 0)
+				entry = iter.hasNext() ? iter.next() : null;
+		}
+
+		rebuild(mergedKeys, mergedValues, count);
+	}
+
      /**
      * Removes the Entry pair for this key from this map if it is present.
      * Returns the value to which the map previously associated the key, or
@@ -299,11 +804,11 @@ public class TreeMap<K,V> implements OrderedMap<K,V>
 		Entry<K,V> nextNode = root;
 
 		// if the map is empty, return null
-		if (nextNode == null)
+		if (nextNode == NIL)
 			return null;
 
 		// first node is the furthest node left from root
-		while (nextNode.left != null)
+		while (nextNode.left != NIL)
 			nextNode = nextNode.left;
 
 		return nextNode.key;
@@ -320,16 +825,180 @@ public class TreeMap<K,V> implements OrderedMap<K,V>
 		Entry<K,V> nextNode = root;
 
 		// if the set is empty, return null
-		if (nextNode == null)
+		if (nextNode == NIL)
 			return null;
 
 		// last node is the furthest node right from root
-		while (nextNode.right != null)
+		while (nextNode.right != NIL)
 			nextNode = nextNode.right;
 
 		return nextNode.key;
 	}
 
+    /**
+     * Returns the greatest key in this map less than or equal to
+     * <tt>key</tt>, or <tt>null</tt> if there is no such key.
+     *
+     * @param key the key to match.
+     * @return the greatest key less than or equal to <tt>key</tt>.
+     */
+	public K floorKey(K key)
+	{
+		Entry<K,V> entry = floorEntry(key, true);
+		return (entry == null) ? null : entry.key;
+	}
+
+    /**
+     * Returns the least key in this map greater than or equal to
+     * <tt>key</tt>, or <tt>null</tt> if there is no such key.
+     *
+     * @param key the key to match.
+     * @return the least key greater than or equal to <tt>key</tt>.
+     */
+	public K ceilingKey(K key)
+	{
+		Entry<K,V> entry = ceilingEntry(key, true);
+		return (entry == null) ? null : entry.key;
+	}
+
+    /**
+     * Returns the greatest key in this map strictly less than <tt>key</tt>,
+     * or <tt>null</tt> if there is no such key.
+     *
+     * @param key the key to match.
+     * @return the greatest key less than <tt>key</tt>.
+     */
+	public K lowerKey(K key)
+	{
+		Entry<K,V> entry = floorEntry(key, false);
+		return (entry == null) ? null : entry.key;
+	}
+
+    /**
+     * Returns the least key in this map strictly greater than <tt>key</tt>,
+     * or <tt>null</tt> if there is no such key.
+     *
+     * @param key the key to match.
+     * @return the least key greater than <tt>key</tt>.
+     */
+	public K higherKey(K key)
+	{
+		Entry<K,V> entry = ceilingEntry(key, false);
+		return (entry == null) ? null : entry.key;
+	}
+
+    /**
+     * Returns the number of keys in this map that are strictly less than
+     * <tt>key</tt>.  If <tt>key</tt> is in the map, this is the index of its
+     * entry in ascending key order.  The method runs in time proportional to
+     * the height of the tree.
+     *
+     * @param key the key whose rank is returned.
+     * @return the number of keys less than <tt>key</tt>.
+     */
+	public int rank(Object key)
+	{
+		Entry<K,V> entry = root;
+		int r = 0;
+
+		while (entry != NIL)
+			if (((Comparable<K>)key).compareTo(entry.key) <= 0)
+				entry = entry.left;
+			else
+			{
+				// entry and its left subtree are less than key
+				r += entry.left.size + 1;
+				entry = entry.right;
+			}
+
+		return r;
+	}
+
+    /**
+     * Returns the Entry pair at position <tt>index</tt> in ascending key
+     * order, so <tt>select(0)</tt> has the minimum key.  Calling
+     * <tt>setValue</tt> on the entry updates the map.  The method runs in
+     * time proportional to the height of the tree.
+     *
+     * @param index position of the entry in ascending key order.
+     * @return the Entry pair whose key has rank <tt>index</tt>.
+     * @throws IndexOutOfBoundsException if <tt>index</tt> is not in the
+     *         range 0 to size()-1.
+     */
+	public Map.Entry<K,V> select(int index)
+	{
+		if (index < 0 || index >= mapSize)
+			throw new IndexOutOfBoundsException(
+				"TreeMap select(): index " + index + " out of range");
+
+		Entry<K,V> entry = root;
+		int leftSize;
+
+		while (true)
+		{
+			leftSize = entry.left.size;
+			if (index < leftSize)
+				entry = entry.left;
+			else if (index == leftSize)
+				return entry;
+			else
+			{
+				index -= leftSize + 1;
+				entry = entry.right;
+			}
+		}
+	}
+
+    /**
+     * Returns a view of the portion of this map whose keys are strictly less
+     * than <tt>toKey</tt>.  The view is backed by this map, so changes in one
+     * are reflected in the other.  Putting a key outside the range of the
+     * view throws <tt>IllegalArgumentException</tt>.
+     *
+     * @param toKey high endpoint (exclusive) of the keys in the view.
+     * @return a view of the entries whose keys are less than <tt>toKey</tt>.
+     */
+	public OrderedMap<K,V> headMap(K toKey)
+	{
+		return new SubMap(null, toKey);
+	}
+
+    /**
+     * Returns a view of the portion of this map whose keys are greater than
+     * or equal to <tt>fromKey</tt>.  The view is backed by this map.
+     *
+     * @param fromKey low endpoint (inclusive) of the keys in the view.
+     * @return a view of the entries whose keys are greater than or equal
+     *         to <tt>fromKey</tt>.
+     */
+	public OrderedMap<K,V> tailMap(K fromKey)
+	{
+		return new SubMap(fromKey, null);
+	}
+
+    /**
+     * Returns a view of the portion of this map whose keys range from
+     * <tt>fromKey</tt>, inclusive, to <tt>toKey</tt>, exclusive.  The view
+     * is backed by this map.  Iterators on its key and entry sets start at
+     * the first key in the range rather than at the minimum key of the map,
+     * and its <tt>size</tt> runs in time proportional to the height of the
+     * tree.
+     *
+     * @param fromKey low endpoint (inclusive) of the keys in the view.
+     * @param toKey high endpoint (exclusive) of the keys in the view.
+     * @return a view of the entries whose keys are in the range.
+     * @throws IllegalArgumentException if <tt>fromKey</tt> is greater
+     *         than <tt>toKey</tt>.
+     */
+	public OrderedMap<K,V> subMap(K fromKey, K toKey)
+	{
+		if (((Comparable<K>)fromKey).compareTo(toKey) > 0)
+			throw new IllegalArgumentException(
+				"TreeMap subMap(): fromKey > toKey");
+
+		return new SubMap(fromKey, toKey);
+	}
+
    /**
     * Returns a string representation of this set. The
     * representation is a comma separated list of Entry objects in ascending order
@@ -552,9 +1221,12 @@ public class TreeMap<K,V> implements OrderedMap<K,V>
 		private int expectedModCount = modCount;
 		// node of the last value returned by next() if that
 		// value was deleted by the iterator method remove()
-		private Entry<K,V> lastReturned = null;
+		private Entry<K,V> lastReturned = NIL;
 		// node whose value is returned a subsequent call to next()
-		private Entry<K,V> nextNode = null;
+		private Entry<K,V> nextNode = NIL;
+		// the iteration stops before this key; null if the
+		// iteration continues to the last node
+		private K toKey = null;
 
 		// constructor
 		IteratorImpl()
@@ -563,17 +1235,28 @@ public class TreeMap<K,V> implements OrderedMap<K,V>
 
 			// if the tree is not empty, the first node
 			// inorder is the farthest node left from root
-			if (nextNode != null)
-				while (nextNode.left != null)
+			if (nextNode != NIL)
+				while (nextNode.left != NIL)
 					nextNode = nextNode.left;
 		}
 
+		// constructor for a range view. the iteration starts at
+		// firstNode and stops before the first key >= toKey. a
+		// null firstNode gives an empty iteration
+		IteratorImpl(Entry<K,V> firstNode, K toKey)
+		{
+			nextNode = (firstNode == null) ? NIL : firstNode;
+			this.toKey = toKey;
+		}
+
 		// returns true if the tree has more
 		// unvisited elements
 		public boolean hasNext()
 		{
-			// elements remain if nextNode is not null
-			return nextNode != null;
+			// elements remain if nextNode is not NIL and is
+			// below the upper bound of the iteration
+			return nextNode != NIL && (toKey == null ||
+				((Comparable<K>)nextNode.key).compareTo(toKey) < 0);
 		}
 
 		// returns the next element in the iteration.
@@ -588,7 +1271,7 @@ public class TreeMap<K,V> implements OrderedMap<K,V>
 
 			// check if the iteration has an another element
 			// if not, throw NoSuchElementException
-			if (nextNode == null)
+			if (!hasNext())
 				throw new NoSuchElementException(
 						"Iteration has no more elements");
 
@@ -598,13 +1281,13 @@ public class TreeMap<K,V> implements OrderedMap<K,V>
 			// set nextNode to the next node in order
 			Entry<K,V> p;
 
-			if (nextNode.right != null)
+			if (nextNode.right != NIL)
 			{
 				// successor is the furthest left node of
 				// right subtree
 				nextNode = nextNode.right;
 
-				while (nextNode.left != null)
+				while (nextNode.left != NIL)
 					nextNode = nextNode.left;
 			}
 			else
@@ -612,19 +1295,19 @@ public class TreeMap<K,V> implements OrderedMap<K,V>
 				// have already processed the left subtree, and
 				// there is no right subtree. move up the tree,
 				// looking for a parent for which nextNode is a left child,
-				// stopping if the parent becomes null. a non-null parent
-				// is the successor. if parent is null, the original node
+				// stopping if the parent becomes NIL. a non-NIL parent
+				// is the successor. if parent is NIL, the original node
 				// was the last node inorder
 				p = nextNode.parent;
 
-				while (p != null && nextNode == p.right)
+				while (p != NIL && nextNode == p.right)
 				{
 					nextNode = p;
 					p = p.parent;
 				}
 
 				// if we were previously at the right-most node in
-				// the tree, nextNode = null
+				// the tree, nextNode = NIL
 				nextNode = p;
 			}
 
@@ -642,7 +1325,7 @@ public class TreeMap<K,V> implements OrderedMap<K,V>
       public void remove()
       {
          // check for a missing call to next() or previous()
-         if (lastReturned == null)
+         if (lastReturned == NIL)
             throw new IllegalStateException(
                "Iterator call to next() " +
                "required before calling remove()");
@@ -654,7 +1337,7 @@ public class TreeMap<K,V> implements OrderedMap<K,V>
 			// during deletion is nextNode. the value in nextNode
 			// is copied to lastReturned. nextNode must be
 			// lastReturned
-			if (lastReturned.left != null && lastReturned.right != null)
+			if (lastReturned.left != NIL && lastReturned.right != NIL)
 				 nextNode = lastReturned;
          removeNode(lastReturned);
 
@@ -663,8 +1346,8 @@ public class TreeMap<K,V> implements OrderedMap<K,V>
          expectedModCount = modCount;
 
          // we did a deletion. indicate this by setting lastReturned
-         // to null and decrementing treeSize
-         lastReturned = null;
+         // to NIL and decrementing mapSize
+         lastReturned = NIL;
          mapSize--;
       }
 
@@ -682,6 +1365,16 @@ public class TreeMap<K,V> implements OrderedMap<K,V>
 
     private class KeyIterator extends IteratorImpl<K>
     {
+        KeyIterator()
+        {
+            super();
+        }
+
+        KeyIterator(Entry<K,V> firstNode, K toKey)
+        {
+            super(firstNode, toKey);
+        }
+
         public K next()
         {
             return nextEntry().key;
@@ -690,15 +1383,306 @@ public class TreeMap<K,V> implements OrderedMap<K,V>
 
     private class EntryIterator extends IteratorImpl<Map.Entry<K,V>>
     {
+        EntryIterator()
+        {
+            super();
+        }
+
+        EntryIterator(Entry<K,V> firstNode, K toKey)
+        {
+            super(firstNode, toKey);
+        }
+
         public Map.Entry<K,V> next()
         {
             return nextEntry();
         }
     }
 
-	// declares a binary search tree node object
+	// a range view of the map. fromKey is the inclusive lower bound and
+	// toKey the exclusive upper bound; a null bound means the range is
+	// unbounded on that side
+	private class SubMap implements OrderedMap<K,V>
+	{
+		private K fromKey, toKey;
+
+		private Set<K> subKeySet = null;
+		private Set<Map.Entry<K,V>> subEntrySet = null;
+
+		SubMap(K fromKey, K toKey)
+		{
+			this.fromKey = fromKey;
+			this.toKey = toKey;
+		}
+
+		private boolean inRange(Object key)
+		{
+			return (fromKey == null ||
+						((Comparable<K>)key).compareTo(fromKey) >= 0) &&
+					 (toKey == null ||
+						((Comparable<K>)key).compareTo(toKey) < 0);
+		}
+
+		// first entry in the range, ignoring the upper bound
+		private TreeMap.Entry<K,V> lowEntry()
+		{
+			if (fromKey != null)
+				return ceilingEntry(fromKey, true);
+
+			TreeMap.Entry<K,V> entry = root;
+			if (entry == NIL)
+				return null;
+			while (entry.left != NIL)
+				entry = entry.left;
+			return entry;
+		}
+
+		public int size()
+		{
+			int high = (toKey == null) ? mapSize : rank(toKey),
+				 low = (fromKey == null) ? 0 : rank(fromKey);
+
+			return high - low;
+		}
+
+		public boolean isEmpty()
+		{
+			return !new KeyIterator(lowEntry(), toKey).hasNext();
+		}
+
+		public boolean containsKey(Object key)
+		{
+			return inRange(key) && TreeMap.this.containsKey(key);
+		}
+
+		public V get(Object key)
+		{
+			return inRange(key) ? TreeMap.this.get(key) : null;
+		}
+
+		public V put(K key, V value)
+		{
+			if (!inRange(key))
+				throw new IllegalArgumentException(
+					"TreeMap view put(): key out of range");
+
+			return TreeMap.this.put(key, value);
+		}
+
+		public V remove(Object key)
+		{
+			return inRange(key) ? TreeMap.this.remove(key) : null;
+		}
+
+		public void clear()
+		{
+			Iterator<K> iter = new KeyIterator(lowEntry(), toKey);
+
+			while (iter.hasNext())
+			{
+				iter.next();
+				iter.remove();
+			}
+		}
+
+		public K firstKey()
+		{
+			TreeMap.Entry<K,V> entry = lowEntry();
+
+			if (entry == null || !inRange(entry.key))
+				return null;
+			return entry.key;
+		}
+
+		public K lastKey()
+		{
+			K key = (toKey == null) ? TreeMap.this.lastKey() : lowerKey(toKey);
+
+			if (key == null || !inRange(key))
+				return null;
+			return key;
+		}
+
+		public Set<K> keySet()
+		{
+			if (subKeySet == null)
+			{
+				subKeySet = new Set<K>()
+				{
+					public Iterator<K> iterator()
+					{
+						return new KeyIterator(lowEntry(), toKey);
+					}
+
+					public int size()
+					{
+						return SubMap.this.size();
+					}
+
+					public boolean contains(Object item)
+					{
+						return containsKey(item);
+					}
+
+					public boolean remove(Object item)
+					{
+						if (!containsKey(item))
+							return false;
+
+						SubMap.this.remove(item);
+						return true;
+					}
+
+					public void clear()
+					{
+						SubMap.this.clear();
+					}
+
+					public boolean isEmpty()
+					{
+						return SubMap.this.isEmpty();
+					}
+
+					public Object[] toArray()
+					{
+						Object[] arr = new Object[size()];
+						Iterator<K> iter = iterator();
+
+						for (int i=0;i < arr.length;i++)
+							arr[i] = iter.next();
+
+						return arr;
+					}
+
+					public String toString()
+					{
+						StringBuffer buf = new StringBuffer();
+						Iterator<K> iter = iterator();
+
+						buf.append("[");
+						while (iter.hasNext())
+						{
+							buf.append(iter.next());
+							if (iter.hasNext())
+								buf.append(", ");
+						}
+						buf.append("]");
+
+						return buf.toString();
+					}
+
+					public boolean add(K key)
+					{
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+
+			return subKeySet;
+		}
+
+		public Set<Map.Entry<K,V>> entrySet()
+		{
+			if (subEntrySet == null)
+			{
+				subEntrySet = new Set<Map.Entry<K,V>>()
+				{
+					public Iterator<Map.Entry<K,V>> iterator()
+					{
+						return new EntryIterator(lowEntry(), toKey);
+					}
+
+					public int size()
+					{
+						return SubMap.this.size();
+					}
+
+					public boolean contains(Object item)
+					{
+						if (!(item instanceof Map.Entry))
+							return false;
+
+						Map.Entry<K,V> entry = (Map.Entry<K,V>)item;
+
+						if (!inRange(entry.getKey()))
+							return false;
+
+						TreeMap.Entry<K,V> p = getEntry(entry.getKey());
+
+						return p != null && p.getValue().equals(entry.getValue());
+					}
+
+					public boolean remove(Object item)
+					{
+						if (!(item instanceof Map.Entry))
+							return false;
+
+						Map.Entry<K,V> entry = (Map.Entry<K,V>)item;
+
+						return SubMap.this.remove(entry.getKey()) != null;
+					}
+
+					public void clear()
+					{
+						SubMap.this.clear();
+					}
+
+					public boolean isEmpty()
+					{
+						return SubMap.this.isEmpty();
+					}
+
+					public Object[] toArray()
+					{
+						Object[] arr = new Object[size()];
+						Iterator<Map.Entry<K,V>> iter = iterator();
+
+						for (int i=0;i < arr.length;i++)
+							arr[i] = iter.next();
+
+						return arr;
+					}
+
+					public String toString()
+					{
+						return SubMap.this.toString();
+					}
+
+					public boolean add(Map.Entry<K,V> obj)
+					{
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+
+			return subEntrySet;
+		}
+
+		public String toString()
+		{
+			StringBuffer buf = new StringBuffer();
+			Iterator<Map.Entry<K,V>> iter = entrySet().iterator();
+
+			buf.append("{");
+			while (iter.hasNext())
+			{
+				Map.Entry<K,V> e = iter.next();
+				buf.append(e.getKey() + "=" + e.getValue());
+				if (iter.hasNext())
+					buf.append(", ");
+			}
+			buf.append("}");
+
+			return buf.toString();
+		}
+	}
+
+	// declares a red-black tree node object
 	private static class Entry<K,V> implements Map.Entry<K,V>
 	{
+		// node colors
+		static final int BLACK = 0, RED = 1;
+
 		// node data
 	   K key;
 	   V value;
@@ -706,16 +1690,26 @@ public class TreeMap<K,V> implements OrderedMap<K,V>
 		// child links and link to the node's parent
 		Entry<K,V> left, right, parent;
 
+		// node's color
+		int color;
+
+		// number of entries in the subtree with this entry as root
+		int size;
+
         /**
          * Create new entry.
          */
-		public Entry(K key, V value, Entry<K,V> parent)
+		public Entry(K key, V value, Entry<K,V> left, Entry<K,V> right,
+						 Entry<K,V> parent, int color)
 		{
 			this.key = key;
 			this.value = value;
-			left = null;
-			right = null;
+			this.left = left;
+			this.right = right;
 			this.parent = parent;
+			this.color = color;
+			// the NIL sentinel has null links and size 0
+			size = (left == null) ? 0 : 1;
 		}
 
 	   /**
@@ -12,8 +12,10 @@ import java.io.*;
 
 
 /**
- * An implementation of the <tt>OrderedSet</tt> using <tt>STNode</tt> elements
- * and binary search tree (<tt>STree</tt> algorithms.
+ * An implementation of the <tt>OrderedSet</tt> using <tt>RBNode</tt> elements
+ * and the red-black tree (<tt>RBTree</tt>) algorithms. The tree remains
+ * balanced, so <tt>add</tt>, <tt>remove</tt> and <tt>contains</tt> run in
+ * O(log n) time even when the elements are added in sorted order.
  *
  * @see	    HashSet
  * @param <T> the type of elements held in this collection
@@ -22,7 +24,13 @@ import java.io.*;
 public class TreeSet<T> implements OrderedSet<T>, Iterable<T>
 {
    // reference to tree root
-   private STNode<T> root;
+   private RBNode<T> root;
+
+	// used instead of null to represent an empty subtree. its
+	// left and right subtrees are null, its color is RBNode.BLACK
+	// and its size is 0. it participates in rotations, just like any
+	// other node
+	private RBNode<T> NIL = new RBNode<T>(null, null, null, null, RBNode.BLACK);
 
    // number of elements in the tree
    private int setSize;
@@ -31,56 +39,66 @@ public class TreeSet<T> implements OrderedSet<T>, Iterable<T>
    // to verify that it is in a consistent state
    private int modCount;
 
+	// addAll() rebuilds the tree when it adds at least
+	// setSize/BULK_RATIO sorted elements. a rebuild takes O(n + m)
+	// time, and m insertions take O(m log n) time
+	private static final int BULK_RATIO = 16;
+
 	// private method used by remove() and the iterator
 	// remove() to delete a node
-   private void removeNode(STNode<T> dNode)
-   {
-      if (dNode == null)
-         return;
+	private void removeNode(RBNode<T> dNode)
+	{
+		// BOTTOM-UP ERASE
 
-      // dNode = reference to node D that is deleted
-      // pNode = reference to parent P of node D
-      // rNode = reference to node R that replaces D
-      STNode<T> pNode, rNode;
+		// dNode = reference to node D that is deleted
+		// pNode = reference to parent P of node D
+		// rNode = reference to node R that replaces D
+		// spliceOut = reference to the node that is spliced out of the tree
+		// childOfSpliceOut = reference to the child of the node we splice out
+		RBNode<T> pNode, rNode, spliceOut, childOfSpliceOut;
 
-      // assign pNode as a reference to P
-      pNode = dNode.parent;
+		// assign pNode the address of P
+		pNode = dNode.parent;
 
-      // if D has a null child, the
-      // replacement node is the other child
-      if (dNode.left == null || dNode.right == null)
-      {
-         if (dNode.right == null)
-            rNode = dNode.left;
-         else
-            rNode = dNode.right;
+		// if D has a NIL child, the
+		// replacement node is the other child
+		if (dNode.left == NIL || dNode.right == NIL)
+		{
+			if (dNode.right == NIL)
+				rNode = dNode.left;
+			else
+				rNode = dNode.right;
 
-         if (rNode != null)
-            // the parent of R is now the parent of D
-            rNode.parent = pNode;
+			// the parent of R is now the parent of D. if R is NIL,
+			// rbDeleteFixup() uses this link to find P
+			rNode.parent = pNode;
 
 			// complete the link to the parent node.
 
 			// deleting the root node. assign new root
-			if (pNode == null)
+			if (pNode == NIL)
 				root = rNode;
 			// attach R to the correct branch of P
-			else if (((Comparable<T>)(dNode.nodeValue)).compareTo(pNode.nodeValue) < 0)
+			else if (dNode == pNode.left)
 				pNode.left = rNode;
 			else
 				pNode.right = rNode;
-      }
-      // both children of dNode are non-null.
-      else
-      {
-         // find and unlink replacement node for D.
-         // starting at the right child of node D,
-         // find the node whose value is the smallest of all
-         // nodes whose values are greater than the value in D.
-         // unlink the node from the tree.
 
-         // pOfRNode is reference to parent of replacement node
-         STNode<T> pOfRNode = dNode;
+			// we are splicing dNode out of the tree
+			spliceOut = dNode;
+			childOfSpliceOut = rNode;
+		}
+		// both children of dNode are non-NIL.
+		else
+		{
+			// find and unlink replacement node for D.
+			// starting at the right child of node D,
+			// find the node whose value is the smallest of all
+			// nodes whose values are greater than the value in D.
+			// unlink the node from the tree.
+
+			// pOfRNode is reference to parent of replacement node
+			RBNode<T> pOfRNode = dNode;
 
 			// first possible replacement is right child of D
 			rNode = dNode.right;
@@ -88,7 +106,7 @@ public class TreeSet<T> implements OrderedSet<T>, Iterable<T>
 			// descend down left subtree of the right child of D,
 			// keeping a record of current node and its parent.
 			// when we stop, we have found the replacement
-			while(rNode.left != null)
+			while(rNode.left != NIL)
 			{
 				pOfRNode = rNode;
 				rNode = rNode.left;
@@ -101,26 +119,258 @@ public class TreeSet<T> implements OrderedSet<T>, Iterable<T>
 
 			// the parent of the right child of R is the
 			// parent of R
-			if (rNode.right != null)
-				rNode.right.parent = pOfRNode;
+			rNode.right.parent = pOfRNode;
 
 			// copy the value in R to D
 			dNode.nodeValue = rNode.nodeValue;
 
-			// we want to dispose of rNode
-			dNode = rNode;
+			// we are splicing rNode out of the tree at its
+			// current location
+			spliceOut = rNode;
+			childOfSpliceOut = rNode.right;
 		}
 
-		// make the reference to the deleted node null
-		dNode = null;
-   }
+		// each ancestor of the spliced out node has one less
+		// node in its subtree
+		for (pNode = spliceOut.parent; pNode != NIL; pNode = pNode.parent)
+			pNode.size--;
+
+		// fixup the tree if the node spliced out is RBNode.BLACK
+		if (spliceOut.color == RBNode.BLACK)
+			rbDeleteFixup(childOfSpliceOut);
+	}
+
+	// fix up the tree when x is the child of
+	// a RBNode.BLACK node that was unlinked from its
+	// position in the tree
+	private void rbDeleteFixup(RBNode<T> x)
+	{
+		RBNode<T> siblingOfx;
+
+		while (x != root && x.color == RBNode.BLACK)
+
+			if (x == x.parent.left)
+			{
+				siblingOfx = x.parent.right;
+
+				if (siblingOfx.color == RBNode.RED)
+				{
+					// CASE 1:
+					//	 sibling of x is RBNode.RED. perform
+					//	 color changes and a left rotation.
+					//	 this produces a configuration that
+					//	 corresponds to cases 2, 3, or 4
+					siblingOfx.color = RBNode.BLACK;
+					x.parent.color = RBNode.RED;
+					rotateLeft(siblingOfx);
+					siblingOfx = x.parent.right;
+				}
+
+				if (siblingOfx.left.color == RBNode.BLACK &&
+					 siblingOfx.right.color == RBNode.BLACK)
+				{
+					// CASE 2:
+					//	 both the children of the siblingOfx are RBNode.BLACK.
+					//	 take a RBNode.BLACK off of x and siblingOfx and
+					//	 consider parent(x) to have an extra RBNode.BLACK
+					siblingOfx.color = RBNode.RED;
+					x = x.parent;
+				}
+				else
+				{
+					if (siblingOfx.right.color == RBNode.BLACK)
+					{
+						// CASE 3:
+						//	 siblingOfx is RBNode.BLACK, its left child is
+						//	 RBNode.RED, and its right child is RBNode.BLACK.
+						//	 color changes and a right rotation transform
+						//	 the configuration into case 4
+						siblingOfx.left.color = RBNode.BLACK;
+						siblingOfx.color = RBNode.RED;
+						rotateRight(siblingOfx.left);
+						siblingOfx = x.parent.right;
+					}
+
+					// CASE 4:
+					//	 siblingOfx is RBNode.BLACK and has a RBNode.RED
+					//	 right child. after color changes and a left
+					//	 rotation, the extra RBNode.BLACK on x is removed.
+					//	 set x to the root to terminate the loop
+					siblingOfx.color = x.parent.color;
+					x.parent.color = RBNode.BLACK;
+					siblingOfx.right.color = RBNode.BLACK;
+					rotateLeft(siblingOfx);
+					x = root;
+				}
+			}
+			else  // same as x == x.parent.left, except that
+					// "left" and "right" are interchanged
+			{
+				siblingOfx = x.parent.left;
+
+				if (siblingOfx.color == RBNode.RED)
+				{
+					siblingOfx.color = RBNode.BLACK;
+					x.parent.color = RBNode.RED;
+					rotateRight(siblingOfx);
+					siblingOfx = x.parent.left;
+				}
+
+				if (siblingOfx.right.color == RBNode.BLACK &&
+					 siblingOfx.left.color == RBNode.BLACK)
+				{
+					siblingOfx.color = RBNode.RED;
+					x = x.parent;
+				}
+				else
+				{
+					if (siblingOfx.left.color == RBNode.BLACK)
+					{
+						siblingOfx.right.color = RBNode.BLACK;
+						siblingOfx.color = RBNode.RED;
+						rotateLeft(siblingOfx.right);
+						siblingOfx = x.parent.left;
+					}
+
+					siblingOfx.color = x.parent.color;
+					x.parent.color = RBNode.BLACK;
+					siblingOfx.left.color = RBNode.BLACK;
+					rotateRight(siblingOfx);
+					x = root;
+				}
+			}
+
+			x.color = RBNode.BLACK;
+	}
+
+	// perform a single left rotation
+	private void rotateLeft (RBNode<T> pivot)
+	{
+		RBNode<T> p = pivot.parent, g = pivot.parent.parent;
+
+		p.right = pivot.left;
+		pivot.left = p;
+
+		pivot.parent = g;
+		p.parent = pivot;
+		if (p.right != NIL)
+			p.right.parent = p;
+
+		// pivot now roots the subtree that p rooted
+		pivot.size = p.size;
+		p.size = p.left.size + p.right.size + 1;
+
+		if (p == root)
+		  root = pivot;
+		else if (p == g.right)
+			g.right = pivot;
+		else
+			g.left = pivot;
+	}
+
+	// perform a single right rotation
+	private void rotateRight (RBNode<T> pivot)
+	{
+		// need the parent and grandparent of pivot
+		RBNode<T> p = pivot.parent, g = pivot.parent.parent;
+
+		// adjust right and left references
+		p.left = pivot.right;
+		pivot.right = p;
+
+		// adjust parent references
+		pivot.parent = g;
+		p.parent = pivot;
+		// don't reset the parent link of the left child of p
+		// if the left child is NIL. this will interfere with
+		// the use of NIL in rbDeleteFixup()
+		if (p.left != NIL)
+			p.left.parent = p;
+
+		// pivot now roots the subtree that p rooted
+		pivot.size = p.size;
+		p.size = p.left.size + p.right.size + 1;
+
+		if (p == root)
+			// pivot is the new root
+			root = pivot;
+		else if (p == g.right)
+			// right link of g must point at pivot now
+			g.right = pivot;
+		else
+			// left link of g must point at pivot now
+			g.left = pivot;
+	}
+
+	// break up a 4-node, performing a rotation, if necessary
+	private void split4Node(RBNode<T> x)
+	{
+		// perform the color flip
+		x.color = RBNode.RED;
+		x.left.color = RBNode.BLACK;
+		x.right.color = RBNode.BLACK;
+
+		// if we split the root, we are done
+		if (x == root)
+			return;
+
+		// to see if a rotation is required, we need the
+		// parent of x. x is not root, so p != NIL
+		RBNode<T> p = x.parent;
+
+		// a rotation is needed if the parent of x is RBNode.RED
+		if (p.color == RBNode.RED)
+		{
+			// we need the grandparent of x. since the root
+			// is RBNode.BLACK, p cannot be root, so the grandparent
+			// exists
+			RBNode<T> g = x.parent.parent;
+
+			// the grandparent of x will be RBNode.RED
+			g.color = RBNode.RED;
+
+			// a double rotation is required if x is an inside
+			// grandchild. check this by seeing if the orientations
+			// of p to g and x to p are different
+			if ( p == g.left && x == p.right )
+			{
+				// first move x up one level and p down
+				rotateLeft(x);
+
+				// node x will be RBNode.BLACK
+				x.color = RBNode.BLACK;
+				// prepare for a right single rotation
+				p = x;
+			}
+			else if ( p == g.right && x == p.left )
+			{
+				// first move x up one level and p down
+				rotateRight(x);
+
+				// node x will be RBNode.BLACK
+				x.color = RBNode.BLACK;
+				// prepare for a left single rotation
+				p = x;
+			}
+			else
+				// single rotation. parent will be RBNode.BLACK
+				p.color = RBNode.BLACK;
+
+			// perform a single rotation
+			// move p up and g down
+			if (p == g.left)
+				rotateRight(p);
+			else
+				rotateLeft(p);
+		}
+	}
 
     // delete the tree with a postorder scan of the nodes
-   private void deleteTree(STNode<T> t)
+   private void deleteTree(RBNode<T> t)
    {
-      // if current root node is not null, delete its left subtree,
+      // if current root node is not NIL, delete its left subtree,
       // its right subtree and then set the node to null
-      if (t != null)
+      if (t != NIL)
       {
          deleteTree(t.left);
          deleteTree(t.right);
@@ -130,15 +380,15 @@ public class TreeSet<T> implements OrderedSet<T>, Iterable<T>
 
 	// iteratively traverse a path from the root to the node
 	// whose value is item; return a reference to the node
-	// containing item or null if the search fails
-   private STNode<T> findNode(Object item)
+	// containing item or NIL if the search fails
+   private RBNode<T> findNode(Object item)
    {
       // t is current node in traversal
-      STNode<T> t = root;
+      RBNode<T> t = root;
       int orderValue;
 
       // terminate on on empty subtree
-      while(t != null)
+      while(t != NIL)
       {
          // compare item and the current node value
          orderValue = ((Comparable<T>)item).compareTo(t.nodeValue);
@@ -152,19 +402,164 @@ public class TreeSet<T> implements OrderedSet<T>, Iterable<T>
          else
             t = t.right;
       }
-      return null;
+      return NIL;
    }
 
+	// return the node with the least value greater than item, or greater
+	// than or equal to item if inclusive is true. return NIL if there
+	// is no such node
+	private RBNode<T> ceilingNode(Object item, boolean inclusive)
+	{
+		RBNode<T> t = root, candidate = NIL;
+		int orderValue;
+
+		while (t != NIL)
+		{
+			orderValue = ((Comparable<T>)item).compareTo(t.nodeValue);
+
+			// t is a candidate. look for a smaller one on the left
+			if (orderValue < 0 || (orderValue == 0 && inclusive))
+			{
+				candidate = t;
+				t = t.left;
+			}
+			else
+				t = t.right;
+		}
+
+		return candidate;
+	}
+
+	// return the node with the greatest value less than item, or less
+	// than or equal to item if inclusive is true. return NIL if there
+	// is no such node
+	private RBNode<T> floorNode(Object item, boolean inclusive)
+	{
+		RBNode<T> t = root, candidate = NIL;
+		int orderValue;
+
+		while (t != NIL)
+		{
+			orderValue = ((Comparable<T>)item).compareTo(t.nodeValue);
+
+			// t is a candidate. look for a larger one on the right
+			if (orderValue > 0 || (orderValue == 0 && inclusive))
+			{
+				candidate = t;
+				t = t.right;
+			}
+			else
+				t = t.left;
+		}
+
+		return candidate;
+	}
+
+	// build a tree from arr[low] to arr[high], which are in ascending
+	// order. the middle element is the root and the elements on either
+	// side of it form its subtrees, so every level of the tree is full
+	// except possibly the deepest one, level redLevel. its nodes are
+	// RBNode.RED and all others are RBNode.BLACK, so every path has the
+	// same number of black nodes
+	private RBNode<T> buildTree(Object[] arr, int low, int high, int level,
+		int redLevel, RBNode<T> parent)
+	{
+		if (high < low)
+			return NIL;
+
+		int mid = (low + high) >>> 1;
+		RBNode<T> newNode = new RBNode<T>((T)arr[mid], NIL, NIL, parent,
+			(level == redLevel) ? RBNode.RED : RBNode.BLACK);
+
+		newNode.left = buildTree(arr, low, mid-1, level+1, redLevel, newNode);
+		newNode.right = buildTree(arr, mid+1, high, level+1, redLevel, newNode);
+		newNode.size = high - low + 1;
+
+		return newNode;
+	}
+
+	// replace the tree by one built from arr[0] to arr[n-1]
+	private void rebuild(Object[] arr, int n)
+	{
+		// the deepest level of a tree with n nodes built by buildTree()
+		int redLevel = 31 - Integer.numberOfLeadingZeros(Math.max(n, 1));
+
+		root = buildTree(arr, 0, n-1, 0, redLevel, NIL);
+		root.color = RBNode.BLACK;
+		setSize = n;
+		modCount++;
+	}
+
     /**
      * Creates an empty TreeSet.
      */
    public TreeSet()
    {
-      root = null;
+      root = NIL;
       modCount = 0;
       setSize = 0;
    }
 
+    /**
+     * Builds a set from an array whose elements are in strictly ascending
+     * order.  The red-black tree is built directly in O(n) time: it is
+     * perfectly balanced, and only the nodes on its deepest level, if that
+     * level is not full, are red.
+     *
+     * @param arr elements in strictly ascending order.
+     * @return a set containing the elements.
+     * @throws IllegalArgumentException if the elements are not in strictly
+     *         ascending order.
+     */
+	public static <T> TreeSet<T> fromSorted(T[] arr)
+	{
+		return buildFromSorted(arr, arr.length);
+	}
+
+    /**
+     * Builds a set from elements in strictly ascending order in O(n) time.
+     *
+     * @param iter iterator over the elements in ascending order.
+     * @return a set containing the elements.
+     * @throws IllegalArgumentException if the elements are not in strictly
+     *         ascending order.
+     */
+	public static <T> TreeSet<T> fromSorted(Iterator<? extends T> iter)
+	{
+		Object[] arr = new Object[16];
+		int n = 0;
+
+		while (iter.hasNext())
+		{
+			if (n == arr.length)
+				arr = java.util.Arrays.copyOf(arr, 2 * n);
+			arr[n++] = iter.next();
+		}
+
+		return buildFromSorted(arr, n);
+	}
+
+	// build a set from arr[0] to arr[n-1]
+	private static <T> TreeSet<T> buildFromSorted(Object[] arr, int n)
+	{
+		if (!SortedArrays.isAscending(arr, n))
+			throw new IllegalArgumentException(
+				"TreeSet fromSorted(): elements are not in " +
+				"strictly ascending order");
+
+		return fromSortedArray(arr, n);
+	}
+
+	// build a set from arr[0] to arr[n-1] without checking their order.
+	// used by Sets, whose merge algorithms produce ascending arrays
+	static <T> TreeSet<T> fromSortedArray(Object[] arr, int n)
+	{
+		TreeSet<T> set = new TreeSet<T>();
+
+		set.rebuild(arr, n);
+		return set;
+	}
+
     /**
      * Adds the specified element to this set if it is not already present.
      * If this set already contains the specified element, the call leaves
@@ -175,41 +570,68 @@ public class TreeSet<T> implements OrderedSet<T>, Iterable<T>
      */
 	public boolean add(T item)
 	{
+		// TOP-DOWN INSERTION
+
 		// t is current node in traversal, parent the previous node
-		STNode<T> t = root, parent = null, newNode;
+		RBNode<T> t = root, parent = NIL, newNode;
 		int orderValue = 0;
 
 		// terminate on on empty subtree
-		while(t != null)
+		while(t != NIL)
 		{
-			// update the parent reference.
-			parent = t;
-
 			// compare item and the current node value
 			orderValue = ((Comparable<T>)item).compareTo(t.nodeValue);
 
-			// if a match occurs, return false; otherwise, go left
-			// or go right following search tree order
+			// if a match occurs, return false. a split on the way down
+			// may have colored the root RBNode.RED, so restore it
 			if (orderValue == 0)
+			{
+				root.color = RBNode.BLACK;
 				return false;
-			else if (orderValue < 0)
+			}
+
+			// a node split is required if both children of t are
+			// RBNode.RED
+			if (t.left.color == RBNode.RED && t.right.color == RBNode.RED)
+				split4Node(t);
+
+			// update the parent reference and go left or go right
+			// following search tree order
+			parent = t;
+			if (orderValue < 0)
 				t = t.left;
 			else
 				t = t.right;
 		}
 
 		// create the new node
-		newNode = new STNode<T>(item,parent);
+		newNode = new RBNode<T>(item, NIL, NIL, parent, RBNode.RED);
 
-		if (parent == null)
+		if (parent == NIL)
 			// this is the first node added. make it root
 			root = newNode;
-		else if (orderValue < 0)
-			// attach newNode as the left child of parent
-			parent.left = newNode;
 		else
-			// attach newNode as the right child of parent
-			parent.right = newNode;
+		{
+			if (orderValue < 0)
+				// attach newNode as the left child of parent
+				parent.left = newNode;
+			else
+				// attach newNode as the right child of parent
+				parent.right = newNode;
+
+			// each ancestor of newNode has one more node in its
+			// subtree. update the sizes before any rotation
+			for (t = parent; t != NIL; t = t.parent)
+				t.size++;
+
+			// if the new node's parent is RBNode.RED, we
+			// must perform a rotation
+			if (parent.color == RBNode.RED)
+				split4Node(newNode);
+		}
+
+		// the color of the root must be BLACK
+		root.color = RBNode.BLACK;
 
 		// increment the tree size and modCount
 		setSize++;
@@ -219,6 +641,120 @@ public class TreeSet<T> implements OrderedSet<T>, Iterable<T>
 		return true;
 	}
 
+    /**
+     * Adds all of the elements in the specified collection to this set.
+     * When the elements of <tt>c</tt> are in strictly ascending order, as
+     * they are for an ordered collection, and there are at least
+     * 1/16 as many of them as there are elements in the set, the method
+     * merges them with the elements of the set and builds a new red-black
+     * tree in O(n + m) time.  Otherwise it adds the elements one at a time.
+     *
+     * @param c collection whose elements are added to this set.
+     * @return <tt>true</tt> if the set changed as a result of the call.
+     */
+	public boolean addAll(Collection<? extends T> c)
+	{
+		Object[] arr = c.toArray();
+		int oldSize = setSize;
+
+		if (arr.length == 0)
+			return false;
+
+		if (arr.length >= setSize / BULK_RATIO &&
+			 SortedArrays.isAscending(arr, arr.length))
+		{
+			Object[] merged = SortedArrays.mergeSorted(toArray(), arr);
+
+			if (merged.length == setSize)
+				return false;
+
+			rebuild(merged, merged.length);
+			return true;
+		}
+
+		for (int i = 0; i < arr.length; i++)
+			add((T)arr[i]);
+
+		return setSize != oldSize;
+	}
+
+    /**
+     * Retains only the elements in this set that are contained in the
+     * specified collection.  The surviving elements are collected in
+     * ascending order and the tree is rebuilt from them in O(n) time.
+     * When <tt>c</tt> is an <tt>OrderedSet</tt>, membership is found by
+     * walking the two sets together, so the method runs in O(n + m) time.
+     *
+     * @param c collection whose elements are retained in this set.
+     * @return <tt>true</tt> if the set changed as a result of the call.
+     */
+	public boolean retainAll(Collection<?> c)
+	{
+		return filter(c, true);
+	}
+
+    /**
+     * Removes from this set all of its elements that are contained in the
+     * specified collection.  When there are at least 1/16 as many elements
+     * in <tt>c</tt> as in the set, the method keeps the other elements in
+     * ascending order and rebuilds the tree from them in O(n) time; with an
+     * <tt>OrderedSet</tt> argument it runs in O(n + m) time.  Otherwise it
+     * removes the elements one at a time.
+     *
+     * @param c collection whose elements are removed from this set.
+     * @return <tt>true</tt> if the set changed as a result of the call.
+     */
+	public boolean removeAll(Collection<?> c)
+	{
+		if (c.size() >= setSize / BULK_RATIO)
+			return filter(c, false);
+
+		Iterator<?> iter = c.iterator();
+		int oldSize = setSize;
+
+		while (iter.hasNext())
+			remove(iter.next());
+
+		return setSize != oldSize;
+	}
+
+	// keep the elements of the set that are in c (retain) or that are
+	// not in c (!retain) and rebuild the tree if any are dropped
+	private boolean filter(Collection<?> c, boolean retain)
+	{
+		Object[] arr = toArray();
+		int n = 0, orderValue;
+
+		if (c instanceof OrderedSet)
+		{
+			// walk the ascending elements of c along with arr
+			Iterator<?> iter = c.iterator();
+			Object cValue = iter.hasNext() ? iter.next() : null;
+
+			for (int i = 0; i < arr.length; i++)
+			{
+				orderValue = 1;
+				while (cValue != null &&
+						 (orderValue = ((Comparable<Object>)arr[i]).compareTo(
+						 	cValue)) > 0)
+					cValue = iter.hasNext() ? iter.next() : null;
+
+				if ((orderValue == 0) == retain)
+					arr[n++] = arr[i];
+			}
+		}
+		else
+			for (int i = 0; i < arr.length; i++)
+				if (c.contains(arr[i]) == retain)
+					arr[n++] = arr[i];
+
+		if (n == setSize)
+			return false;
+
+		rebuild(arr, n);
+		return true;
+	}
+
     /**
      * Removes all of the elements from this set. This set will be empty after
      * this call returns.
@@ -226,7 +762,7 @@ public class TreeSet<T> implements OrderedSet<T>, Iterable<T>
 	public void clear()
    {
       deleteTree(root);
-      root = null;
+      root = NIL;
       setSize = 0;
    }
 
@@ -238,8 +774,8 @@ public class TreeSet<T> implements OrderedSet<T>, Iterable<T>
      */
    public boolean contains(Object item)
    {
-      STNode<T> t = findNode(item);
-      return (t == null) ? false : true;
+      RBNode<T> t = findNode(item);
+      return (t == NIL) ? false : true;
    }
 
     /**
@@ -272,9 +808,9 @@ public class TreeSet<T> implements OrderedSet<T>, Iterable<T>
 	public boolean remove(Object item)
 	{
 		// search tree for item
-		STNode<T> dNode  = findNode(item);
+		RBNode<T> dNode  = findNode(item);
 
-		if (dNode == null)
+		if (dNode == NIL)
 			return false;
 
 		removeNode(dNode);
@@ -303,14 +839,14 @@ public class TreeSet<T> implements OrderedSet<T>, Iterable<T>
      */
 	public T first()
 	{
-		STNode<T> nextNode = root;
+		RBNode<T> nextNode = root;
 
 		// if the set is empty, return null
-		if (nextNode == null)
+		if (nextNode == NIL)
 			return null;
 
 		// first node is the furthest node left from root
-		while (nextNode.left != null)
+		while (nextNode.left != NIL)
 			nextNode = nextNode.left;
 
 		return nextNode.nodeValue;
@@ -324,19 +860,180 @@ public class TreeSet<T> implements OrderedSet<T>, Iterable<T>
      */
 	public T last()
 	{
-		STNode<T> nextNode = root;
+		RBNode<T> nextNode = root;
 
 		// if the set is empty, return null
-		if (nextNode == null)
+		if (nextNode == NIL)
 			return null;
 
 		// last node is the furthest node right from root
-		while (nextNode.right != null)
+		while (nextNode.right != NIL)
 			nextNode = nextNode.right;
 
 		return nextNode.nodeValue;
 	}
 
+    /**
+     * Returns the greatest element in this set less than or equal to
+     * <tt>item</tt>, or <tt>null</tt> if there is no such element.
+     *
+     * @param item the value to match.
+     * @return the greatest element less than or equal to <tt>item</tt>.
+     */
+	public T floor(T item)
+	{
+		RBNode<T> t = floorNode(item, true);
+		return (t == NIL) ? null : t.nodeValue;
+	}
+
+    /**
+     * Returns the least element in this set greater than or equal to
+     * <tt>item</tt>, or <tt>null</tt> if there is no such element.
+     *
+     * @param item the value to match.
+     * @return the least element greater than or equal to <tt>item</tt>.
+     */
+	public T ceiling(T item)
+	{
+		RBNode<T> t = ceilingNode(item, true);
+		return (t == NIL) ? null : t.nodeValue;
+	}
+
+    /**
+     * Returns the greatest element in this set strictly less than
+     * <tt>item</tt>, or <tt>null</tt> if there is no such element.
+     *
+     * @param item the value to match.
+     * @return the greatest element less than <tt>item</tt>.
+     */
+	public T lower(T item)
+	{
+		RBNode<T> t = floorNode(item, false);
+		return (t == NIL) ? null : t.nodeValue;
+	}
+
+    /**
+     * Returns the least element in this set strictly greater than
+     * <tt>item</tt>, or <tt>null</tt> if there is no such element.
+     *
+     * @param item the value to match.
+     * @return the least element greater than <tt>item</tt>.
+     */
+	public T higher(T item)
+	{
+		RBNode<T> t = ceilingNode(item, false);
+		return (t == NIL) ? null : t.nodeValue;
+	}
+
+    /**
+     * Returns the number of elements in this set that are strictly less than
+     * <tt>item</tt>.  If <tt>item</tt> is in the set, this is its index in
+     * ascending order.  The method runs in time proportional to the height
+     * of the tree.
+     *
+     * @param item the value whose rank is returned.
+     * @return the number of elements less than <tt>item</tt>.
+     */
+	public int rank(Object item)
+	{
+		RBNode<T> t = root;
+		int r = 0;
+
+		while (t != NIL)
+			if (((Comparable<T>)item).compareTo(t.nodeValue) <= 0)
+				t = t.left;
+			else
+			{
+				// t and its left subtree are less than item
+				r += t.left.size + 1;
+				t = t.right;
+			}
+
+		return r;
+	}
+
+    /**
+     * Returns the element at position <tt>index</tt> in ascending order, so
+     * <tt>select(0)</tt> is the minimum element.  The method runs in time
+     * proportional to the height of the tree.
+     *
+     * @param index position of the element in ascending order.
+     * @return the element whose rank is <tt>index</tt>.
+     * @throws IndexOutOfBoundsException if <tt>index</tt> is not in the
+     *         range 0 to size()-1.
+     */
+	public T select(int index)
+	{
+		if (index < 0 || index >= setSize)
+			throw new IndexOutOfBoundsException(
+				"TreeSet select(): index " + index + " out of range");
+
+		RBNode<T> t = root;
+		int leftSize;
+
+		while (true)
+		{
+			leftSize = t.left.size;
+			if (index < leftSize)
+				t = t.left;
+			else if (index == leftSize)
+				return t.nodeValue;
+			else
+			{
+				index -= leftSize + 1;
+				t = t.right;
+			}
+		}
+	}
+
+    /**
+     * Returns a view of the portion of this set whose elements are strictly
+     * less than <tt>toItem</tt>.  The view is backed by this set, so changes
+     * in one are reflected in the other.  Adding an element outside the
+     * range of the view throws <tt>IllegalArgumentException</tt>.
+     *
+     * @param toItem high endpoint (exclusive) of the view.
+     * @return a view of the elements less than <tt>toItem</tt>.
+     */
+	public OrderedSet<T> headSet(T toItem)
+	{
+		return new SubSet(null, toItem);
+	}
+
+    /**
+     * Returns a view of the portion of this set whose elements are greater
+     * than or equal to <tt>fromItem</tt>.  The view is backed by this set.
+     *
+     * @param fromItem low endpoint (inclusive) of the view.
+     * @return a view of the elements greater than or equal to <tt>fromItem</tt>.
+     */
+	public OrderedSet<T> tailSet(T fromItem)
+	{
+		return new SubSet(fromItem, null);
+	}
+
+    /**
+     * Returns a view of the portion of this set whose elements range from
+     * <tt>fromItem</tt>, inclusive, to <tt>toItem</tt>, exclusive.  The view
+     * is backed by this set.  Its iterator starts at the first element in
+     * the range rather than at the minimum element of the set, and its
+     * <tt>size</tt> runs in time proportional to the height of the tree.
+     *
+     * @param fromItem low endpoint (inclusive) of the view.
+     * @param toItem high endpoint (exclusive) of the view.
+     * @return a view of the elements in the range.
+     * @throws IllegalArgumentException if <tt>fromItem</tt> is greater
+     *         than <tt>toItem</tt>.
+     */
+	public OrderedSet<T> subSet(T fromItem, T toItem)
+	{
+		if (((Comparable<T>)fromItem).compareTo(toItem) > 0)
+			throw new IllegalArgumentException(
+				"TreeSet subSet(): fromItem > toItem");
+
+		return new SubSet(fromItem, toItem);
+	}
+
     /**
      * Returns an array containing all of the elements in this set in ascending order.
      *
@@ -389,9 +1086,12 @@ public class TreeSet<T> implements OrderedSet<T>, Iterable<T>
 		private int expectedModCount = modCount;
 		// node of the last value returned by next() or header if that
 		// value was deleted by the iterator method remove()
-		private STNode<T> lastReturned = null;
+		private RBNode<T> lastReturned = NIL;
 		// node whose value is returned a subsequent call to next()
-		private STNode<T> nextNode = null;
+		private RBNode<T> nextNode = NIL;
+		// the iteration stops before this value; null if the
+		// iteration continues to the last node
+		private T toItem = null;
 
 		// constructor
 		IteratorImpl()
@@ -400,17 +1100,27 @@ public class TreeSet<T> implements OrderedSet<T>, Iterable<T>
 
 			// if the tree is not empty, the first node
 			// inorder is the farthest node left from root
-			if (nextNode != null)
-				while (nextNode.left != null)
+			if (nextNode != NIL)
+				while (nextNode.left != NIL)
 					nextNode = nextNode.left;
 		}
 
+		// constructor for a range view. the iteration starts at
+		// firstNode and stops before the first value >= toItem
+		IteratorImpl(RBNode<T> firstNode, T toItem)
+		{
+			nextNode = firstNode;
+			this.toItem = toItem;
+		}
+
 		// returns true if the tree has more
 		// unvisited elements
 		public boolean hasNext()
 		{
-			// elements remain if nextNode is not null
-			return nextNode != null;
+			// elements remain if nextNode is not NIL and is
+			// below the upper bound of the iteration
+			return nextNode != NIL && (toItem == null ||
+				((Comparable<T>)nextNode.nodeValue).compareTo(toItem) < 0);
 		}
 
 		// returns the next element in the iteration.
@@ -425,7 +1135,7 @@ public class TreeSet<T> implements OrderedSet<T>, Iterable<T>
 
 			// check if the iteration has an another element
 			// if not, throw NoSuchElementException
-			if (nextNode == null)
+			if (!hasNext())
 				throw new NoSuchElementException(
 						"Iteration has no more elements");
 
@@ -433,15 +1143,15 @@ public class TreeSet<T> implements OrderedSet<T>, Iterable<T>
 			lastReturned = nextNode;
 
 			// set nextNode to the next node in order
-			STNode<T> p;
+			RBNode<T> p;
 
-			if (nextNode.right != null)
+			if (nextNode.right != NIL)
 			{
 				// successor is the furthest left node of
 				// right subtree
 				nextNode = nextNode.right;
 
-				while (nextNode.left != null)
+				while (nextNode.left != NIL)
 					nextNode = nextNode.left;
 			}
 			else
@@ -449,19 +1159,19 @@ public class TreeSet<T> implements OrderedSet<T>, Iterable<T>
 				// have already processed the left subtree, and
 				// there is no right subtree. move up the tree,
 				// looking for a parent for which nextNode is a left child,
-				// stopping if the parent becomes null. a non-null parent
-				// is the successor. if parent is null, the original node
+				// stopping if the parent becomes NIL. a non-NIL parent
+				// is the successor. if parent is NIL, the original node
 				// was the last node inorder
 				p = nextNode.parent;
 
-				while (p != null && nextNode == p.right)
+				while (p != NIL && nextNode == p.right)
 				{
 					nextNode = p;
 					p = p.parent;
 				}
 
 				// if we were previously at the right-most node in
-				// the tree, nextNode = null
+				// the tree, nextNode = NIL
 				nextNode = p;
 			}
 
@@ -479,7 +1189,7 @@ public class TreeSet<T> implements OrderedSet<T>, Iterable<T>
       public void remove()
       {
          // check for a missing call to next() or previous()
-         if (lastReturned == null)
+         if (lastReturned == NIL)
             throw new IllegalStateException(
                "Iterator call to next() " +
                "required before calling remove()");
@@ -491,7 +1201,7 @@ public class TreeSet<T> implements OrderedSet<T>, Iterable<T>
 			// during deletion is nextNode. the value in nextNode
 			// is copied to lastReturned. nextNode must be
 			// lastReturned
-			if (lastReturned.left != null && lastReturned.right != null)
+			if (lastReturned.left != NIL && lastReturned.right != NIL)
 				 nextNode = lastReturned;
          removeNode(lastReturned);
 
@@ -500,8 +1210,8 @@ public class TreeSet<T> implements OrderedSet<T>, Iterable<T>
          expectedModCount = modCount;
 
          // we did a deletion. indicate this by setting lastReturned
-         // to null and decrementing setSize
-         lastReturned = null;
+         // to NIL and decrementing setSize
+         lastReturned = NIL;
          setSize--;
       }
 
@@ -515,26 +1225,164 @@ public class TreeSet<T> implements OrderedSet<T>, Iterable<T>
    }
 
 
-	// declares a binary search tree node object
-	private static class STNode<T>
+	// a range view of the set. fromItem is the inclusive lower bound and
+	// toItem the exclusive upper bound; a null bound means the range is
+	// unbounded on that side
+	private class SubSet implements OrderedSet<T>
 	{
-		// STNode<T> is used to implement the binary search tree class
-		// making the data public simplifies building the class functions
+		private T fromItem, toItem;
+
+		SubSet(T fromItem, T toItem)
+		{
+			this.fromItem = fromItem;
+			this.toItem = toItem;
+		}
+
+		private boolean inRange(Object item)
+		{
+			return (fromItem == null ||
+						((Comparable<T>)item).compareTo(fromItem) >= 0) &&
+					 (toItem == null ||
+						((Comparable<T>)item).compareTo(toItem) < 0);
+		}
+
+		// first node in the range, ignoring the upper bound
+		private RBNode<T> lowNode()
+		{
+			if (fromItem != null)
+				return ceilingNode(fromItem, true);
+
+			RBNode<T> t = root;
+			if (t != NIL)
+				while (t.left != NIL)
+					t = t.left;
+			return t;
+		}
+
+		public boolean add(T item)
+		{
+			if (!inRange(item))
+				throw new IllegalArgumentException(
+					"TreeSet view add(): item out of range");
+
+			return TreeSet.this.add(item);
+		}
+
+		public void clear()
+		{
+			Iterator<T> iter = iterator();
+
+			while (iter.hasNext())
+			{
+				iter.next();
+				iter.remove();
+			}
+		}
+
+		public boolean contains(Object item)
+		{
+			return inRange(item) && TreeSet.this.contains(item);
+		}
+
+		public boolean isEmpty()
+		{
+			return !iterator().hasNext();
+		}
+
+		public Iterator<T> iterator()
+		{
+			return new IteratorImpl(lowNode(), toItem);
+		}
+
+		public boolean remove(Object item)
+		{
+			return inRange(item) && TreeSet.this.remove(item);
+		}
+
+		public int size()
+		{
+			int high = (toItem == null) ? setSize : rank(toItem),
+				 low = (fromItem == null) ? 0 : rank(fromItem);
+
+			return high - low;
+		}
+
+		public T first()
+		{
+			RBNode<T> t = lowNode();
+
+			if (t == NIL || !inRange(t.nodeValue))
+				return null;
+			return t.nodeValue;
+		}
+
+		public T last()
+		{
+			T item = (toItem == null) ? TreeSet.this.last() : lower(toItem);
+
+			if (item == null || !inRange(item))
+				return null;
+			return item;
+		}
+
+		public Object[] toArray()
+		{
+			Object[] arr = new Object[size()];
+			Iterator<T> iter = iterator();
+
+			for (int i = 0; i < arr.length; i++)
+				arr[i] = iter.next();
+
+			return arr;
+		}
+
+		public String toString()
+		{
+			StringBuffer buf = new StringBuffer();
+			Iterator<T> iter = iterator();
+
+			buf.append("[");
+			while (iter.hasNext())
+			{
+				buf.append(iter.next());
+				if (iter.hasNext())
+					buf.append(", ");
+			}
+			buf.append("]");
+
+			return buf.toString();
+		}
+	}
+
+	// declares a red-black tree node object
+	private static class RBNode<T>
+	{
+		// node colors
+		public final static int BLACK = 0, RED = 1;
 
 		// node data
 		public T nodeValue;
 
 		// child links and link to the node's parent
-		public STNode<T> left, right, parent;
+		public RBNode<T> left, right, parent;
+
+		// node's color
+		public int color;
+
+		// number of nodes in the subtree with this node as root
+		public int size;
 
-		// constructor that initializes the value and parent fields and sets
-		// the link fields left and right to null
-		public STNode (T item,STNode<T> parentNode)
+		// constructor that initializes the value, links and color. the
+		// NIL sentinel is created with null links and has size 0
+		public RBNode (T item, RBNode<T> left, RBNode<T> right,
+						   RBNode<T> parent, int color)
 		{
 			nodeValue = item;
-			left = null;
-			right = null;
-			parent = parentNode;
+			this.left = left;
+			this.right = right;
+			this.parent = parent;
+			this.color = color;
+			size = (left == null) ? 0 : 1;
 		}
 	}
-}
\ No newline at end of file
+}
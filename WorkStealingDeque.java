@@ -0,0 +1,201 @@
+/*
+ * @(#)WorkStealingDeque.java
+ */
+
+package ds.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A Chase-Lev work-stealing deque.  One thread, the owner, adds and
+ * removes elements at the bottom of the deque with <tt>push</tt> and
+ * <tt>pop</tt>, using it as a stack; any other thread may remove the
+ * element at the top with <tt>steal</tt>.  The owner's operations need
+ * no atomic read-modify-write except when it takes the last element, so
+ * a thread that mostly works on its own deque pays almost nothing for
+ * the ability of idle threads to take work from it.  Thieves take the
+ * oldest elements, which in a recursive computation are the largest
+ * pieces of work.<p>
+ *
+ * The elements are held in a circular array that the owner doubles when
+ * it fills.  A stolen element stays referenced by the array until the
+ * owner reuses its slot.  The deque does not hold <tt>null</tt>
+ * elements.<p>
+ */
+
+public class WorkStealingDeque<T>
+{
+	// initial number of slots, a power of 2
+	private static final int INITIAL_CAPACITY = 32;
+
+	// largest number of slots
+	private static final int MAX_CAPACITY = 1 << 30;
+
+	// the elements are those with sequence numbers top through bottom-1.
+	// thieves advance top with a CAS; only the owner writes bottom
+	private final Index top = new Index();
+	private final Index bottom = new Index();
+
+	// the current array. the owner replaces it when it grows; a thief
+	// that still reads the old one finds the same elements there
+	private volatile Slots<T> slots = new Slots<T>(INITIAL_CAPACITY);
+
+	// an AtomicLong padded to fill a cache line, so that the index the
+	// owner writes and the index thieves write do not share one
+	private static final class Index extends AtomicLong
+	{
+		long p1, p2, p3, p4, p5, p6, p7;
+	}
+
+	// circular array indexed by sequence number
+	private static final class Slots<T>
+	{
+		final AtomicReferenceArray<T> items;
+		final int mask;
+
+		Slots(int capacity)
+		{
+			items = new AtomicReferenceArray<T>(capacity);
+			mask = capacity - 1;
+		}
+
+		T get(long i)
+		{
+			return items.get((int)i & mask);
+		}
+
+		void set(long i, T item)
+		{
+			items.lazySet((int)i & mask, item);
+		}
+
+		// a copy with twice the capacity holding elements t through b-1
+		Slots<T> grow(long t, long b)
+		{
+			if (items.length() == MAX_CAPACITY)
+				throw new OutOfMemoryError("WorkStealingDeque: deque too large");
+
+			Slots<T> s = new Slots<T>(items.length() << 1);
+
+			for (long i = t; i < b; i++)
+				s.set(i, get(i));
+
+			return s;
+		}
+	}
+
+	/**
+	 * Adds item at the bottom of the deque.  Called only by the owner.
+	 *
+	 * @param item  the element to add.
+	 * @throws NullPointerException if <tt>item</tt> is <tt>null</tt>.
+	 */
+	public void push(T item)
+	{
+		if (item == null)
+			throw new NullPointerException("WorkStealingDeque push(): null element");
+
+		long b = bottom.get();
+		long t = top.get();
+		Slots<T> s = slots;
+
+		if (b - t >= s.mask)
+			slots = s = s.grow(t, b);
+
+		s.set(b, item);
+		// the ordered write publishes the element before the index
+		bottom.lazySet(b + 1);
+	}
+
+	/**
+	 * Removes and returns the element at the bottom of the deque, the
+	 * one most recently pushed.  Called only by the owner.
+	 *
+	 * @return the bottom element, or <tt>null</tt> if the deque is empty.
+	 */
+	public T pop()
+	{
+		long b = bottom.get() - 1;
+		Slots<T> s = slots;
+
+		// claim the bottom slot before reading top. the volatile write
+		// orders the two, so a thief that reads top after this sees
+		// the smaller bottom
+		bottom.set(b);
+
+		long t = top.get();
+
+		if (t > b)
+		{
+			// the deque was empty
+			bottom.lazySet(b + 1);
+			return null;
+		}
+
+		T item = s.get(b);
+
+		if (t == b)
+		{
+			// the last element. a thief may be taking it too; whoever
+			// advances top gets it
+			if (!top.compareAndSet(t, t + 1))
+				item = null;
+			bottom.lazySet(b + 1);
+		}
+
+		if (item != null)
+			s.set(b, null);
+
+		return item;
+	}
+
+	/**
+	 * Removes and returns the element at the top of the deque, the
+	 * oldest one.  May be called by any thread.
+	 *
+	 * @return the top element, or <tt>null</tt> if the deque is empty or
+	 *         another thread removed the element first.
+	 */
+	public T steal()
+	{
+		long t = top.get();
+		long b = bottom.get();
+
+		if (t >= b)
+			return null;
+
+		// read the element before claiming it. once top moves past t
+		// the owner may reuse the slot
+		T item = slots.get(t);
+
+		if (item == null || !top.compareAndSet(t, t + 1))
+			return null;
+
+		return item;
+	}
+
+	/**
+	 * Returns the number of elements in the deque.  The value is exact
+	 * only when no other thread is using the deque.
+	 *
+	 * @return the number of elements.
+	 */
+	public int size()
+	{
+		long n = bottom.get() - top.get();
+
+		return (n < 0) ? 0 : (int)n;
+	}
+
+	/**
+	 * Returns <tt>true</tt> if the deque holds no elements.  The value is
+	 * exact only when no other thread is using the deque.
+	 *
+	 * @return <tt>true</tt> if the deque is empty.
+	 */
+	public boolean isEmpty()
+	{
+		return bottom.get() <= top.get();
+	}
+}
@@ -0,0 +1,479 @@
+/*
+ * @(#)WorkStealingScheduler.java
+ */
+
+package ds.util;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of worker threads that run fork-join style tasks.  Each
+ * worker owns a <tt>WorkStealingDeque</tt>.  A task that forks a subtask
+ * pushes it on the deque of the worker running it, and a worker that
+ * joins a subtask runs other tasks from its own deque, or steals the
+ * oldest task from another worker's deque, until the subtask is done.
+ * An idle worker steals in the same way, so the large pieces near the
+ * root of a recursive computation spread across the workers while each
+ * worker handles the small pieces it forks itself.<p>
+ *
+ * Unlike a shared pool, a scheduler is created and closed by its user,
+ * who chooses the number of workers and the seed of the random numbers
+ * the workers use to pick a victim to steal from.  A scheduler with one
+ * worker runs the tasks of a computation in the same order on every
+ * run, which makes a parallel algorithm testable one thread at a time.
+ * The worker threads are daemon threads.<p>
+ *
+ * A task is run at most once.  It may be forked or passed to
+ * <tt>invoke</tt> once; <tt>fork</tt> and <tt>join</tt> must be called
+ * from a task running in the scheduler.<p>
+ *
+ * @see WorkStealingDeque
+ */
+
+public class WorkStealingScheduler implements AutoCloseable
+{
+	// how long an idle worker waits before it looks for work again. a
+	// fork does not wake a worker that is just going idle, so the wait
+	// bounds how long such a task waits for a thief
+	private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final Worker[] workers;
+
+	// tasks passed to invoke() by threads outside the scheduler.
+	// guarded by lock, which idle workers wait on
+	private final ArrayDeque<Task<?>> submissions = new ArrayDeque<Task<?>>();
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition workAvailable = lock.newCondition();
+
+	// number of workers waiting on workAvailable
+	private final AtomicInteger idleWorkers = new AtomicInteger();
+
+	private volatile boolean shutdown;
+
+	/**
+	 * A computation that runs in a <tt>WorkStealingScheduler</tt> and
+	 * returns a value of type <tt>V</tt>.  A subclass implements
+	 * <tt>compute</tt>, which may split its work by creating subtasks,
+	 * calling <tt>fork</tt> on some of them and <tt>join</tt> to wait for
+	 * their results.
+	 */
+	public static abstract class Task<V>
+	{
+		private V result;
+		private Throwable exception;
+		// written after result and exception, so a thread that reads
+		// done == true sees them
+		private volatile boolean done;
+		// an outside thread waiting in join()
+		private volatile Thread waiter;
+
+		/**
+		 * Performs the task's computation.
+		 *
+		 * @return the result of the task.
+		 */
+		protected abstract V compute();
+
+		/**
+		 * Schedules the task to run in the scheduler of the current
+		 * worker thread.  The task may be run by this worker when it
+		 * joins the task or by another worker that steals it.
+		 *
+		 * @return this task.
+		 * @throws IllegalStateException if the current thread is not a
+		 *         worker of a scheduler.
+		 */
+		public final Task<V> fork()
+		{
+			Thread t = Thread.currentThread();
+
+			if (!(t instanceof Worker))
+				throw new IllegalStateException(
+					"Task fork(): not called from a scheduler thread");
+
+			Worker w = (Worker)t;
+
+			w.deque.push(this);
+			w.scheduler.signalWork();
+			return this;
+		}
+
+		/**
+		 * Returns the result of the task when it is done.  A worker that
+		 * joins an unfinished task runs other tasks of the scheduler
+		 * while it waits; an outside thread blocks.
+		 *
+		 * @return the result of the task.
+		 * @throws RuntimeException or Error thrown by <tt>compute</tt>;
+		 *         other exceptions are wrapped in a
+		 *         <tt>RuntimeException</tt>.
+		 */
+		public final V join()
+		{
+			if (!done)
+			{
+				Thread t = Thread.currentThread();
+
+				if (t instanceof Worker)
+					((Worker)t).helpUntilDone(this);
+				else
+					awaitDone();
+			}
+
+			if (exception != null)
+			{
+				if (exception instanceof RuntimeException)
+					throw (RuntimeException)exception;
+				if (exception instanceof Error)
+					throw (Error)exception;
+				throw new RuntimeException(exception);
+			}
+
+			return result;
+		}
+
+		/**
+		 * Returns <tt>true</tt> if the task has finished, normally or by
+		 * throwing an exception.
+		 *
+		 * @return <tt>true</tt> if the task is done.
+		 */
+		public final boolean isDone()
+		{
+			return done;
+		}
+
+		// runs compute() and records its outcome. the deque and the
+		// submission queue hand a task to exactly one thread, so a task
+		// is never run twice
+		final void run()
+		{
+			if (done)
+				return;
+
+			try
+			{
+				result = compute();
+			}
+			catch (Throwable ex)
+			{
+				exception = ex;
+			}
+			complete();
+		}
+
+		// ends a task that was never run
+		final void cancel()
+		{
+			exception = new CancellationException(
+				"WorkStealingScheduler: scheduler shut down");
+			complete();
+		}
+
+		private void complete()
+		{
+			done = true;
+
+			Thread w = waiter;
+
+			if (w != null)
+				LockSupport.unpark(w);
+		}
+
+		// block an outside thread until the task is done. the timed park
+		// covers a second outside thread that replaced this one as waiter
+		private void awaitDone()
+		{
+			Thread t = Thread.currentThread();
+
+			while (!done)
+			{
+				waiter = t;
+				if (!done)
+					LockSupport.parkNanos(this, IDLE_WAIT_NANOS);
+			}
+		}
+	}
+
+	// a worker thread and the deque it owns
+	private static final class Worker extends Thread
+	{
+		final WorkStealingScheduler scheduler;
+		final WorkStealingDeque<Task<?>> deque = new WorkStealingDeque<Task<?>>();
+		// chooses where a steal begins; used only by this thread
+		final SplittableRandom random;
+		final int index;
+
+		Worker(WorkStealingScheduler scheduler, int index, SplittableRandom random)
+		{
+			super("WorkStealingScheduler-worker-" + index);
+			this.scheduler = scheduler;
+			this.index = index;
+			this.random = random;
+			setDaemon(true);
+		}
+
+		public void run()
+		{
+			while (!scheduler.shutdown)
+			{
+				Task<?> task = findWork();
+
+				if (task == null)
+					task = scheduler.pollSubmission();
+
+				if (task != null)
+					task.run();
+				else
+					scheduler.awaitWork();
+			}
+		}
+
+		// a task from this worker's deque or another's
+		Task<?> findWork()
+		{
+			Task<?> task = deque.pop();
+
+			return (task != null) ? task : scheduler.steal(this);
+		}
+
+		// run tasks until target is done. the tasks this worker forked
+		// after target are above it in the deque, so they are run first;
+		// when target has been stolen, the worker steals too
+		void helpUntilDone(Task<?> target)
+		{
+			while (!target.done)
+			{
+				Task<?> task = findWork();
+
+				if (task != null)
+					task.run();
+				else
+					Thread.yield();
+			}
+		}
+	}
+
+	/**
+	 * Creates a scheduler with one worker for each available processor.
+	 */
+	public WorkStealingScheduler()
+	{
+		this(Runtime.getRuntime().availableProcessors(), System.nanoTime());
+	}
+
+	/**
+	 * Creates a scheduler with <tt>parallelism</tt> workers that choose
+	 * their victims using random numbers generated from <tt>seed</tt>.
+	 *
+	 * @param parallelism  the number of worker threads.
+	 * @param seed  the seed for the workers' random numbers.
+	 * @throws IllegalArgumentException if <tt>parallelism</tt> is not
+	 *         positive.
+	 */
+	public WorkStealingScheduler(int parallelism, long seed)
+	{
+		if (parallelism <= 0)
+			throw new IllegalArgumentException(
+				"WorkStealingScheduler(): parallelism must be positive");
+
+		SplittableRandom random = new SplittableRandom(seed);
+
+		workers = new Worker[parallelism];
+		for (int i = 0; i < parallelism; i++)
+			workers[i] = new Worker(this, i, random.split());
+
+		for (int i = 0; i < parallelism; i++)
+			workers[i].start();
+	}
+
+	/**
+	 * Returns the number of worker threads.
+	 *
+	 * @return the number of workers.
+	 */
+	public int getParallelism()
+	{
+		return workers.length;
+	}
+
+	/**
+	 * Runs task in the scheduler and returns its result.  A call from a
+	 * worker of this scheduler runs the task directly; a call from any
+	 * other thread submits it and waits for it to finish.
+	 *
+	 * @param task  the task to run.
+	 * @return the result of the task.
+	 * @throws IllegalStateException if the scheduler has been shut down.
+	 * @throws RuntimeException or Error thrown by the task.
+	 */
+	public <V> V invoke(Task<V> task)
+	{
+		Thread t = Thread.currentThread();
+
+		if (t instanceof Worker && ((Worker)t).scheduler == this)
+			task.run();
+		else
+		{
+			lock.lock();
+			try
+			{
+				if (shutdown)
+					throw new IllegalStateException(
+						"WorkStealingScheduler invoke(): scheduler shut down");
+				submissions.addLast(task);
+				workAvailable.signal();
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+
+		return task.join();
+	}
+
+	/**
+	 * Stops the workers once they finish the tasks they are running.
+	 * Submitted tasks that have not started end with a
+	 * <tt>CancellationException</tt>.  Waits for the workers to exit
+	 * unless called from a worker.
+	 */
+	public void shutdown()
+	{
+		lock.lock();
+		try
+		{
+			shutdown = true;
+			while (!submissions.isEmpty())
+				submissions.removeFirst().cancel();
+			workAvailable.signalAll();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+
+		if (Thread.currentThread() instanceof Worker)
+			return;
+
+		boolean interrupted = false;
+
+		for (Worker w : workers)
+			while (w.isAlive())
+			{
+				try
+				{
+					w.join();
+				}
+				catch (InterruptedException ex)
+				{
+					interrupted = true;
+				}
+			}
+
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * Shuts down the scheduler.
+	 *
+	 * @see #shutdown()
+	 */
+	public void close()
+	{
+		shutdown();
+	}
+
+	// a task stolen from a worker other than thief, trying the victims in
+	// order from a random start
+	private Task<?> steal(Worker thief)
+	{
+		int n = workers.length;
+
+		if (n == 1)
+			return null;
+
+		int start = thief.random.nextInt(n);
+
+		for (int i = 0; i < n; i++)
+		{
+			Worker victim = workers[(start + i) % n];
+
+			if (victim != thief)
+			{
+				Task<?> task = victim.deque.steal();
+
+				if (task != null)
+					return task;
+			}
+		}
+
+		return null;
+	}
+
+	private Task<?> pollSubmission()
+	{
+		lock.lock();
+		try
+		{
+			return submissions.isEmpty() ? null : submissions.removeFirst();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	// wake an idle worker to steal a task that was just forked
+	private void signalWork()
+	{
+		if (idleWorkers.get() > 0)
+		{
+			lock.lock();
+			try
+			{
+				workAvailable.signal();
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+	}
+
+	private void awaitWork()
+	{
+		lock.lock();
+		try
+		{
+			if (submissions.isEmpty() && !shutdown)
+			{
+				idleWorkers.incrementAndGet();
+				try
+				{
+					workAvailable.awaitNanos(IDLE_WAIT_NANOS);
+				}
+				catch (InterruptedException ex)
+				{
+					// workers are stopped by shutdown(), not by interrupts
+				}
+				finally
+				{
+					idleWorkers.decrementAndGet();
+				}
+			}
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * @(#)HashBagGrabTest.java
+ */
+
+package ds.util;
+
+import java.util.SplittableRandom;
+
+/**
+ * Regression check for <tt>HashBag.grab</tt> after the bag grows from a
+ * capacity that is not a power of 2.  The Fenwick tree rebuilt by the
+ * growth must count every element, or <tt>grab</tt> walks past the last
+ * element or returns elements with the wrong weights.  Run with
+ * <tt>java ds.util.HashBagGrabTest</tt>; the program throws an exception
+ * if a check fails.
+ */
+
+public class HashBagGrabTest
+{
+	private static final int DRAWS = 200000;
+
+	public static void main(String[] args)
+	{
+		int[] capacities = {5, 6, 7, 12, 100};
+
+		for (int c = 0; c < capacities.length; c++)
+		{
+			int capacity = capacities[c];
+
+			// enough distinct elements to grow the bag at least once
+			int n = 2 * capacity + 1;
+			HashBag<Integer> bag = new HashBag<Integer>(capacity);
+			long total = 0;
+
+			// element i occurs i + 1 times
+			for (int i = 0; i < n; i++)
+			{
+				bag.add(i, i + 1);
+				total += i + 1;
+			}
+
+			int[] seen = new int[n];
+			SplittableRandom rnd = new SplittableRandom(capacity);
+
+			for (int k = 0; k < DRAWS; k++)
+			{
+				int x = bag.grab(rnd);
+
+				check(x >= 0 && x < n, "grab() returned " + x);
+				seen[x]++;
+			}
+
+			// each frequency is within 5 standard deviations of its
+			// expected value
+			for (int i = 0; i < n; i++)
+			{
+				double p = (double)(i + 1) / total;
+				double expected = DRAWS * p;
+				double sd = Math.sqrt(DRAWS * p * (1 - p));
+
+				check(Math.abs(seen[i] - expected) <= 5 * sd + 1,
+					"capacity " + capacity + ", element " + i + " drawn " +
+					seen[i] + " times, expected about " + (long)expected);
+			}
+		}
+
+		System.out.println("HashBagGrabTest: passed");
+	}
+
+	private static void check(boolean condition, String what)
+	{
+		if (!condition)
+			throw new AssertionError("HashBagGrabTest: " + what);
+	}
+}
@@ -0,0 +1,56 @@
+/*
+ * @(#)RedBlackInsertTest.java
+ */
+
+package ds.util;
+
+/**
+ * Regression check for top-down red-black insertion in <tt>TreeSet</tt>
+ * and <tt>TreeMap</tt>.  Inserting a duplicate after a split has colored
+ * the root red must leave the root black; otherwise a later insertion
+ * paints the NIL sentinel red and a rotation fails.  Run with
+ * <tt>java ds.util.RedBlackInsertTest</tt>; the program throws an
+ * exception if a check fails.
+ */
+
+public class RedBlackInsertTest
+{
+	// the last insertion failed when a duplicate left the root red
+	private static final int[] SEQUENCE =
+		{12, 11, 10, 7, 7, 2, 14, 8, 5, 11, 9, 6, 13, 4, 8, 12, 8};
+
+	public static void main(String[] args)
+	{
+		TreeSet<Integer> set = new TreeSet<Integer>();
+		TreeMap<Integer,Integer> map = new TreeMap<Integer,Integer>();
+		java.util.TreeSet<Integer> expected = new java.util.TreeSet<Integer>();
+
+		for (int i = 0; i < SEQUENCE.length; i++)
+		{
+			int x = SEQUENCE[i];
+
+			check(set.add(x) == expected.add(x), "TreeSet add(" + x + ")");
+			map.put(x, i);
+		}
+
+		check(set.size() == expected.size(), "TreeSet size");
+		check(map.size() == expected.size(), "TreeMap size");
+
+		int rank = 0;
+		for (Integer x : expected)
+		{
+			check(set.contains(x), "TreeSet contains(" + x + ")");
+			check(map.containsKey(x), "TreeMap containsKey(" + x + ")");
+			check(set.select(rank).equals(x), "TreeSet select(" + rank + ")");
+			rank++;
+		}
+
+		System.out.println("RedBlackInsertTest: passed");
+	}
+
+	private static void check(boolean condition, String what)
+	{
+		if (!condition)
+			throw new AssertionError("RedBlackInsertTest: " + what + " failed");
+	}
+}